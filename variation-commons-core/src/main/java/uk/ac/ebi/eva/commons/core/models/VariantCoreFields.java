@@ -16,9 +16,10 @@
 
 package uk.ac.ebi.eva.commons.core.models;
 
-import org.apache.commons.lang3.StringUtils;
+import uk.ac.ebi.eva.commons.core.reference.IndexedFastaReference;
 
 import static java.lang.Math.max;
+import static java.lang.Math.min;
 
 /**
  * Class that stores a Variant coordinates and alleles, normalizing and left aligning them.
@@ -28,6 +29,12 @@ import static java.lang.Math.max;
  * <p>
  * It is left aligned because the trailing bases are removed before the leading ones, implying a normalization where
  * the position is moved the least possible from its original location.
+ * <p>
+ * When a reference sequence is provided, the variant is fully left-normalized instead: after the trimming, an
+ * insertion or deletion is shifted to the left while the base before it in the reference is the same as its last
+ * base, so indels in repeats get the same representation however they were called; then, as in the VCF format, the
+ * base before the variant is prepended to both alleles if any of them is empty, unless it starts the sequence. The
+ * reference allele is not checked against the reference sequence.
  */
 public class VariantCoreFields {
 
@@ -42,6 +49,14 @@ public class VariantCoreFields {
     private String alternate;
 
     public VariantCoreFields(String chromosome, long position, String reference, String alternate) {
+        this(chromosome, position, reference, alternate, null);
+    }
+
+    /**
+     * @param referenceSequence Reference genome to left-normalize the variant with, or null to only trim it
+     */
+    public VariantCoreFields(String chromosome, long position, String reference, String alternate,
+                             IndexedFastaReference referenceSequence) {
         if (reference.equals(alternate)) {
             throw new IllegalArgumentException("One alternate allele is identical to the reference. Variant found as: "
                                                        + chromosome + ":" + position + ":" + reference + ">" + alternate);
@@ -49,30 +64,77 @@ public class VariantCoreFields {
 
         this.chromosome = chromosome;
 
-        // remove common trailing bases
-        int numTrailingNucleotidesToRemove = getIndexOfLastDifferentNucleotide(reference, alternate);
-        String rightTrimmedReference = reference.substring(0, reference.length() - numTrailingNucleotidesToRemove);
-        String rightTrimmedAlternate = alternate.substring(0, alternate.length() - numTrailingNucleotidesToRemove);
+        int referenceLength = reference.length();
+        int alternateLength = alternate.length();
+        if (referenceLength == 1 && alternateLength == 1) {
+            // SNVs have nothing to trim
+            this.reference = reference;
+            this.alternate = alternate;
+            start = position;
+            end = position;
+        } else {
+            // count common trailing bases, and then common leading bases before them
+            int numTrailingNucleotidesToRemove = countCommonTrailingNucleotides(reference, alternate);
+            int rightTrimmedReferenceLength = referenceLength - numTrailingNucleotidesToRemove;
+            int rightTrimmedAlternateLength = alternateLength - numTrailingNucleotidesToRemove;
+            int numLeadingNucleotidesToRemove = countCommonLeadingNucleotides(reference, alternate,
+                                                                              rightTrimmedReferenceLength,
+                                                                              rightTrimmedAlternateLength);
+
+            this.reference = reference.substring(numLeadingNucleotidesToRemove, rightTrimmedReferenceLength);
+            this.alternate = alternate.substring(numLeadingNucleotidesToRemove, rightTrimmedAlternateLength);
+
+            // calculate start and end
+            start = position + numLeadingNucleotidesToRemove;
+            end = position + max(rightTrimmedReferenceLength, rightTrimmedAlternateLength) - 1;
+        }
 
-        // remove common leading bases
-        int numLeadingNucleotidesToRemove = StringUtils.indexOfDifference(rightTrimmedReference, rightTrimmedAlternate);
-        this.reference = rightTrimmedReference.substring(numLeadingNucleotidesToRemove);
-        this.alternate = rightTrimmedAlternate.substring(numLeadingNucleotidesToRemove);
+        if (referenceSequence != null) {
+            leftNormalize(referenceSequence);
+        }
+    }
 
-        // calculate start and end
-        start = position + numLeadingNucleotidesToRemove;
-        end = calculateEnd(position, rightTrimmedReference, rightTrimmedAlternate);
+    private void leftNormalize(IndexedFastaReference referenceSequence) {
+        if (reference.isEmpty() || alternate.isEmpty()) {
+            boolean isInsertion = reference.isEmpty();
+            StringBuilder indel = new StringBuilder(isInsertion ? alternate : reference);
+            // rotate the indel to the left while the base before it is the same as its last one
+            while (start > 1) {
+                char previousBase = referenceSequence.getBase(chromosome, start - 1);
+                if (previousBase != indel.charAt(indel.length() - 1)) {
+                    break;
+                }
+                indel.deleteCharAt(indel.length() - 1).insert(0, previousBase);
+                start--;
+            }
+            String anchor = start > 1 ? String.valueOf(referenceSequence.getBase(chromosome, start - 1)) : "";
+            String shiftedIndel = indel.toString();
+            reference = anchor + (isInsertion ? "" : shiftedIndel);
+            alternate = anchor + (isInsertion ? shiftedIndel : "");
+            start -= anchor.length();
+            end = start + max(reference.length(), alternate.length()) - 1;
+        }
     }
 
-    private int getIndexOfLastDifferentNucleotide(String reference, String alternate) {
-        String refReversed = StringUtils.reverse(reference);
-        String altReversed = StringUtils.reverse(alternate);
-        return StringUtils.indexOfDifference(refReversed, altReversed);
+    private static int countCommonTrailingNucleotides(String reference, String alternate) {
+        int referenceIndex = reference.length() - 1;
+        int alternateIndex = alternate.length() - 1;
+        int count = 0;
+        while (referenceIndex >= 0 && alternateIndex >= 0
+                && reference.charAt(referenceIndex--) == alternate.charAt(alternateIndex--)) {
+            count++;
+        }
+        return count;
     }
 
-    private long calculateEnd(long position, String reference, String alternate) {
-        int length = max(reference.length(), alternate.length());
-        return position + length - 1;
+    private static int countCommonLeadingNucleotides(String reference, String alternate, int referenceLength,
+                                                     int alternateLength) {
+        int length = min(referenceLength, alternateLength);
+        int count = 0;
+        while (count < length && reference.charAt(count) == alternate.charAt(count)) {
+            count++;
+        }
+        return count;
     }
 
     public String getChromosome() {
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.commons.core.models.factories;
+
+import uk.ac.ebi.eva.commons.core.utils.StringPool;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * INFO column of a VCF record, split into its fields once and shared by every variant created from the record.
+ * <p>
+ * The fields are split on '=' the same way the factories used to split them, and the values of the "key=value" fields
+ * are indexed by key, the last one winning if a key is repeated. The comma separated lists are split on demand and
+ * kept, so the per-allele lists are only split once for all the alleles; the returned arrays must not be modified.
+ */
+public class ParsedInfo {
+
+    public static final ParsedInfo EMPTY = new ParsedInfo("");
+
+    private final String info;
+
+    private final List<String[]> fields;
+
+    private final Map<String, String> values;
+
+    private final Set<String> keys;
+
+    private final Map<String, String[]> splitValues;
+
+    public ParsedInfo(String info) {
+        this(info, null);
+    }
+
+    /**
+     * @param stringPool Pool the keys are taken from, or null to keep the keys as they are split
+     */
+    public ParsedInfo(String info, StringPool stringPool) {
+        this.info = info;
+        if (info.isEmpty()) {
+            this.fields = Collections.emptyList();
+            this.values = Collections.emptyMap();
+            this.keys = Collections.emptySet();
+        } else {
+            String[] splitInfo = info.split(";");
+            this.fields = new ArrayList<>(splitInfo.length);
+            this.values = new HashMap<>(splitInfo.length * 2);
+            this.keys = new HashSet<>(splitInfo.length * 2);
+            for (String field : splitInfo) {
+                String[] assignment = field.split("=");
+                if (stringPool != null && assignment.length > 0) {
+                    assignment[0] = stringPool.intern(assignment[0]);
+                }
+                fields.add(assignment);
+                if (assignment.length > 0) {
+                    keys.add(assignment[0]);
+                }
+                if (assignment.length == 2) {
+                    values.put(assignment[0], assignment[1]);
+                }
+            }
+        }
+        this.splitValues = new HashMap<>();
+    }
+
+    public String getInfo() {
+        return info;
+    }
+
+    public boolean isEmpty() {
+        return info.isEmpty();
+    }
+
+    /**
+     * @return Every field in order, split on '='. A "key=value" field has length 2, a flag has length 1
+     */
+    public List<String[]> getFields() {
+        return Collections.unmodifiableList(fields);
+    }
+
+    /**
+     * @return Whether there is a field with the key, with or without a value
+     */
+    public boolean hasKey(String key) {
+        return keys.contains(key);
+    }
+
+    public boolean containsKey(String key) {
+        return values.containsKey(key);
+    }
+
+    /**
+     * @return Value of the "key=value" field, or null if there is none
+     */
+    public String get(String key) {
+        return values.get(key);
+    }
+
+    /**
+     * @return Value of the "key=value" field split on commas, or null if there is none. If the key is repeated, this
+     * is the value of its last field; code that iterates {@link #getFields()} should split the value of each field.
+     */
+    public String[] getValues(String key) {
+        String value = values.get(key);
+        if (value == null) {
+            return null;
+        }
+        return splitValues.computeIfAbsent(key, k -> value.split(","));
+    }
+}
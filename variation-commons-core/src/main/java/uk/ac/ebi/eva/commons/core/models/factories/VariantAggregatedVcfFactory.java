@@ -22,6 +22,7 @@ import uk.ac.ebi.eva.commons.core.models.pipeline.Variant;
 import uk.ac.ebi.eva.commons.core.models.pipeline.VariantSourceEntry;
 
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Properties;
@@ -51,10 +52,17 @@ public class VariantAggregatedVcfFactory extends VariantVcfFactory {
 
     private final Pattern numNum = Pattern.compile("^(\\d+)[|/](\\d+)$");
 
+    private static final Map<String, String> STATS_KEYS = buildStatsKeys();
+
     protected Properties tagMap;
 
     protected Map<String, String> reverseTagMap;
 
+    /**
+     * The "COHORT.STAT" tags of the mappings by INFO key, split once instead of for every record
+     */
+    protected Map<String, CohortTag> cohortTags;
+
     public VariantAggregatedVcfFactory() {
         this(null);
     }
@@ -86,12 +94,26 @@ public class VariantAggregatedVcfFactory extends VariantVcfFactory {
         this.tagMap = mappings;
         if (this.tagMap != null) {
             this.reverseTagMap = new LinkedHashMap<>(tagMap.size());
+            this.cohortTags = new HashMap<>(tagMap.size() * 2);
             for (String tag : tagMap.stringPropertyNames()) {
                 this.reverseTagMap.put(tagMap.getProperty(tag), tag);
+                String[] tagSplit = tag.split("\\.");
+                if (tagSplit.length == 2) {
+                    this.cohortTags.put(tagMap.getProperty(tag), new CohortTag(tagSplit[0], tagSplit[1]));
+                }
             }
         } else {
             this.reverseTagMap = null;
+            this.cohortTags = null;
+        }
+    }
+
+    private static Map<String, String> buildStatsKeys() {
+        Map<String, String> statsKeys = new HashMap<>();
+        for (String stat : Arrays.asList("AC", "AN", "AF", "GTC")) {
+            statsKeys.put(stat, stat);
         }
+        return statsKeys;
     }
 
     @Override
@@ -106,8 +128,8 @@ public class VariantAggregatedVcfFactory extends VariantVcfFactory {
 
     @Override
     protected void setOtherFields(Variant variant, String fileId, String studyId, Set<String> ids, float quality,
-                                  String filter, String info, String format, int numAllele, String[] alternateAlleles,
-                                  String line) {
+                                  String filter, ParsedInfo info, String format, int numAllele,
+                                  String[] alternateAlleles, String line) {
         // Fields not affected by the structure of REF and ALT fields
         variant.setIds(ids);
         VariantSourceEntry sourceEntry = variant.getSourceEntry(fileId, studyId);
@@ -132,73 +154,61 @@ public class VariantAggregatedVcfFactory extends VariantVcfFactory {
     }
 
     protected void parseStats(Variant variant, String fileId, String studyId, int numAllele, String[] alternateAlleles,
-                              String info) {
+                              ParsedInfo info) {
         VariantSourceEntry file = variant.getSourceEntry(fileId, studyId);
         VariantStatistics vs = new VariantStatistics(variant);
-        Map<String, String> stats = new LinkedHashMap<>();
-        String[] splittedInfo = info.split(";");
-        for (String attribute : splittedInfo) {
-            String[] assignment = attribute.split("=");
-
-            if (assignment.length == 2 && (assignment[0].equals("AC") || assignment[0].equals("AN")
-                    || assignment[0].equals("AF") || assignment[0].equals("GTC") || assignment[0].equals("GTS"))) {
-                stats.put(assignment[0], assignment[1]);
-            }
-        }
 
-        addStats(variant, file, numAllele, alternateAlleles, stats, vs);
+        addStats(variant, file, numAllele, alternateAlleles, info, STATS_KEYS, vs);
 
         file.setStats(vs);
     }
 
     protected void parseCohortStats(Variant variant, String fileId, String studyId, int numAllele,
-                                    String[] alternateAlleles, String info) {
+                                    String[] alternateAlleles, ParsedInfo info) {
         VariantSourceEntry file = variant.getSourceEntry(fileId, studyId);
-        Map<String, Map<String, String>> cohortStats = new LinkedHashMap<>();
-        // cohortName -> (statsName -> statsValue): EUR->(AC->3,2)
-        String[] splittedInfo = info.split(";");
-        for (String attribute : splittedInfo) {
-            String[] assignment = attribute.split("=");
-
-            if (assignment.length == 2 && reverseTagMap.containsKey(assignment[0])) {
-                String opencgaTag = reverseTagMap.get(assignment[0]);
-                String[] tagSplit = opencgaTag.split("\\.");
-                String cohortName = tagSplit[0];
-                String statName = tagSplit[1];
-                Map<String, String> parsedValues = cohortStats.get(cohortName);
-                if (parsedValues == null) {
-                    parsedValues = new LinkedHashMap<>();
-                    cohortStats.put(cohortName, parsedValues);
+        Map<String, Map<String, String>> cohortStatsKeys = new LinkedHashMap<>();
+        // cohortName -> (statsName -> INFO key): EUR->(AC->AC_EUR)
+        for (String[] assignment : info.getFields()) {
+            CohortTag cohortTag;
+            if (assignment.length == 2 && (cohortTag = cohortTags.get(assignment[0])) != null) {
+                Map<String, String> statsKeys = cohortStatsKeys.get(cohortTag.getCohort());
+                if (statsKeys == null) {
+                    statsKeys = new LinkedHashMap<>();
+                    cohortStatsKeys.put(cohortTag.getCohort(), statsKeys);
                 }
-                parsedValues.put(statName, assignment[1]);
+                statsKeys.put(cohortTag.getStat(), assignment[0]);
             }
         }
 
-        for (String cohortName : cohortStats.keySet()) {
+        for (String cohortName : cohortStatsKeys.keySet()) {
             VariantStatistics vs = new VariantStatistics(variant);
-            addStats(variant, file, numAllele, alternateAlleles, cohortStats.get(cohortName), vs);
+            addStats(variant, file, numAllele, alternateAlleles, info, cohortStatsKeys.get(cohortName), vs);
             file.setCohortStats(cohortName, vs);
         }
 
     }
 
     /**
-     * sets (if the map of attributes contains AF, AC, AF and GTC) alleleCount, refAlleleCount, maf, mafAllele,
-     * alleleFreq and genotypeCounts,
+     * sets (if the INFO contains AF, AC, AF and GTC) alleleCount, refAlleleCount, maf, mafAllele, alleleFreq and
+     * genotypeCounts,
      *
      * @param variant
      * @param sourceEntry
      * @param numAllele
      * @param alternateAlleles
-     * @param attributes
+     * @param info
+     * @param statsKeys INFO key of each of the stats AF, AC, AN and GTC
      * @param variantStats
      */
     protected void addStats(Variant variant, VariantSourceEntry sourceEntry, int numAllele, String[] alternateAlleles,
-                            Map<String, String> attributes, VariantStatistics variantStats) {
+                            ParsedInfo info, Map<String, String> statsKeys, VariantStatistics variantStats) {
+        String alleleNumber = getStat(info, statsKeys, "AN");
+        String[] alleleCountString = getStatValues(info, statsKeys, "AC");
+        String[] afs = getStatValues(info, statsKeys, "AF");
+        String[] gtcs = getStatValues(info, statsKeys, "GTC");
 
-        if (attributes.containsKey("AN") && attributes.containsKey("AC")) {
-            int total = Integer.parseInt(attributes.get("AN"));
-            String[] alleleCountString = attributes.get("AC").split(",");
+        if (alleleNumber != null && alleleCountString != null) {
+            int total = Integer.parseInt(alleleNumber);
 
             if (alleleCountString.length != alternateAlleles.length) {
                 return;
@@ -232,8 +242,7 @@ public class VariantAggregatedVcfFactory extends VariantVcfFactory {
             variantStats.setMafAllele(mafAllele);
         }
 
-        if (attributes.containsKey("AF")) {
-            String[] afs = attributes.get("AF").split(",");
+        if (afs != null) {
             if (afs.length == alternateAlleles.length) {
                 variantStats.setAltAlleleFreq(Float.parseFloat(afs[numAllele]));
                 if (variantStats.getMaf() == -1) {  // in case that we receive AFs but no ACs
@@ -256,10 +265,9 @@ public class VariantAggregatedVcfFactory extends VariantVcfFactory {
                 }
             }
         }
-        if (attributes.containsKey("GTC")) {
-            String[] gtcs = attributes.get("GTC").split(",");
-            if (sourceEntry.hasAttribute("GTS")) {    // GTS contains the format like: GTS=GG,GT,TT or GTS=A1A1,A1R,RR
-                addGenotypeWithGTS(variant, sourceEntry, gtcs, alternateAlleles, numAllele, variantStats);
+        if (gtcs != null) {
+            if (info.hasKey("GTS")) {    // GTS contains the format like: GTS=GG,GT,TT or GTS=A1A1,A1R,RR
+                addGenotypeWithGTS(variant, info, gtcs, alternateAlleles, numAllele, variantStats);
             } else {
                 for (int i = 0; i < gtcs.length; i++) {
                     String[] gtcSplit = gtcs[i].split(":");
@@ -301,6 +309,16 @@ public class VariantAggregatedVcfFactory extends VariantVcfFactory {
 
     }
 
+    private static String getStat(ParsedInfo info, Map<String, String> statsKeys, String stat) {
+        String key = statsKeys.get(stat);
+        return key != null ? info.get(key) : null;
+    }
+
+    private static String[] getStatValues(ParsedInfo info, Map<String, String> statsKeys, String stat) {
+        String key = statsKeys.get(stat);
+        return key != null ? info.getValues(key) : null;
+    }
+
     /**
      * returns in alleles[] the genotype specified in index in the sequence:
      * 0/0, 0/1, 1/1, 0/2, 1/2, 2/2, 0/3...
@@ -387,10 +405,10 @@ public class VariantAggregatedVcfFactory extends VariantVcfFactory {
         return null;
     }
 
-    protected void addGenotypeWithGTS(Variant variant, VariantSourceEntry sourceEntry, String[] splitsGTC,
+    protected void addGenotypeWithGTS(Variant variant, ParsedInfo info, String[] splitsGTC,
                                       String[] alternateAlleles, int numAllele, VariantStatistics cohortStats) {
-        if (sourceEntry.hasAttribute("GTS")) {
-            String splitsGTS[] = sourceEntry.getAttribute("GTS").split(",");
+        String splitsGTS[] = info.getValues("GTS");
+        if (splitsGTS != null) {
             if (splitsGTC.length == splitsGTS.length) {
                 for (int i = 0; i < splitsGTC.length; i++) {
                     String gt = splitsGTS[i];
@@ -404,5 +422,27 @@ public class VariantAggregatedVcfFactory extends VariantVcfFactory {
             }
         }
     }
-}
 
+    /**
+     * Cohort and statistic of a "COHORT.STAT" tag of the mappings, e.g. EUR and AC for "EUR.AC"
+     */
+    protected static class CohortTag {
+
+        private final String cohort;
+
+        private final String stat;
+
+        CohortTag(String cohort, String stat) {
+            this.cohort = cohort;
+            this.stat = stat;
+        }
+
+        public String getCohort() {
+            return cohort;
+        }
+
+        public String getStat() {
+            return stat;
+        }
+    }
+}
@@ -62,8 +62,8 @@ public class VariantVcfEVSFactory extends VariantAggregatedVcfFactory {
 
     @Override
     protected void setOtherFields(Variant variant, String fileId, String studyId, Set<String> ids, float quality,
-                                  String filter, String info, String format, int numAllele, String[] alternateAlleles,
-                                  String line) {
+                                  String filter, ParsedInfo info, String format, int numAllele,
+                                  String[] alternateAlleles, String line) {
         // Fields not affected by the structure of REF and ALT fields
         variant.setIds(ids);
         VariantSourceEntry sourceEntry = variant.getSourceEntry(fileId, studyId);
@@ -81,70 +81,68 @@ public class VariantVcfEVSFactory extends VariantAggregatedVcfFactory {
 
 
         if (tagMap == null) {   // whether we can parse population stats or not
-            parseEVSAttributes(variant, fileId, studyId, numAllele, alternateAlleles);
+            parseEVSAttributes(variant, fileId, studyId, numAllele, alternateAlleles, info);
         } else {
-            parseCohortEVSInfo(variant, sourceEntry, numAllele, alternateAlleles);
+            parseCohortEVSInfo(variant, sourceEntry, numAllele, alternateAlleles, info);
         }
     }
 
-    private void parseEVSAttributes(Variant variant, String fileId, String studyId, int numAllele, String[] alternateAlleles) {
+    private void parseEVSAttributes(Variant variant, String fileId, String studyId, int numAllele,
+                                    String[] alternateAlleles, ParsedInfo info) {
         VariantSourceEntry file = variant.getSourceEntry(fileId, studyId);
         VariantStatistics stats = new VariantStatistics(variant);
-        if (file.hasAttribute("MAF")) {
-            String splitsMAF[] = file.getAttribute("MAF").split(",");
+        String splitsMAF[] = info.getValues("MAF");
+        if (splitsMAF != null) {
             if (splitsMAF.length == 3) {
                 float maf = Float.parseFloat(splitsMAF[2]) / 100;
                 stats.setMaf(maf);
             }
         }
 
-        if (file.hasAttribute("GTS") && file.hasAttribute("GTC")) {
-            String splitsGTC[] = file.getAttribute("GTC").split(",");
-            addGenotypeWithGTS(variant, file, splitsGTC, alternateAlleles, numAllele, stats);
+        String splitsGTC[] = info.getValues("GTC");
+        if (info.hasKey("GTS") && splitsGTC != null) {
+            addGenotypeWithGTS(variant, info, splitsGTC, alternateAlleles, numAllele, stats);
         }
         file.setStats(stats);
     }
 
 
     private void parseCohortEVSInfo(Variant variant, VariantSourceEntry sourceEntry,
-                                    int numAllele, String[] alternateAlleles) {
+                                    int numAllele, String[] alternateAlleles, ParsedInfo info) {
         if (tagMap != null) {
             for (String key : sourceEntry.getAttributes().keySet()) {
-                String opencgaTag = reverseTagMap.get(key);
-                String[] values = sourceEntry.getAttribute(key).split(",");
-                if (opencgaTag != null) {
-                    String[] opencgaTagSplit = opencgaTag.split("\\."); // a literal point
-                    if (opencgaTagSplit.length == 2) {
-                        String cohort = opencgaTagSplit[0];
-                        VariantStatistics cohortStats = sourceEntry.getCohortStats(cohort);
-                        if (cohortStats == null) {
-                            cohortStats = new VariantStatistics(variant);
-                            sourceEntry.setCohortStats(cohort, cohortStats);
-                        }
-                        switch (opencgaTagSplit[1]) {
-                            case "AC":
-                                cohortStats.setAltAlleleCount(Integer.parseInt(values[numAllele]));
-                                cohortStats.setRefAlleleCount(Integer.parseInt(
-                                        values[values.length - 1]));    // ref allele count is the last one
-                                break;
-                            case "AF":
-                                cohortStats.setAltAlleleFreq(Float.parseFloat(values[numAllele]));
-                                cohortStats.setRefAlleleFreq(Float.parseFloat(values[values.length - 1]));
-                                break;
-                            case "AN":
-                                // TODO implement this. also, take into account that needed fields may not be processed yet
-                                break;
-                            case "GTC":
-                                addGenotypeWithGTS(variant, sourceEntry, values, alternateAlleles, numAllele,
-                                                   cohortStats);
-                                break;
-                            default:
-                                break;
-                        }
+                CohortTag cohortTag = cohortTags.get(key);
+                if (cohortTag != null) {
+                    String[] values = getAttributeValues(sourceEntry, info, key);
+                    String cohort = cohortTag.getCohort();
+                    VariantStatistics cohortStats = sourceEntry.getCohortStats(cohort);
+                    if (cohortStats == null) {
+                        cohortStats = new VariantStatistics(variant);
+                        sourceEntry.setCohortStats(cohort, cohortStats);
+                    }
+                    switch (cohortTag.getStat()) {
+                        case "AC":
+                            cohortStats.setAltAlleleCount(Integer.parseInt(values[numAllele]));
+                            cohortStats.setRefAlleleCount(Integer.parseInt(
+                                    values[values.length - 1]));    // ref allele count is the last one
+                            break;
+                        case "AF":
+                            cohortStats.setAltAlleleFreq(Float.parseFloat(values[numAllele]));
+                            cohortStats.setRefAlleleFreq(Float.parseFloat(values[values.length - 1]));
+                            break;
+                        case "AN":
+                            // TODO implement this. also, take into account that needed fields may not be processed yet
+                            break;
+                        case "GTC":
+                            addGenotypeWithGTS(variant, info, values, alternateAlleles, numAllele, cohortStats);
+                            break;
+                        default:
+                            break;
                     }
                 } else if (key.equals("MAF")) {
                     String groups_order = tagMap.getProperty("GROUPS_ORDER");
                     if (groups_order != null) {
+                        String[] values = getAttributeValues(sourceEntry, info, key);
                         String[] populations = groups_order.split(",");
                         if (populations.length == values.length) {
                             for (int i = 0; i < values.length; i++) {   // each value has the maf of each population
@@ -164,5 +162,16 @@ public class VariantVcfEVSFactory extends VariantAggregatedVcfFactory {
         }
     }
 
-}
+    /**
+     * The attributes copied as they are from the INFO column reuse its split values; the ones reduced to the value of
+     * one allele (such as AC or AF) are split again.
+     */
+    private String[] getAttributeValues(VariantSourceEntry sourceEntry, ParsedInfo info, String key) {
+        String value = sourceEntry.getAttribute(key);
+        if (value.equals(info.get(key))) {
+            return info.getValues(key);
+        }
+        return value.split(",");
+    }
 
+}
@@ -39,8 +39,6 @@ public class VariantVcfExacFactory extends VariantAggregatedVcfFactory {
 
     private static final String AC_ADJ = "AC_Adj";
 
-    private static final String COMMA = ",";
-
     public VariantVcfExacFactory() {
         this(null);
     }
@@ -72,42 +70,41 @@ public class VariantVcfExacFactory extends VariantAggregatedVcfFactory {
 
     @Override
     protected void parseStats(Variant variant, String fileId, String studyId, int numAllele, String[] alternateAlleles,
-                              String info) {
+                              ParsedInfo info) {
         VariantSourceEntry sourceEntry = variant.getSourceEntry(fileId, studyId);
         VariantStatistics stats = new VariantStatistics(variant);
 
-        if (sourceEntry.hasAttribute(AC_HET)) {   // heterozygous genotype count
-            String[] hetCounts = sourceEntry.getAttribute(AC_HET).split(COMMA);
+        String[] hetCounts = info.getValues(AC_HET);
+        if (hetCounts != null) {   // heterozygous genotype count
             addHeterozygousGenotypes(variant, numAllele, alternateAlleles, stats, hetCounts);
         }
 
-        if (sourceEntry.hasAttribute(AC_HOM)) {   // homozygous genotype count
-            String[] homCounts = sourceEntry.getAttribute(AC_HOM).split(COMMA);
+        String[] homCounts = info.getValues(AC_HOM);
+        if (homCounts != null) {   // homozygous genotype count
             addHomozygousGenotype(variant, numAllele, alternateAlleles, stats, homCounts);
         }
 
-        String[] acCounts = null;
-        if (sourceEntry.hasAttribute(AC_ADJ)) {   // alternative allele counts
-            acCounts = sourceEntry.getAttribute(AC_ADJ).split(COMMA);
+        String[] acCounts = info.getValues(AC_ADJ);
+        if (acCounts != null) {   // alternative allele counts
             if (acCounts.length == alternateAlleles.length) {
                 stats.setAltAlleleCount(Integer.parseInt(acCounts[numAllele]));
             }
         }
 
-        if (sourceEntry.hasAttribute(AN_ADJ) && sourceEntry.hasAttribute(AC_ADJ)) {
+        String alleleNumber = info.get(AN_ADJ);
+        if (alleleNumber != null && acCounts != null) {
             // inferring implicit reference allele count
-            setRefAlleleCount(stats, Integer.parseInt(sourceEntry.getAttribute(AN_ADJ)),
-                              sourceEntry.getAttribute(AC_ADJ).split(COMMA));
+            setRefAlleleCount(stats, Integer.parseInt(alleleNumber), acCounts);
         }
 
-        if (sourceEntry.hasAttribute(AC_HOM) && sourceEntry.hasAttribute(AC_HET) && sourceEntry.hasAttribute(AN_ADJ)) {
+        if (homCounts != null && hetCounts != null && alleleNumber != null) {
             // inferring implicit homozygous reference genotype (0/0) count
-            int an = Integer.parseInt(sourceEntry.getAttribute(AN_ADJ));
+            int an = Integer.parseInt(alleleNumber);
             addReferenceGenotype(variant, stats, an);
         }
 
-        if (sourceEntry.hasAttribute(AC_ADJ) && sourceEntry.hasAttribute(AN_ADJ)) {
-            int an = Integer.parseInt(sourceEntry.getAttribute(AN_ADJ));
+        if (acCounts != null && alleleNumber != null) {
+            int an = Integer.parseInt(alleleNumber);
             setMaf(an, acCounts, alternateAlleles, stats);
         }
 
@@ -117,25 +114,22 @@ public class VariantVcfExacFactory extends VariantAggregatedVcfFactory {
 
     @Override
     protected void parseCohortStats(Variant variant, String fileId, String studyId, int numAllele, String[] alternateAlleles,
-                                    String info) {
+                                    ParsedInfo info) {
         VariantSourceEntry sourceEntry = variant.getSourceEntry(fileId, studyId);
-        String[] attributes = info.split(";");
         Map<String, Integer> ans = new LinkedHashMap<>();
         Map<String, String[]> acs = new LinkedHashMap<>();
-        for (String attribute : attributes) {
-            String[] equalSplit = attribute.split("=");
+        for (String[] equalSplit : info.getFields()) {
             if (equalSplit.length == 2) {
-                String mappedTag = reverseTagMap.get(equalSplit[0]);
-                String[] values = equalSplit[1].split(COMMA);
-                if (mappedTag != null) {
-                    String[] opencgaTagSplit = mappedTag.split("\\.");   // a literal dot
-                    String cohortName = opencgaTagSplit[0];
+                CohortTag cohortTag = cohortTags.get(equalSplit[0]);
+                if (cohortTag != null) {
+                    String[] values = equalSplit[1].split(",");
+                    String cohortName = cohortTag.getCohort();
                     VariantStatistics cohortStats = sourceEntry.getCohortStats(cohortName);
                     if (cohortStats == null) {
                         cohortStats = new VariantStatistics(variant);
                         sourceEntry.setCohortStats(cohortName, cohortStats);
                     }
-                    switch (opencgaTagSplit[1]) {
+                    switch (cohortTag.getStat()) {
                         case "AC":
                             cohortStats.setAltAlleleCount(Integer.parseInt(values[numAllele]));
                             acs.put(cohortName, values);
@@ -22,6 +22,8 @@ import uk.ac.ebi.eva.commons.core.models.VariantCoreFields;
 import uk.ac.ebi.eva.commons.core.models.genotype.Genotype;
 import uk.ac.ebi.eva.commons.core.models.pipeline.Variant;
 import uk.ac.ebi.eva.commons.core.models.pipeline.VariantSourceEntry;
+import uk.ac.ebi.eva.commons.core.reference.IndexedFastaReference;
+import uk.ac.ebi.eva.commons.core.utils.StringPool;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -37,6 +39,30 @@ import java.util.TreeMap;
  */
 public class VariantVcfFactory {
 
+    private IndexedFastaReference referenceSequence;
+
+    private StringPool stringPool = new StringPool();
+
+    /**
+     * @param referenceSequence Reference genome used to left-normalize the variants (see {@link VariantCoreFields}),
+     * or null to only trim their alleles, which is the default
+     */
+    public void setReferenceSequence(IndexedFastaReference referenceSequence) {
+        this.referenceSequence = referenceSequence;
+    }
+
+    /**
+     * The chromosome names, study and file ids, single-base alleles, INFO and FORMAT keys and genotypes of the variants created
+     * are taken from this pool, so the variants of a batch share them. Each factory has its own pool by default; a
+     * pool can be shared by several factories, and cleared between batches.
+     */
+    public void setStringPool(StringPool stringPool) {
+        if (stringPool == null) {
+            throw new IllegalArgumentException("A string pool is required");
+        }
+        this.stringPool = stringPool;
+    }
+
     /**
      * Creates a list of Variant objects using the fields in a record of a VCF
      * file. A new Variant object is created per allele, so several of them can
@@ -57,15 +83,17 @@ public class VariantVcfFactory {
             throw new IllegalArgumentException("Not enough fields provided (min 8)");
         }
 
-        String chromosome = getChromosomeWithoutPrefix(fields);
+        fileId = stringPool.intern(fileId);
+        studyId = stringPool.intern(studyId);
+        String chromosome = stringPool.intern(getChromosomeWithoutPrefix(fields));
         int position = getPosition(fields);
         Set<String> ids = new HashSet<>(); //EVA-942 - Ignore IDs submitted through VCF
         String reference = getReference(fields);
         String[] alternateAlleles = getAlternateAlleles(fields, chromosome, position, reference);
         float quality = getQuality(fields);
-        String filter = getFilter(fields);
-        String info = getInfo(fields);
-        String format = getFormat(fields);
+        String filter = stringPool.intern(getFilter(fields));
+        ParsedInfo info = getInfo(fields);
+        String format = stringPool.intern(getFormat(fields));
 
         List<VariantCoreFields> generatedKeyFields = buildVariantCoreFields(chromosome, position, reference,
                                                                             alternateAlleles);
@@ -74,8 +102,9 @@ public class VariantVcfFactory {
         // Now create all the Variant objects read from the VCF record
         for (int altAlleleIdx = 0; altAlleleIdx < alternateAlleles.length; altAlleleIdx++) {
             VariantCoreFields keyFields = generatedKeyFields.get(altAlleleIdx);
-            Variant variant = new Variant(chromosome, keyFields.getStart(), keyFields.getEnd(), keyFields.getReference(),
-                                          keyFields.getAlternate());
+            Variant variant = new Variant(chromosome, keyFields.getStart(), keyFields.getEnd(),
+                                          stringPool.internAllele(keyFields.getReference()),
+                                          stringPool.internAllele(keyFields.getAlternate()));
             String[] secondaryAlternates = getSecondaryAlternates(altAlleleIdx, alternateAlleles);
             VariantSourceEntry file = new VariantSourceEntry(fileId, studyId, secondaryAlternates, format);
             variant.addSourceEntry(file);
@@ -133,8 +162,11 @@ public class VariantVcfFactory {
         return fields[6].equals(".") ? "" : fields[6];
     }
 
-    private String getInfo(String[] fields) {
-        return fields[7].equals(".") ? "" : fields[7];
+    /**
+     * The INFO column is parsed once per record, and shared by the variants of all its alleles.
+     */
+    private ParsedInfo getInfo(String[] fields) {
+        return fields[7].equals(".") ? ParsedInfo.EMPTY : new ParsedInfo(fields[7], stringPool);
     }
 
     private String getFormat(String[] fields) {
@@ -146,7 +178,8 @@ public class VariantVcfFactory {
         List<VariantCoreFields> generatedKeyFields = new ArrayList<>();
 
         for (int i = 0; i < alternateAlleles.length; i++) { // This index is necessary for getting the samples where the mutated allele is present
-            VariantCoreFields keyFields = new VariantCoreFields(chromosome, position, reference, alternateAlleles[i]);
+            VariantCoreFields keyFields = new VariantCoreFields(chromosome, position, reference, alternateAlleles[i],
+                                                                referenceSequence);
 
             // Since the reference and alternate alleles won't necessarily match
             // the ones read from the VCF file but they are still needed for
@@ -171,6 +204,9 @@ public class VariantVcfFactory {
                                         String[] alternateAlleles, String[] secondaryAlternates,
                                         int alternateAlleleIdx) {
         String[] formatFields = variant.getSourceEntry(fileId, studyId).getFormat().split(":");
+        for (int j = 0; j < formatFields.length; j++) {
+            formatFields[j] = stringPool.intern(formatFields[j]);
+        }
 
         for (int i = 9; i < fields.length; i++) {
             Map<String, String> map = new TreeMap<>();
@@ -210,14 +246,14 @@ public class VariantVcfFactory {
     }
 
     /**
-     * Intern the genotype String into the String pool to avoid storing lots of "0/0". In case that the variant is
+     * Take the genotype String from the pool of the factory to avoid storing lots of "0/0". In case that the variant is
      * multiallelic and we are currently processing one of the secondary alternates (T is the only secondary alternate
      * in a variant like A -> C,T), change the allele codes to represent the current alternate as allele 1. For details
      * on changing this indexes, see {@link VariantVcfFactory#mapToMultiallelicIndex(int, int)}
      *
      * @param alternateAlleleIdx current alternate being processed. 0 for first alternate, 1 or more for a secondary alternate.
      * @param genotype first field in the samples column, e.g. "0/0"
-     * @return the processed genotype string, as described above (interned and changed if multiallelic).
+     * @return the processed genotype string, as described above (pooled and changed if multiallelic).
      */
     private String processGenotypeField(int alternateAlleleIdx, String genotype) {
         boolean isNotTheFirstAlternate = alternateAlleleIdx >= 1;
@@ -237,11 +273,12 @@ public class VariantVcfFactory {
             genotype = genotypeStr.substring(0, genotypeStr.length() - 1);
         }
 
-        return genotype.intern();
+        return stringPool.intern(genotype);
     }
 
     protected void setOtherFields(Variant variant, String fileId, String studyId, Set<String> ids, float quality, String filter,
-                                  String info, String format, int numAllele, String[] alternateAlleles, String line) {
+                                  ParsedInfo info, String format, int numAllele, String[] alternateAlleles,
+                                  String line) {
         // Fields not affected by the structure of REF and ALT fields
         variant.setIds(ids);
 
@@ -258,11 +295,10 @@ public class VariantVcfFactory {
         variant.getSourceEntry(fileId, studyId).addAttribute("src", line);
     }
 
-    protected void parseInfo(Variant variant, String fileId, String studyId, String info, int numAllele) {
+    protected void parseInfo(Variant variant, String fileId, String studyId, ParsedInfo info, int numAllele) {
         VariantSourceEntry file = variant.getSourceEntry(fileId, studyId);
 
-        for (String var : info.split(";")) {
-            String[] splits = var.split("=");
+        for (String[] splits : info.getFields()) {
             if (splits.length == 2) {
                 switch (splits[0]) {
                     case "ACC":
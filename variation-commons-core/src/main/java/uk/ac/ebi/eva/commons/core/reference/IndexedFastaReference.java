@@ -0,0 +1,217 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.commons.core.reference;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Reference genome read from a FASTA file and its samtools index (the same path with ".fai" appended).
+ * <p>
+ * The FASTA file is never read through streams: it is memory-mapped in fixed windows, which are mapped the first
+ * time a base inside them is requested and then kept, so the bases are paged in by the operating system and the
+ * heap only holds the index and the sequences returned. The windows are read with absolute gets only, so one
+ * instance can be shared by any number of threads.
+ * <p>
+ * Coordinates are 1-based and inclusive, like in the VCF format, and the bases are returned in upper case. As the VCF
+ * factories remove the "chr" prefix from the chromosome names, a sequence named "chr1" is also found as "1".
+ */
+public class IndexedFastaReference implements Closeable {
+
+    public static final String INDEX_EXTENSION = ".fai";
+
+    public static final int DEFAULT_WINDOW_SIZE = 64 * 1024 * 1024;
+
+    private static final String CHROMOSOME_PREFIX = "chr";
+
+    private final FileChannel channel;
+
+    private final long fileSize;
+
+    private final int windowSize;
+
+    private final AtomicReferenceArray<MappedByteBuffer> windows;
+
+    private final Map<String, IndexEntry> index;
+
+    public IndexedFastaReference(Path fastaPath) throws IOException {
+        this(fastaPath, DEFAULT_WINDOW_SIZE);
+    }
+
+    /**
+     * @param windowSize Size in bytes of the regions of the file mapped at once
+     */
+    public IndexedFastaReference(Path fastaPath, int windowSize) throws IOException {
+        if (windowSize <= 0) {
+            throw new IllegalArgumentException("The window size must be positive");
+        }
+        this.index = readIndex(Paths.get(fastaPath.toString() + INDEX_EXTENSION));
+        this.channel = FileChannel.open(fastaPath, StandardOpenOption.READ);
+        this.fileSize = channel.size();
+        this.windowSize = windowSize;
+        this.windows = new AtomicReferenceArray<>((int) ((fileSize + windowSize - 1) / windowSize));
+    }
+
+    private static Map<String, IndexEntry> readIndex(Path indexPath) throws IOException {
+        Map<String, IndexEntry> index = new LinkedHashMap<>();
+        try (BufferedReader reader = Files.newBufferedReader(indexPath, StandardCharsets.US_ASCII)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                String[] fields = line.split("\t");
+                if (fields.length < 5) {
+                    throw new IllegalArgumentException("Malformed FASTA index line in " + indexPath + ": " + line);
+                }
+                index.put(fields[0], new IndexEntry(Long.parseLong(fields[1]), Long.parseLong(fields[2]),
+                                                    Integer.parseInt(fields[3]), Integer.parseInt(fields[4])));
+            }
+        }
+        return index;
+    }
+
+    public Set<String> getSequenceNames() {
+        return Collections.unmodifiableSet(index.keySet());
+    }
+
+    public boolean hasSequence(String chromosome) {
+        return findIndexEntry(chromosome) != null;
+    }
+
+    public long getSequenceLength(String chromosome) {
+        return getIndexEntry(chromosome).length;
+    }
+
+    public char getBase(String chromosome, long position) {
+        IndexEntry entry = getIndexEntry(chromosome);
+        checkRange(chromosome, entry, position, position);
+        return toUpperCase(getByte(entry.getOffset(position - 1)));
+    }
+
+    /**
+     * @return Bases between start and end, both included, or an empty string if end is start - 1
+     */
+    public String getSequence(String chromosome, long start, long end) {
+        IndexEntry entry = getIndexEntry(chromosome);
+        if (end == start - 1 && start >= 1 && end <= entry.length) {
+            return "";
+        }
+        checkRange(chromosome, entry, start, end);
+        int length = (int) (end - start + 1);
+        char[] bases = new char[length];
+        for (int i = 0; i < length; i++) {
+            bases[i] = toUpperCase(getByte(entry.getOffset(start - 1 + i)));
+        }
+        return new String(bases);
+    }
+
+    private IndexEntry findIndexEntry(String chromosome) {
+        IndexEntry entry = index.get(chromosome);
+        return entry != null ? entry : index.get(CHROMOSOME_PREFIX + chromosome);
+    }
+
+    private IndexEntry getIndexEntry(String chromosome) {
+        IndexEntry entry = findIndexEntry(chromosome);
+        if (entry == null) {
+            throw new IllegalArgumentException("Sequence " + chromosome + " not found in the reference");
+        }
+        return entry;
+    }
+
+    private static void checkRange(String chromosome, IndexEntry entry, long start, long end) {
+        if (start < 1 || end < start || end > entry.length) {
+            throw new IllegalArgumentException("Region " + chromosome + ":" + start + "-" + end
+                                                       + " is out of the bounds of the reference sequence, of length "
+                                                       + entry.length);
+        }
+    }
+
+    private byte getByte(long fileOffset) {
+        return getWindow((int) (fileOffset / windowSize)).get((int) (fileOffset % windowSize));
+    }
+
+    private MappedByteBuffer getWindow(int windowIndex) {
+        MappedByteBuffer window = windows.get(windowIndex);
+        if (window == null) {
+            long windowStart = (long) windowIndex * windowSize;
+            try {
+                window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart,
+                                     Math.min(windowSize, fileSize - windowStart));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not map the reference sequence file", e);
+            }
+            // another thread may have mapped it meanwhile; both mappings are equivalent, keep the first one
+            if (!windows.compareAndSet(windowIndex, null, window)) {
+                window = windows.get(windowIndex);
+            }
+        }
+        return window;
+    }
+
+    private static char toUpperCase(byte base) {
+        return (char) (base >= 'a' && base <= 'z' ? base - ('a' - 'A') : base);
+    }
+
+    /**
+     * Closes the file. The mapped windows stay readable until they are garbage collected, but no new ones can be
+     * mapped.
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private static class IndexEntry {
+
+        private final long length;
+
+        private final long offset;
+
+        private final int lineBases;
+
+        private final int lineWidth;
+
+        IndexEntry(long length, long offset, int lineBases, int lineWidth) {
+            this.length = length;
+            this.offset = offset;
+            this.lineBases = lineBases;
+            this.lineWidth = lineWidth;
+        }
+
+        /**
+         * @param position 0-based position in the sequence
+         * @return Offset of the base in the FASTA file, skipping the line breaks
+         */
+        long getOffset(long position) {
+            return offset + position / lineBases * lineWidth + position % lineBases;
+        }
+    }
+}
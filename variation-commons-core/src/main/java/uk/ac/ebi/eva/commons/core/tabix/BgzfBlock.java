@@ -0,0 +1,39 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.commons.core.tabix;
+
+/**
+ * Decompressed contents of a BGZF block, and the size of the compressed block to find the next one.
+ */
+class BgzfBlock {
+
+    private final byte[] data;
+
+    private final int compressedSize;
+
+    BgzfBlock(byte[] data, int compressedSize) {
+        this.data = data;
+        this.compressedSize = compressedSize;
+    }
+
+    byte[] getData() {
+        return data;
+    }
+
+    int getCompressedSize() {
+        return compressedSize;
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.commons.core.tabix;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Decompressed BGZF blocks, shared by the readers of one or several files and by any number of threads.
+ * <p>
+ * The cache is bounded by the total size of the decompressed blocks, and evicts the least recently used ones. A block
+ * requested by several threads at the same time is only decompressed once.
+ */
+public class BgzfBlockCache {
+
+    public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+
+    private final Cache<BlockKey, BgzfBlock> cache;
+
+    public BgzfBlockCache() {
+        this(DEFAULT_MAX_BYTES);
+    }
+
+    /**
+     * @param maxBytes Maximum total size of the decompressed blocks kept
+     */
+    public BgzfBlockCache(long maxBytes) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("The maximum size of the cache must be positive");
+        }
+        this.cache = CacheBuilder.newBuilder()
+                                 .maximumWeight(maxBytes)
+                                 .weigher((BlockKey key, BgzfBlock block) -> block.getData().length)
+                                 .recordStats()
+                                 .build();
+    }
+
+    BgzfBlock get(String file, long compressedOffset, Callable<BgzfBlock> loader) throws IOException {
+        try {
+            return cache.get(new BlockKey(file, compressedOffset), loader);
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            if (e.getCause() instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) e.getCause()).getCause();
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("Error decompressing a BGZF block", e.getCause());
+        }
+    }
+
+    public long getHitCount() {
+        return cache.stats().hitCount();
+    }
+
+    public long getMissCount() {
+        return cache.stats().missCount();
+    }
+
+    public long size() {
+        return cache.size();
+    }
+
+    public void clear() {
+        cache.invalidateAll();
+    }
+
+    private static class BlockKey {
+
+        private final String file;
+
+        private final long compressedOffset;
+
+        BlockKey(String file, long compressedOffset) {
+            this.file = file;
+            this.compressedOffset = compressedOffset;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            BlockKey blockKey = (BlockKey) o;
+            return compressedOffset == blockKey.compressedOffset && file.equals(blockKey.file);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(file, compressedOffset);
+        }
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.commons.core.tabix;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * BGZF compressed file, read block by block with positional reads, so that several threads can read it at the same
+ * time. The blocks are decompressed through a {@link BgzfBlockCache}.
+ */
+class BgzfFile implements Closeable {
+
+    private static final int FIXED_HEADER_LENGTH = 12;
+
+    private static final int FOOTER_LENGTH = 8;
+
+    private final String name;
+
+    private final FileChannel channel;
+
+    private final long size;
+
+    private final BgzfBlockCache blockCache;
+
+    BgzfFile(Path path, BgzfBlockCache blockCache) throws IOException {
+        this.name = path.toAbsolutePath().normalize().toString();
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.size = channel.size();
+        this.blockCache = blockCache;
+    }
+
+    /**
+     * @return The block starting at the offset, or null at the end of the file
+     */
+    BgzfBlock getBlock(long compressedOffset) throws IOException {
+        if (compressedOffset >= size) {
+            return null;
+        }
+        return blockCache.get(name, compressedOffset, () -> readBlock(compressedOffset));
+    }
+
+    private BgzfBlock readBlock(long compressedOffset) throws IOException {
+        ByteBuffer header = read(compressedOffset, FIXED_HEADER_LENGTH);
+        if ((header.get(0) & 0xFF) != 31 || (header.get(1) & 0xFF) != 139 || header.get(2) != 8
+                || (header.get(3) & 4) == 0) {
+            throw new IOException("Not a BGZF block at offset " + compressedOffset + " of " + name);
+        }
+        int extraLength = header.getShort(10) & 0xFFFF;
+        ByteBuffer extra = read(compressedOffset + FIXED_HEADER_LENGTH, extraLength);
+        int blockSize = -1;
+        while (extra.remaining() >= 4) {
+            byte subfieldId1 = extra.get();
+            byte subfieldId2 = extra.get();
+            int subfieldLength = extra.getShort() & 0xFFFF;
+            if (subfieldId1 == 'B' && subfieldId2 == 'C' && subfieldLength == 2) {
+                blockSize = (extra.getShort() & 0xFFFF) + 1;
+            } else {
+                extra.position(extra.position() + subfieldLength);
+            }
+        }
+        if (blockSize < 0) {
+            throw new IOException("Missing BGZF block size at offset " + compressedOffset + " of " + name);
+        }
+
+        int dataOffset = FIXED_HEADER_LENGTH + extraLength;
+        ByteBuffer block = read(compressedOffset, blockSize);
+        int expectedCrc = block.getInt(blockSize - FOOTER_LENGTH);
+        byte[] data = new byte[block.getInt(blockSize - FOOTER_LENGTH + 4)];
+
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(block.array(), dataOffset, blockSize - dataOffset - FOOTER_LENGTH);
+            int inflated = 0;
+            while (inflated < data.length && !inflater.finished()) {
+                int length = inflater.inflate(data, inflated, data.length - inflated);
+                if (length == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                inflated += length;
+            }
+            if (inflated != data.length) {
+                throw new IOException("Truncated BGZF block at offset " + compressedOffset + " of " + name);
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupted BGZF block at offset " + compressedOffset + " of " + name, e);
+        } finally {
+            inflater.end();
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        if ((int) crc.getValue() != expectedCrc) {
+            throw new IOException("Wrong checksum of the BGZF block at offset " + compressedOffset + " of " + name);
+        }
+        return new BgzfBlock(data, blockSize);
+    }
+
+    private ByteBuffer read(long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Unexpected end of " + name + " at offset " + position);
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,302 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.commons.core.tabix;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Tabix (.tbi) or coordinate-sorted index (.csi) of a BGZF compressed VCF file, which gives the chunks of the file
+ * that may contain the records overlapping a region.
+ * <p>
+ * Both formats split each sequence into a hierarchy of bins, and list the chunks of records of every bin. The lowest
+ * virtual offset of the records overlapping the start of the region, from the linear index of .tbi files or the bin
+ * offsets of .csi files, is used to discard the chunks of bins that only have records ending before the region.
+ */
+class TabixIndex {
+
+    static final String TBI_EXTENSION = ".tbi";
+
+    static final String CSI_EXTENSION = ".csi";
+
+    private static final byte[] TBI_MAGIC = {'T', 'B', 'I', 1};
+
+    private static final byte[] CSI_MAGIC = {'C', 'S', 'I', 1};
+
+    private static final int TBI_MIN_SHIFT = 14;
+
+    private static final int TBI_DEPTH = 5;
+
+    private static final int VCF_FORMAT = 2;
+
+    private static final String CHROMOSOME_PREFIX = "chr";
+
+    private final int minShift;
+
+    private final int depth;
+
+    private final char metaCharacter;
+
+    private final Map<String, SequenceIndex> sequences;
+
+    private TabixIndex(int minShift, int depth, char metaCharacter, Map<String, SequenceIndex> sequences) {
+        this.minShift = minShift;
+        this.depth = depth;
+        this.metaCharacter = metaCharacter;
+        this.sequences = sequences;
+    }
+
+    static TabixIndex read(Path indexPath) throws IOException {
+        ByteBuffer buffer;
+        try (InputStream input = new GZIPInputStream(Files.newInputStream(indexPath))) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] chunk = new byte[64 * 1024];
+            int length;
+            while ((length = input.read(chunk)) > 0) {
+                bytes.write(chunk, 0, length);
+            }
+            buffer = ByteBuffer.wrap(bytes.toByteArray()).order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        byte[] magic = new byte[4];
+        buffer.get(magic);
+        if (Arrays.equals(magic, TBI_MAGIC)) {
+            int numSequences = buffer.getInt();
+            Header header = readHeader(buffer, indexPath);
+            Map<String, SequenceIndex> sequences = new LinkedHashMap<>();
+            for (int i = 0; i < numSequences; i++) {
+                SequenceIndex sequence = readBins(buffer, false);
+                int numIntervals = buffer.getInt();
+                sequence.linearIndex = new long[numIntervals];
+                for (int j = 0; j < numIntervals; j++) {
+                    sequence.linearIndex[j] = buffer.getLong();
+                }
+                sequences.put(header.names.get(i), sequence);
+            }
+            return new TabixIndex(TBI_MIN_SHIFT, TBI_DEPTH, header.metaCharacter, sequences);
+        } else if (Arrays.equals(magic, CSI_MAGIC)) {
+            int minShift = buffer.getInt();
+            int depth = buffer.getInt();
+            int auxLength = buffer.getInt();
+            if (auxLength == 0) {
+                throw new IllegalArgumentException("The CSI index " + indexPath + " has no sequence names");
+            }
+            int auxEnd = buffer.position() + auxLength;
+            Header header = readHeader(buffer, indexPath);
+            buffer.position(auxEnd);
+            int numSequences = buffer.getInt();
+            Map<String, SequenceIndex> sequences = new LinkedHashMap<>();
+            for (int i = 0; i < numSequences; i++) {
+                sequences.put(header.names.get(i), readBins(buffer, true));
+            }
+            return new TabixIndex(minShift, depth, header.metaCharacter, sequences);
+        }
+        throw new IllegalArgumentException(indexPath + " is not a TBI or CSI index");
+    }
+
+    private static Header readHeader(ByteBuffer buffer, Path indexPath) {
+        int format = buffer.getInt();
+        if ((format & 0xFFFF) != VCF_FORMAT) {
+            throw new IllegalArgumentException("The index " + indexPath + " is not the index of a VCF file");
+        }
+        buffer.getInt();    // column of the sequence name
+        buffer.getInt();    // column of the start
+        buffer.getInt();    // column of the end
+        char metaCharacter = (char) buffer.getInt();
+        buffer.getInt();    // lines to skip
+        byte[] names = new byte[buffer.getInt()];
+        buffer.get(names);
+
+        List<String> sequenceNames = new ArrayList<>();
+        int nameStart = 0;
+        for (int i = 0; i < names.length; i++) {
+            if (names[i] == 0) {
+                sequenceNames.add(new String(names, nameStart, i - nameStart, StandardCharsets.US_ASCII));
+                nameStart = i + 1;
+            }
+        }
+        return new Header(metaCharacter, sequenceNames);
+    }
+
+    private static SequenceIndex readBins(ByteBuffer buffer, boolean hasBinOffsets) {
+        SequenceIndex sequence = new SequenceIndex();
+        int numBins = buffer.getInt();
+        for (int i = 0; i < numBins; i++) {
+            int bin = buffer.getInt();
+            if (hasBinOffsets) {
+                sequence.binOffsets.put(bin, buffer.getLong());
+            }
+            int numChunks = buffer.getInt();
+            List<Chunk> chunks = new ArrayList<>(numChunks);
+            for (int j = 0; j < numChunks; j++) {
+                chunks.add(new Chunk(buffer.getLong(), buffer.getLong()));
+            }
+            sequence.bins.put(bin, chunks);
+        }
+        return sequence;
+    }
+
+    char getMetaCharacter() {
+        return metaCharacter;
+    }
+
+    /**
+     * @return Name of the sequence in the index, which may have a "chr" prefix that the given chromosome doesn't, or
+     * null if the index has no such sequence
+     */
+    String getSequenceName(String chromosome) {
+        if (sequences.containsKey(chromosome)) {
+            return chromosome;
+        }
+        if (sequences.containsKey(CHROMOSOME_PREFIX + chromosome)) {
+            return CHROMOSOME_PREFIX + chromosome;
+        }
+        return null;
+    }
+
+    /**
+     * @param start 0-based start of the region
+     * @param end 0-based end of the region, not included
+     * @return Chunks that may have records overlapping the region, sorted and merged when adjacent or overlapping
+     */
+    List<Chunk> getChunks(String sequenceName, long start, long end) {
+        SequenceIndex sequence = sequences.get(sequenceName);
+        long maxEnd = 1L << (minShift + depth * 3);
+        start = Math.max(start, 0);
+        end = Math.min(end, maxEnd);
+        if (sequence == null || start >= end) {
+            return Collections.emptyList();
+        }
+
+        long minOffset = getMinOffset(sequence, start);
+        List<Chunk> chunks = new ArrayList<>();
+        for (int bin : getOverlappingBins(start, end)) {
+            for (Chunk chunk : sequence.bins.getOrDefault(bin, Collections.emptyList())) {
+                if (chunk.end > minOffset) {
+                    chunks.add(chunk);
+                }
+            }
+        }
+        chunks.sort((chunk, other) -> Long.compare(chunk.begin, other.begin));
+
+        List<Chunk> merged = new ArrayList<>();
+        for (Chunk chunk : chunks) {
+            Chunk last = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+            if (last != null && chunk.begin <= last.end) {
+                if (chunk.end > last.end) {
+                    merged.set(merged.size() - 1, new Chunk(last.begin, chunk.end));
+                }
+            } else {
+                merged.add(chunk);
+            }
+        }
+        return merged;
+    }
+
+    private long getMinOffset(SequenceIndex sequence, long start) {
+        if (sequence.linearIndex != null) {
+            if (sequence.linearIndex.length == 0) {
+                return 0;
+            }
+            int window = (int) Math.min(start >> minShift, sequence.linearIndex.length - 1);
+            return sequence.linearIndex[window];
+        }
+        // the offset of the smallest existing bin that contains the start, walking up to the parents
+        int levelFirstBin = ((1 << (depth * 3)) - 1) / 7;
+        int bin = levelFirstBin + (int) (start >> minShift);
+        while (bin > 0 && !sequence.binOffsets.containsKey(bin)) {
+            bin = (bin - 1) >> 3;
+        }
+        return sequence.binOffsets.getOrDefault(bin, 0L);
+    }
+
+    private List<Integer> getOverlappingBins(long start, long end) {
+        List<Integer> bins = new ArrayList<>();
+        end--;
+        int levelFirstBin = 0;
+        int shift = minShift + depth * 3;
+        for (int level = 0; level <= depth; level++) {
+            for (long bin = levelFirstBin + (start >> shift); bin <= levelFirstBin + (end >> shift); bin++) {
+                bins.add((int) bin);
+            }
+            levelFirstBin += 1 << (level * 3);
+            shift -= 3;
+        }
+        return bins;
+    }
+
+    static class Chunk {
+
+        private final long begin;
+
+        private final long end;
+
+        Chunk(long begin, long end) {
+            this.begin = begin;
+            this.end = end;
+        }
+
+        /**
+         * @return Virtual offset of the first record: the offset of its BGZF block in the upper 48 bits, and its
+         * position in the decompressed block in the lower 16 bits
+         */
+        long getBegin() {
+            return begin;
+        }
+
+        /**
+         * @return Virtual offset right after the last record
+         */
+        long getEnd() {
+            return end;
+        }
+    }
+
+    private static class SequenceIndex {
+
+        private final Map<Integer, List<Chunk>> bins = new HashMap<>();
+
+        private final Map<Integer, Long> binOffsets = new HashMap<>();
+
+        private long[] linearIndex;
+    }
+
+    private static class Header {
+
+        private final char metaCharacter;
+
+        private final List<String> names;
+
+        Header(char metaCharacter, List<String> names) {
+            this.metaCharacter = metaCharacter;
+            this.names = names;
+        }
+    }
+}
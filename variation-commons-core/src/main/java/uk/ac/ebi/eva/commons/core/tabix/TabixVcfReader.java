@@ -0,0 +1,210 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.commons.core.tabix;
+
+import uk.ac.ebi.eva.commons.core.models.Region;
+import uk.ac.ebi.eva.commons.core.models.factories.VariantVcfFactory;
+import uk.ac.ebi.eva.commons.core.models.pipeline.Variant;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Reads the records of a bgzip compressed VCF file that overlap some regions, using its tabix (.tbi) or CSI (.csi)
+ * index to decompress only the BGZF blocks where they are, instead of streaming the whole file.
+ * <p>
+ * The records are turned into variants by any {@link VariantVcfFactory}, as if the file was read from the start. A
+ * record overlaps a region if any of its reference bases is inside it, so a deletion starting before the region can
+ * be returned. The regions use 1-based inclusive coordinates, and a region without start or end extends to the start
+ * or end of its chromosome.
+ * <p>
+ * A reader can be used by several threads at the same time, to read the same or different regions, and the readers
+ * of one or several files can share a {@link BgzfBlockCache}.
+ */
+public class TabixVcfReader implements Closeable {
+
+    private static final int VIRTUAL_OFFSET_SHIFT = 16;
+
+    private static final int MAX_BLOCK_OFFSET = 0xFFFF;
+
+    private final BgzfFile file;
+
+    private final TabixIndex index;
+
+    private final VariantVcfFactory factory;
+
+    private final String fileId;
+
+    private final String studyId;
+
+    /**
+     * Reads the index next to the file, with the .tbi extension or else the .csi one, and uses a cache of its own.
+     */
+    public TabixVcfReader(Path vcfPath, VariantVcfFactory factory, String fileId, String studyId) throws IOException {
+        this(vcfPath, findIndex(vcfPath), factory, fileId, studyId, new BgzfBlockCache());
+    }
+
+    public TabixVcfReader(Path vcfPath, Path indexPath, VariantVcfFactory factory, String fileId, String studyId,
+                          BgzfBlockCache blockCache) throws IOException {
+        if (factory == null) {
+            throw new IllegalArgumentException("A variant factory is required");
+        }
+        if (blockCache == null) {
+            throw new IllegalArgumentException("A block cache is required");
+        }
+        this.index = TabixIndex.read(indexPath);
+        this.file = new BgzfFile(vcfPath, blockCache);
+        this.factory = factory;
+        this.fileId = fileId;
+        this.studyId = studyId;
+    }
+
+    private static Path findIndex(Path vcfPath) throws FileNotFoundException {
+        for (String extension : new String[]{TabixIndex.TBI_EXTENSION, TabixIndex.CSI_EXTENSION}) {
+            Path indexPath = Paths.get(vcfPath.toString() + extension);
+            if (Files.exists(indexPath)) {
+                return indexPath;
+            }
+        }
+        throw new FileNotFoundException("No .tbi or .csi index found for " + vcfPath);
+    }
+
+    /**
+     * @param regions Comma separated regions, as parsed by {@link Region#parseRegions(String)}
+     * @return Variants of the records that overlap any of the regions, in the order of the regions
+     */
+    public List<Variant> read(String regions) throws IOException {
+        List<Region> parsedRegions = Region.parseRegions(regions);
+        if (parsedRegions == null || parsedRegions.contains(null)) {
+            throw new IllegalArgumentException("Malformed regions: " + regions);
+        }
+        List<Variant> variants = new ArrayList<>();
+        for (Region region : parsedRegions) {
+            read(region, variants::add);
+        }
+        return variants;
+    }
+
+    public List<Variant> read(Region region) throws IOException {
+        List<Variant> variants = new ArrayList<>();
+        read(region, variants::add);
+        return variants;
+    }
+
+    /**
+     * @param consumer Receives the variants of each overlapping record as soon as it is read
+     */
+    public void read(Region region, Consumer<Variant> consumer) throws IOException {
+        readLines(region, line -> factory.create(fileId, studyId, line).forEach(consumer));
+    }
+
+    /**
+     * @param consumer Receives each overlapping record as it is in the file, without the line break
+     */
+    public void readLines(Region region, Consumer<String> consumer) throws IOException {
+        if (region == null || region.getChromosome() == null) {
+            throw new IllegalArgumentException("A region with a chromosome is required");
+        }
+        String sequenceName = index.getSequenceName(region.getChromosome());
+        if (sequenceName == null) {
+            return;
+        }
+        long start = region.getStart() != null ? region.getStart() : 1;
+        long end = region.getEnd() != null ? region.getEnd() : Long.MAX_VALUE;
+
+        for (TabixIndex.Chunk chunk : index.getChunks(sequenceName, start - 1, end)) {
+            if (!readChunk(chunk, sequenceName, start, end, consumer)) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * @return False if a record after the region was found, so there is no need to read more chunks
+     */
+    private boolean readChunk(TabixIndex.Chunk chunk, String sequenceName, long start, long end,
+                              Consumer<String> consumer) throws IOException {
+        long blockOffset = chunk.getBegin() >>> VIRTUAL_OFFSET_SHIFT;
+        int position = (int) (chunk.getBegin() & MAX_BLOCK_OFFSET);
+        BgzfBlock block = file.getBlock(blockOffset);
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+
+        while (block != null) {
+            // move to the next block when this one is finished, so that offsets at the end of a block and at the
+            // start of the next one are compared the same way
+            if (position >= block.getData().length) {
+                blockOffset += block.getCompressedSize();
+                position = 0;
+                block = file.getBlock(blockOffset);
+                continue;
+            }
+            if (line.size() == 0 && (blockOffset << VIRTUAL_OFFSET_SHIFT | position) >= chunk.getEnd()) {
+                break;
+            }
+
+            byte[] data = block.getData();
+            int lineEnd = position;
+            while (lineEnd < data.length && data[lineEnd] != '\n') {
+                lineEnd++;
+            }
+            line.write(data, position, lineEnd - position);
+            position = lineEnd;
+            if (lineEnd < data.length) {
+                position++;     // skip the line break
+                if (!acceptLine(line, sequenceName, start, end, consumer)) {
+                    return false;
+                }
+                line.reset();
+            }
+        }
+        return line.size() == 0 || acceptLine(line, sequenceName, start, end, consumer);
+    }
+
+    private boolean acceptLine(ByteArrayOutputStream lineBytes, String sequenceName, long start, long end,
+                               Consumer<String> consumer) {
+        String line = new String(lineBytes.toByteArray(), StandardCharsets.UTF_8);
+        if (line.isEmpty() || line.charAt(0) == index.getMetaCharacter()) {
+            return true;
+        }
+        String[] fields = line.split("\t", 5);
+        if (fields.length < 5 || !fields[0].equals(sequenceName)) {
+            return true;
+        }
+        long recordStart = Long.parseLong(fields[1]);
+        long recordEnd = recordStart + fields[3].length() - 1;
+        if (recordStart > end) {
+            return false;
+        }
+        if (recordEnd >= start) {
+            consumer.accept(line);
+        }
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.commons.core.utils;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Pool of canonical instances of low-cardinality strings, such as chromosome names, study and file ids, INFO and
+ * FORMAT keys, genotypes and single-base alleles, so that the objects built from a file or read from the database share
+ * them instead of holding their own copies.
+ * <p>
+ * Unlike {@link String#intern()}, the pool belongs to whoever creates it, and is released with it or with
+ * {@link #clear()}. It is bounded: strings longer than the maximum length are never pooled, and once the pool is full,
+ * new strings are returned as they are. It can be shared by several threads.
+ */
+public class StringPool {
+
+    public static final int DEFAULT_MAX_SIZE = 100000;
+
+    public static final int DEFAULT_MAX_LENGTH = 16;
+
+    private final int maxSize;
+
+    private final int maxLength;
+
+    private final ConcurrentMap<String, String> pool;
+
+    public StringPool() {
+        this(DEFAULT_MAX_SIZE, DEFAULT_MAX_LENGTH);
+    }
+
+    /**
+     * @param maxSize Maximum number of strings in the pool
+     * @param maxLength Length of the longest string that is pooled
+     */
+    public StringPool(int maxSize, int maxLength) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("The maximum size must be positive");
+        }
+        if (maxLength < 0) {
+            throw new IllegalArgumentException("The maximum length can't be negative");
+        }
+        this.maxSize = maxSize;
+        this.maxLength = maxLength;
+        this.pool = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * @return The pooled string equal to the given one, or the given one itself if it is null, too long or the pool
+     * is full
+     */
+    public String intern(String value) {
+        if (value == null || value.length() > maxLength) {
+            return value;
+        }
+        String pooled = pool.get(value);
+        if (pooled != null) {
+            return pooled;
+        }
+        if (pool.size() >= maxSize) {
+            return value;
+        }
+        pooled = pool.putIfAbsent(value, value);
+        return pooled != null ? pooled : value;
+    }
+
+    /**
+     * Alleles are only pooled if they are a single base. Longer ones are hardly ever repeated, so they would fill a
+     * long-lived pool without being shared, and the strings added afterwards would not be pooled.
+     *
+     * @return The pooled allele equal to the given one, or the given one itself if it is not pooled
+     */
+    public String internAllele(String allele) {
+        if (allele == null || allele.length() > 1) {
+            return allele;
+        }
+        return intern(allele);
+    }
+
+    public int size() {
+        return pool.size();
+    }
+
+    public void clear() {
+        pool.clear();
+    }
+}
@@ -0,0 +1,254 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.commons.core.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * Compact binary identifier of a variant, as an alternative to the "chr_start_ref_alt" strings.
+ * <p>
+ * The first byte is the version of the scheme. Version {@link #VERSION_1} is followed by:
+ * <ul>
+ * <li>The chromosome: 1 byte with the code of the usual names (1 to 22, X, Y and MT), or 0 followed by 1 byte with the
+ * length and the UTF-8 bytes of any other name.</li>
+ * <li>The start: 4 bytes, unsigned big-endian.</li>
+ * <li>The reference and the alternate alleles, each one as a header byte followed by its value. Headers from 0 to 127
+ * are the length of an allele made of A, C, G and T, packed at 2 bits per base. {@link #LITERAL_ALLELE} is followed
+ * by 1 byte with the length and the UTF-8 bytes of the allele. {@link #HASHED_ALLELE} is followed by the SHA-1 of the
+ * UTF-8 bytes of the allele, so the allele can't be decoded.</li>
+ * </ul>
+ * Empty alleles and "-" are encoded the same way, as in the string identifiers.
+ */
+public final class VariantIdCodec {
+
+    public static final byte VERSION_1 = 1;
+
+    public static final int MAX_PACKED_ALLELE_LENGTH = 127;
+
+    public static final int MAX_LITERAL_ALLELE_LENGTH = 255;
+
+    static final int LITERAL_ALLELE = 0x80;
+
+    static final int HASHED_ALLELE = 0x81;
+
+    private static final int SHA1_LENGTH = 20;
+
+    private static final String[] CHROMOSOME_NAMES = {
+            null, "1", "2", "3", "4", "5", "6", "7", "8", "9", "10", "11", "12", "13", "14", "15", "16", "17", "18",
+            "19", "20", "21", "22", "X", "Y", "MT"};
+
+    private static final String BASES = "ACGT";
+
+    private VariantIdCodec() {
+    }
+
+    /**
+     * @throws IllegalArgumentException If the start doesn't fit in 32 unsigned bits, or the chromosome name takes more
+     *                                  than 255 bytes
+     */
+    public static byte[] encode(String chromosome, long start, String reference, String alternate) {
+        if (start < 0 || start > 0xFFFFFFFFL) {
+            throw new IllegalArgumentException("The start must fit in 32 unsigned bits: " + start);
+        }
+        ByteArrayOutputStream output = new ByteArrayOutputStream(16);
+        output.write(VERSION_1);
+        encodeChromosome(chromosome, output);
+        output.write((int) (start >>> 24));
+        output.write((int) (start >>> 16));
+        output.write((int) (start >>> 8));
+        output.write((int) start);
+        encodeAllele(reference, output);
+        encodeAllele(alternate, output);
+        return output.toByteArray();
+    }
+
+    private static void encodeChromosome(String chromosome, ByteArrayOutputStream output) {
+        for (int code = 1; code < CHROMOSOME_NAMES.length; code++) {
+            if (CHROMOSOME_NAMES[code].equals(chromosome)) {
+                output.write(code);
+                return;
+            }
+        }
+        byte[] name = chromosome.getBytes(StandardCharsets.UTF_8);
+        if (name.length > 255) {
+            throw new IllegalArgumentException("Chromosome name too long: " + chromosome);
+        }
+        output.write(0);
+        output.write(name.length);
+        output.write(name, 0, name.length);
+    }
+
+    private static void encodeAllele(String allele, ByteArrayOutputStream output) {
+        if (allele.equals("-")) {
+            allele = "";
+        }
+        if (allele.length() <= MAX_PACKED_ALLELE_LENGTH && isPackable(allele)) {
+            output.write(allele.length());
+            int packed = 0;
+            for (int i = 0; i < allele.length(); i++) {
+                packed = (packed << 2) | BASES.indexOf(allele.charAt(i));
+                if (i % 4 == 3) {
+                    output.write(packed);
+                    packed = 0;
+                }
+            }
+            int remaining = allele.length() % 4;
+            if (remaining != 0) {
+                output.write(packed << (2 * (4 - remaining)));
+            }
+            return;
+        }
+
+        byte[] bytes = allele.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length <= MAX_LITERAL_ALLELE_LENGTH) {
+            output.write(LITERAL_ALLELE);
+            output.write(bytes.length);
+            output.write(bytes, 0, bytes.length);
+        } else {
+            output.write(HASHED_ALLELE);
+            output.write(sha1(bytes), 0, SHA1_LENGTH);
+        }
+    }
+
+    private static boolean isPackable(String allele) {
+        for (int i = 0; i < allele.length(); i++) {
+            if (BASES.indexOf(allele.charAt(i)) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static byte[] sha1(byte[] bytes) {
+        try {
+            return MessageDigest.getInstance("SHA-1").digest(bytes);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 must be supported by every Java platform", e);
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException If the identifier is truncated or its version is unknown
+     */
+    public static DecodedVariantId decode(byte[] id) {
+        if (id.length == 0 || id[0] != VERSION_1) {
+            throw new IllegalArgumentException("Unknown variant identifier version");
+        }
+        try {
+            int[] position = {1};
+            String chromosome = decodeChromosome(id, position);
+            long start = 0;
+            for (int i = 0; i < 4; i++) {
+                start = (start << 8) | (id[position[0]++] & 0xFF);
+            }
+            String reference = decodeAllele(id, position);
+            String alternate = decodeAllele(id, position);
+            if (position[0] != id.length) {
+                throw new IllegalArgumentException("Unexpected bytes at the end of the variant identifier");
+            }
+            return new DecodedVariantId(chromosome, start, reference, alternate);
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Truncated variant identifier", e);
+        }
+    }
+
+    private static String decodeChromosome(byte[] id, int[] position) {
+        int code = id[position[0]++] & 0xFF;
+        if (code != 0) {
+            if (code >= CHROMOSOME_NAMES.length) {
+                throw new IllegalArgumentException("Unknown chromosome code " + code);
+            }
+            return CHROMOSOME_NAMES[code];
+        }
+        int length = id[position[0]++] & 0xFF;
+        String chromosome = decodeUtf8(id, position[0], length);
+        position[0] += length;
+        return chromosome;
+    }
+
+    private static String decodeAllele(byte[] id, int[] position) {
+        int header = id[position[0]++] & 0xFF;
+        if (header <= MAX_PACKED_ALLELE_LENGTH) {
+            char[] bases = new char[header];
+            for (int i = 0; i < header; i++) {
+                int packed = id[position[0] + i / 4] & 0xFF;
+                bases[i] = BASES.charAt((packed >>> (2 * (3 - i % 4))) & 0x3);
+            }
+            position[0] += (header + 3) / 4;
+            return new String(bases);
+        } else if (header == LITERAL_ALLELE) {
+            int length = id[position[0]++] & 0xFF;
+            String allele = decodeUtf8(id, position[0], length);
+            position[0] += length;
+            return allele;
+        } else if (header == HASHED_ALLELE) {
+            position[0] += SHA1_LENGTH;
+            if (position[0] > id.length) {
+                throw new ArrayIndexOutOfBoundsException(position[0]);
+            }
+            return null;
+        }
+        throw new IllegalArgumentException("Unknown allele header " + header);
+    }
+
+    private static String decodeUtf8(byte[] id, int offset, int length) {
+        if (offset + length > id.length) {
+            throw new ArrayIndexOutOfBoundsException(offset + length);
+        }
+        return new String(Arrays.copyOfRange(id, offset, offset + length), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Fields of a variant identifier. Alleles that were stored as a hash are null.
+     */
+    public static class DecodedVariantId {
+
+        private final String chromosome;
+
+        private final long start;
+
+        private final String reference;
+
+        private final String alternate;
+
+        DecodedVariantId(String chromosome, long start, String reference, String alternate) {
+            this.chromosome = chromosome;
+            this.start = start;
+            this.reference = reference;
+            this.alternate = alternate;
+        }
+
+        public String getChromosome() {
+            return chromosome;
+        }
+
+        public long getStart() {
+            return start;
+        }
+
+        public String getReference() {
+            return reference;
+        }
+
+        public String getAlternate() {
+            return alternate;
+        }
+    }
+}
@@ -16,8 +16,14 @@
 
 package uk.ac.ebi.eva.commons.core.models;
 
+import org.apache.commons.lang3.StringUtils;
 import org.junit.Test;
 
+import uk.ac.ebi.eva.commons.core.reference.IndexedFastaReference;
+import uk.ac.ebi.eva.commons.core.reference.IndexedFastaReferenceTest;
+
+import java.util.Random;
+
 import static org.junit.Assert.*;
 
 public class VariantCoreFieldsTest {
@@ -143,4 +149,82 @@ public class VariantCoreFieldsTest {
         assertEquals("T", deletion.getReference());
         assertEquals("", deletion.getAlternate());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testLeftNormalizationWithReference() throws Exception {
+        try (IndexedFastaReference reference = new IndexedFastaReference(
+                IndexedFastaReferenceTest.getReferencePath())) {
+            // deletion of the last CAG of a repeat, shifted to the first one and anchored to the previous base
+            VariantCoreFields deletion = new VariantCoreFields("1", 16, "GCAG", "G", reference);
+            assertEquals(8, deletion.getStart());
+            assertEquals(11, deletion.getEnd());
+            assertEquals("GAGC", deletion.getReference());
+            assertEquals("G", deletion.getAlternate());
+
+            // the same deletion described anywhere in the repeat has the same representation
+            assertEquals(deletion, new VariantCoreFields("1", 10, "GCAG", "G", reference));
+            assertEquals(deletion, new VariantCoreFields("1", 11, "CAGC", "C", reference));
+
+            // insertion at the end of a homopolymer, whose empty reference is filled in
+            VariantCoreFields insertion = new VariantCoreFields("1", 24, "T", "TT", reference);
+            assertEquals(19, insertion.getStart());
+            assertEquals(20, insertion.getEnd());
+            assertEquals("G", insertion.getReference());
+            assertEquals("GT", insertion.getAlternate());
+
+            // variants without an empty allele are only trimmed
+            VariantCoreFields snp = new VariantCoreFields("1", 5, "A", "C", reference);
+            assertEquals(new VariantCoreFields("1", 5, "A", "C"), snp);
+        }
+    }
+
+    @Test
+    public void testUntrimmedAllelesAreNotCopied() {
+        String reference = "A";
+        String alternate = "C";
+        VariantCoreFields snp = new VariantCoreFields("chr1", 1000, reference, alternate);
+        assertSame(reference, snp.getReference());
+        assertSame(alternate, snp.getAlternate());
+
+        reference = "CGATT";
+        alternate = "TAC";
+        VariantCoreFields mnv = new VariantCoreFields("chr1", 1000, reference, alternate);
+        assertSame(reference, mnv.getReference());
+        assertSame(alternate, mnv.getAlternate());
+    }
+
+    @Test
+    public void testSameNormalizationAsReversingTheAlleles() {
+        Random random = new Random(42);
+        for (int i = 0; i < 10000; i++) {
+            String reference = randomAllele(random);
+            String alternate = randomAllele(random);
+            if (reference.equals(alternate)) {
+                continue;
+            }
+            VariantCoreFields variant = new VariantCoreFields("chr1", 1000, reference, alternate);
+
+            // normalization by reversing the alleles to trim their common trailing bases
+            int numTrailing = StringUtils.indexOfDifference(StringUtils.reverse(reference),
+                                                            StringUtils.reverse(alternate));
+            String rightTrimmedReference = reference.substring(0, reference.length() - numTrailing);
+            String rightTrimmedAlternate = alternate.substring(0, alternate.length() - numTrailing);
+            int numLeading = StringUtils.indexOfDifference(rightTrimmedReference, rightTrimmedAlternate);
+            long end = 1000 + Math.max(rightTrimmedReference.length(), rightTrimmedAlternate.length()) - 1;
+
+            assertEquals(1000 + numLeading, variant.getStart());
+            assertEquals(end, variant.getEnd());
+            assertEquals(rightTrimmedReference.substring(numLeading), variant.getReference());
+            assertEquals(rightTrimmedAlternate.substring(numLeading), variant.getAlternate());
+        }
+    }
+
+    private String randomAllele(Random random) {
+        StringBuilder allele = new StringBuilder();
+        int length = random.nextInt(5);
+        for (int i = 0; i < length; i++) {
+            allele.append("AC".charAt(random.nextInt(2)));
+        }
+        return allele.toString();
+    }
+}
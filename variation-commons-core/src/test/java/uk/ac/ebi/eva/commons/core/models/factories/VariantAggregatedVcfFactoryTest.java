@@ -95,6 +95,27 @@ public class VariantAggregatedVcfFactoryTest {
 
     }
 
+    @Test
+    public void ignoreMalformedTagMappings() {
+        String line = "1\t1225579\t.\tG\tA,C\t170.13\tPASS\tAC=3,8;AN=534;AF=0.006,0.015;HPG_GTC=0/0:258,0/1:1,0/2:6,1/1:1,1/2:0,2/2:1,./.:0";  // structure like HPG
+
+        Properties properties = new Properties();
+        properties.put("ALL.AC", "AC");
+        properties.put("ALL.AN", "AN");
+        properties.put("GTC", "HPG_GTC");
+        properties.put("ALL.AF.RAW", "AF");
+        List<Variant> variants = new VariantAggregatedVcfFactory(properties).create(FILE_ID, STUDY_ID, line);
+
+        assertEquals(1, variants.get(0).getSourceEntry(FILE_ID, STUDY_ID).getCohortStats().size());
+        VariantStatistics stats = variants.get(0).getSourceEntry(FILE_ID, STUDY_ID).getCohortStats("ALL");
+        assertEquals(523, stats.getRefAlleleCount());
+        assertEquals(3, stats.getAltAlleleCount());
+        assertEquals(true, stats.getGenotypesCount().isEmpty());
+
+        stats = variants.get(1).getSourceEntry(FILE_ID, STUDY_ID).getCohortStats("ALL");
+        assertEquals(8, stats.getAltAlleleCount());
+    }
+
     @Test
     public void parseWithGTS() {
         String line = "1\t861255\t.\tA\tG\t.\tPASS\tAC=2;AF=0.0285714285714286;AN=70;GTS=GG,GA,AA;GTC=1,0,34";
@@ -19,6 +19,8 @@ import org.junit.Test;
 
 import uk.ac.ebi.eva.commons.core.models.pipeline.Variant;
 import uk.ac.ebi.eva.commons.core.models.pipeline.VariantSourceEntry;
+import uk.ac.ebi.eva.commons.core.reference.IndexedFastaReference;
+import uk.ac.ebi.eva.commons.core.reference.IndexedFastaReferenceTest;
 
 import java.util.Arrays;
 import java.util.Collections;
@@ -31,6 +33,7 @@ import java.util.Set;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 
 /**
  * {@link VariantVcfFactory}
@@ -64,6 +67,22 @@ public class VariantVcfFactoryTest {
         assertEquals(expResult, result);
     }
 
+    @Test
+    public void testLeftNormalizeWithReferenceSequence() throws Exception {
+        String line = "chr1\t24\t.\tT\tTT,C\t.\t.\t.";
+
+        List<Variant> expResult = new LinkedList<>();
+        expResult.add(new Variant("1", 19, 20, "G", "GT"));
+        expResult.add(new Variant("1", 24, 24, "T", "C"));
+
+        try (IndexedFastaReference reference = new IndexedFastaReference(
+                IndexedFastaReferenceTest.getReferencePath())) {
+            VariantVcfFactory normalizingFactory = new VariantVcfFactory();
+            normalizingFactory.setReferenceSequence(reference);
+            assertEquals(expResult, normalizingFactory.create(FILE_ID, STUDY_ID, line));
+        }
+    }
+
     @Test
     public void testCreateVariantFromVcfSameLengthRefAlt() {
         // Test when there are differences at the end of the sequence
@@ -578,4 +597,23 @@ public class VariantVcfFactoryTest {
         assertEquals(expResult, result);
         assertEquals(emptySet, result.get(0).getIds());
     }
+
+    @Test
+    public void variantsOfTheSameFactoryShareStrings() {
+        Variant first = factory.create(FILE_ID, STUDY_ID, "1\t1000\t.\tT\tG\t.\tPASS\tDP=5\tGT:DP\t0/1:3\t0/0:2").get(0);
+        Variant second = factory.create(new String(FILE_ID), STUDY_ID,
+                                        "1\t2000\t.\tT\tG\t.\tPASS\tDP=7\tGT:DP\t0/1:4\t1/1:3").get(0);
+
+        assertSame(first.getChromosome(), second.getChromosome());
+        assertSame(first.getReference(), second.getReference());
+        VariantSourceEntry firstFile = first.getSourceEntry(FILE_ID, STUDY_ID);
+        VariantSourceEntry secondFile = second.getSourceEntry(FILE_ID, STUDY_ID);
+        assertSame(firstFile.getFileId(), secondFile.getFileId());
+
+        String firstFormatKey = firstFile.getSampleData(0).keySet().iterator().next();
+        String secondFormatKey = secondFile.getSampleData(1).keySet().iterator().next();
+        assertEquals("DP", firstFormatKey);
+        assertSame(firstFormatKey, secondFormatKey);
+        assertSame(firstFile.getSampleData(0, "GT"), secondFile.getSampleData(0, "GT"));
+    }
 }
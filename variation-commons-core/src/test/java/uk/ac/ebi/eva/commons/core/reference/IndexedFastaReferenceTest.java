@@ -0,0 +1,111 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.commons.core.reference;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class IndexedFastaReferenceTest {
+
+    private static final String CHR1_SEQUENCE = "ACGTACAGAGCAGCAGCAGTTTTTACGTAC";
+
+    private IndexedFastaReference reference;
+
+    public static Path getReferencePath() throws Exception {
+        return Paths.get(IndexedFastaReferenceTest.class.getResource("/reference/reference.fa").toURI());
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        // a tiny window so that sequences span several of them
+        reference = new IndexedFastaReference(getReferencePath(), 7);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        reference.close();
+    }
+
+    @Test
+    public void readIndex() {
+        assertEquals(2, reference.getSequenceNames().size());
+        assertEquals(30, reference.getSequenceLength("chr1"));
+        assertEquals(12, reference.getSequenceLength("2"));
+    }
+
+    @Test
+    public void readSequencesAcrossLinesAndWindows() {
+        assertEquals(CHR1_SEQUENCE, reference.getSequence("chr1", 1, 30));
+        assertEquals("GCAGCAGT", reference.getSequence("chr1", 13, 20));
+        assertEquals("CCAT", reference.getSequence("2", 7, 10));
+        assertEquals("", reference.getSequence("2", 7, 6));
+        assertEquals('T', reference.getBase("2", 12));
+    }
+
+    @Test
+    public void softMaskedBasesAreReturnedInUpperCase() {
+        assertEquals("ACGT", reference.getSequence("chr1", 25, 28));
+    }
+
+    @Test
+    public void findSequencesWithoutChrPrefix() {
+        assertTrue(reference.hasSequence("1"));
+        assertEquals('A', reference.getBase("1", 1));
+        assertFalse(reference.hasSequence("chr2"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void failOnUnknownSequence() {
+        reference.getBase("3", 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void failOutOfTheSequence() {
+        reference.getSequence("2", 10, 13);
+    }
+
+    @Test
+    public void readFromSeveralThreads() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Callable<String>> reads = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                int start = i % 30 + 1;
+                reads.add(() -> reference.getSequence("chr1", start, 30));
+            }
+            List<Future<String>> sequences = executor.invokeAll(reads);
+            for (int i = 0; i < sequences.size(); i++) {
+                assertEquals(CHR1_SEQUENCE.substring(i % 30), sequences.get(i).get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.commons.core.tabix;
+
+import org.junit.Test;
+
+import uk.ac.ebi.eva.commons.core.models.Region;
+import uk.ac.ebi.eva.commons.core.models.factories.VariantVcfFactory;
+import uk.ac.ebi.eva.commons.core.models.pipeline.Variant;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The test files have small BGZF blocks, so that records span several of them, and records on two chromosomes spread
+ * over several bins and linear index windows.
+ */
+public class TabixVcfReaderTest {
+
+    private static final String FILE_ID = "fileId";
+
+    private static final String STUDY_ID = "studyId";
+
+    private static final List<String> REGIONS = Arrays.asList("1", "2", "3", "1:1-100", "1:101-999", "1:16385-16385",
+                                                              "1:16390-20000", "1:16000-131072", "1:131073-300000",
+                                                              "1:200001-249999", "2:1-20", "2:21-60000", "1:1000");
+
+    private Path getPath(String file) throws Exception {
+        return Paths.get(TabixVcfReaderTest.class.getResource("/tabix/" + file).toURI());
+    }
+
+    @Test
+    public void readTheSameLinesAsFilteringTheWholeFileWithTbiIndex() throws Exception {
+        Path vcfPath = getPath("variants.vcf.gz");
+        try (TabixVcfReader reader = new TabixVcfReader(vcfPath, new VariantVcfFactory(), FILE_ID, STUDY_ID)) {
+            for (String region : REGIONS) {
+                assertEquals(region, filterWholeFile(vcfPath, new Region(region)), readLines(reader, region));
+            }
+        }
+    }
+
+    @Test
+    public void readTheSameLinesAsFilteringTheWholeFileWithCsiIndex() throws Exception {
+        Path vcfPath = getPath("csi-variants.vcf.gz");
+        try (TabixVcfReader reader = new TabixVcfReader(vcfPath, new VariantVcfFactory(), FILE_ID, STUDY_ID)) {
+            for (String region : REGIONS) {
+                assertEquals(region, filterWholeFile(vcfPath, new Region(region)), readLines(reader, region));
+            }
+        }
+    }
+
+    @Test
+    public void onlyTheBlocksOfTheRegionAreDecompressed() throws Exception {
+        Path vcfPath = getPath("variants.vcf.gz");
+        BgzfBlockCache blockCache = new BgzfBlockCache();
+        try (TabixVcfReader reader = new TabixVcfReader(vcfPath, Paths.get(vcfPath + ".tbi"),
+                                                        new VariantVcfFactory(), FILE_ID, STUDY_ID, blockCache)) {
+            assertEquals(2, reader.read(new Region("2", 30000L, 50000L)).size());
+        }
+        // the file has 5 blocks of records, and the end of file marker
+        assertTrue(blockCache.size() < 5);
+    }
+
+    @Test
+    public void deletionsStartingBeforeTheRegionAreIncluded() throws Exception {
+        try (TabixVcfReader reader = new TabixVcfReader(getPath("variants.vcf.gz"), new VariantVcfFactory(),
+                                                        FILE_ID, STUDY_ID)) {
+            List<Variant> variants = reader.read(new Region("1", 16385L, 16385L));
+
+            assertEquals(2, variants.size());
+            assertEquals(16381, variants.get(0).getStart());
+            assertEquals("CGTACGTAC", variants.get(0).getReference());
+            assertEquals(16385, variants.get(1).getStart());
+        }
+    }
+
+    @Test
+    public void readVariantsOfSeveralRegions() throws Exception {
+        try (TabixVcfReader reader = new TabixVcfReader(getPath("variants.vcf.gz"), new VariantVcfFactory(),
+                                                        FILE_ID, STUDY_ID)) {
+            List<Variant> variants = reader.read("2:1-100,1:250000-250000");
+
+            assertEquals(4, variants.size());
+            assertEquals("2", variants.get(0).getChromosome());
+            assertEquals(10, variants.get(0).getStart());
+            assertEquals(20, variants.get(1).getStart());
+            assertEquals("A", variants.get(2).getAlternate());
+            assertEquals("C", variants.get(3).getAlternate());
+            assertEquals(2, variants.get(3).getSourceEntry(FILE_ID, STUDY_ID).getSamplesData().size());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void failOnMalformedRegions() throws Exception {
+        try (TabixVcfReader reader = new TabixVcfReader(getPath("variants.vcf.gz"), new VariantVcfFactory(),
+                                                        FILE_ID, STUDY_ID)) {
+            reader.read("1:100");
+        }
+    }
+
+    @Test
+    public void readRegionsFromSeveralThreadsWithASharedCache() throws Exception {
+        Path vcfPath = getPath("variants.vcf.gz");
+        BgzfBlockCache blockCache = new BgzfBlockCache();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try (TabixVcfReader reader = new TabixVcfReader(vcfPath, Paths.get(vcfPath + ".tbi"),
+                                                        new VariantVcfFactory(), FILE_ID, STUDY_ID, blockCache)) {
+            List<Callable<List<String>>> reads = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                String region = REGIONS.get(i % REGIONS.size());
+                reads.add(() -> readLines(reader, region));
+            }
+            List<Future<List<String>>> results = executor.invokeAll(reads);
+            for (int i = 0; i < results.size(); i++) {
+                Region region = new Region(REGIONS.get(i % REGIONS.size()));
+                assertEquals(filterWholeFile(vcfPath, region), results.get(i).get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertTrue(blockCache.getHitCount() > 0);
+    }
+
+    private static List<String> readLines(TabixVcfReader reader, String region) throws IOException {
+        List<String> lines = new ArrayList<>();
+        reader.readLines(new Region(region), lines::add);
+        return lines;
+    }
+
+    private static List<String> filterWholeFile(Path vcfPath, Region region) throws IOException {
+        long start = region.getStart() != null ? region.getStart() : 1;
+        long end = region.getEnd() != null ? region.getEnd() : Long.MAX_VALUE;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(Files.newInputStream(vcfPath)), StandardCharsets.UTF_8))) {
+            return reader.lines().filter(line -> {
+                if (line.startsWith("#")) {
+                    return false;
+                }
+                String[] fields = line.split("\t");
+                long position = Long.parseLong(fields[1]);
+                return fields[0].equals(region.getChromosome()) && position <= end
+                        && position + fields[3].length() - 1 >= start;
+            }).collect(Collectors.toList());
+        }
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.commons.core.utils;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class StringPoolTest {
+
+    @Test
+    public void returnTheFirstEqualString() {
+        StringPool pool = new StringPool();
+        String first = new String("GT");
+        String second = new String("GT");
+
+        assertSame(first, pool.intern(first));
+        assertSame(first, pool.intern(second));
+        assertNull(pool.intern(null));
+        assertEquals(1, pool.size());
+    }
+
+    @Test
+    public void doNotPoolLongStrings() {
+        StringPool pool = new StringPool(10, 3);
+        String longAllele = new String("ACGT");
+
+        assertSame(longAllele, pool.intern(longAllele));
+        assertNotSame(longAllele, pool.intern(new String("ACGT")));
+        assertEquals(0, pool.size());
+    }
+
+    @Test
+    public void onlyPoolSingleBaseAlleles() {
+        StringPool pool = new StringPool();
+        String base = new String("A");
+        String indel = new String("AT");
+
+        assertSame(base, pool.internAllele(base));
+        assertSame(base, pool.internAllele(new String("A")));
+        assertSame(indel, pool.internAllele(indel));
+        assertNotSame(indel, pool.internAllele(new String("AT")));
+        assertNull(pool.internAllele(null));
+        assertEquals(1, pool.size());
+    }
+
+    @Test
+    public void stopPoolingWhenFull() {
+        StringPool pool = new StringPool(2, 10);
+        pool.intern("A");
+        pool.intern("C");
+        String extra = new String("G");
+
+        assertSame(extra, pool.intern(extra));
+        assertNotSame(extra, pool.intern(new String("G")));
+        assertEquals(2, pool.size());
+
+        pool.clear();
+        assertSame(extra, pool.intern(extra));
+    }
+}
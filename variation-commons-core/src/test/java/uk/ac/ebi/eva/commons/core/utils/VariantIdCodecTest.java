@@ -0,0 +1,106 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.commons.core.utils;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+public class VariantIdCodecTest {
+
+    @Test
+    public void snvShouldBePacked() {
+        byte[] id = VariantIdCodec.encode("1", 1000, "A", "T");
+
+        // version, chromosome code, 4 bytes of start, and a header and a byte per allele
+        assertArrayEquals(new byte[]{1, 1, 0, 0, 0x03, (byte) 0xE8, 1, 0x00, 1, (byte) 0xC0}, id);
+        assertDecoded("1", 1000, "A", "T", VariantIdCodec.decode(id));
+    }
+
+    @Test
+    public void indelsShouldBeDecoded() {
+        assertDecoded("X", 4294967295L, "ACGTA", "", VariantIdCodec.decode(
+                VariantIdCodec.encode("X", 4294967295L, "ACGTA", "-")));
+        assertDecoded("MT", 0, "", "GGGG", VariantIdCodec.decode(VariantIdCodec.encode("MT", 0, "", "GGGG")));
+        assertEquals(1 + 1 + 4 + 1 + 2 + 1, VariantIdCodec.encode("X", 10, "ACGTA", "-").length);
+    }
+
+    @Test
+    public void unusualChromosomesAndAllelesShouldBeStoredLiterally() {
+        byte[] id = VariantIdCodec.encode("chr1_gl000191_random", 10, "N", "<DEL>");
+
+        assertDecoded("chr1_gl000191_random", 10, "N", "<DEL>", VariantIdCodec.decode(id));
+    }
+
+    @Test
+    public void longAllelesShouldBeHashed() {
+        char[] bases = new char[300];
+        Arrays.fill(bases, 'N');
+        String longAllele = new String(bases);
+        char[] otherBases = bases.clone();
+        otherBases[299] = 'A';
+
+        byte[] id = VariantIdCodec.encode("2", 10, "A", longAllele);
+
+        assertEquals(1 + 1 + 4 + 2 + 1 + 20, id.length);
+        assertDecoded("2", 10, "A", null, VariantIdCodec.decode(id));
+        assertArrayEquals(id, VariantIdCodec.encode("2", 10, "A", longAllele));
+        assertFalse(Arrays.equals(id, VariantIdCodec.encode("2", 10, "A", new String(otherBases))));
+    }
+
+    @Test
+    public void packedAllelesShouldRoundTripForEveryLength() {
+        String bases = "ACGTTGCAACGGTACCTGAT";
+        for (int length = 0; length <= bases.length(); length++) {
+            String allele = bases.substring(0, length);
+            assertDecoded("22", 5, allele, "T", VariantIdCodec.decode(VariantIdCodec.encode("22", 5, allele, "T")));
+        }
+        // at the limit, 127 bases are still packed, 128 are not
+        char[] maxPacked = new char[VariantIdCodec.MAX_PACKED_ALLELE_LENGTH];
+        Arrays.fill(maxPacked, 'C');
+        assertEquals(1 + 1 + 4 + 1 + 32 + 1 + 1,
+                     VariantIdCodec.encode("1", 1, new String(maxPacked), "A").length);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void startsBeyond32BitsShouldBeRejected() {
+        VariantIdCodec.encode("1", 4294967296L, "A", "T");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void truncatedIdsShouldBeRejected() {
+        byte[] id = VariantIdCodec.encode("1", 1000, "A", "T");
+        VariantIdCodec.decode(Arrays.copyOf(id, id.length - 1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownVersionsShouldBeRejected() {
+        VariantIdCodec.decode(new byte[]{2, 1, 0, 0, 0, 1, 0, 0});
+    }
+
+    private void assertDecoded(String chromosome, long start, String reference, String alternate,
+                               VariantIdCodec.DecodedVariantId decoded) {
+        assertEquals(chromosome, decoded.getChromosome());
+        assertEquals(start, decoded.getStart());
+        assertEquals(reference, decoded.getReference());
+        assertEquals(alternate, decoded.getAlternate());
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.commons.mongodb.cache;
+
+import org.springframework.util.Assert;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Cached answer to a question about the state of a collection, such as whether it has some index or marker document,
+ * that would otherwise cost a round trip to the database on every query.
+ * <p>
+ * The question is asked again after any write done in this process (see {@link WriteGeneration}), after
+ * {@link #invalidate()}, and once the answer is older than the maximum age, which bounds how long a change done by
+ * another process goes unnoticed.
+ */
+public class CollectionStateCache<T> {
+
+    private final Supplier<T> loader;
+
+    private final long maxAgeNanos;
+
+    private final AtomicLong invalidations = new AtomicLong();
+
+    private volatile State<T> state;
+
+    /**
+     * @param loader Asks the database, it may be called by several threads at the same time
+     * @param maxAgeSeconds Maximum age of the answer, or 0 to ask the database every time
+     */
+    public CollectionStateCache(Supplier<T> loader, long maxAgeSeconds) {
+        Assert.notNull(loader, "A loader is required");
+        Assert.isTrue(maxAgeSeconds >= 0, "The maximum age can't be negative");
+        this.loader = loader;
+        this.maxAgeNanos = TimeUnit.SECONDS.toNanos(maxAgeSeconds);
+    }
+
+    public T get() {
+        State<T> current = state;
+        long generation = WriteGeneration.current();
+        long now = System.nanoTime();
+        if (current != null && current.generation == generation && now - current.loadedAt < maxAgeNanos) {
+            return current.value;
+        }
+        // the generation is read before asking, so a write that happens meanwhile makes the answer expire, and an
+        // answer obtained before an invalidation is not kept
+        long invalidation = invalidations.get();
+        T value = loader.get();
+        if (invalidation == invalidations.get()) {
+            state = new State<>(value, generation, now);
+        }
+        return value;
+    }
+
+    public void invalidate() {
+        invalidations.incrementAndGet();
+        state = null;
+    }
+
+    private static class State<T> {
+
+        private final T value;
+
+        private final long generation;
+
+        private final long loadedAt;
+
+        State(T value, long generation, long loadedAt) {
+            this.value = value;
+            this.generation = generation;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
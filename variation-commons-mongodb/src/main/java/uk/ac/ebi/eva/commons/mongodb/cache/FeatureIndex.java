@@ -0,0 +1,119 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.commons.mongodb.cache;
+
+import uk.ac.ebi.eva.commons.core.models.FeatureCoordinates;
+import uk.ac.ebi.eva.commons.core.models.IFeatureCoordinates;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Immutable in-memory index of the features, by id and by name.
+ * <p>
+ * Exact lookups are case-sensitive, like the queries to the features collection. Case-insensitive and prefix lookups
+ * match ids and names alike, and use a sorted map of their lower-case forms.
+ */
+public class FeatureIndex {
+
+    private final Map<String, List<FeatureCoordinates>> byId;
+
+    private final Map<String, List<FeatureCoordinates>> byName;
+
+    private final TreeMap<String, List<FeatureCoordinates>> byLowerCaseKey;
+
+    private final int size;
+
+    public FeatureIndex(Collection<? extends IFeatureCoordinates> features) {
+        byId = new HashMap<>();
+        byName = new HashMap<>();
+        byLowerCaseKey = new TreeMap<>();
+        for (IFeatureCoordinates feature : features) {
+            FeatureCoordinates coordinates = new FeatureCoordinates(feature);
+            add(byId, coordinates.getId(), coordinates);
+            add(byName, coordinates.getName(), coordinates);
+            if (coordinates.getId() != null) {
+                add(byLowerCaseKey, toLowerCase(coordinates.getId()), coordinates);
+            }
+            if (coordinates.getName() != null && !coordinates.getName().equalsIgnoreCase(coordinates.getId())) {
+                add(byLowerCaseKey, toLowerCase(coordinates.getName()), coordinates);
+            }
+        }
+        size = features.size();
+    }
+
+    private static void add(Map<String, List<FeatureCoordinates>> index, String key, FeatureCoordinates feature) {
+        if (key != null) {
+            index.computeIfAbsent(key, k -> new ArrayList<>(1)).add(feature);
+        }
+    }
+
+    private static String toLowerCase(String key) {
+        return key.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * @return Features whose id is the given id, or whose name is the given name
+     */
+    public List<FeatureCoordinates> findByIdOrName(String id, String name) {
+        Set<FeatureCoordinates> features = new LinkedHashSet<>(byId.getOrDefault(id, Collections.emptyList()));
+        features.addAll(byName.getOrDefault(name, Collections.emptyList()));
+        return new ArrayList<>(features);
+    }
+
+    /**
+     * @return Features whose id or name is the given one, ignoring case
+     */
+    public List<FeatureCoordinates> findByIdOrNameIgnoreCase(String idOrName) {
+        return new ArrayList<>(byLowerCaseKey.getOrDefault(toLowerCase(idOrName), Collections.emptyList()));
+    }
+
+    /**
+     * @param limit Maximum number of features returned
+     * @return Features whose id or name starts with the prefix, ignoring case, in alphabetical order
+     */
+    public List<FeatureCoordinates> findByIdOrNamePrefix(String prefix, int limit) {
+        String lowerCasePrefix = toLowerCase(prefix);
+        Set<FeatureCoordinates> features = new LinkedHashSet<>();
+        for (Map.Entry<String, List<FeatureCoordinates>> entry : byLowerCaseKey.tailMap(lowerCasePrefix).entrySet()) {
+            if (!entry.getKey().startsWith(lowerCasePrefix)) {
+                break;
+            }
+            for (FeatureCoordinates match : entry.getValue()) {
+                if (features.size() == limit) {
+                    return new ArrayList<>(features);
+                }
+                features.add(match);
+            }
+        }
+        return new ArrayList<>(features);
+    }
+
+    /**
+     * @return Number of features indexed
+     */
+    public int size() {
+        return size;
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.commons.mongodb.cache;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import org.springframework.util.Assert;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Size-bounded cache of variant query results.
+ * <p>
+ * Keys carry the {@link WriteGeneration} at the moment they were built. When a newer generation is seen, all the
+ * entries are dropped, and a result computed while a write was running is stored under the old generation, so it is
+ * never returned afterwards.
+ */
+public class VariantQueryCache {
+
+    private final Cache<VariantQueryKey, Object> cache;
+
+    private final AtomicLong lastSeenGeneration;
+
+    /**
+     * @param maximumSize Maximum number of query results kept, the least recently used ones are evicted first
+     * @param expireAfterWriteSeconds Maximum age of an entry, or 0 to keep entries until evicted or invalidated
+     */
+    public VariantQueryCache(long maximumSize, long expireAfterWriteSeconds) {
+        Assert.isTrue(maximumSize > 0, "The maximum size of the cache must be positive");
+        Assert.isTrue(expireAfterWriteSeconds >= 0, "The expiry time of the cache can't be negative");
+
+        CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder().maximumSize(maximumSize).recordStats();
+        if (expireAfterWriteSeconds > 0) {
+            builder.expireAfterWrite(expireAfterWriteSeconds, TimeUnit.SECONDS);
+        }
+        this.cache = builder.build();
+        this.lastSeenGeneration = new AtomicLong(WriteGeneration.current());
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> T get(VariantQueryKey key) {
+        dropOlderGenerations();
+        return (T) cache.getIfPresent(key);
+    }
+
+    public void put(VariantQueryKey key, Object value) {
+        Assert.notNull(value, "Null results can't be cached");
+        if (key.getGeneration() == WriteGeneration.current()) {
+            cache.put(key, value);
+        }
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    public long size() {
+        return cache.size();
+    }
+
+    /**
+     * @return Hit, miss and eviction counts since the cache was created
+     */
+    public CacheStats getStats() {
+        return cache.stats();
+    }
+
+    private void dropOlderGenerations() {
+        long current = WriteGeneration.current();
+        long lastSeen = lastSeenGeneration.get();
+        if (current != lastSeen && lastSeenGeneration.compareAndSet(lastSeen, current)) {
+            cache.invalidateAll();
+        }
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.commons.mongodb.cache;
+
+import org.springframework.data.domain.Pageable;
+
+import uk.ac.ebi.eva.commons.core.models.IAnnotationMetadata;
+import uk.ac.ebi.eva.commons.mongodb.entities.projections.VariantProjection;
+import uk.ac.ebi.eva.commons.mongodb.filter.VariantRepositoryFilter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Identifies a variant query for {@link VariantQueryCache}.
+ * <p>
+ * Filters and excluded fields are normalized into sets, because their order doesn't change the result of the query.
+ * The anchor (regions, gene ids or variant ids) keeps its order because it's part of the sort of the results. Any other
+ * argument of the query, such as a count limit, the facets or a gene query mode, goes in the parameters.
+ */
+public class VariantQueryKey {
+
+    public enum QueryType {
+        FIND_BY_REGIONS,
+        COUNT_BY_REGIONS,
+        FIND_BY_GENES,
+        COUNT_BY_GENES,
+        FIND_BY_IDS,
+        COUNT_BY_IDS,
+        LIMITED_COUNT_BY_REGIONS,
+        LIMITED_COUNT_BY_GENES,
+        LIMITED_COUNT_BY_IDS,
+        COUNT_FACETS_BY_REGIONS,
+        COUNT_FACETS_BY_GENES,
+        COUNT_FACETS_BY_IDS
+    }
+
+    private final QueryType queryType;
+
+    private final List<?> anchor;
+
+    private final Set<VariantRepositoryFilter> filters;
+
+    private final Set<String> exclude;
+
+    private final Pageable pageable;
+
+    private final VariantProjection projection;
+
+    private final List<?> parameters;
+
+    private final String vepVersion;
+
+    private final String vepCacheVersion;
+
+    private final long generation;
+
+    public VariantQueryKey(QueryType queryType, List<?> anchor, List<VariantRepositoryFilter> filters,
+                           List<String> exclude, Pageable pageable, IAnnotationMetadata annotationMetadata) {
+        this(queryType, anchor, filters, exclude, pageable, annotationMetadata, null);
+    }
+
+    public VariantQueryKey(QueryType queryType, List<?> anchor, List<VariantRepositoryFilter> filters,
+                           List<String> exclude, Pageable pageable, IAnnotationMetadata annotationMetadata,
+                           VariantProjection projection) {
+        this(queryType, anchor, filters, exclude, pageable, annotationMetadata, projection, null);
+    }
+
+    public VariantQueryKey(QueryType queryType, List<?> anchor, List<VariantRepositoryFilter> filters,
+                           List<String> exclude, Pageable pageable, IAnnotationMetadata annotationMetadata,
+                           VariantProjection projection, List<?> parameters) {
+        this.queryType = queryType;
+        this.anchor = anchor == null ? Collections.emptyList() : new ArrayList<>(anchor);
+        this.filters = filters == null ? Collections.emptySet() : new HashSet<>(filters);
+        this.exclude = exclude == null ? Collections.emptySet() : new HashSet<>(exclude);
+        this.pageable = pageable;
+        this.projection = projection;
+        this.parameters = parameters == null ? Collections.emptyList() : new ArrayList<>(parameters);
+        this.vepVersion = annotationMetadata == null ? null : annotationMetadata.getVepVersion();
+        this.vepCacheVersion = annotationMetadata == null ? null : annotationMetadata.getCacheVersion();
+        this.generation = WriteGeneration.current();
+    }
+
+    public long getGeneration() {
+        return generation;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        VariantQueryKey that = (VariantQueryKey) o;
+
+        if (generation != that.generation) return false;
+        if (queryType != that.queryType) return false;
+        if (!anchor.equals(that.anchor)) return false;
+        if (!filters.equals(that.filters)) return false;
+        if (!exclude.equals(that.exclude)) return false;
+        if (!Objects.equals(pageable, that.pageable)) return false;
+        if (projection != that.projection) return false;
+        if (!parameters.equals(that.parameters)) return false;
+        if (!Objects.equals(vepVersion, that.vepVersion)) return false;
+        return Objects.equals(vepCacheVersion, that.vepCacheVersion);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = queryType.hashCode();
+        result = 31 * result + anchor.hashCode();
+        result = 31 * result + filters.hashCode();
+        result = 31 * result + exclude.hashCode();
+        result = 31 * result + (pageable != null ? pageable.hashCode() : 0);
+        result = 31 * result + (projection != null ? projection.hashCode() : 0);
+        result = 31 * result + parameters.hashCode();
+        result = 31 * result + (vepVersion != null ? vepVersion.hashCode() : 0);
+        result = 31 * result + (vepCacheVersion != null ? vepCacheVersion.hashCode() : 0);
+        result = 31 * result + (int) (generation ^ (generation >>> 32));
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "VariantQueryKey{" +
+                "queryType=" + queryType +
+                ", anchor=" + anchor +
+                ", filters=" + filters.size() +
+                ", exclude=" + exclude +
+                ", pageable=" + pageable +
+                ", projection=" + projection +
+                ", parameters=" + parameters +
+                ", vepVersion='" + vepVersion + '\'' +
+                ", vepCacheVersion='" + vepCacheVersion + '\'' +
+                ", generation=" + generation +
+                '}';
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.commons.mongodb.cache;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Process-wide counter of the writes done to the variant and file collections.
+ * <p>
+ * The writers increment it after every bulk they send to the database, and the read caches include its value in their
+ * keys, so an entry computed before a write can never be served after it. Only the writes done within the same JVM are
+ * seen, so caches in processes that don't do the loading should also be given a time-based expiry.
+ */
+public final class WriteGeneration {
+
+    private static final AtomicLong generation = new AtomicLong();
+
+    private WriteGeneration() {
+    }
+
+    public static long current() {
+        return generation.get();
+    }
+
+    public static long increment() {
+        return generation.incrementAndGet();
+    }
+}
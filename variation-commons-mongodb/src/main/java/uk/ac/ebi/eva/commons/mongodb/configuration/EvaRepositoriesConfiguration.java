@@ -22,13 +22,23 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.mongodb.MongoDbFactory;
+import org.springframework.data.mongodb.core.convert.CustomConversions;
 import org.springframework.data.mongodb.core.convert.DbRefResolver;
 import org.springframework.data.mongodb.core.convert.DefaultDbRefResolver;
 import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
 import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
 import org.springframework.data.mongodb.repository.config.EnableMongoRepositories;
 
+import uk.ac.ebi.eva.commons.core.utils.StringPool;
+import uk.ac.ebi.eva.commons.mongodb.entities.VariantMongo;
+import uk.ac.ebi.eva.commons.mongodb.entities.subdocuments.AnnotationIndexMongo;
+import uk.ac.ebi.eva.commons.mongodb.entities.subdocuments.HgvsMongo;
+import uk.ac.ebi.eva.commons.mongodb.entities.subdocuments.VariantAtMongo;
+import uk.ac.ebi.eva.commons.mongodb.entities.subdocuments.VariantSourceEntryMongo;
+import uk.ac.ebi.eva.commons.mongodb.entities.subdocuments.VariantStatisticsMongo;
+
 import java.io.IOException;
+import java.util.Arrays;
 
 @Configuration
 @EnableMongoRepositories(basePackages = "uk.ac.ebi.eva.commons.mongodb.repositories")
@@ -56,6 +66,9 @@ public class EvaRepositoriesConfiguration {
         // Customization: replace dots with pound sign
         mongoConverter.setMapKeyDotReplacement("£");
 
+        // Customization: read the variants without reflection
+        mongoConverter.setCustomConversions(customConversions());
+
         mongoConverter.afterPropertiesSet();
 
         // TODO jmmut: see if this works if we want to exclude the _class
@@ -63,4 +76,18 @@ public class EvaRepositoriesConfiguration {
         return mongoConverter;
     }
 
+    /**
+     * The string pool lives as long as the application, so it only takes strings with few distinct values (keys, ids,
+     * genotypes and single-base alleles) that keep it well below its maximum size, see {@link StringPool#internAllele}.
+     */
+    private CustomConversions customConversions() {
+        StringPool stringPool = new StringPool();
+        return new CustomConversions(Arrays.asList(new VariantMongo.ReadConverter(stringPool),
+                                                   new VariantSourceEntryMongo.ReadConverter(stringPool),
+                                                   new VariantStatisticsMongo.ReadConverter(stringPool),
+                                                   new AnnotationIndexMongo.ReadConverter(),
+                                                   new HgvsMongo.ReadConverter(),
+                                                   new VariantAtMongo.ReadConverter()));
+    }
+
 }
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.commons.mongodb.entities;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Field;
+
+/**
+ * Summary of the variants of a study in a chromosome, stored in a small collection next to the variants collection
+ * (see {@link #getCollectionName(String)}). It is kept up to date by the variant writer, so that the chromosome list
+ * and the coordinate bounds of a chromosome don't need to be queried from the whole variants collection.
+ * <p>
+ * The writer only adds the variants it writes, so the catalog is only read once it has been rebuilt from the whole
+ * variants collection, which stores a document with the id {@link #COMPLETE_MARKER_ID}. Unloading a file removes that
+ * marker, because the bounds can't be narrowed without reading the variants again.
+ * <p>
+ * The count is the number of variant entries written for the study: loading the same file twice adds its variants
+ * again, until the catalog is rebuilt.
+ */
+public class ChromosomeCatalogMongo {
+
+    public static final String COLLECTION_SUFFIX = "_chromosomes";
+
+    public static final String COMPLETE_MARKER_ID = "complete";
+
+    public static final String CHROMOSOME_FIELD = "chr";
+
+    public static final String STUDY_ID_FIELD = "sid";
+
+    public static final String MIN_START_FIELD = "minStart";
+
+    public static final String MAX_START_FIELD = "maxStart";
+
+    public static final String COUNT_FIELD = "count";
+
+    /**
+     * Number of variants of each file, by escaped file id (see {@link #escapeFileId}), already counted by a writer with
+     * checkpoints, so that the variants of a batch that is written again after a failure are not counted twice.
+     */
+    public static final String COUNTED_FIELD = "counted";
+
+    @Id
+    private String id;
+
+    @Field(CHROMOSOME_FIELD)
+    private String chromosome;
+
+    @Field(STUDY_ID_FIELD)
+    private String studyId;
+
+    @Field(MIN_START_FIELD)
+    private long minStart;
+
+    @Field(MAX_START_FIELD)
+    private long maxStart;
+
+    @Field(COUNT_FIELD)
+    private long count;
+
+    ChromosomeCatalogMongo() {
+        // Empty document constructor for spring-data
+        this(null, null, -1, -1, 0);
+    }
+
+    public ChromosomeCatalogMongo(String chromosome, String studyId, long minStart, long maxStart, long count) {
+        this.chromosome = chromosome;
+        this.studyId = studyId;
+        this.minStart = minStart;
+        this.maxStart = maxStart;
+        this.count = count;
+    }
+
+    public static String getCollectionName(String variantsCollectionName) {
+        return variantsCollectionName + COLLECTION_SUFFIX;
+    }
+
+    /**
+     * @return The file id without the dots and dollar signs that can't appear in field names
+     */
+    public static String escapeFileId(String fileId) {
+        return fileId.replace("%", "%25").replace(".", "%2E").replace("$", "%24");
+    }
+
+    public String getChromosome() {
+        return chromosome;
+    }
+
+    public String getStudyId() {
+        return studyId;
+    }
+
+    public long getMinStart() {
+        return minStart;
+    }
+
+    public long getMaxStart() {
+        return maxStart;
+    }
+
+    public long getCount() {
+        return count;
+    }
+}
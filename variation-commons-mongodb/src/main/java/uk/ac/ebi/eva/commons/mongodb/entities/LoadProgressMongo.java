@@ -0,0 +1,78 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.commons.mongodb.entities;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Field;
+
+/**
+ * Checkpoint of the load of a file, stored in a small collection next to the variants collection (see
+ * {@link #getCollectionName(String)}). It is written by the variant writer after each bulk when checkpoints are
+ * enabled.
+ * <p>
+ * The committed count is the number of variants of the file that were completely written, including their statistics
+ * and chromosome catalog entries, so a restarted load can skip them. The batch that was being written when the load
+ * stopped may be partially written, and is written again.
+ */
+public class LoadProgressMongo {
+
+    public static final String COLLECTION_SUFFIX = "_progress";
+
+    public static final String STUDY_ID_FIELD = "sid";
+
+    public static final String FILE_ID_FIELD = "fid";
+
+    public static final String COMMITTED_FIELD = "committed";
+
+    @Id
+    private String id;
+
+    @Field(STUDY_ID_FIELD)
+    private String studyId;
+
+    @Field(FILE_ID_FIELD)
+    private String fileId;
+
+    @Field(COMMITTED_FIELD)
+    private long committed;
+
+    LoadProgressMongo() {
+        // Empty document constructor for spring-data
+        this(null, null, 0);
+    }
+
+    public LoadProgressMongo(String studyId, String fileId, long committed) {
+        this.studyId = studyId;
+        this.fileId = fileId;
+        this.committed = committed;
+    }
+
+    public static String getCollectionName(String variantsCollectionName) {
+        return variantsCollectionName + COLLECTION_SUFFIX;
+    }
+
+    public String getStudyId() {
+        return studyId;
+    }
+
+    public String getFileId() {
+        return fileId;
+    }
+
+    public long getCommitted() {
+        return committed;
+    }
+}
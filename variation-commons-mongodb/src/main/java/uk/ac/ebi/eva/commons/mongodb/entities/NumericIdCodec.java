@@ -0,0 +1,100 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.commons.mongodb.entities;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Numeric representation of the dbSNP-style identifiers of {@link VariantMongo#IDS_FIELD}, stored in
+ * {@link VariantMongo#NUMERIC_IDS_FIELD}.
+ * <p>
+ * The 4 most significant bits of the 64-bit value hold the prefix class ({@link #RS_CLASS} or {@link #SS_CLASS}) and
+ * the rest the number. Only canonical identifiers are encoded, i.e. "rs" or "ss" followed by up to 18 digits without
+ * leading zeros, so that every value maps back to exactly one string. Any other identifier is only stored as a
+ * string.
+ */
+public final class NumericIdCodec {
+
+    public static final long RS_CLASS = 1;
+
+    public static final long SS_CLASS = 2;
+
+    private static final int CLASS_SHIFT = 60;
+
+    private static final int MAX_DIGITS = 18;
+
+    private NumericIdCodec() {
+    }
+
+    /**
+     * @return The numeric value of the identifier, or null if it's not a canonical rs or ss identifier
+     */
+    public static Long encode(String id) {
+        if (id == null || id.length() < 3 || id.length() > 2 + MAX_DIGITS) {
+            return null;
+        }
+        long prefixClass;
+        if (id.startsWith("rs")) {
+            prefixClass = RS_CLASS;
+        } else if (id.startsWith("ss")) {
+            prefixClass = SS_CLASS;
+        } else {
+            return null;
+        }
+        if (id.charAt(2) == '0') {
+            return null;
+        }
+        long number = 0;
+        for (int i = 2; i < id.length(); i++) {
+            char digit = id.charAt(i);
+            if (digit < '0' || digit > '9') {
+                return null;
+            }
+            number = number * 10 + (digit - '0');
+        }
+        return (prefixClass << CLASS_SHIFT) | number;
+    }
+
+    /**
+     * @return The numeric values of the identifiers that can be encoded
+     */
+    public static List<Long> encodeAll(Collection<String> ids) {
+        List<Long> numericIds = new ArrayList<>();
+        for (String id : ids) {
+            Long numericId = encode(id);
+            if (numericId != null) {
+                numericIds.add(numericId);
+            }
+        }
+        return numericIds;
+    }
+
+    /**
+     * @throws IllegalArgumentException If the prefix class is unknown
+     */
+    public static String decode(long numericId) {
+        long prefixClass = numericId >>> CLASS_SHIFT;
+        long number = numericId & ((1L << CLASS_SHIFT) - 1);
+        if (prefixClass == RS_CLASS) {
+            return "rs" + number;
+        } else if (prefixClass == SS_CLASS) {
+            return "ss" + number;
+        }
+        throw new IllegalArgumentException("Unknown identifier prefix class " + prefixClass);
+    }
+}
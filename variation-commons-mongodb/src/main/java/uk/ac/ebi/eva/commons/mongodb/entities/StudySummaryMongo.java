@@ -0,0 +1,106 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.commons.mongodb.entities;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Field;
+
+import uk.ac.ebi.eva.commons.mongodb.entities.subdocuments.VariantGlobalStatsMongo;
+
+/**
+ * Summary of the files of a study, stored in a small collection next to the files collection (see
+ * {@link #getCollectionName(String)}). It is kept up to date by the file writer, so that listing the studies doesn't
+ * need to aggregate the whole files collection.
+ * <p>
+ * The samples count and the global statistics are the sums of those of the files. The mean quality can't be summed,
+ * so it is not kept. The ids of the files added are kept in {@link #COUNTED_FILES_FIELD}, so that each file is only
+ * added once even if it's written again.
+ * <p>
+ * The writer only adds the files it writes, so the summaries are only read once they have been rebuilt from the whole
+ * files collection, which stores a document with the id {@link #COMPLETE_MARKER_ID}. That document has no study name,
+ * and starts with a character that study ids don't use.
+ */
+public class StudySummaryMongo {
+
+    public static final String COLLECTION_SUFFIX = "_studies";
+
+    public static final String COMPLETE_MARKER_ID = "$complete";
+
+    public static final String STUDY_NAME_FIELD = "sname";
+
+    public static final String FILES_COUNT_FIELD = "filesCount";
+
+    public static final String SAMPLES_COUNT_FIELD = "samplesCount";
+
+    public static final String STATISTICS_FIELD = "st";
+
+    public static final String COUNTED_FILES_FIELD = "fids";
+
+    /**
+     * Study id
+     */
+    @Id
+    private String studyId;
+
+    @Field(STUDY_NAME_FIELD)
+    private String studyName;
+
+    @Field(FILES_COUNT_FIELD)
+    private int filesCount;
+
+    @Field(SAMPLES_COUNT_FIELD)
+    private int samplesCount;
+
+    @Field(STATISTICS_FIELD)
+    private VariantGlobalStatsMongo stats;
+
+    StudySummaryMongo() {
+        // Empty document constructor for spring-data
+    }
+
+    public StudySummaryMongo(String studyId, String studyName, int filesCount, int samplesCount,
+                             VariantGlobalStatsMongo stats) {
+        this.studyId = studyId;
+        this.studyName = studyName;
+        this.filesCount = filesCount;
+        this.samplesCount = samplesCount;
+        this.stats = stats;
+    }
+
+    public static String getCollectionName(String filesCollectionName) {
+        return filesCollectionName + COLLECTION_SUFFIX;
+    }
+
+    public String getStudyId() {
+        return studyId;
+    }
+
+    public String getStudyName() {
+        return studyName;
+    }
+
+    public int getFilesCount() {
+        return filesCount;
+    }
+
+    public int getSamplesCount() {
+        return samplesCount;
+    }
+
+    public VariantGlobalStatsMongo getStats() {
+        return stats;
+    }
+}
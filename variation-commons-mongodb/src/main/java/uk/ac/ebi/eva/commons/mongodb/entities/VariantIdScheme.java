@@ -0,0 +1,63 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.commons.mongodb.entities;
+
+import uk.ac.ebi.eva.commons.core.utils.VariantIdCodec;
+
+/**
+ * Schemes for the _id of the documents in the variants collection
+ */
+public enum VariantIdScheme {
+
+    /**
+     * "chr_start_ref_alt" strings, see {@link VariantMongo#buildVariantId(String, long, String, String)}
+     */
+    STRING {
+        @Override
+        public Object buildId(String chromosome, long start, String reference, String alternate) {
+            return VariantMongo.buildVariantId(chromosome, start, reference, alternate);
+        }
+    },
+
+    /**
+     * Binary values encoded by {@link VariantIdCodec}, shorter than the strings and with a platform-independent hash
+     * for long alleles.
+     * <p>
+     * Variants can be looked up in this scheme, but not written with it yet: annotations only know the string id of
+     * their variant, which can't be converted when the alleles are hashed, so the annotation index would match no
+     * variant, and {@link VariantMongo#getId()} is always a string id.
+     */
+    BINARY_V1 {
+        @Override
+        public Object buildId(String chromosome, long start, String reference, String alternate) {
+            return VariantIdCodec.encode(chromosome, start, reference, alternate);
+        }
+
+        @Override
+        public boolean isWritable() {
+            return false;
+        }
+    };
+
+    public abstract Object buildId(String chromosome, long start, String reference, String alternate);
+
+    /**
+     * @return Whether variants can be written with this scheme
+     */
+    public boolean isWritable() {
+        return true;
+    }
+}
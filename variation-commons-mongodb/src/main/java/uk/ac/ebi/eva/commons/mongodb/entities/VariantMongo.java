@@ -15,14 +15,18 @@
  */
 package uk.ac.ebi.eva.commons.mongodb.entities;
 
+import com.mongodb.DBObject;
 import org.apache.commons.codec.digest.DigestUtils;
+import org.springframework.core.convert.converter.Converter;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.convert.ReadingConverter;
 import org.springframework.data.mongodb.core.mapping.Document;
 import org.springframework.data.mongodb.core.mapping.Field;
 
 import uk.ac.ebi.eva.commons.core.models.IAnnotationMetadata;
 import uk.ac.ebi.eva.commons.core.models.IVariant;
 import uk.ac.ebi.eva.commons.core.models.VariantType;
+import uk.ac.ebi.eva.commons.core.utils.StringPool;
 import uk.ac.ebi.eva.commons.mongodb.entities.subdocuments.AnnotationIndexMongo;
 import uk.ac.ebi.eva.commons.mongodb.entities.subdocuments.HgvsMongo;
 import uk.ac.ebi.eva.commons.mongodb.entities.subdocuments.VariantAtMongo;
@@ -33,6 +37,7 @@ import java.util.Collections;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -72,6 +77,11 @@ public class VariantMongo {
 
     public final static String DBSNP_IDS_FIELD = "dbsnpIds";
 
+    /**
+     * The identifiers of {@link #IDS_FIELD} that {@link NumericIdCodec} can encode. Maintained by the writer.
+     */
+    public final static String NUMERIC_IDS_FIELD = "nids";
+
     public final static String MAIN_ID_FIELD = "mainId";
 
     public final static String FILES_FIELD = "files";
@@ -261,6 +271,10 @@ public class VariantMongo {
         return new VariantAtMongo(chunkSmall, chunkBig);
     }
 
+    /**
+     * @return The id in the {@link VariantIdScheme#STRING} scheme, even if the document was stored with another one,
+     * so it should not be used to query the _id of other schemes
+     */
     public String getId() {
         return id;
     }
@@ -349,4 +363,88 @@ public class VariantMongo {
                         annotationMetadata.getCacheVersion())
         );
     }
+
+    /**
+     * Reads the document and its subdocuments without the reflection of the mapping converter, which is the main cost
+     * of reading a page of variants. The missing fields keep the same defaults as with the mapping converter. An _id
+     * that is not a string (see {@link VariantIdScheme#BINARY_V1}) is read as the equivalent string id. The
+     * low-cardinality strings, such as the chromosome, single-base alleles and the keys of the files and statistics, are
+     * taken from a pool shared by the documents read.
+     */
+    @ReadingConverter
+    public static class ReadConverter implements Converter<DBObject, VariantMongo> {
+
+        private final StringPool stringPool;
+
+        private final VariantAtMongo.ReadConverter atConverter = new VariantAtMongo.ReadConverter();
+
+        private final HgvsMongo.ReadConverter hgvsConverter = new HgvsMongo.ReadConverter();
+
+        private final VariantSourceEntryMongo.ReadConverter sourceEntryConverter;
+
+        private final VariantStatisticsMongo.ReadConverter statisticsConverter;
+
+        private final AnnotationIndexMongo.ReadConverter annotationIndexConverter =
+                new AnnotationIndexMongo.ReadConverter();
+
+        public ReadConverter() {
+            this(new StringPool());
+        }
+
+        public ReadConverter(StringPool stringPool) {
+            this.stringPool = stringPool;
+            this.sourceEntryConverter = new VariantSourceEntryMongo.ReadConverter(stringPool);
+            this.statisticsConverter = new VariantStatisticsMongo.ReadConverter(stringPool);
+        }
+
+        @Override
+        public VariantMongo convert(DBObject source) {
+            VariantMongo variant = new VariantMongo();
+            Object type = source.get(TYPE_FIELD);
+            variant.type = type != null ? VariantType.valueOf((String) type) : null;
+            variant.chromosome = stringPool.intern((String) source.get(CHROMOSOME_FIELD));
+            variant.start = readLong(source.get(START_FIELD), variant.start);
+            variant.end = readLong(source.get(END_FIELD), variant.end);
+            variant.length = (int) readLong(source.get(LENGTH_FIELD), variant.length);
+            variant.reference = stringPool.internAllele((String) source.get(REFERENCE_FIELD));
+            variant.alternate = stringPool.internAllele((String) source.get(ALTERNATE_FIELD));
+            variant.id = readId(source.get("_id"), variant);
+            Object at = source.get(AT_FIELD);
+            variant.at = at != null ? atConverter.convert((DBObject) at) : null;
+            readAll(source.get(HGVS_FIELD), hgvsConverter, variant.hgvs);
+            Object ids = source.get(IDS_FIELD);
+            if (ids != null) {
+                for (Object id : (List<?>) ids) {
+                    variant.ids.add((String) id);
+                }
+            }
+            variant.mainId = (String) source.get(MAIN_ID_FIELD);
+            readAll(source.get(FILES_FIELD), sourceEntryConverter, variant.variantSourceEntries);
+            readAll(source.get(STATISTICS_FIELD), statisticsConverter, variant.variantStatsMongo);
+            readAll(source.get(ANNOTATION_FIELD), annotationIndexConverter, variant.indexedAnnotations);
+            return variant;
+        }
+
+        private static String readId(Object id, VariantMongo variant) {
+            if (id == null || id instanceof String) {
+                return (String) id;
+            }
+            if (variant.chromosome == null || variant.reference == null || variant.alternate == null) {
+                return null;
+            }
+            return buildVariantId(variant.chromosome, variant.start, variant.reference, variant.alternate);
+        }
+
+        private static long readLong(Object value, long defaultValue) {
+            return value != null ? ((Number) value).longValue() : defaultValue;
+        }
+
+        private static <T> void readAll(Object documents, Converter<DBObject, T> converter, Set<T> target) {
+            if (documents != null) {
+                for (Object document : (List<?>) documents) {
+                    target.add(converter.convert((DBObject) document));
+                }
+            }
+        }
+    }
 }
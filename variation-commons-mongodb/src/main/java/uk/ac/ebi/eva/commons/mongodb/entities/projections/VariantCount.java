@@ -0,0 +1,40 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.commons.mongodb.entities.projections;
+
+/**
+ * Number of variants matching a query. A capped count stopped at the limit it was requested with, so there are more
+ * than {@link #getCount()} variants, e.g. "more than 10,000".
+ */
+public class VariantCount {
+
+    private final long count;
+
+    private final boolean capped;
+
+    public VariantCount(long count, boolean capped) {
+        this.count = count;
+        this.capped = capped;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public boolean isCapped() {
+        return capped;
+    }
+}
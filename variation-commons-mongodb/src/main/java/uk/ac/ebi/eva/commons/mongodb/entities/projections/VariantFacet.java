@@ -0,0 +1,44 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.commons.mongodb.entities.projections;
+
+/**
+ * Attributes that the variants matching a query can be counted by, each variant being counted once for every distinct
+ * value it has (see {@link VariantFacetCounts}).
+ */
+public enum VariantFacet {
+
+    /**
+     * Variant type, as in {@link uk.ac.ebi.eva.commons.core.models.VariantType}.
+     */
+    TYPE,
+
+    /**
+     * Sequence Ontology accession of the consequence types, in any annotation version.
+     */
+    CONSEQUENCE_TYPE,
+
+    /**
+     * Id of the studies the variant was loaded from.
+     */
+    STUDY,
+
+    /**
+     * Minor allele frequency bucket of the cohort statistics, labelled as "lower-upper". A variant with statistics in
+     * several buckets is counted in each of them.
+     */
+    MAF_BUCKET
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.commons.mongodb.entities.projections;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Number of variants matching a query, in total and by each value of the requested {@link VariantFacet}s.
+ * <p>
+ * When the count was capped, the total is the limit, and the facets only count the variants counted in the total, so
+ * every count is a lower bound of the real one.
+ */
+public class VariantFacetCounts {
+
+    private final long total;
+
+    private final boolean capped;
+
+    private final Map<VariantFacet, Map<String, Long>> counts;
+
+    public VariantFacetCounts(long total, boolean capped) {
+        this.total = total;
+        this.capped = capped;
+        this.counts = new EnumMap<>(VariantFacet.class);
+    }
+
+    public void setCounts(VariantFacet facet, Map<String, Long> facetCounts) {
+        counts.put(facet, Collections.unmodifiableMap(new LinkedHashMap<>(facetCounts)));
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    public boolean isCapped() {
+        return capped;
+    }
+
+    /**
+     * @return Number of variants by value of the facet, or an empty map if it wasn't requested
+     */
+    public Map<String, Long> getCounts(VariantFacet facet) {
+        return counts.getOrDefault(facet, Collections.emptyMap());
+    }
+
+    public Map<VariantFacet, Map<String, Long>> getCounts() {
+        return Collections.unmodifiableMap(counts);
+    }
+}
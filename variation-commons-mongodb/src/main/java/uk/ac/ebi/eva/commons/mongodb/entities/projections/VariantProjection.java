@@ -0,0 +1,139 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.commons.mongodb.entities.projections;
+
+import uk.ac.ebi.eva.commons.mongodb.entities.VariantMongo;
+import uk.ac.ebi.eva.commons.mongodb.entities.subdocuments.VariantSourceEntryMongo;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Parts of a variant document that a query needs to read. Fields that are not needed are excluded in the server, and
+ * the conversion steps that would use them are skipped.
+ */
+public enum VariantProjection {
+
+    /**
+     * Coordinates, alleles, ids and HGVS only.
+     */
+    CORE(false, false, false, false),
+
+    /**
+     * Core fields plus the annotation of the requested VEP version.
+     */
+    WITH_ANNOTATION(false, false, false, true),
+
+    /**
+     * Core fields, annotation and the file entries without their samples.
+     */
+    WITH_FILES(true, false, false, true),
+
+    /**
+     * Core fields, annotation, the file entries without their samples and the cohort statistics.
+     */
+    WITH_STATS(true, true, false, true),
+
+    /**
+     * The whole document, including the genotypes of every sample.
+     */
+    WITH_SAMPLES(true, true, true, true);
+
+    private static final String FILES_SAMPLES_FIELD = VariantMongo.FILES_FIELD + "."
+            + VariantSourceEntryMongo.SAMPLES_FIELD;
+
+    private final boolean files;
+
+    private final boolean stats;
+
+    private final boolean samples;
+
+    private final boolean annotation;
+
+    VariantProjection(boolean files, boolean stats, boolean samples, boolean annotation) {
+        this.files = files;
+        this.stats = stats;
+        this.samples = samples;
+        this.annotation = annotation;
+    }
+
+    public boolean includesFiles() {
+        return files;
+    }
+
+    public boolean includesStats() {
+        return stats;
+    }
+
+    public boolean includesSamples() {
+        return samples;
+    }
+
+    public boolean includesAnnotation() {
+        return annotation;
+    }
+
+    /**
+     * Fields of the variant documents that this projection doesn't need. The annotation index is only used to query,
+     * so it is excluded by every projection except {@link #WITH_SAMPLES}, which reads the whole document.
+     */
+    public List<String> getExcludedFields() {
+        if (this == WITH_SAMPLES) {
+            return Collections.emptyList();
+        }
+        List<String> excluded = new ArrayList<>();
+        excluded.add(VariantMongo.ANNOTATION_FIELD);
+        if (!files) {
+            excluded.add(VariantMongo.FILES_FIELD);
+        } else if (!samples) {
+            excluded.add(FILES_SAMPLES_FIELD);
+        }
+        if (!stats) {
+            excluded.add(VariantMongo.STATISTICS_FIELD);
+        }
+        return excluded;
+    }
+
+    /**
+     * Merges the fields excluded by this projection with those requested by the caller. Subfields of an excluded field
+     * are dropped, as the server rejects projections with overlapping paths.
+     */
+    public List<String> mergeExcludedFields(List<String> exclude) {
+        Set<String> merged = new LinkedHashSet<>(getExcludedFields());
+        if (exclude != null) {
+            merged.addAll(exclude);
+        }
+        List<String> withoutSubfields = new ArrayList<>();
+        for (String field : merged) {
+            if (!hasExcludedParent(field, merged)) {
+                withoutSubfields.add(field);
+            }
+        }
+        return withoutSubfields;
+    }
+
+    private static boolean hasExcludedParent(String field, Set<String> excluded) {
+        for (int dot = field.indexOf('.'); dot != -1; dot = field.indexOf('.', dot + 1)) {
+            if (excluded.contains(field.substring(0, dot))) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
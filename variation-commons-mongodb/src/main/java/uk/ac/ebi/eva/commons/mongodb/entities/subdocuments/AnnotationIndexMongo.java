@@ -15,14 +15,15 @@
  */
 package uk.ac.ebi.eva.commons.mongodb.entities.subdocuments;
 
+import com.mongodb.DBObject;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.data.convert.ReadingConverter;
 import org.springframework.data.mongodb.core.mapping.Field;
 import org.springframework.util.Assert;
 import uk.ac.ebi.eva.commons.core.models.IXref;
 import uk.ac.ebi.eva.commons.mongodb.entities.AnnotationMongo;
 
 import java.util.ArrayList;
-import java.util.Collection;
-import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -44,6 +45,8 @@ public class AnnotationIndexMongo {
 
     public static final String XREFS_FIELD = "xrefs";
 
+    public static final String SO_BITMASK_FIELD = "somask";
+
     @Field(value = VEP_VERSION_FIELD)
     private String vepVersion;
 
@@ -62,6 +65,12 @@ public class AnnotationIndexMongo {
     @Field(value = XREFS_FIELD)
     private Set<String> xrefIds;
 
+    /**
+     * {@link #soAccessions} encoded by {@link ConsequenceTypeBitmask}. Null in indexes written before it was added.
+     */
+    @Field(value = SO_BITMASK_FIELD)
+    private Long soBitmask;
+
     AnnotationIndexMongo() {
         soAccessions = new HashSet<>();
         xrefIds = new HashSet<>();
@@ -83,127 +92,46 @@ public class AnnotationIndexMongo {
         this.xrefIds = new HashSet<>();
     }
 
-    /**
-     * Private copy constructor
-     *
-     * @param annotationIndexMongo
-     */
-    private AnnotationIndexMongo(AnnotationIndexMongo annotationIndexMongo) {
-        this(annotationIndexMongo.getVepVersion(), annotationIndexMongo.getVepCacheVersion());
-        doConcatenate(annotationIndexMongo);
+    public AnnotationIndexMongo(AnnotationMongo annotation) {
+        this(new Builder(annotation.getVepVersion(), annotation.getVepCacheVersion()).add(annotation));
     }
 
-    public AnnotationIndexMongo(AnnotationMongo annotation) {
-        this(annotation.getVepVersion(), annotation.getVepCacheVersion());
-        doConcatenate(annotation);
+    private AnnotationIndexMongo(Builder builder) {
+        this(builder.vepVersion, builder.vepCacheVersion);
+        addXrefIds(builder.xrefIds);
+        addSoAccessions(builder.soAccessions);
+        soBitmask = ConsequenceTypeBitmask.toBitmask(builder.soAccessions);
+        if (builder.hasSift) {
+            sifts = new ArrayList<>();
+            setRange(sifts, builder.minSift, builder.maxSift);
+        }
+        if (builder.hasPolyphen) {
+            polyphens = new ArrayList<>();
+            setRange(polyphens, builder.minPolyphen, builder.maxPolyphen);
+        }
     }
 
     public AnnotationIndexMongo concatenate(AnnotationMongo annotation) {
-        AnnotationIndexMongo temp = new AnnotationIndexMongo(this);
-        temp.doConcatenate(annotation);
-        return temp;
+        return new Builder(vepVersion, vepCacheVersion).add(this).add(annotation).build();
     }
 
     /**
      * Concatenate two VariantAnnotations in a new one. This method returns a new instance of AnnotationIndexMongo with
      * the concatenation of xrefIds and soAccessions. Polyphen and SIFT scores ranges need to be recalculated to store
      * the minimum and maximum across the 2 AnnotationIndex objects.
+     * <p>
+     * To merge many annotations, use a {@link Builder} instead, which avoids copying the index on every call.
      *
      * @param annotation
      * @return
      */
     public AnnotationIndexMongo concatenate(AnnotationIndexMongo annotation) {
-        AnnotationIndexMongo temp = new AnnotationIndexMongo(this);
-        temp.doConcatenate(annotation);
-        return temp;
+        return new Builder(vepVersion, vepCacheVersion).add(this).add(annotation).build();
     }
 
-    private void doConcatenate(AnnotationIndexMongo annotationIndexMongo) {
-        if (annotationIndexMongo.getXrefIds() != null) {
-            addXrefIds(annotationIndexMongo.getXrefIds());
-        }
-        if (annotationIndexMongo.getSifts() != null) {
-            annotationIndexMongo.getSifts().forEach(this::concatenateSiftRange);
-        }
-        if (annotationIndexMongo.getPolyphens() != null) {
-            annotationIndexMongo.getPolyphens().forEach(this::concatenatePolyphenRange);
-        }
-        if (annotationIndexMongo.getSoAccessions() != null) {
-            addSoAccessions(annotationIndexMongo.getSoAccessions());
-        }
-    }
-
-    private void doConcatenate(AnnotationMongo annotation) {
-        for (IXref xref : annotation.getXrefs()) {
-            addXrefId(xref.getId());
-        }
-        for (ConsequenceTypeMongo consequenceType : annotation.getConsequenceTypes()) {
-            final ScoreMongo sift = consequenceType.getSift();
-            if (sift != null) {
-                concatenateSiftRange(sift.getScore());
-            }
-            final ScoreMongo polyphen = consequenceType.getPolyphen();
-            if (polyphen != null) {
-                concatenatePolyphenRange(polyphen.getScore());
-            }
-            final Set<Integer> soAccessions = consequenceType.getSoAccessions();
-            if (soAccessions != null) {
-                addSoAccessions(soAccessions);
-            }
-        }
-    }
-
-    private Double maxOf(Collection<Double> collection) {
-        if (collection == null || collection.isEmpty()) {
-            return null;
-        }
-        return Collections.max(collection);
-    }
-
-    private Double minOf(Collection<Double> collection) {
-        if (collection == null || collection.isEmpty()) {
-            return null;
-        }
-        return Collections.min(collection);
-    }
-
-    private void concatenateRange(Collection<Double> collection, double score) {
-        Double min = minOf(collection);
-        Double max = maxOf(collection);
-        if (min == null || max == null) {
-            setRange(collection, score, score);
-        } else if (score < min) {
-            setRange(collection, score, max);
-        } else if (score > max) {
-            setRange(collection, min, score);
-        }
-    }
-
-    private void setRange(Collection<Double> collection, double minScore, double maxScore) {
-        collection.clear();
-        collection.add(minScore);
-        collection.add(maxScore);
-    }
-
-    private void concatenateSiftRange(double score) {
-        if (sifts == null) {
-            sifts = new ArrayList<>();
-        }
-        concatenateRange(sifts, score);
-    }
-
-    private void concatenatePolyphenRange(double score) {
-        if (polyphens == null) {
-            polyphens = new ArrayList<>();
-        }
-        concatenateRange(polyphens, score);
-    }
-
-    private void addXrefId(String id) {
-        if (xrefIds == null) {
-            xrefIds = new HashSet<>();
-        }
-        xrefIds.add(id);
+    private static void setRange(List<Double> range, double minScore, double maxScore) {
+        range.add(minScore);
+        range.add(maxScore);
     }
 
     private void addXrefIds(Set<String> ids) {
@@ -236,6 +164,10 @@ public class AnnotationIndexMongo {
         return xrefIds;
     }
 
+    public Long getSoBitmask() {
+        return soBitmask;
+    }
+
     public String getVepVersion() {
         return vepVersion;
     }
@@ -243,4 +175,157 @@ public class AnnotationIndexMongo {
     public String getVepCacheVersion() {
         return vepCacheVersion;
     }
+
+    /**
+     * Mutable accumulator of the annotations of a variant. Unlike {@link #concatenate(AnnotationMongo)}, which copies
+     * the index on every call, it merges annotations and consequence types in place and keeps the SIFT and PolyPhen
+     * ranges as primitive minimums and maximums, so the index is only built once.
+     */
+    public static class Builder {
+
+        private final String vepVersion;
+
+        private final String vepCacheVersion;
+
+        private final Set<Integer> soAccessions;
+
+        private final Set<String> xrefIds;
+
+        private boolean hasSift;
+
+        private double minSift;
+
+        private double maxSift;
+
+        private boolean hasPolyphen;
+
+        private double minPolyphen;
+
+        private double maxPolyphen;
+
+        /**
+         * @throws IllegalArgumentException If {@param vepVersion} or {@param vepCacheVersion} are null or empty values.
+         */
+        public Builder(String vepVersion, String vepCacheVersion) {
+            Assert.hasText(vepVersion);
+            Assert.hasText(vepCacheVersion);
+            this.vepVersion = vepVersion;
+            this.vepCacheVersion = vepCacheVersion;
+            this.soAccessions = new HashSet<>();
+            this.xrefIds = new HashSet<>();
+        }
+
+        public Builder add(AnnotationMongo annotation) {
+            for (IXref xref : annotation.getXrefs()) {
+                xrefIds.add(xref.getId());
+            }
+            for (ConsequenceTypeMongo consequenceType : annotation.getConsequenceTypes()) {
+                add(consequenceType);
+            }
+            return this;
+        }
+
+        public Builder add(ConsequenceTypeMongo consequenceType) {
+            ScoreMongo sift = consequenceType.getSift();
+            if (sift != null && sift.getScore() != null) {
+                addSift(sift.getScore());
+            }
+            ScoreMongo polyphen = consequenceType.getPolyphen();
+            if (polyphen != null && polyphen.getScore() != null) {
+                addPolyphen(polyphen.getScore());
+            }
+            if (consequenceType.getSoAccessions() != null) {
+                soAccessions.addAll(consequenceType.getSoAccessions());
+            }
+            return this;
+        }
+
+        public Builder add(AnnotationIndexMongo annotationIndex) {
+            if (annotationIndex.getXrefIds() != null) {
+                xrefIds.addAll(annotationIndex.getXrefIds());
+            }
+            if (annotationIndex.getSoAccessions() != null) {
+                soAccessions.addAll(annotationIndex.getSoAccessions());
+            }
+            if (annotationIndex.getSifts() != null) {
+                annotationIndex.getSifts().forEach(this::addSift);
+            }
+            if (annotationIndex.getPolyphens() != null) {
+                annotationIndex.getPolyphens().forEach(this::addPolyphen);
+            }
+            return this;
+        }
+
+        private void addSift(double score) {
+            if (hasSift) {
+                minSift = Math.min(minSift, score);
+                maxSift = Math.max(maxSift, score);
+            } else {
+                minSift = score;
+                maxSift = score;
+                hasSift = true;
+            }
+        }
+
+        private void addPolyphen(double score) {
+            if (hasPolyphen) {
+                minPolyphen = Math.min(minPolyphen, score);
+                maxPolyphen = Math.max(maxPolyphen, score);
+            } else {
+                minPolyphen = score;
+                maxPolyphen = score;
+                hasPolyphen = true;
+            }
+        }
+
+        /**
+         * @return A new index with the accumulated values; later additions to the builder don't modify it
+         */
+        public AnnotationIndexMongo build() {
+            return new AnnotationIndexMongo(this);
+        }
+    }
+
+    /**
+     * Reads the document without the reflection of the mapping converter. Like the mapping converter, it doesn't
+     * require the VEP versions.
+     */
+    @ReadingConverter
+    public static class ReadConverter implements Converter<DBObject, AnnotationIndexMongo> {
+
+        @Override
+        public AnnotationIndexMongo convert(DBObject source) {
+            AnnotationIndexMongo annotation = new AnnotationIndexMongo();
+            annotation.vepVersion = (String) source.get(VEP_VERSION_FIELD);
+            annotation.vepCacheVersion = (String) source.get(VEP_CACHE_VERSION_FIELD);
+            annotation.sifts = readScores(source.get(SIFT_FIELD));
+            annotation.polyphens = readScores(source.get(POLYPHEN_FIELD));
+            Object soAccessions = source.get(SO_ACCESSION_FIELD);
+            if (soAccessions != null) {
+                for (Object soAccession : (List<?>) soAccessions) {
+                    annotation.soAccessions.add(((Number) soAccession).intValue());
+                }
+            }
+            Object xrefIds = source.get(XREFS_FIELD);
+            if (xrefIds != null) {
+                for (Object xrefId : (List<?>) xrefIds) {
+                    annotation.xrefIds.add((String) xrefId);
+                }
+            }
+            Object soBitmask = source.get(SO_BITMASK_FIELD);
+            annotation.soBitmask = soBitmask != null ? ((Number) soBitmask).longValue() : null;
+            return annotation;
+        }
+
+        private static List<Double> readScores(Object scores) {
+            if (scores == null) {
+                return null;
+            }
+            List<Double> range = new ArrayList<>(2);
+            for (Object score : (List<?>) scores) {
+                range.add(((Number) score).doubleValue());
+            }
+            return range;
+        }
+    }
 }
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.commons.mongodb.entities.subdocuments;
+
+import uk.ac.ebi.eva.commons.core.models.ConsequenceTypeMappings;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Dense bit assignment of the SO accessions in {@link ConsequenceTypeMappings}, used to store the consequence types of
+ * an annotation as a single 64-bit value in {@link AnnotationIndexMongo#SO_BITMASK_FIELD}.
+ * <p>
+ * Bits are assigned in ascending order of accession, so adding terms to the mappings may shift the bits of existing
+ * ones; annotations written before such a change must be written again for their bitmasks to be queried.
+ */
+public final class ConsequenceTypeBitmask {
+
+    private static final int MAX_BITS = Long.SIZE;
+
+    private static final Map<Integer, Integer> accessionToBit = new HashMap<>();
+
+    static {
+        int bit = 0;
+        for (Integer soAccession : new TreeSet<>(ConsequenceTypeMappings.accessionToTerm.keySet())) {
+            accessionToBit.put(soAccession, bit++);
+        }
+        if (bit > MAX_BITS) {
+            throw new IllegalStateException("There are " + bit + " SO accessions, but only " + MAX_BITS
+                                                    + " fit in a consequence type bitmask");
+        }
+    }
+
+    private ConsequenceTypeBitmask() {
+    }
+
+    /**
+     * @return Whether the accession has a bit assigned
+     */
+    public static boolean isMapped(int soAccession) {
+        return accessionToBit.containsKey(soAccession);
+    }
+
+    /**
+     * @return Whether all the accessions have a bit assigned
+     */
+    public static boolean areMapped(Collection<Integer> soAccessions) {
+        return soAccessions.stream().allMatch(ConsequenceTypeBitmask::isMapped);
+    }
+
+    /**
+     * @param soAccessions SO accessions; the ones not in {@link ConsequenceTypeMappings} are ignored
+     * @return Bitmask with the bits of the accessions set
+     */
+    public static long toBitmask(Collection<Integer> soAccessions) {
+        long bitmask = 0;
+        for (Integer soAccession : soAccessions) {
+            Integer bit = accessionToBit.get(soAccession);
+            if (bit != null) {
+                bitmask |= 1L << bit;
+            }
+        }
+        return bitmask;
+    }
+}
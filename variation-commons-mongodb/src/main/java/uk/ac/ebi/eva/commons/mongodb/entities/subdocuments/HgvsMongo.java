@@ -15,6 +15,9 @@
  */
 package uk.ac.ebi.eva.commons.mongodb.entities.subdocuments;
 
+import com.mongodb.DBObject;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.data.convert.ReadingConverter;
 import org.springframework.data.mongodb.core.mapping.Field;
 
 import java.util.HashSet;
@@ -65,4 +68,16 @@ public class HgvsMongo {
         }
         return hgvsMongo;
     }
+
+    /**
+     * Reads the document without the reflection of the mapping converter
+     */
+    @ReadingConverter
+    public static class ReadConverter implements Converter<DBObject, HgvsMongo> {
+
+        @Override
+        public HgvsMongo convert(DBObject source) {
+            return new HgvsMongo((String) source.get(TYPE_FIELD), (String) source.get(NAME_FIELD));
+        }
+    }
 }
@@ -0,0 +1,194 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.commons.mongodb.entities.subdocuments;
+
+import org.bson.types.Binary;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Binary encoding of the sample indexes that have a genotype in {@link VariantSourceEntryMongo#SAMPLES_FIELD}.
+ * <p>
+ * The first byte of the binary value identifies the encoding, so that new ones can be added:
+ * <ul>
+ * <li>{@link #DELTA_VARINT_ENCODING}: the sorted indexes, each one stored as the difference with the previous one
+ * (the first one as is), in unsigned LEB128 varints. Sparse genotypes usually take 1 or 2 bytes per sample.</li>
+ * <li>{@link #BITMAP_ENCODING}: bit i (least significant bit first) is set if sample i has the genotype. Used when it's
+ * smaller than the varints, which happens when more than about 1 in 8 samples have the genotype.</li>
+ * </ul>
+ * The legacy representation, an array of integers, is still understood by {@link #decode(Object)}.
+ */
+public final class SampleIndexCodec {
+
+    public static final byte DELTA_VARINT_ENCODING = 1;
+
+    public static final byte BITMAP_ENCODING = 2;
+
+    private SampleIndexCodec() {
+    }
+
+    /**
+     * @param sampleIndexes Non-negative sample indexes, in any order and without duplicates
+     * @return Encoded indexes, using the smallest encoding
+     */
+    public static byte[] encode(Collection<Integer> sampleIndexes) {
+        int[] sorted = new int[sampleIndexes.size()];
+        int i = 0;
+        for (Integer sampleIndex : sampleIndexes) {
+            sorted[i++] = sampleIndex;
+        }
+        Arrays.sort(sorted);
+        return encodeSorted(sorted);
+    }
+
+    /**
+     * @param sampleIndexes Non-negative sample indexes, in any order and without duplicates
+     * @return Encoded indexes, using the smallest encoding
+     */
+    public static byte[] encode(int[] sampleIndexes) {
+        int[] sorted = sampleIndexes.clone();
+        Arrays.sort(sorted);
+        return encodeSorted(sorted);
+    }
+
+    private static byte[] encodeSorted(int[] sortedIndexes) {
+        int varintsSize = 0;
+        int previous = 0;
+        for (int sampleIndex : sortedIndexes) {
+            if (sampleIndex < 0) {
+                throw new IllegalArgumentException("Sample indexes can't be negative: " + sampleIndex);
+            }
+            varintsSize += varintSize(sampleIndex - previous);
+            previous = sampleIndex;
+        }
+        int bitmapSize = sortedIndexes.length == 0 ? 0 : sortedIndexes[sortedIndexes.length - 1] / 8 + 1;
+
+        if (bitmapSize < varintsSize) {
+            byte[] encoded = new byte[1 + bitmapSize];
+            encoded[0] = BITMAP_ENCODING;
+            for (int sampleIndex : sortedIndexes) {
+                encoded[1 + sampleIndex / 8] |= 1 << (sampleIndex % 8);
+            }
+            return encoded;
+        } else {
+            byte[] encoded = new byte[1 + varintsSize];
+            encoded[0] = DELTA_VARINT_ENCODING;
+            int position = 1;
+            previous = 0;
+            for (int sampleIndex : sortedIndexes) {
+                int delta = sampleIndex - previous;
+                while ((delta & ~0x7F) != 0) {
+                    encoded[position++] = (byte) ((delta & 0x7F) | 0x80);
+                    delta >>>= 7;
+                }
+                encoded[position++] = (byte) delta;
+                previous = sampleIndex;
+            }
+            return encoded;
+        }
+    }
+
+    private static int varintSize(int value) {
+        int size = 1;
+        while ((value & ~0x7F) != 0) {
+            size++;
+            value >>>= 7;
+        }
+        return size;
+    }
+
+    /**
+     * @param value Binary value written by {@link #encode(Collection)}, as a byte array or {@link Binary}, or a legacy
+     *              list of integers
+     * @return Sample indexes; sorted, unless the value is a legacy list stored unsorted
+     */
+    public static int[] decode(Object value) {
+        if (value instanceof byte[]) {
+            return decodeBinary((byte[]) value);
+        } else if (value instanceof Binary) {
+            return decodeBinary(((Binary) value).getData());
+        } else if (value instanceof List) {
+            List<?> legacyIndexes = (List<?>) value;
+            int[] sampleIndexes = new int[legacyIndexes.size()];
+            for (int i = 0; i < sampleIndexes.length; i++) {
+                sampleIndexes[i] = ((Number) legacyIndexes.get(i)).intValue();
+            }
+            return sampleIndexes;
+        }
+        throw new IllegalArgumentException("Unknown representation of sample indexes: " + value);
+    }
+
+    private static int[] decodeBinary(byte[] encoded) {
+        if (encoded.length == 0) {
+            throw new IllegalArgumentException("Encoded sample indexes must start with the encoding byte");
+        }
+        switch (encoded[0]) {
+            case DELTA_VARINT_ENCODING:
+                return decodeDeltaVarints(encoded);
+            case BITMAP_ENCODING:
+                return decodeBitmap(encoded);
+            default:
+                throw new IllegalArgumentException("Unknown sample indexes encoding: " + encoded[0]);
+        }
+    }
+
+    private static int[] decodeDeltaVarints(byte[] encoded) {
+        int count = 0;
+        for (int i = 1; i < encoded.length; i++) {
+            if ((encoded[i] & 0x80) == 0) {
+                count++;
+            }
+        }
+
+        int[] sampleIndexes = new int[count];
+        int position = 1;
+        int previous = 0;
+        for (int i = 0; i < count; i++) {
+            int delta = 0;
+            int shift = 0;
+            byte current;
+            do {
+                current = encoded[position++];
+                delta |= (current & 0x7F) << shift;
+                shift += 7;
+            } while ((current & 0x80) != 0);
+            previous += delta;
+            sampleIndexes[i] = previous;
+        }
+        return sampleIndexes;
+    }
+
+    private static int[] decodeBitmap(byte[] encoded) {
+        int count = 0;
+        for (int i = 1; i < encoded.length; i++) {
+            count += Integer.bitCount(encoded[i] & 0xFF);
+        }
+
+        int[] sampleIndexes = new int[count];
+        int next = 0;
+        for (int i = 1; i < encoded.length; i++) {
+            int bits = encoded[i] & 0xFF;
+            while (bits != 0) {
+                int bit = Integer.numberOfTrailingZeros(bits);
+                sampleIndexes[next++] = (i - 1) * 8 + bit;
+                bits &= bits - 1;
+            }
+        }
+        return sampleIndexes;
+    }
+}
@@ -15,9 +15,13 @@
  */
 package uk.ac.ebi.eva.commons.mongodb.entities.subdocuments;
 
+import com.mongodb.DBObject;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.data.convert.ReadingConverter;
 import org.springframework.data.mongodb.core.mapping.Field;
 
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 /**
@@ -39,4 +43,23 @@ public class VariantAtMongo {
         chunkIds.add(chunkSmall);
         chunkIds.add(chunkBig);
     }
+
+    /**
+     * Reads the document without the reflection of the mapping converter
+     */
+    @ReadingConverter
+    public static class ReadConverter implements Converter<DBObject, VariantAtMongo> {
+
+        @Override
+        public VariantAtMongo convert(DBObject source) {
+            VariantAtMongo at = new VariantAtMongo();
+            Object chunkIds = source.get(CHUNK_IDS_FIELD);
+            if (chunkIds != null) {
+                for (Object chunkId : (List<?>) chunkIds) {
+                    at.chunkIds.add((String) chunkId);
+                }
+            }
+            return at;
+        }
+    }
 }
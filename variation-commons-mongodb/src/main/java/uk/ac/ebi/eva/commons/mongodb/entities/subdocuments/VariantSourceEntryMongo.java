@@ -16,17 +16,23 @@
 package uk.ac.ebi.eva.commons.mongodb.entities.subdocuments;
 
 import com.mongodb.BasicDBObject;
+import com.mongodb.DBObject;
+import org.bson.BSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.data.convert.ReadingConverter;
 import org.springframework.data.mongodb.core.mapping.Field;
 import uk.ac.ebi.eva.commons.core.models.IVariantSourceEntry;
 import uk.ac.ebi.eva.commons.core.models.genotype.Genotype;
 import uk.ac.ebi.eva.commons.core.utils.CompressionHelper;
+import uk.ac.ebi.eva.commons.core.utils.StringPool;
 
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -79,13 +85,22 @@ public class VariantSourceEntryMongo {
     }
 
     public VariantSourceEntryMongo(IVariantSourceEntry variantSourceEntry) {
+        this(variantSourceEntry, false);
+    }
+
+    /**
+     * @param encodeSampleIndexes Whether to store the sample indexes of each genotype in the binary format of
+     *                            {@link SampleIndexCodec}, instead of as an array of integers
+     */
+    public VariantSourceEntryMongo(IVariantSourceEntry variantSourceEntry, boolean encodeSampleIndexes) {
         this(
                 variantSourceEntry.getFileId(),
                 variantSourceEntry.getStudyId(),
                 variantSourceEntry.getSecondaryAlternates(),
                 variantSourceEntry.getAttributes(),
                 variantSourceEntry.getFormat(),
-                variantSourceEntry.getSamplesData()
+                variantSourceEntry.getSamplesData(),
+                encodeSampleIndexes
         );
     }
 
@@ -95,6 +110,15 @@ public class VariantSourceEntryMongo {
 
     public VariantSourceEntryMongo(String fileId, String studyId, String[] alternates, Map<String, String>
             attributes, String format, List<Map<String, String>> samplesData) {
+        this(fileId, studyId, alternates, attributes, format, samplesData, false);
+    }
+
+    /**
+     * @param encodeSampleIndexes Whether to store the sample indexes of each genotype in the binary format of
+     *                            {@link SampleIndexCodec}, instead of as an array of integers
+     */
+    public VariantSourceEntryMongo(String fileId, String studyId, String[] alternates, Map<String, String>
+            attributes, String format, List<Map<String, String>> samplesData, boolean encodeSampleIndexes) {
         this.fileId = fileId;
         this.studyId = studyId;
         if (alternates != null && alternates.length > 0) {
@@ -111,11 +135,11 @@ public class VariantSourceEntryMongo {
             this.samples = null;
         } else {
             this.format = format;
-            this.samples = buildSampleData(samplesData);
+            this.samples = buildSampleData(samplesData, encodeSampleIndexes);
         }
     }
 
-    private BasicDBObject buildSampleData(List<Map<String, String>> samplesData) {
+    private BasicDBObject buildSampleData(List<Map<String, String>> samplesData, boolean encodeSampleIndexes) {
         Map<Genotype, List<Integer>> genotypeCodes = classifySamplesByGenotype(samplesData);
 
         // Get the most common genotype
@@ -127,6 +151,7 @@ public class VariantSourceEntryMongo {
         // "def" : 0|0,
         // "0|1" : [ 41, 311, 342, 358, 881, 898, 903 ],
         // "1|0" : [ 262, 290, 300, 331, 343, 369, 374, 391, 879, 918, 930 ]
+        // If encodeSampleIndexes is set, each array is stored as a binary value instead (see SampleIndexCodec).
         BasicDBObject mongoSamples = new BasicDBObject();
         if (mostCommonGenotype != null) {
             mongoSamples.append(DEFAULT, mostCommonGenotype.generateDatabaseString());
@@ -134,7 +159,9 @@ public class VariantSourceEntryMongo {
         genotypeCodes.forEach(
                 (genotype, sampleIndexes) -> {
                     if (!Objects.equals(genotype, mostCommonGenotype)) {
-                        mongoSamples.append(genotype.generateDatabaseString(), sampleIndexes);
+                        mongoSamples.append(genotype.generateDatabaseString(),
+                                            encodeSampleIndexes ? SampleIndexCodec.encode(sampleIndexes)
+                                                                : sampleIndexes);
                     }
                 }
         );
@@ -255,7 +282,7 @@ public class VariantSourceEntryMongo {
             }
             HashMap<String, String> value = new HashMap<>();
             value.put("GT", key);
-            for (int position : (ArrayList<Integer>) samples.get(key)) {
+            for (int position : SampleIndexCodec.decode(samples.get(key))) {
                 temp.set(position, value);
             }
         }
@@ -273,4 +300,53 @@ public class VariantSourceEntryMongo {
                                                                            sourceEntries) {
         return sourceEntries.stream().map(VariantSourceEntryMongo::new).collect(Collectors.toSet());
     }
+
+    /**
+     * Reads the document without the reflection of the mapping converter. The attributes are kept as stored, and the
+     * samples as well, except for the dots in the genotypes, which are restored as the mapping converter does. The
+     * ids, the format, the attribute keys and the genotypes are taken from a pool shared by the documents read.
+     */
+    @ReadingConverter
+    public static class ReadConverter implements Converter<DBObject, VariantSourceEntryMongo> {
+
+        private final StringPool stringPool;
+
+        public ReadConverter() {
+            this(new StringPool());
+        }
+
+        public ReadConverter(StringPool stringPool) {
+            this.stringPool = stringPool;
+        }
+
+        @Override
+        public VariantSourceEntryMongo convert(DBObject source) {
+            VariantSourceEntryMongo sourceEntry = new VariantSourceEntryMongo();
+            sourceEntry.fileId = stringPool.intern((String) source.get(FILEID_FIELD));
+            sourceEntry.studyId = stringPool.intern((String) source.get(STUDYID_FIELD));
+            Object alternates = source.get(ALTERNATES_FIELD);
+            if (alternates != null) {
+                sourceEntry.alternates = ((List<?>) alternates).toArray(new String[0]);
+            }
+            Object attributes = source.get(ATTRIBUTES_FIELD);
+            if (attributes != null) {
+                BasicDBObject pooledAttributes = new BasicDBObject();
+                for (String key : ((BSONObject) attributes).keySet()) {
+                    pooledAttributes.put(stringPool.intern(key), ((BSONObject) attributes).get(key));
+                }
+                sourceEntry.attributes = pooledAttributes;
+            }
+            sourceEntry.format = stringPool.intern((String) source.get(FORMAT_FIELD));
+            Object samples = source.get(SAMPLES_FIELD);
+            if (samples != null) {
+                Map<String, Object> samplesMap = new LinkedHashMap<>();
+                for (String genotype : ((BSONObject) samples).keySet()) {
+                    samplesMap.put(stringPool.intern(genotype.replace(CHARACTER_TO_REPLACE_DOTS, '.')),
+                                   ((BSONObject) samples).get(genotype));
+                }
+                sourceEntry.samples = samplesMap;
+            }
+            return sourceEntry;
+        }
+    }
 }
@@ -15,15 +15,27 @@
  */
 package uk.ac.ebi.eva.commons.mongodb.entities.subdocuments;
 
+import com.mongodb.DBObject;
+import org.bson.BSONObject;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.data.convert.ReadingConverter;
 import org.springframework.data.mongodb.core.mapping.Field;
 import uk.ac.ebi.eva.commons.core.models.IVariantStatistics;
+import uk.ac.ebi.eva.commons.core.models.VariantStatistics;
 import uk.ac.ebi.eva.commons.core.models.genotype.Genotype;
+import uk.ac.ebi.eva.commons.core.utils.StringPool;
 
+import java.util.Arrays;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
 /**
  * Mongo database representation of VariantWithSamplesAndAnnotation Stats.
+ * <p>
+ * Besides the derived values (MAF, MGF and their allele and genotype), the allele, genotype and missing counts are
+ * stored as raw counters, which can be added together with {@link #merge} or incremented in the database. Statistics
+ * written incrementally only have the counters, and the derived values are computed from them when read, by
+ * {@link #withDerivedValues}.
  */
 public class VariantStatisticsMongo implements IVariantStatistics {
 
@@ -47,6 +59,19 @@ public class VariantStatisticsMongo implements IVariantStatistics {
 
     public final static String NUMGT_FIELD = "numGt";
 
+    public final static String REF_ALLELE_COUNT_FIELD = "refAc";
+
+    public final static String ALT_ALLELE_COUNT_FIELD = "altAc";
+
+    /**
+     * Files whose counters were added to statistics written incrementally, so that each file is only added once.
+     */
+    public final static String COUNTED_FILES_FIELD = "fids";
+
+    private final static String MISSING_ALLELE = "-1";
+
+    private final static String[] BIALLELIC_GENOTYPES = {"0/0", "0/1", "1/1"};
+
     @Field(STUDY_ID)
     private String studyId;
 
@@ -77,6 +102,15 @@ public class VariantStatisticsMongo implements IVariantStatistics {
     @Field(NUMGT_FIELD)
     private Map<String, Integer> numGt;
 
+    /**
+     * Null in statistics written before the allele counts were stored.
+     */
+    @Field(REF_ALLELE_COUNT_FIELD)
+    private Integer refAlleleCount;
+
+    @Field(ALT_ALLELE_COUNT_FIELD)
+    private Integer altAlleleCount;
+
     VariantStatisticsMongo() {
         this(null, null, null, -1, -1, null, null, -1, -1, null);
     }
@@ -93,6 +127,10 @@ public class VariantStatisticsMongo implements IVariantStatistics {
                 stats.getMissingAlleles(),
                 stats.getMissingGenotypes(),
                 buildGenotypes(stats.getGenotypesCount()));
+        if (stats instanceof VariantStatistics) {
+            this.refAlleleCount = ((VariantStatistics) stats).getRefAlleleCount();
+            this.altAlleleCount = ((VariantStatistics) stats).getAltAlleleCount();
+        }
     }
 
     public VariantStatisticsMongo(String studyId, String fileId, String cohortId, float maf, float mgf, String mafAllele,
@@ -115,12 +153,85 @@ public class VariantStatisticsMongo implements IVariantStatistics {
     private static Map<String, Integer> buildGenotypes(Map<Genotype, Integer> genotypesCount) {
         Map<String, Integer> genotypes = new LinkedHashMap<>();
         for (Map.Entry<Genotype, Integer> g : genotypesCount.entrySet()) {
-            String genotypeStr = g.getKey().toString().replace(".", "-1");
-            genotypes.put(genotypeStr, g.getValue());
+            genotypes.put(toGenotypeKey(g.getKey()), g.getValue());
         }
         return genotypes;
     }
 
+    /**
+     * @return The key of the genotype in {@link #NUMGT_FIELD}, where missing alleles are written as -1
+     */
+    public static String toGenotypeKey(Genotype genotype) {
+        return genotype.toString().replace(".", MISSING_ALLELE);
+    }
+
+    /**
+     * Adds the raw counters of two statistics of the same study and cohort. The derived values of the result are
+     * unset, to be computed by {@link #withDerivedValues}.
+     */
+    public VariantStatisticsMongo merge(VariantStatisticsMongo other) {
+        Map<String, Integer> mergedGenotypes = new LinkedHashMap<>(numGt);
+        other.numGt.forEach((genotype, count) -> mergedGenotypes.merge(genotype, count, Integer::sum));
+        VariantStatisticsMongo merged = new VariantStatisticsMongo(studyId, fileId, cohortId, -1, -1, null, null,
+                                                                   sumCounts(missingAlleles, other.missingAlleles),
+                                                                   sumCounts(missingGenotypes,
+                                                                             other.missingGenotypes),
+                                                                   mergedGenotypes);
+        if (refAlleleCount != null || other.refAlleleCount != null) {
+            merged.refAlleleCount = sumCounts(refAlleleCount, other.refAlleleCount);
+            merged.altAlleleCount = sumCounts(altAlleleCount, other.altAlleleCount);
+        }
+        return merged;
+    }
+
+    private static int sumCounts(Integer count, Integer otherCount) {
+        return Math.max(count == null ? 0 : count, 0) + Math.max(otherCount == null ? 0 : otherCount, 0);
+    }
+
+    /**
+     * Computes the derived values from the raw counters if they were not stored, in the same way as
+     * {@link VariantStatistics}, except that the MAF only takes into account the reference and alternate alleles.
+     *
+     * @return These statistics if they already have derived values or no counters to compute them from, or a copy
+     * with the derived values otherwise
+     */
+    public VariantStatisticsMongo withDerivedValues(String reference, String alternate) {
+        if (maf >= 0 || mgf >= 0 || refAlleleCount == null) {
+            return this;
+        }
+        VariantStatisticsMongo derived = new VariantStatisticsMongo(studyId, fileId, cohortId, -1, -1, null, null,
+                                                                    missingAlleles, missingGenotypes, numGt);
+        derived.refAlleleCount = refAlleleCount;
+        derived.altAlleleCount = altAlleleCount;
+
+        int totalAlleles = refAlleleCount + altAlleleCount;
+        if (totalAlleles > 0) {
+            boolean referenceIsMinor = refAlleleCount <= altAlleleCount;
+            derived.maf = (referenceIsMinor ? refAlleleCount : altAlleleCount) / (float) totalAlleles;
+            derived.mafAllele = referenceIsMinor ? reference : alternate;
+        }
+
+        Map<String, Integer> calledGenotypes = new LinkedHashMap<>();
+        Arrays.stream(BIALLELIC_GENOTYPES).forEach(genotype -> calledGenotypes.put(genotype, 0));
+        int totalGenotypes = 0;
+        for (Map.Entry<String, Integer> genotypeCount : numGt.entrySet()) {
+            if (!genotypeCount.getKey().contains(MISSING_ALLELE)) {
+                calledGenotypes.put(genotypeCount.getKey(), genotypeCount.getValue());
+                totalGenotypes += genotypeCount.getValue();
+            }
+        }
+        if (totalGenotypes > 0) {
+            for (Map.Entry<String, Integer> genotypeCount : calledGenotypes.entrySet()) {
+                float frequency = genotypeCount.getValue() / (float) totalGenotypes;
+                if (derived.mgfGenotype == null || frequency < derived.mgf) {
+                    derived.mgf = frequency;
+                    derived.mgfGenotype = genotypeCount.getKey();
+                }
+            }
+        }
+        return derived;
+    }
+
     public String getStudyId() {
         return studyId;
     }
@@ -163,6 +274,14 @@ public class VariantStatisticsMongo implements IVariantStatistics {
         return missingGenotypes;
     }
 
+    public Integer getRefAlleleCount() {
+        return refAlleleCount;
+    }
+
+    public Integer getAltAlleleCount() {
+        return altAlleleCount;
+    }
+
     @Override
     public Map<Genotype, Integer> getGenotypesCount() {
         Map<Genotype, Integer> genotypes = new LinkedHashMap<>();
@@ -171,4 +290,62 @@ public class VariantStatisticsMongo implements IVariantStatistics {
         });
         return genotypes;
     }
+
+    /**
+     * Reads the document without the reflection of the mapping converter. The missing values keep the same defaults
+     * as with the mapping converter. The ids, alleles and genotypes are taken from a pool shared by the documents
+     * read.
+     */
+    @ReadingConverter
+    public static class ReadConverter implements Converter<DBObject, VariantStatisticsMongo> {
+
+        private final StringPool stringPool;
+
+        public ReadConverter() {
+            this(new StringPool());
+        }
+
+        public ReadConverter(StringPool stringPool) {
+            this.stringPool = stringPool;
+        }
+
+        @Override
+        public VariantStatisticsMongo convert(DBObject source) {
+            VariantStatisticsMongo stats = new VariantStatisticsMongo();
+            stats.studyId = stringPool.intern((String) source.get(STUDY_ID));
+            stats.fileId = stringPool.intern((String) source.get(FILE_ID));
+            stats.cohortId = stringPool.intern((String) source.get(COHORT_ID));
+            stats.maf = readFloat(source.get(MAF_FIELD), stats.maf);
+            stats.mgf = readFloat(source.get(MGF_FIELD), stats.mgf);
+            stats.mafAllele = stringPool.internAllele((String) source.get(MAFALLELE_FIELD));
+            stats.mgfGenotype = stringPool.intern((String) source.get(MGFGENOTYPE_FIELD));
+            stats.missingAlleles = readInteger(source.get(MISSALLELE_FIELD), stats.missingAlleles);
+            stats.missingGenotypes = readInteger(source.get(MISSGENOTYPE_FIELD), stats.missingGenotypes);
+            Object numGt = source.get(NUMGT_FIELD);
+            if (numGt != null) {
+                for (String genotype : ((BSONObject) numGt).keySet()) {
+                    stats.numGt.put(stringPool.intern(unescapeKey(genotype)), ((Number) ((BSONObject) numGt).get(genotype)).intValue());
+                }
+            }
+            stats.refAlleleCount = readCount(source.get(REF_ALLELE_COUNT_FIELD));
+            stats.altAlleleCount = readCount(source.get(ALT_ALLELE_COUNT_FIELD));
+            return stats;
+        }
+
+        private static float readFloat(Object value, float defaultValue) {
+            return value != null ? ((Number) value).floatValue() : defaultValue;
+        }
+
+        private static int readInteger(Object value, int defaultValue) {
+            return value != null ? ((Number) value).intValue() : defaultValue;
+        }
+
+        private static Integer readCount(Object value) {
+            return value != null ? Integer.valueOf(((Number) value).intValue()) : null;
+        }
+
+        private static String unescapeKey(String key) {
+            return key.replace(VariantSourceEntryMongo.CHARACTER_TO_REPLACE_DOTS, '.');
+        }
+    }
 }
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.commons.mongodb.filter;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBObject;
+import org.springframework.data.mongodb.core.query.Criteria;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Criteria for the $bitsAnySet operator, which this version of Spring Data doesn't provide.
+ * <p>
+ * The bits are sent as an array of positions, because the server only accepts a numeric bitmask that fits in a
+ * non-negative 32-bit integer, and consequence type bitmasks use up to 64 bits.
+ */
+class BitsAnySetCriteria extends Criteria {
+
+    private final String field;
+
+    private final long bitmask;
+
+    BitsAnySetCriteria(String field, long bitmask) {
+        super(field);
+        this.field = field;
+        this.bitmask = bitmask;
+    }
+
+    @Override
+    public DBObject getCriteriaObject() {
+        return new BasicDBObject(field, new BasicDBObject("$bitsAnySet", toBitPositions(bitmask)));
+    }
+
+    static List<Integer> toBitPositions(long bitmask) {
+        List<Integer> positions = new ArrayList<>(Long.bitCount(bitmask));
+        for (long remaining = bitmask; remaining != 0; remaining &= remaining - 1) {
+            positions.add(Long.numberOfTrailingZeros(remaining));
+        }
+        return positions;
+    }
+}
@@ -19,6 +19,7 @@
 package uk.ac.ebi.eva.commons.mongodb.filter;
 
 import uk.ac.ebi.eva.commons.core.models.VariantType;
+import uk.ac.ebi.eva.commons.mongodb.entities.subdocuments.ConsequenceTypeBitmask;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -82,6 +83,23 @@ public class FilterBuilder {
         return this;
     }
 
+    /**
+     * Filters by consequence type using the bitmask of the annotation index, falling back to the array of SO
+     * accessions if any of them has no bit assigned. Only suitable for collections whose annotation indexes have been
+     * written with bitmasks, see {@link VariantRepositoryConsequenceTypeBitmaskFilter}.
+     */
+    public FilterBuilder withConsequenceTypeBitmask(List<String> consequenceType) {
+        if (consequenceType != null && !consequenceType.isEmpty()) {
+            List<Integer> soAccessions = VariantRepositoryConsequenceTypeFilter.parseSoAccessions(consequenceType);
+            if (ConsequenceTypeBitmask.areMapped(soAccessions)) {
+                filters.add(new VariantRepositoryConsequenceTypeBitmaskFilter(consequenceType));
+            } else {
+                filters.add(new VariantRepositoryConsequenceTypeFilter(consequenceType));
+            }
+        }
+        return this;
+    }
+
     public FilterBuilder withFiles(List<String> files) {
         if (files != null && !files.isEmpty()) {
             filters.add(new VariantRepositoryFileFilter(files));
@@ -96,6 +114,13 @@ public class FilterBuilder {
         return this;
     }
 
+    public FilterBuilder withXrefs(List<String> xrefs) {
+        if (xrefs != null && !xrefs.isEmpty()) {
+            filters.add(new VariantRepositoryXrefFilter(xrefs));
+        }
+        return this;
+    }
+
     public FilterBuilder withAlternates(List<String> alternates) {
         if (alternates != null && !alternates.isEmpty()) {
             filters.add(new VariantRepositoryAlternateFilter(alternates));
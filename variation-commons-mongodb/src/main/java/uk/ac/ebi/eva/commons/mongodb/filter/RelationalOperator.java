@@ -27,6 +27,8 @@ public enum RelationalOperator {
 
     LTE,
 
-    IN
+    IN,
+
+    BITS_ANY_SET
 
 }
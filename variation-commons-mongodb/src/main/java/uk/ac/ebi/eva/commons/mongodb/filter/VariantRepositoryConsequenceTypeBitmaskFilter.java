@@ -0,0 +1,46 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.commons.mongodb.filter;
+
+import uk.ac.ebi.eva.commons.mongodb.entities.subdocuments.ConsequenceTypeBitmask;
+
+import java.util.List;
+
+/**
+ * Consequence type filter on the bitmask of the annotation index instead of the array of SO accessions. The bitmask
+ * is not indexed, so this is a scan-time filter: it checks a single value per annotation instead of an array, but it
+ * should be combined with a selective indexed criteria such as a region or gene, and it only finds variants whose
+ * annotation index was written with a bitmask.
+ */
+public class VariantRepositoryConsequenceTypeBitmaskFilter extends VariantRepositoryFilter<Long> {
+
+    private static final String FIELD = CONSEQUENCE_TYPE_SO_BITMASK_FIELD;
+
+    /**
+     * @throws IllegalArgumentException If any consequence type has no bit assigned in {@link ConsequenceTypeBitmask}
+     */
+    public VariantRepositoryConsequenceTypeBitmaskFilter(List<String> consequenceType) {
+        super(FIELD, toBitmask(VariantRepositoryConsequenceTypeFilter.parseSoAccessions(consequenceType)),
+              RelationalOperator.BITS_ANY_SET);
+    }
+
+    private static long toBitmask(List<Integer> soAccessions) {
+        if (!ConsequenceTypeBitmask.areMapped(soAccessions)) {
+            throw new IllegalArgumentException("Some consequence types have no bit assigned: " + soAccessions);
+        }
+        return ConsequenceTypeBitmask.toBitmask(soAccessions);
+    }
+}
@@ -26,10 +26,12 @@ public class VariantRepositoryConsequenceTypeFilter extends VariantRepositoryFil
     private static final String FIELD = CONSEQUENCE_TYPE_SO_FIELD;
 
     public VariantRepositoryConsequenceTypeFilter(List<String> consequenceType) {
-        super(FIELD,
-                consequenceType.stream()
-                        .map(c -> Integer.parseInt(c.replaceAll("[^\\d.]", ""), 10))  // parse integer from string
-                        .collect(Collectors.toList()),
-                RelationalOperator.IN);
+        super(FIELD, parseSoAccessions(consequenceType), RelationalOperator.IN);
+    }
+
+    static List<Integer> parseSoAccessions(List<String> consequenceType) {
+        return consequenceType.stream()
+                              .map(c -> Integer.parseInt(c.replaceAll("[^\\d.]", ""), 10))  // parse integer from string
+                              .collect(Collectors.toList());
     }
 }
@@ -38,6 +38,7 @@ public abstract class VariantRepositoryFilter<T> {
     public final static String POLYPHEN_FIELD = VariantMongo.ANNOTATION_FIELD + "." + AnnotationIndexMongo.POLYPHEN_FIELD;
     public final static String SIFT_FIELD = VariantMongo.ANNOTATION_FIELD + "." + AnnotationIndexMongo.SIFT_FIELD;
     public final static String CONSEQUENCE_TYPE_SO_FIELD = VariantMongo.ANNOTATION_FIELD + "." + AnnotationIndexMongo.SO_ACCESSION_FIELD;
+    public final static String CONSEQUENCE_TYPE_SO_BITMASK_FIELD = VariantMongo.ANNOTATION_FIELD + "." + AnnotationIndexMongo.SO_BITMASK_FIELD;
 
     public final static String XREFS_FIELD = VariantMongo.ANNOTATION_FIELD + "." + AnnotationIndexMongo.XREFS_FIELD;
     public final static String XREFS_ID_FIELD = XREFS_FIELD + ".id";
@@ -55,6 +56,18 @@ public abstract class VariantRepositoryFilter<T> {
         this.operator = operator;
     }
 
+    public String getField() {
+        return field;
+    }
+
+    public T getValue() {
+        return value;
+    }
+
+    public RelationalOperator getOperator() {
+        return operator;
+    }
+
     public Criteria getCriteria() {
         Criteria criteria = Criteria.where(field);
         switch (operator) {
@@ -76,6 +89,9 @@ public abstract class VariantRepositoryFilter<T> {
             case IN:
                 criteria = criteria.in((Collection) value);
                 break;
+            case BITS_ANY_SET:
+                criteria = new BitsAnySetCriteria(field, (Long) value);
+                break;
             default:
                 throw new IllegalArgumentException();
         }
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.commons.mongodb.planner;
+
+import com.mongodb.DBObject;
+
+import uk.ac.ebi.eva.commons.mongodb.entities.VariantMongo;
+import uk.ac.ebi.eva.commons.mongodb.filter.RelationalOperator;
+import uk.ac.ebi.eva.commons.mongodb.filter.VariantRepositoryFilter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Suggests compound indexes for query shapes, following the equality, sort, range order: the anchor and the equality
+ * filters first, then the sort fields, then the range filters.
+ * <p>
+ * MongoDB can't index more than one array per document in the same compound index, so only the filters on one array
+ * (files, annotations, statistics...) are included: the array of the anchor, or for regions the array with more
+ * equality filters.
+ */
+final class IndexAdvisor {
+
+    private static final Set<String> ARRAY_FIELDS = new HashSet<>(Arrays.asList(
+            VariantMongo.FILES_FIELD, VariantMongo.ANNOTATION_FIELD, VariantMongo.STATISTICS_FIELD,
+            VariantMongo.IDS_FIELD, VariantMongo.DBSNP_IDS_FIELD, VariantMongo.HGVS_FIELD));
+
+    private IndexAdvisor() {
+    }
+
+    static List<String> suggestIndex(QueryShape shape) {
+        List<String> index = new ArrayList<>();
+        String arrayField;
+        switch (shape.getAnchor()) {
+            case REGIONS:
+                index.add(VariantMongo.CHROMOSOME_FIELD);
+                arrayField = chooseArrayField(shape);
+                break;
+            case GENES:
+                index.add(VariantRepositoryFilter.XREFS_FIELD);
+                arrayField = VariantMongo.ANNOTATION_FIELD;
+                break;
+            case IDS:
+                index.add(VariantMongo.IDS_FIELD);
+                arrayField = VariantMongo.IDS_FIELD;
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown anchor " + shape.getAnchor());
+        }
+
+        addFilterFields(shape, arrayField, true, index);
+        if (shape.getAnchor() == QueryShape.Anchor.REGIONS) {
+            index.add(VariantMongo.START_FIELD);
+            index.add(VariantMongo.END_FIELD);
+        } else {
+            index.add(VariantMongo.CHROMOSOME_FIELD);
+            index.add(VariantMongo.START_FIELD);
+        }
+        addFilterFields(shape, arrayField, false, index);
+        return index;
+    }
+
+    private static String chooseArrayField(QueryShape shape) {
+        String chosen = null;
+        int chosenEqualities = -1;
+        for (String arrayField : Arrays.asList(VariantMongo.FILES_FIELD, VariantMongo.ANNOTATION_FIELD,
+                                               VariantMongo.STATISTICS_FIELD)) {
+            int equalities = 0;
+            boolean filtered = false;
+            for (Map.Entry<String, RelationalOperator> filter : shape.getFilters().entrySet()) {
+                if (getRootField(filter.getKey()).equals(arrayField)) {
+                    filtered = true;
+                    equalities += isEquality(filter.getValue()) ? 1 : 0;
+                }
+            }
+            if (filtered && equalities > chosenEqualities) {
+                chosen = arrayField;
+                chosenEqualities = equalities;
+            }
+        }
+        return chosen;
+    }
+
+    private static void addFilterFields(QueryShape shape, String arrayField, boolean equality, List<String> index) {
+        shape.getFilters().forEach((field, operator) -> {
+            String rootField = getRootField(field);
+            // bitwise operators can't use an index
+            boolean indexable = (!ARRAY_FIELDS.contains(rootField) || rootField.equals(arrayField))
+                    && operator != RelationalOperator.BITS_ANY_SET;
+            if (indexable && isEquality(operator) == equality && !index.contains(field)) {
+                index.add(field);
+            }
+        });
+    }
+
+    private static boolean isEquality(RelationalOperator operator) {
+        return operator == RelationalOperator.EQ || operator == RelationalOperator.IN;
+    }
+
+    private static String getRootField(String field) {
+        int dot = field.indexOf('.');
+        return dot < 0 ? field : field.substring(0, dot);
+    }
+
+    /**
+     * @return Whether any of the indexes starts with all the fields of the suggested one, in the same order
+     */
+    static boolean isServedByExistingIndex(List<String> suggestedIndex, List<DBObject> existingIndexes) {
+        for (DBObject existingIndex : existingIndexes) {
+            List<String> keys = new ArrayList<>(((DBObject) existingIndex.get("key")).keySet());
+            if (keys.size() >= suggestedIndex.size() && keys.subList(0, suggestedIndex.size()).equals(suggestedIndex)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
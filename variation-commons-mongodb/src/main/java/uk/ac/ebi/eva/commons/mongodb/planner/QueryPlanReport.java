@@ -0,0 +1,194 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.commons.mongodb.planner;
+
+import com.mongodb.DBObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Summary of the output of the MongoDB "explain" command for a variant query, with the index suggested to serve its
+ * shape if the plan examines too many documents.
+ * <p>
+ * Both the current explain format (queryPlanner and executionStats) and the format of servers older than 3.0 (cursor,
+ * nscanned, nscannedObjects) are understood. Counts that the server didn't report are -1.
+ */
+public class QueryPlanReport {
+
+    public static final String COLLECTION_SCAN_STAGE = "COLLSCAN";
+
+    private static final String INDEX_SCAN_STAGE = "IXSCAN";
+
+    private static final String LEGACY_COLLECTION_SCAN_CURSOR = "BasicCursor";
+
+    /**
+     * Plans that examine more documents per returned document than this are considered worth a new index
+     */
+    private static final int MAX_DOCS_EXAMINED_PER_RETURNED = 10;
+
+    private final QueryShape shape;
+
+    private final List<String> winningPlanStages;
+
+    private final String indexName;
+
+    private final long keysExamined;
+
+    private final long docsExamined;
+
+    private final long returned;
+
+    private final long executionTimeMillis;
+
+    private final List<String> suggestedIndex;
+
+    private final DBObject explain;
+
+    /**
+     * @param shape Shape of the explained query
+     * @param explain Output of the explain command
+     * @param existingIndexes Index descriptions of the variants collection, as returned by getIndexInfo()
+     */
+    public QueryPlanReport(QueryShape shape, DBObject explain, List<DBObject> existingIndexes) {
+        this.shape = shape;
+        this.explain = explain;
+
+        DBObject queryPlanner = (DBObject) explain.get("queryPlanner");
+        if (queryPlanner != null) {
+            this.winningPlanStages = new ArrayList<>();
+            this.indexName = collectStages((DBObject) queryPlanner.get("winningPlan"), winningPlanStages);
+            DBObject executionStats = (DBObject) explain.get("executionStats");
+            this.keysExamined = getLong(executionStats, "totalKeysExamined");
+            this.docsExamined = getLong(executionStats, "totalDocsExamined");
+            this.returned = getLong(executionStats, "nReturned");
+            this.executionTimeMillis = getLong(executionStats, "executionTimeMillis");
+        } else {
+            String cursor = String.valueOf(explain.get("cursor"));
+            boolean collectionScan = cursor.startsWith(LEGACY_COLLECTION_SCAN_CURSOR);
+            this.winningPlanStages = Collections.singletonList(collectionScan ? COLLECTION_SCAN_STAGE
+                                                                              : INDEX_SCAN_STAGE);
+            this.indexName = collectionScan ? null : cursor.substring(cursor.indexOf(' ') + 1);
+            this.keysExamined = getLong(explain, "nscanned");
+            this.docsExamined = getLong(explain, "nscannedObjects");
+            this.returned = getLong(explain, "n");
+            this.executionTimeMillis = getLong(explain, "millis");
+        }
+
+        List<String> suggestion = null;
+        if (isCollectionScan() || docsExamined > MAX_DOCS_EXAMINED_PER_RETURNED * Math.max(returned, 1)) {
+            suggestion = IndexAdvisor.suggestIndex(shape);
+            if (IndexAdvisor.isServedByExistingIndex(suggestion, existingIndexes)) {
+                suggestion = null;
+            }
+        }
+        this.suggestedIndex = suggestion == null ? null : Collections.unmodifiableList(suggestion);
+    }
+
+    /**
+     * Walks the plan from the root stage to the leaves, and returns the name of the first index scanned, if any
+     */
+    private static String collectStages(DBObject stage, List<String> stages) {
+        String indexName = null;
+        while (stage != null) {
+            stages.add(String.valueOf(stage.get("stage")));
+            if (indexName == null && stage.get("indexName") != null) {
+                indexName = stage.get("indexName").toString();
+            }
+            DBObject inputStage = (DBObject) stage.get("inputStage");
+            if (inputStage == null && stage.get("inputStages") instanceof List) {
+                List<?> inputStages = (List<?>) stage.get("inputStages");
+                inputStage = inputStages.isEmpty() ? null : (DBObject) inputStages.get(0);
+            }
+            stage = inputStage;
+        }
+        return indexName;
+    }
+
+    private static long getLong(DBObject object, String field) {
+        if (object == null || !(object.get(field) instanceof Number)) {
+            return -1;
+        }
+        return ((Number) object.get(field)).longValue();
+    }
+
+    public QueryShape getShape() {
+        return shape;
+    }
+
+    /**
+     * @return Stages of the winning plan from the root to the leaf, e.g. [LIMIT, FETCH, IXSCAN]
+     */
+    public List<String> getWinningPlanStages() {
+        return Collections.unmodifiableList(winningPlanStages);
+    }
+
+    public boolean isCollectionScan() {
+        return winningPlanStages.contains(COLLECTION_SCAN_STAGE);
+    }
+
+    /**
+     * @return Name of the index used by the winning plan, or null if no index was used
+     */
+    public String getIndexName() {
+        return indexName;
+    }
+
+    public long getKeysExamined() {
+        return keysExamined;
+    }
+
+    public long getDocsExamined() {
+        return docsExamined;
+    }
+
+    public long getReturned() {
+        return returned;
+    }
+
+    public long getExecutionTimeMillis() {
+        return executionTimeMillis;
+    }
+
+    /**
+     * @return Fields of the suggested ascending compound index, or null if no index is missing for this shape
+     */
+    public List<String> getSuggestedIndex() {
+        return suggestedIndex;
+    }
+
+    /**
+     * @return Raw output of the explain command
+     */
+    public DBObject getExplain() {
+        return explain;
+    }
+
+    @Override
+    public String toString() {
+        return "QueryPlanReport{" +
+                "shape=" + shape +
+                ", winningPlanStages=" + winningPlanStages +
+                ", indexName='" + indexName + '\'' +
+                ", keysExamined=" + keysExamined +
+                ", docsExamined=" + docsExamined +
+                ", returned=" + returned +
+                ", executionTimeMillis=" + executionTimeMillis +
+                ", suggestedIndex=" + suggestedIndex +
+                '}';
+    }
+}
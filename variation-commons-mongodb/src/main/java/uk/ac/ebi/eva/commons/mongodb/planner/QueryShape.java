@@ -0,0 +1,87 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.commons.mongodb.planner;
+
+import uk.ac.ebi.eva.commons.mongodb.filter.RelationalOperator;
+import uk.ac.ebi.eva.commons.mongodb.filter.VariantRepositoryFilter;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Structure of a variant query, ignoring the values it looks for: the kind of anchor (regions, genes or ids) and the
+ * field and operator of each filter. Queries with the same shape are served by the same indexes.
+ */
+public class QueryShape {
+
+    public enum Anchor {
+        REGIONS,
+        GENES,
+        IDS
+    }
+
+    private final Anchor anchor;
+
+    private final SortedMap<String, RelationalOperator> filters;
+
+    public QueryShape(Anchor anchor, List<VariantRepositoryFilter> filters) {
+        this.anchor = anchor;
+        this.filters = new TreeMap<>();
+        if (filters != null) {
+            for (VariantRepositoryFilter filter : filters) {
+                this.filters.put(filter.getField(), filter.getOperator());
+            }
+        }
+    }
+
+    public Anchor getAnchor() {
+        return anchor;
+    }
+
+    /**
+     * @return Map from filtered field to its operator, sorted by field
+     */
+    public SortedMap<String, RelationalOperator> getFilters() {
+        return Collections.unmodifiableSortedMap(filters);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        QueryShape that = (QueryShape) o;
+
+        if (anchor != that.anchor) return false;
+        return filters.equals(that.filters);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = anchor.hashCode();
+        result = 31 * result + filters.hashCode();
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder shape = new StringBuilder(anchor.name());
+        filters.forEach((field, operator) -> shape.append(' ').append(field).append(':').append(operator));
+        return shape.toString();
+    }
+}
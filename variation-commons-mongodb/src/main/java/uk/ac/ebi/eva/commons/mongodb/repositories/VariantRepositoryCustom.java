@@ -18,9 +18,14 @@
  */
 package uk.ac.ebi.eva.commons.mongodb.repositories;
 
+import com.mongodb.DBObject;
 import org.springframework.data.domain.Pageable;
 import uk.ac.ebi.eva.commons.core.models.Region;
+import uk.ac.ebi.eva.commons.core.models.VariantCoreFields;
 import uk.ac.ebi.eva.commons.mongodb.entities.VariantMongo;
+import uk.ac.ebi.eva.commons.mongodb.entities.projections.VariantCount;
+import uk.ac.ebi.eva.commons.mongodb.entities.projections.VariantFacet;
+import uk.ac.ebi.eva.commons.mongodb.entities.projections.VariantFacetCounts;
 import uk.ac.ebi.eva.commons.mongodb.filter.VariantRepositoryFilter;
 
 import java.util.List;
@@ -35,6 +40,8 @@ interface VariantRepositoryCustom {
     /**
      * Query for variants with a specified ID (eg. RS IDs), and whose attributes match those values specified in the
      * filters: study, consequence type, minor allele frequency and protein substitution scores (Polyphen and SIFT).
+     * Once the collection has a numeric ids index (see {@link #rebuildNumericIds}), rs and ss ids are looked up by
+     * number and any other id by string.
      *
      * @param ids
      * @param filters List of VariantRepositoryFilter objects by which to filter the query
@@ -48,11 +55,26 @@ interface VariantRepositoryCustom {
 
     Long countByIdsAndComplexFilters(List<String> ids, List<VariantRepositoryFilter> filters);
 
+    /**
+     * Counts the variants with the specified IDs that match the filters, stopping after the count limit.
+     *
+     * @param countLimit Maximum number of variants to count, or null to count all of them
+     * @return Count of the variants, capped if there are more than the count limit
+     */
+    VariantCount countByIdsAndComplexFilters(List<String> ids, List<VariantRepositoryFilter> filters,
+                                             Long countLimit);
+
     List<VariantMongo> findByGenesAndComplexFilters(List<String> geneIds, List<VariantRepositoryFilter> filters,
                                                     List<String> exclude, Pageable pageable);
 
     Long countByGenesAndComplexFilters(List<String> geneIds, List<VariantRepositoryFilter> filters);
 
+    /**
+     * @see #countByIdsAndComplexFilters(List, List, Long)
+     */
+    VariantCount countByGenesAndComplexFilters(List<String> geneIds, List<VariantRepositoryFilter> filters,
+                                               Long countLimit);
+
 
     /**
      * Query for variants within a set of specified genomic regions, and whose attributes match those values specified
@@ -71,10 +93,121 @@ interface VariantRepositoryCustom {
     Long countByRegionsAndComplexFilters(List<Region> regions, List<VariantRepositoryFilter> filters);
 
     /**
-     * Query for distinct chromosomes for variants in the collection
+     * Counts the variants within a set of genomic regions that match the filters, stopping after the count limit.
+     * This keeps broad queries, like whole chromosomes filtered by MAF, from scanning every matching variant.
+     *
+     * @param countLimit Maximum number of variants to count, or null to count all of them
+     * @return Count of the variants, capped if there are more than the count limit
+     */
+    VariantCount countByRegionsAndComplexFilters(List<Region> regions, List<VariantRepositoryFilter> filters,
+                                                 Long countLimit);
+
+    /**
+     * Counts the variants within a set of genomic regions that match the filters, in total and by each of the
+     * requested facets. The query runs once, and every facet is computed from its result in the same aggregation.
+     *
+     * @param regions List of region objects
+     * @param filters List of VariantRepositoryFilter objects
+     * @param facets Attributes to count the variants by; the total is always counted
+     * @param countLimit Maximum number of variants to count, or null to count all of them. A capped count is faster
+     *                   for broad queries, but only approximate (see {@link VariantFacetCounts#isCapped()})
+     * @return Total and facet counts
+     */
+    VariantFacetCounts countFacetsByRegionsAndComplexFilters(List<Region> regions,
+                                                             List<VariantRepositoryFilter> filters,
+                                                             Set<VariantFacet> facets, Long countLimit);
+
+    VariantFacetCounts countFacetsByGenesAndComplexFilters(List<String> geneIds, List<VariantRepositoryFilter> filters,
+                                                           Set<VariantFacet> facets, Long countLimit);
+
+    VariantFacetCounts countFacetsByIdsAndComplexFilters(List<String> ids, List<VariantRepositoryFilter> filters,
+                                                         Set<VariantFacet> facets, Long countLimit);
+
+    /**
+     * Query for distinct chromosomes for variants in the collection. They are read from the chromosome catalog if it is
+     * complete (see {@link #rebuildChromosomeCatalog}).
      *
      * @return List of chromosome names
      */
     Set<String> findDistinctChromosomes();
 
+    /**
+     * Query for the lowest start coordinate of the variants of a chromosome in any of the given studies. It is read
+     * from the chromosome catalog if it is complete (see {@link #rebuildChromosomeCatalog}), or from the variants
+     * otherwise.
+     *
+     * @param chromosome Chromosome
+     * @param studyIds List of study ids
+     * @return Lowest start coordinate, or null if no variants are found for that chromosome and studies
+     */
+    Long findChromosomeLowestReportedCoordinate(String chromosome, List<String> studyIds);
+
+    /**
+     * Query for the highest start coordinate of the variants of a chromosome in any of the given studies. It is read
+     * from the chromosome catalog if it is complete (see {@link #rebuildChromosomeCatalog}), or from the variants
+     * otherwise.
+     *
+     * @param chromosome Chromosome
+     * @param studyIds List of study ids
+     * @return Highest start coordinate, or null if no variants are found for that chromosome and studies
+     */
+    Long findChromosomeHighestReportedCoordinate(String chromosome, List<String> studyIds);
+
+    /**
+     * Replaces the chromosome catalog with one computed from the whole variants collection, and marks it as complete
+     * so that it's used by the chromosome lookups. The writer keeps it complete afterwards. Needed after the upgrade
+     * that introduced the catalog, after unloading a file, or to correct the counts after loading a file twice.
+     */
+    void rebuildChromosomeCatalog();
+
+    /**
+     * Stores the numeric form of the rs and ss ids of the variants written before the writer maintained it, and then
+     * creates the index that makes id lookups use it.
+     *
+     * @return Number of variants updated
+     */
+    long rebuildNumericIds();
+
+
+    /**
+     * Runs the query of {@link #findByRegionsAndComplexFilters} through the "explain" command, which executes it to
+     * report the chosen plan and how many index keys and documents were examined.
+     *
+     * @param regions List of region objects
+     * @param filters List of VariantRepositoryFilter objects
+     * @param pageable Pageable object
+     * @return Output of the explain command
+     */
+    DBObject explainByRegionsAndComplexFilters(List<Region> regions, List<VariantRepositoryFilter> filters,
+                                               Pageable pageable);
+
+    /**
+     * Runs the query of {@link #findByGenesAndComplexFilters} through the "explain" command.
+     *
+     * @param geneIds List of gene ids
+     * @param filters List of VariantRepositoryFilter objects
+     * @param pageable Pageable object
+     * @return Output of the explain command
+     */
+    DBObject explainByGenesAndComplexFilters(List<String> geneIds, List<VariantRepositoryFilter> filters,
+                                             Pageable pageable);
+
+    /**
+     * Runs the query of {@link #findByIdsAndComplexFilters} through the "explain" command.
+     *
+     * @param ids List of variant ids
+     * @param filters List of VariantRepositoryFilter objects
+     * @param pageable Pageable object
+     * @return Output of the explain command
+     */
+    DBObject explainByIdsAndComplexFilters(List<String> ids, List<VariantRepositoryFilter> filters, Pageable pageable);
+
+    /**
+     * Finds variants by _id, whichever {@link uk.ac.ebi.eva.commons.mongodb.entities.VariantIdScheme} they were
+     * written with. The lookup only uses the _id index.
+     *
+     * @param variants Coordinates and alleles of the variants
+     * @return Variants found, in no particular order
+     */
+    List<VariantMongo> findByCoordinatesAndAlleles(List<VariantCoreFields> variants);
 }
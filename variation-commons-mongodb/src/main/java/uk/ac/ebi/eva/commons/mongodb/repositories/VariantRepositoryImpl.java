@@ -18,25 +18,55 @@
  */
 package uk.ac.ebi.eva.commons.mongodb.repositories;
 
+import com.mongodb.AggregationOptions;
+import com.mongodb.BasicDBObject;
+import com.mongodb.BulkWriteOperation;
+import com.mongodb.CommandResult;
+import com.mongodb.Cursor;
+import com.mongodb.DBCollection;
+import com.mongodb.DBCursor;
+import com.mongodb.DBObject;
+import com.mongodb.MongoCommandException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.mongodb.MongoDbFactory;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
 import org.springframework.data.mongodb.core.aggregation.AggregationResults;
 import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.QueryMapper;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.util.Assert;
 import uk.ac.ebi.eva.commons.core.models.Region;
+import uk.ac.ebi.eva.commons.core.models.VariantCoreFields;
+import uk.ac.ebi.eva.commons.mongodb.cache.CollectionStateCache;
+import uk.ac.ebi.eva.commons.mongodb.entities.ChromosomeCatalogMongo;
+import uk.ac.ebi.eva.commons.mongodb.entities.NumericIdCodec;
+import uk.ac.ebi.eva.commons.mongodb.entities.VariantIdScheme;
 import uk.ac.ebi.eva.commons.mongodb.entities.VariantMongo;
+import uk.ac.ebi.eva.commons.mongodb.entities.projections.VariantCount;
+import uk.ac.ebi.eva.commons.mongodb.entities.projections.VariantFacet;
+import uk.ac.ebi.eva.commons.mongodb.entities.projections.VariantFacetCounts;
 import uk.ac.ebi.eva.commons.mongodb.entities.subdocuments.AnnotationIndexMongo;
+import uk.ac.ebi.eva.commons.mongodb.entities.subdocuments.VariantSourceEntryMongo;
+import uk.ac.ebi.eva.commons.mongodb.entities.subdocuments.VariantStatisticsMongo;
 import uk.ac.ebi.eva.commons.mongodb.filter.VariantRepositoryFilter;
 
+import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -54,22 +84,67 @@ public class VariantRepositoryImpl implements VariantRepositoryCustom {
 
     private static final String GENE_IDS_FIELD = VariantMongo.ANNOTATION_FIELD + "." + AnnotationIndexMongo.XREFS_FIELD;
 
+    private static final String STUDY_ID_FIELD = VariantMongo.FILES_FIELD + "." + VariantSourceEntryMongo.STUDYID_FIELD;
+
+    private static final String SO_ACCESSION_FIELD = VariantMongo.ANNOTATION_FIELD + "."
+            + AnnotationIndexMongo.SO_ACCESSION_FIELD;
+
+    private static final int NUMERIC_IDS_BULK_SIZE = 1000;
+
+    private static final String BACKGROUND_INDEX = "background";
+
+    private static final String UNIQUE_INDEX = "unique";
+
+    /**
+     * MAF is at most 0.5, so the last bucket includes its upper bound
+     */
+    private static final double[] MAF_BUCKET_BOUNDARIES = {0, 0.01, 0.05, 0.1, 0.2, 0.5};
+
+    private static final String TOTAL_FACET = "total";
+
+    private static final String COUNT_FIELD = "count";
+
+    /**
+     * Error codes of servers older than 3.4, and of newer ones, for a pipeline stage they don't know
+     */
+    private static final Set<Integer> UNRECOGNIZED_STAGE_CODES = new HashSet<>(Arrays.asList(16436, 40324));
+
+    private final CollectionStateCache<Boolean> chromosomeCatalogComplete;
+
+    private final CollectionStateCache<Boolean> numericIdIndexAvailable;
+
+    /**
+     * @param collectionStateMaxAgeSeconds How long to remember whether the chromosome catalog is complete and whether
+     *                                     the numeric ids index exists, or 0 to check them on every query. Changes done
+     *                                     by this process are seen immediately.
+     */
     @Autowired
-    public VariantRepositoryImpl(MongoDbFactory mongoDbFactory, MappingMongoConverter mappingMongoConverter) {
+    public VariantRepositoryImpl(MongoDbFactory mongoDbFactory, MappingMongoConverter mappingMongoConverter,
+                                 @Value("${eva.mongo.cache.collection-state.max-age-seconds:60}")
+                                         long collectionStateMaxAgeSeconds) {
         mongoTemplate = new MongoTemplate(mongoDbFactory, mappingMongoConverter);
+        chromosomeCatalogComplete = new CollectionStateCache<>(this::isChromosomeCatalogMarkedComplete,
+                                                               collectionStateMaxAgeSeconds);
+        numericIdIndexAvailable = new CollectionStateCache<>(this::hasNumericIdIndex, collectionStateMaxAgeSeconds);
     }
 
     @Override
     public List<VariantMongo> findByIdsAndComplexFilters(List<String> ids, List<VariantRepositoryFilter> filters,
                                                          List<String> exclude, Pageable pageable) {
-        Query query = new Query(Criteria.where(VariantMongo.IDS_FIELD).in(ids));
+        Query query = new Query(getIdsCriteria(ids));
         return findByComplexFiltersHelper(query, filters, exclude, pageable);
     }
 
     @Override
     public Long countByIdsAndComplexFilters(List<String> ids, List<VariantRepositoryFilter> filters) {
-        Criteria criteria = Criteria.where("ids").in(ids);
-        return countByComplexFiltersHelper(criteria, filters);
+        return countByIdsAndComplexFilters(ids, filters, null).getCount();
+    }
+
+    @Override
+    public VariantCount countByIdsAndComplexFilters(List<String> ids, List<VariantRepositoryFilter> filters,
+                                                    Long countLimit) {
+        Criteria criteria = getIdsCriteria(ids);
+        return countByComplexFiltersHelper(criteria, filters, countLimit);
     }
 
     @Override
@@ -82,8 +157,14 @@ public class VariantRepositoryImpl implements VariantRepositoryCustom {
 
     @Override
     public Long countByGenesAndComplexFilters(List<String> geneIds, List<VariantRepositoryFilter> filters) {
+        return countByGenesAndComplexFilters(geneIds, filters, null).getCount();
+    }
+
+    @Override
+    public VariantCount countByGenesAndComplexFilters(List<String> geneIds, List<VariantRepositoryFilter> filters,
+                                                      Long countLimit) {
         Criteria criteria = Criteria.where(GENE_IDS_FIELD).in(geneIds);
-        return countByComplexFiltersHelper(criteria, filters);
+        return countByComplexFiltersHelper(criteria, filters, countLimit);
     }
 
     @Override
@@ -98,19 +179,300 @@ public class VariantRepositoryImpl implements VariantRepositoryCustom {
 
     @Override
     public Long countByRegionsAndComplexFilters(List<Region> regions, List<VariantRepositoryFilter> filters) {
+        return countByRegionsAndComplexFilters(regions, filters, null).getCount();
+    }
+
+    @Override
+    public VariantCount countByRegionsAndComplexFilters(List<Region> regions, List<VariantRepositoryFilter> filters,
+                                                        Long countLimit) {
         Criteria criteria = getRegionsCriteria(regions);
-        return countByComplexFiltersHelper(criteria, filters);
+        return countByComplexFiltersHelper(criteria, filters, countLimit);
+    }
+
+    @Override
+    public VariantFacetCounts countFacetsByIdsAndComplexFilters(List<String> ids, List<VariantRepositoryFilter> filters,
+                                                                Set<VariantFacet> facets, Long countLimit) {
+        return countFacetsHelper(getIdsCriteria(ids), filters, facets, countLimit);
+    }
+
+    @Override
+    public VariantFacetCounts countFacetsByGenesAndComplexFilters(List<String> geneIds,
+                                                                  List<VariantRepositoryFilter> filters,
+                                                                  Set<VariantFacet> facets, Long countLimit) {
+        return countFacetsHelper(Criteria.where(GENE_IDS_FIELD).in(geneIds), filters, facets, countLimit);
+    }
+
+    @Override
+    public VariantFacetCounts countFacetsByRegionsAndComplexFilters(List<Region> regions,
+                                                                    List<VariantRepositoryFilter> filters,
+                                                                    Set<VariantFacet> facets, Long countLimit) {
+        return countFacetsHelper(getRegionsCriteria(regions), filters, facets, countLimit);
     }
 
     @Override
     public Set<String> findDistinctChromosomes() {
+        if (chromosomeCatalogComplete.get()) {
+            return new HashSet<>(getChromosomeCatalogCollection().distinct(
+                    ChromosomeCatalogMongo.CHROMOSOME_FIELD,
+                    new BasicDBObject(ChromosomeCatalogMongo.CHROMOSOME_FIELD, new BasicDBObject("$exists", true))));
+        }
         return new HashSet<>(mongoTemplate.getCollection(mongoTemplate.getCollectionName(VariantMongo.class))
                 .distinct(VariantMongo.CHROMOSOME_FIELD));
     }
 
+    @Override
+    public Long findChromosomeLowestReportedCoordinate(String chromosome, List<String> studyIds) {
+        if (chromosomeCatalogComplete.get()) {
+            return findChromosomeCatalogEntries(chromosome, studyIds).stream()
+                                                                     .map(ChromosomeCatalogMongo::getMinStart)
+                                                                     .min(Long::compare)
+                                                                     .orElse(null);
+        }
+        return findStartOfFirstVariant(chromosome, studyIds, Sort.Direction.ASC);
+    }
+
+    @Override
+    public Long findChromosomeHighestReportedCoordinate(String chromosome, List<String> studyIds) {
+        if (chromosomeCatalogComplete.get()) {
+            return findChromosomeCatalogEntries(chromosome, studyIds).stream()
+                                                                     .map(ChromosomeCatalogMongo::getMaxStart)
+                                                                     .max(Long::compare)
+                                                                     .orElse(null);
+        }
+        return findStartOfFirstVariant(chromosome, studyIds, Sort.Direction.DESC);
+    }
+
+    /**
+     * The catalog is computed in a single pass over the chromosome, start and study ids of all the variants, keeping
+     * only one entry per chromosome and study in memory. It is marked as complete once all its entries are written.
+     */
+    @Override
+    public void rebuildChromosomeCatalog() {
+        Map<List<String>, long[]> boundsAndCounts = new LinkedHashMap<>();
+        DBObject projection = new BasicDBObject(VariantMongo.CHROMOSOME_FIELD, 1)
+                .append(VariantMongo.START_FIELD, 1)
+                .append(STUDY_ID_FIELD, 1);
+        try (DBCursor cursor = mongoTemplate.getCollection(mongoTemplate.getCollectionName(VariantMongo.class))
+                                            .find(new BasicDBObject(), projection)) {
+            for (DBObject variant : cursor) {
+                String chromosome = (String) variant.get(VariantMongo.CHROMOSOME_FIELD);
+                long start = ((Number) variant.get(VariantMongo.START_FIELD)).longValue();
+                Object files = variant.get(VariantMongo.FILES_FIELD);
+                if (!(files instanceof List)) {
+                    continue;
+                }
+                for (Object file : (List<?>) files) {
+                    String studyId = (String) ((DBObject) file).get(VariantSourceEntryMongo.STUDYID_FIELD);
+                    long[] entry = boundsAndCounts.computeIfAbsent(Arrays.asList(chromosome, studyId),
+                                                                   key -> new long[]{start, start, 0});
+                    entry[0] = Math.min(entry[0], start);
+                    entry[1] = Math.max(entry[1], start);
+                    entry[2]++;
+                }
+            }
+        }
+
+        DBCollection catalog = getChromosomeCatalogCollection();
+        catalog.drop();
+        for (Map.Entry<List<String>, long[]> entry : boundsAndCounts.entrySet()) {
+            catalog.insert(new BasicDBObject(ChromosomeCatalogMongo.CHROMOSOME_FIELD, entry.getKey().get(0))
+                                   .append(ChromosomeCatalogMongo.STUDY_ID_FIELD, entry.getKey().get(1))
+                                   .append(ChromosomeCatalogMongo.MIN_START_FIELD, entry.getValue()[0])
+                                   .append(ChromosomeCatalogMongo.MAX_START_FIELD, entry.getValue()[1])
+                                   .append(ChromosomeCatalogMongo.COUNT_FIELD, entry.getValue()[2]));
+        }
+        // same options as the index created by the variant writer
+        catalog.createIndex(new BasicDBObject(ChromosomeCatalogMongo.CHROMOSOME_FIELD, 1)
+                                    .append(ChromosomeCatalogMongo.STUDY_ID_FIELD, 1),
+                            new BasicDBObject(BACKGROUND_INDEX, true).append(UNIQUE_INDEX, true));
+        catalog.insert(new BasicDBObject("_id", ChromosomeCatalogMongo.COMPLETE_MARKER_ID));
+        chromosomeCatalogComplete.invalidate();
+    }
+
+    /**
+     * Every variant with ids that can be encoded is updated, including the ones that a load done since the upgrade
+     * already gave the numeric form of its new ids, so that none of their older ids is missed. The numeric ids are added
+     * to the set, and the variants that already have all of them are skipped, so the backfill can be run again after
+     * an interruption.
+     */
+    @Override
+    public long rebuildNumericIds() {
+        DBCollection variants = mongoTemplate.getCollection(mongoTemplate.getCollectionName(VariantMongo.class));
+        DBObject filter = new BasicDBObject(VariantMongo.IDS_FIELD, new BasicDBObject("$regex", "^[rs]s[1-9]"));
+        long updated = 0;
+        BulkWriteOperation bulk = variants.initializeUnorderedBulkOperation();
+        int bulkSize = 0;
+        DBObject projection = new BasicDBObject(VariantMongo.IDS_FIELD, 1).append(VariantMongo.NUMERIC_IDS_FIELD, 1);
+        try (DBCursor cursor = variants.find(filter, projection)) {
+            for (DBObject variant : cursor) {
+                List<Long> numericIds = NumericIdCodec.encodeAll((List<String>) variant.get(VariantMongo.IDS_FIELD));
+                Object storedNumericIds = variant.get(VariantMongo.NUMERIC_IDS_FIELD);
+                if (numericIds.isEmpty() || (storedNumericIds instanceof List
+                        && ((List<?>) storedNumericIds).containsAll(numericIds))) {
+                    continue;
+                }
+                bulk.find(new BasicDBObject("_id", variant.get("_id")))
+                    .updateOne(new BasicDBObject("$addToSet", new BasicDBObject(
+                            VariantMongo.NUMERIC_IDS_FIELD, new BasicDBObject("$each", numericIds))));
+                if (++bulkSize == NUMERIC_IDS_BULK_SIZE) {
+                    updated += bulk.execute().getModifiedCount();
+                    bulk = variants.initializeUnorderedBulkOperation();
+                    bulkSize = 0;
+                }
+            }
+        }
+        if (bulkSize > 0) {
+            updated += bulk.execute().getModifiedCount();
+        }
+        variants.createIndex(new BasicDBObject(VariantMongo.NUMERIC_IDS_FIELD, 1),
+                             new BasicDBObject(BACKGROUND_INDEX, true));
+        numericIdIndexAvailable.invalidate();
+        return updated;
+    }
+
+    /**
+     * Once the numeric ids index exists, every rs and ss id is looked up by its number, and only the rest by string.
+     */
+    private Criteria getIdsCriteria(List<String> ids) {
+        if (!numericIdIndexAvailable.get()) {
+            return Criteria.where(VariantMongo.IDS_FIELD).in(ids);
+        }
+        List<Long> numericIds = new ArrayList<>();
+        List<String> stringIds = new ArrayList<>();
+        for (String id : ids) {
+            Long numericId = NumericIdCodec.encode(id);
+            if (numericId != null) {
+                numericIds.add(numericId);
+            } else {
+                stringIds.add(id);
+            }
+        }
+        if (stringIds.isEmpty()) {
+            return Criteria.where(VariantMongo.NUMERIC_IDS_FIELD).in(numericIds);
+        } else if (numericIds.isEmpty()) {
+            return Criteria.where(VariantMongo.IDS_FIELD).in(stringIds);
+        }
+        return new Criteria().orOperator(Criteria.where(VariantMongo.NUMERIC_IDS_FIELD).in(numericIds),
+                                         Criteria.where(VariantMongo.IDS_FIELD).in(stringIds));
+    }
+
+    private boolean hasNumericIdIndex() {
+        for (DBObject index : mongoTemplate.getCollection(mongoTemplate.getCollectionName(VariantMongo.class))
+                                           .getIndexInfo()) {
+            if (((DBObject) index.get("key")).containsField(VariantMongo.NUMERIC_IDS_FIELD)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private String getChromosomeCatalogCollectionName() {
+        return ChromosomeCatalogMongo.getCollectionName(mongoTemplate.getCollectionName(VariantMongo.class));
+    }
+
+    private DBCollection getChromosomeCatalogCollection() {
+        return mongoTemplate.getCollection(getChromosomeCatalogCollectionName());
+    }
+
+    private boolean isChromosomeCatalogMarkedComplete() {
+        return getChromosomeCatalogCollection().count(
+                new BasicDBObject("_id", ChromosomeCatalogMongo.COMPLETE_MARKER_ID)) > 0;
+    }
+
+    private List<ChromosomeCatalogMongo> findChromosomeCatalogEntries(String chromosome, List<String> studyIds) {
+        Query query = new Query(Criteria.where(ChromosomeCatalogMongo.CHROMOSOME_FIELD).is(chromosome)
+                                        .and(ChromosomeCatalogMongo.STUDY_ID_FIELD).in(studyIds));
+        return mongoTemplate.find(query, ChromosomeCatalogMongo.class, getChromosomeCatalogCollectionName());
+    }
+
+    private Long findStartOfFirstVariant(String chromosome, List<String> studyIds, Sort.Direction direction) {
+        Query query = new Query(Criteria.where(VariantMongo.CHROMOSOME_FIELD).is(chromosome)
+                                        .and(STUDY_ID_FIELD).in(studyIds));
+        query.with(new Sort(direction, VariantMongo.START_FIELD));
+        query.fields().include(VariantMongo.START_FIELD);
+        VariantMongo variant = mongoTemplate.findOne(query, VariantMongo.class);
+        return variant != null ? variant.getStart() : null;
+    }
+
+    @Override
+    public DBObject explainByRegionsAndComplexFilters(List<Region> regions, List<VariantRepositoryFilter> filters,
+                                                      Pageable pageable) {
+        Query query = new Query(getRegionsCriteria(regions));
+        return explainHelper(query, filters, pageable);
+    }
+
+    @Override
+    public DBObject explainByGenesAndComplexFilters(List<String> geneIds, List<VariantRepositoryFilter> filters,
+                                                    Pageable pageable) {
+        Query query = new Query(Criteria.where(GENE_IDS_FIELD).in(geneIds));
+        return explainHelper(query, filters, pageable);
+    }
+
+    @Override
+    public DBObject explainByIdsAndComplexFilters(List<String> ids, List<VariantRepositoryFilter> filters,
+                                                  Pageable pageable) {
+        Query query = new Query(getIdsCriteria(ids));
+        return explainHelper(query, filters, pageable);
+    }
+
+    private DBObject explainHelper(Query query, List<VariantRepositoryFilter> filters, Pageable pageable) {
+        buildComplexFiltersQuery(query, filters, null, pageable);
+
+        MongoPersistentEntity<?> entity = mongoTemplate.getConverter().getMappingContext()
+                                                       .getPersistentEntity(VariantMongo.class);
+        QueryMapper queryMapper = new QueryMapper(mongoTemplate.getConverter());
+        DBObject filter = queryMapper.getMappedObject(query.getQueryObject(), entity);
+        DBObject sort = queryMapper.getMappedSort(query.getSortObject(), entity);
+        String collectionName = mongoTemplate.getCollectionName(VariantMongo.class);
+
+        DBObject find = new BasicDBObject("find", collectionName)
+                .append("filter", filter)
+                .append("sort", sort)
+                .append("skip", query.getSkip())
+                .append("limit", query.getLimit());
+        CommandResult result = mongoTemplate.getDb().command(
+                new BasicDBObject("explain", find).append("verbosity", "executionStats"));
+        if (result.ok()) {
+            return result;
+        }
+
+        // servers older than 3.2 can't explain a find command, but the cursor can report its plan
+        return mongoTemplate.getCollection(collectionName).find(filter).sort(sort).skip(query.getSkip())
+                           .limit(query.getLimit()).explain();
+    }
+
+    @Override
+    public List<VariantMongo> findByCoordinatesAndAlleles(List<VariantCoreFields> variants) {
+        if (variants.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return mongoTemplate.find(new Query(getVariantIdsCriteria(variants)), VariantMongo.class);
+    }
+
+    private Criteria getVariantIdsCriteria(List<VariantCoreFields> variants) {
+        List<Criteria> idCriteria = new ArrayList<>();
+        for (VariantCoreFields variant : variants) {
+            for (VariantIdScheme idScheme : VariantIdScheme.values()) {
+                try {
+                    idCriteria.add(Criteria.where("_id").is(idScheme.buildId(
+                            variant.getChromosome(), variant.getStart(), variant.getReference(),
+                            variant.getAlternate())));
+                } catch (IllegalArgumentException e) {
+                    // a variant that can't be identified in a scheme can't have been written with it either
+                }
+            }
+        }
+        // each clause of the $or is an equality lookup on the _id index
+        return new Criteria().orOperator(idCriteria.toArray(new Criteria[idCriteria.size()]));
+    }
+
     private List<VariantMongo> findByComplexFiltersHelper(Query query, List<VariantRepositoryFilter> filters,
                                                           List<String> exclude, Pageable pageable) {
+        return mongoTemplate.find(buildComplexFiltersQuery(query, filters, exclude, pageable), VariantMongo.class);
+    }
 
+    private Query buildComplexFiltersQuery(Query query, List<VariantRepositoryFilter> filters, List<String> exclude,
+                                           Pageable pageable) {
         addFilterCriteriaToQuery(query, filters);
 
         ArrayList<String> sortProperties = new ArrayList<String>();
@@ -125,7 +487,7 @@ public class VariantRepositoryImpl implements VariantRepositoryCustom {
             exclude.forEach(e -> query.fields().exclude(e));
         }
 
-        return mongoTemplate.find(query, VariantMongo.class);
+        return query;
     }
 
     private void addFilterCriteriaToQuery(Query query, List<VariantRepositoryFilter> filters) {
@@ -137,21 +499,34 @@ public class VariantRepositoryImpl implements VariantRepositoryCustom {
         }
     }
 
-    private long countByComplexFiltersHelper(Criteria existingCriteria, List<VariantRepositoryFilter> filters) {
+    /**
+     * With a count limit, the "$limit" before the "$group" stops the query after one more variant than the limit,
+     * which is enough to know that the count was capped.
+     */
+    private VariantCount countByComplexFiltersHelper(Criteria existingCriteria, List<VariantRepositoryFilter> filters,
+                                                     Long countLimit) {
+        Assert.isTrue(countLimit == null || countLimit > 0, "The count limit must be positive");
         List<Criteria> criteriaList = getFiltersCriteria(filters);
         criteriaList.add(existingCriteria);
         Criteria criteria = new Criteria().andOperator(criteriaList.toArray(new Criteria[criteriaList.size()]));
 
-        Aggregation aggregation = Aggregation.newAggregation(
-                Aggregation.match(criteria),
-                Aggregation.group().count().as("count")
-        );
+        List<AggregationOperation> operations = new ArrayList<>();
+        operations.add(Aggregation.match(criteria));
+        if (countLimit != null) {
+            operations.add(Aggregation.limit(countLimit + 1));
+        }
+        operations.add(Aggregation.group().count().as("count"));
+        Aggregation aggregation = Aggregation.newAggregation(operations);
 
         AggregationResults<VariantAggregationCount> aggregationResults =
                 mongoTemplate.aggregate(aggregation, VariantMongo.class, VariantAggregationCount.class);
 
-        return aggregationResults.getMappedResults().size() > 0
+        long count = aggregationResults.getMappedResults().size() > 0
                 ? aggregationResults.getMappedResults().get(0).getCount() : 0;
+        if (countLimit != null && count > countLimit) {
+            return new VariantCount(countLimit, true);
+        }
+        return new VariantCount(count, false);
     }
 
     private class VariantAggregationCount {
@@ -162,6 +537,174 @@ public class VariantRepositoryImpl implements VariantRepositoryCustom {
         }
     }
 
+    /**
+     * Counts every facet in a single "$facet" stage after the "$match", so the query runs once. Servers that don't
+     * support "$facet" run one aggregation per facet instead.
+     */
+    private VariantFacetCounts countFacetsHelper(Criteria existingCriteria, List<VariantRepositoryFilter> filters,
+                                                 Set<VariantFacet> facets, Long countLimit) {
+        Assert.isTrue(countLimit == null || countLimit > 0, "The count limit must be positive");
+
+        Query query = new Query(existingCriteria);
+        addFilterCriteriaToQuery(query, filters);
+        DBObject match = new QueryMapper(mongoTemplate.getConverter()).getMappedObject(
+                query.getQueryObject(),
+                mongoTemplate.getConverter().getMappingContext().getPersistentEntity(VariantMongo.class));
+        List<DBObject> matchStages = new ArrayList<>();
+        matchStages.add(new BasicDBObject("$match", match));
+        if (countLimit != null) {
+            // one more variant than the limit, to tell a capped total from one that is exactly the limit
+            matchStages.add(new BasicDBObject("$limit", countLimit + 1));
+        }
+
+        Map<String, List<DBObject>> facetPipelines = new LinkedHashMap<>();
+        facetPipelines.put(TOTAL_FACET, Collections.singletonList(countStage(null)));
+        for (VariantFacet facet : facets) {
+            for (Map.Entry<String, List<DBObject>> facetPipeline : buildFacetPipelines(facet).entrySet()) {
+                List<DBObject> pipeline = new ArrayList<>();
+                if (countLimit != null) {
+                    // the facets only count the variants of a capped total
+                    pipeline.add(new BasicDBObject("$limit", countLimit));
+                }
+                pipeline.addAll(facetPipeline.getValue());
+                facetPipelines.put(facetPipeline.getKey(), pipeline);
+            }
+        }
+
+        DBCollection collection = mongoTemplate.getCollection(mongoTemplate.getCollectionName(VariantMongo.class));
+        Map<String, List<DBObject>> facetResults;
+        try {
+            List<DBObject> pipeline = new ArrayList<>(matchStages);
+            pipeline.add(new BasicDBObject("$facet", new BasicDBObject(facetPipelines)));
+            facetResults = new HashMap<>();
+            List<DBObject> results = aggregate(collection, pipeline);
+            if (!results.isEmpty()) {
+                DBObject facetResult = results.get(0);
+                for (String facetKey : facetPipelines.keySet()) {
+                    facetResults.put(facetKey, castToDBObjectList(facetResult.get(facetKey)));
+                }
+            }
+        } catch (MongoCommandException e) {
+            if (!UNRECOGNIZED_STAGE_CODES.contains(e.getErrorCode())) {
+                throw e;
+            }
+            facetResults = new HashMap<>();
+            for (Map.Entry<String, List<DBObject>> facetPipeline : facetPipelines.entrySet()) {
+                List<DBObject> pipeline = new ArrayList<>(matchStages);
+                pipeline.addAll(facetPipeline.getValue());
+                facetResults.put(facetPipeline.getKey(), aggregate(collection, pipeline));
+            }
+        }
+
+        long total = getCount(facetResults.get(TOTAL_FACET));
+        boolean capped = countLimit != null && total > countLimit;
+        VariantFacetCounts facetCounts = new VariantFacetCounts(capped ? countLimit : total, capped);
+        for (VariantFacet facet : facets) {
+            facetCounts.setCounts(facet, readFacetCounts(facet, facetResults));
+        }
+        return facetCounts;
+    }
+
+    /**
+     * Multi-valued attributes are unwound and grouped by variant first, so that each variant is counted once per value
+     * even if it appears in several files, statistics or annotation versions. Each MAF bucket is a separate count of
+     * the variants with statistics in its range.
+     */
+    private Map<String, List<DBObject>> buildFacetPipelines(VariantFacet facet) {
+        Map<String, List<DBObject>> pipelines = new LinkedHashMap<>();
+        switch (facet) {
+            case TYPE:
+                pipelines.put(facet.name(), Collections.singletonList(countStage("$" + VariantMongo.TYPE_FIELD)));
+                break;
+            case CONSEQUENCE_TYPE:
+                pipelines.put(facet.name(), Arrays.asList(
+                        new BasicDBObject("$unwind", "$" + VariantMongo.ANNOTATION_FIELD),
+                        new BasicDBObject("$unwind", "$" + SO_ACCESSION_FIELD),
+                        distinctByVariantStage("$" + SO_ACCESSION_FIELD),
+                        countStage("$_id.value")));
+                break;
+            case STUDY:
+                pipelines.put(facet.name(), Arrays.asList(
+                        new BasicDBObject("$unwind", "$" + VariantMongo.FILES_FIELD),
+                        distinctByVariantStage("$" + STUDY_ID_FIELD),
+                        countStage("$_id.value")));
+                break;
+            case MAF_BUCKET:
+                for (int i = 0; i < MAF_BUCKET_BOUNDARIES.length - 1; i++) {
+                    boolean last = i == MAF_BUCKET_BOUNDARIES.length - 2;
+                    DBObject range = new BasicDBObject("$gte", MAF_BUCKET_BOUNDARIES[i])
+                            .append(last ? "$lte" : "$lt", MAF_BUCKET_BOUNDARIES[i + 1]);
+                    DBObject inBucket = new BasicDBObject(VariantMongo.STATISTICS_FIELD, new BasicDBObject(
+                            "$elemMatch", new BasicDBObject(VariantStatisticsMongo.MAF_FIELD, range)));
+                    pipelines.put(getMafBucketLabel(i), Arrays.asList(new BasicDBObject("$match", inBucket),
+                                                                      countStage(null)));
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown facet " + facet);
+        }
+        return pipelines;
+    }
+
+    private static DBObject distinctByVariantStage(String value) {
+        return new BasicDBObject("$group", new BasicDBObject(
+                "_id", new BasicDBObject("variant", "$_id").append("value", value)));
+    }
+
+    private static DBObject countStage(String groupBy) {
+        return new BasicDBObject("$group", new BasicDBObject("_id", groupBy)
+                .append(COUNT_FIELD, new BasicDBObject("$sum", 1)));
+    }
+
+    private static String getMafBucketLabel(int bucket) {
+        return BigDecimal.valueOf(MAF_BUCKET_BOUNDARIES[bucket]).stripTrailingZeros().toPlainString() + "-"
+                + BigDecimal.valueOf(MAF_BUCKET_BOUNDARIES[bucket + 1]).stripTrailingZeros().toPlainString();
+    }
+
+    private Map<String, Long> readFacetCounts(VariantFacet facet, Map<String, List<DBObject>> facetResults) {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        if (facet == VariantFacet.MAF_BUCKET) {
+            for (int i = 0; i < MAF_BUCKET_BOUNDARIES.length - 1; i++) {
+                String label = getMafBucketLabel(i);
+                counts.put(label, getCount(facetResults.get(label)));
+            }
+            return counts;
+        }
+
+        List<DBObject> groups = new ArrayList<>(facetResults.getOrDefault(facet.name(), Collections.emptyList()));
+        groups.sort((a, b) -> Long.compare(((Number) b.get(COUNT_FIELD)).longValue(),
+                                           ((Number) a.get(COUNT_FIELD)).longValue()));
+        for (DBObject group : groups) {
+            counts.put(String.valueOf(group.get("_id")), ((Number) group.get(COUNT_FIELD)).longValue());
+        }
+        return counts;
+    }
+
+    private static long getCount(List<DBObject> countResult) {
+        if (countResult == null || countResult.isEmpty()) {
+            return 0;
+        }
+        return ((Number) countResult.get(0).get(COUNT_FIELD)).longValue();
+    }
+
+    private static List<DBObject> aggregate(DBCollection collection, List<DBObject> pipeline) {
+        AggregationOptions options = AggregationOptions.builder().outputMode(AggregationOptions.OutputMode.CURSOR)
+                                                       .allowDiskUse(true).build();
+        List<DBObject> results = new ArrayList<>();
+        Cursor cursor = collection.aggregate(pipeline, options);
+        try {
+            cursor.forEachRemaining(results::add);
+        } finally {
+            cursor.close();
+        }
+        return results;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<DBObject> castToDBObjectList(Object facetResult) {
+        return facetResult != null ? (List<DBObject>) facetResult : Collections.emptyList();
+    }
+
     private List<Criteria> getFiltersCriteria(List<VariantRepositoryFilter> filters) {
         List<Criteria> criteriaList = new ArrayList<>();
         for (VariantRepositoryFilter filter : filters) {
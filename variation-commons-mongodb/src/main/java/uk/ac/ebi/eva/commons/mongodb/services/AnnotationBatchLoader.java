@@ -0,0 +1,185 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.commons.mongodb.services;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.Iterables;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.Assert;
+
+import uk.ac.ebi.eva.commons.core.models.IAnnotationMetadata;
+import uk.ac.ebi.eva.commons.mongodb.entities.AnnotationMongo;
+import uk.ac.ebi.eva.commons.mongodb.entities.VariantMongo;
+import uk.ac.ebi.eva.commons.mongodb.repositories.AnnotationRepository;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Loads annotations by id in chunks of bounded size, querying the chunks in parallel.
+ * <p>
+ * The annotations collection only changes when a new VEP version is loaded, so the loaded annotations can be kept in
+ * an optional LRU cache. Call {@link #invalidateAll()} after loading new annotations.
+ */
+@Service
+public class AnnotationBatchLoader {
+
+    private final AnnotationRepository annotationRepository;
+
+    private final int chunkSize;
+
+    private final ExecutorService executor;
+
+    private final Cache<String, AnnotationMongo> cache;
+
+    /**
+     * @param chunkSize Maximum number of ids in each "$in" query
+     * @param parallelism Number of chunks queried at the same time; 1 queries them in the calling thread
+     * @param cacheSize Maximum number of annotations kept in memory, or 0 to disable the cache
+     */
+    @Autowired
+    public AnnotationBatchLoader(AnnotationRepository annotationRepository,
+                                 @Value("${eva.mongo.annotations.chunk-size:1000}") int chunkSize,
+                                 @Value("${eva.mongo.annotations.parallelism:4}") int parallelism,
+                                 @Value("${eva.mongo.annotations.cache-size:0}") long cacheSize) {
+        Assert.notNull(annotationRepository, "An annotation repository is required");
+        Assert.isTrue(chunkSize > 0, "The chunk size must be positive");
+        Assert.isTrue(parallelism > 0, "The parallelism must be positive");
+        Assert.isTrue(cacheSize >= 0, "The cache size can't be negative");
+
+        this.annotationRepository = annotationRepository;
+        this.chunkSize = chunkSize;
+        this.executor = parallelism > 1 ?
+                Executors.newFixedThreadPool(parallelism, new ThreadFactoryBuilder()
+                        .setNameFormat("annotation-loader-%d").setDaemon(true).build())
+                : null;
+        this.cache = cacheSize > 0 ? CacheBuilder.newBuilder().maximumSize(cacheSize).recordStats().build() : null;
+    }
+
+    /**
+     * Equivalent to {@link AnnotationRepository#findAndIndexAnnotationsOfVariants(List, IAnnotationMetadata)}, but the
+     * annotations are indexed by the id of the variant that requested them instead of rebuilding the variant id from
+     * each annotation id.
+     *
+     * @return Map from variant id to its annotation, for the variants that have one
+     */
+    public Map<String, AnnotationMongo> findAndIndexAnnotationsOfVariants(List<VariantMongo> variants,
+                                                                          IAnnotationMetadata annotationMetadata) {
+        Map<String, String> annotationIdToVariantId = new HashMap<>();
+        for (VariantMongo variant : variants) {
+            for (String annotationId : variant.getAnnotationIds(annotationMetadata)) {
+                annotationIdToVariantId.put(annotationId, variant.getId());
+            }
+        }
+
+        Map<String, AnnotationMongo> indexedAnnotations = new HashMap<>();
+        findByIds(annotationIdToVariantId.keySet()).forEach(
+                (annotationId, annotation) -> indexedAnnotations.put(annotationIdToVariantId.get(annotationId),
+                                                                     annotation));
+        return indexedAnnotations;
+    }
+
+    /**
+     * @return Map from annotation id to annotation, for the ids that were found
+     */
+    public Map<String, AnnotationMongo> findByIds(Collection<String> ids) {
+        Map<String, AnnotationMongo> annotations = new HashMap<>();
+        Set<String> missingIds = new LinkedHashSet<>();
+        for (String id : ids) {
+            AnnotationMongo annotation = cache != null ? cache.getIfPresent(id) : null;
+            if (annotation != null) {
+                annotations.put(id, annotation);
+            } else {
+                missingIds.add(id);
+            }
+        }
+
+        for (AnnotationMongo annotation : queryInChunks(missingIds)) {
+            annotations.put(annotation.getId(), annotation);
+            if (cache != null) {
+                cache.put(annotation.getId(), annotation);
+            }
+        }
+        return annotations;
+    }
+
+    private List<AnnotationMongo> queryInChunks(Set<String> ids) {
+        List<AnnotationMongo> annotations = new ArrayList<>();
+        if (ids.isEmpty()) {
+            return annotations;
+        }
+
+        Iterable<List<String>> chunks = Iterables.partition(ids, chunkSize);
+        if (executor == null || ids.size() <= chunkSize) {
+            chunks.forEach(chunk -> annotations.addAll(annotationRepository.findByIdIn(chunk)));
+            return annotations;
+        }
+
+        List<Future<Set<AnnotationMongo>>> futures = new ArrayList<>();
+        chunks.forEach(chunk -> futures.add(executor.submit(() -> annotationRepository.findByIdIn(chunk))));
+        try {
+            for (Future<Set<AnnotationMongo>> future : futures) {
+                annotations.addAll(future.get());
+            }
+        } catch (InterruptedException e) {
+            futures.forEach(future -> future.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while loading annotations", e);
+        } catch (ExecutionException e) {
+            futures.forEach(future -> future.cancel(true));
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("Error loading annotations", e.getCause());
+        }
+        return annotations;
+    }
+
+    public void invalidateAll() {
+        if (cache != null) {
+            cache.invalidateAll();
+        }
+    }
+
+    /**
+     * @return Hit and miss counts of the annotation cache, or empty stats if the cache is disabled
+     */
+    public CacheStats getCacheStats() {
+        return cache != null ? cache.stats() : new CacheStats(0, 0, 0, 0, 0, 0);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,299 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.commons.mongodb.services;
+
+import com.google.common.cache.CacheStats;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+
+import uk.ac.ebi.eva.commons.core.models.IAnnotationMetadata;
+import uk.ac.ebi.eva.commons.core.models.Region;
+import uk.ac.ebi.eva.commons.core.models.ws.VariantWithSamplesAndAnnotation;
+import uk.ac.ebi.eva.commons.mongodb.cache.VariantQueryCache;
+import uk.ac.ebi.eva.commons.mongodb.cache.VariantQueryKey;
+import uk.ac.ebi.eva.commons.mongodb.cache.VariantQueryKey.QueryType;
+import uk.ac.ebi.eva.commons.mongodb.entities.projections.VariantCount;
+import uk.ac.ebi.eva.commons.mongodb.entities.projections.VariantFacet;
+import uk.ac.ebi.eva.commons.mongodb.entities.projections.VariantFacetCounts;
+import uk.ac.ebi.eva.commons.mongodb.entities.projections.VariantProjection;
+import uk.ac.ebi.eva.commons.mongodb.filter.VariantRepositoryFilter;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * Caching layer in front of the find, count and facet count methods of {@link VariantWithSamplesAndAnnotationsService}.
+ * <p>
+ * Results are shared between callers, so the returned lists are unmodifiable, and callers must not modify the
+ * variants or facet counts they contain either, as the next caller would get the modified objects. Entries are dropped
+ * when the writers of this JVM load new data (see {@link uk.ac.ebi.eva.commons.mongodb.cache.WriteGeneration}); if the
+ * data is loaded by another process, set "eva.mongo.cache.queries.expire-after-write-seconds" to bound how stale a
+ * result can be.
+ * <p>
+ * Queries with a {@link GeneQueryMode} also depend on the features collection, which is not written by this library,
+ * so call {@link #invalidateAll()} after loading new features.
+ */
+@Service
+public class CachedVariantWithSamplesAndAnnotationsService {
+
+    @Autowired
+    private VariantWithSamplesAndAnnotationsService service;
+
+    private final VariantQueryCache cache;
+
+    @Autowired
+    public CachedVariantWithSamplesAndAnnotationsService(
+            @Value("${eva.mongo.cache.queries.max-size:10000}") long maximumSize,
+            @Value("${eva.mongo.cache.queries.expire-after-write-seconds:0}") long expireAfterWriteSeconds) {
+        this.cache = new VariantQueryCache(maximumSize, expireAfterWriteSeconds);
+    }
+
+    public List<VariantWithSamplesAndAnnotation> findByRegionsAndComplexFilters(List<Region> regions,
+                                                                                List<VariantRepositoryFilter> variantRepositoryFilters,
+                                                                                IAnnotationMetadata annotationMetadata,
+                                                                                List<String> exclude, Pageable pageable)
+            throws AnnotationMetadataNotFoundException {
+        return findByRegionsAndComplexFilters(regions, variantRepositoryFilters, annotationMetadata, exclude, pageable,
+                                              VariantProjection.WITH_SAMPLES);
+    }
+
+    public List<VariantWithSamplesAndAnnotation> findByRegionsAndComplexFilters(List<Region> regions,
+                                                                                List<VariantRepositoryFilter> variantRepositoryFilters,
+                                                                                IAnnotationMetadata annotationMetadata,
+                                                                                List<String> exclude, Pageable pageable,
+                                                                                VariantProjection projection)
+            throws AnnotationMetadataNotFoundException {
+        VariantQueryKey key = new VariantQueryKey(QueryType.FIND_BY_REGIONS, regions, variantRepositoryFilters,
+                                                  exclude, pageable, annotationMetadata, projection);
+        List<VariantWithSamplesAndAnnotation> variants = cache.get(key);
+        if (variants == null) {
+            variants = Collections.unmodifiableList(service.findByRegionsAndComplexFilters(
+                    regions, variantRepositoryFilters, annotationMetadata, exclude, pageable, projection));
+            cache.put(key, variants);
+        }
+        return variants;
+    }
+
+    public Long countByRegionsAndComplexFilters(List<Region> regions,
+                                                List<VariantRepositoryFilter> variantRepositoryFilters) {
+        VariantQueryKey key = new VariantQueryKey(QueryType.COUNT_BY_REGIONS, regions, variantRepositoryFilters,
+                                                  null, null, null);
+        Long count = cache.get(key);
+        if (count == null) {
+            count = service.countByRegionsAndComplexFilters(regions, variantRepositoryFilters);
+            cache.put(key, count);
+        }
+        return count;
+    }
+
+    public VariantCount countByRegionsAndComplexFilters(List<Region> regions,
+                                                        List<VariantRepositoryFilter> variantRepositoryFilters,
+                                                        Long countLimit) {
+        return getOrCompute(new VariantQueryKey(QueryType.LIMITED_COUNT_BY_REGIONS, regions, variantRepositoryFilters,
+                                                null, null, null, null, Collections.singletonList(countLimit)),
+                            () -> service.countByRegionsAndComplexFilters(regions, variantRepositoryFilters,
+                                                                          countLimit));
+    }
+
+    public VariantFacetCounts countFacetsByRegionsAndComplexFilters(List<Region> regions,
+                                                                    List<VariantRepositoryFilter> variantRepositoryFilters,
+                                                                    Set<VariantFacet> facets, Long countLimit) {
+        return getOrCompute(new VariantQueryKey(QueryType.COUNT_FACETS_BY_REGIONS, regions, variantRepositoryFilters,
+                                                null, null, null, null, facetParameters(facets, countLimit)),
+                            () -> service.countFacetsByRegionsAndComplexFilters(regions, variantRepositoryFilters,
+                                                                                facets, countLimit));
+    }
+
+    public List<VariantWithSamplesAndAnnotation> findByGenesAndComplexFilters(List<String> geneIds,
+                                                                              List<VariantRepositoryFilter> variantRepositoryFilters,
+                                                                              IAnnotationMetadata annotationMetadata,
+                                                                              List<String> exclude, Pageable pageable)
+            throws AnnotationMetadataNotFoundException {
+        return findByGenesAndComplexFilters(geneIds, variantRepositoryFilters, annotationMetadata, exclude, pageable,
+                                            VariantProjection.WITH_SAMPLES);
+    }
+
+    public List<VariantWithSamplesAndAnnotation> findByGenesAndComplexFilters(List<String> geneIds,
+                                                                              List<VariantRepositoryFilter> variantRepositoryFilters,
+                                                                              IAnnotationMetadata annotationMetadata,
+                                                                              List<String> exclude, Pageable pageable,
+                                                                              VariantProjection projection)
+            throws AnnotationMetadataNotFoundException {
+        VariantQueryKey key = new VariantQueryKey(QueryType.FIND_BY_GENES, geneIds, variantRepositoryFilters,
+                                                  exclude, pageable, annotationMetadata, projection);
+        List<VariantWithSamplesAndAnnotation> variants = cache.get(key);
+        if (variants == null) {
+            variants = Collections.unmodifiableList(service.findByGenesAndComplexFilters(
+                    geneIds, variantRepositoryFilters, annotationMetadata, exclude, pageable, projection));
+            cache.put(key, variants);
+        }
+        return variants;
+    }
+
+    public List<VariantWithSamplesAndAnnotation> findByGenesAndComplexFilters(List<String> geneIds,
+                                                                              List<VariantRepositoryFilter> variantRepositoryFilters,
+                                                                              IAnnotationMetadata annotationMetadata,
+                                                                              List<String> exclude, Pageable pageable,
+                                                                              VariantProjection projection,
+                                                                              GeneQueryMode mode)
+            throws AnnotationMetadataNotFoundException {
+        VariantQueryKey key = new VariantQueryKey(QueryType.FIND_BY_GENES, geneIds, variantRepositoryFilters,
+                                                  exclude, pageable, annotationMetadata, projection,
+                                                  Collections.singletonList(mode));
+        List<VariantWithSamplesAndAnnotation> variants = cache.get(key);
+        if (variants == null) {
+            variants = Collections.unmodifiableList(service.findByGenesAndComplexFilters(
+                    geneIds, variantRepositoryFilters, annotationMetadata, exclude, pageable, projection, mode));
+            cache.put(key, variants);
+        }
+        return variants;
+    }
+
+    public Long countByGenesAndComplexFilters(List<String> geneIds,
+                                              List<VariantRepositoryFilter> variantRepositoryFilters) {
+        VariantQueryKey key = new VariantQueryKey(QueryType.COUNT_BY_GENES, geneIds, variantRepositoryFilters,
+                                                  null, null, null);
+        Long count = cache.get(key);
+        if (count == null) {
+            count = service.countByGenesAndComplexFilters(geneIds, variantRepositoryFilters);
+            cache.put(key, count);
+        }
+        return count;
+    }
+
+    public Long countByGenesAndComplexFilters(List<String> geneIds,
+                                              List<VariantRepositoryFilter> variantRepositoryFilters,
+                                              GeneQueryMode mode) {
+        return getOrCompute(new VariantQueryKey(QueryType.COUNT_BY_GENES, geneIds, variantRepositoryFilters, null,
+                                                null, null, null, Collections.singletonList(mode)),
+                            () -> service.countByGenesAndComplexFilters(geneIds, variantRepositoryFilters, mode));
+    }
+
+    public VariantCount countByGenesAndComplexFilters(List<String> geneIds,
+                                                      List<VariantRepositoryFilter> variantRepositoryFilters,
+                                                      Long countLimit) {
+        return getOrCompute(new VariantQueryKey(QueryType.LIMITED_COUNT_BY_GENES, geneIds, variantRepositoryFilters,
+                                                null, null, null, null, Collections.singletonList(countLimit)),
+                            () -> service.countByGenesAndComplexFilters(geneIds, variantRepositoryFilters,
+                                                                        countLimit));
+    }
+
+    public VariantCount countByGenesAndComplexFilters(List<String> geneIds,
+                                                      List<VariantRepositoryFilter> variantRepositoryFilters,
+                                                      GeneQueryMode mode, Long countLimit) {
+        return getOrCompute(new VariantQueryKey(QueryType.LIMITED_COUNT_BY_GENES, geneIds, variantRepositoryFilters,
+                                                null, null, null, null, Arrays.asList(mode, countLimit)),
+                            () -> service.countByGenesAndComplexFilters(geneIds, variantRepositoryFilters, mode,
+                                                                        countLimit));
+    }
+
+    public VariantFacetCounts countFacetsByGenesAndComplexFilters(List<String> geneIds,
+                                                                  List<VariantRepositoryFilter> variantRepositoryFilters,
+                                                                  Set<VariantFacet> facets, Long countLimit) {
+        return getOrCompute(new VariantQueryKey(QueryType.COUNT_FACETS_BY_GENES, geneIds, variantRepositoryFilters,
+                                                null, null, null, null, facetParameters(facets, countLimit)),
+                            () -> service.countFacetsByGenesAndComplexFilters(geneIds, variantRepositoryFilters,
+                                                                              facets, countLimit));
+    }
+
+    public List<VariantWithSamplesAndAnnotation> findByIdsAndComplexFilters(List<String> ids,
+                                                                            List<VariantRepositoryFilter> variantRepositoryFilters,
+                                                                            IAnnotationMetadata annotationMetadata,
+                                                                            List<String> exclude, Pageable pageable)
+            throws AnnotationMetadataNotFoundException {
+        return findByIdsAndComplexFilters(ids, variantRepositoryFilters, annotationMetadata, exclude, pageable,
+                                          VariantProjection.WITH_SAMPLES);
+    }
+
+    public List<VariantWithSamplesAndAnnotation> findByIdsAndComplexFilters(List<String> ids,
+                                                                            List<VariantRepositoryFilter> variantRepositoryFilters,
+                                                                            IAnnotationMetadata annotationMetadata,
+                                                                            List<String> exclude, Pageable pageable,
+                                                                            VariantProjection projection)
+            throws AnnotationMetadataNotFoundException {
+        VariantQueryKey key = new VariantQueryKey(QueryType.FIND_BY_IDS, ids, variantRepositoryFilters,
+                                                  exclude, pageable, annotationMetadata, projection);
+        List<VariantWithSamplesAndAnnotation> variants = cache.get(key);
+        if (variants == null) {
+            variants = Collections.unmodifiableList(service.findByIdsAndComplexFilters(
+                    ids, variantRepositoryFilters, annotationMetadata, exclude, pageable, projection));
+            cache.put(key, variants);
+        }
+        return variants;
+    }
+
+    public Long countByIdsAndComplexFilters(List<String> ids,
+                                            List<VariantRepositoryFilter> variantRepositoryFilters) {
+        VariantQueryKey key = new VariantQueryKey(QueryType.COUNT_BY_IDS, ids, variantRepositoryFilters,
+                                                  null, null, null);
+        Long count = cache.get(key);
+        if (count == null) {
+            count = service.countByIdsAndComplexFilters(ids, variantRepositoryFilters);
+            cache.put(key, count);
+        }
+        return count;
+    }
+
+    public VariantCount countByIdsAndComplexFilters(List<String> ids,
+                                                    List<VariantRepositoryFilter> variantRepositoryFilters,
+                                                    Long countLimit) {
+        return getOrCompute(new VariantQueryKey(QueryType.LIMITED_COUNT_BY_IDS, ids, variantRepositoryFilters,
+                                                null, null, null, null, Collections.singletonList(countLimit)),
+                            () -> service.countByIdsAndComplexFilters(ids, variantRepositoryFilters, countLimit));
+    }
+
+    public VariantFacetCounts countFacetsByIdsAndComplexFilters(List<String> ids,
+                                                                List<VariantRepositoryFilter> variantRepositoryFilters,
+                                                                Set<VariantFacet> facets, Long countLimit) {
+        return getOrCompute(new VariantQueryKey(QueryType.COUNT_FACETS_BY_IDS, ids, variantRepositoryFilters,
+                                                null, null, null, null, facetParameters(facets, countLimit)),
+                            () -> service.countFacetsByIdsAndComplexFilters(ids, variantRepositoryFilters, facets,
+                                                                            countLimit));
+    }
+
+    /**
+     * The facets are copied into a set, because their order doesn't change the counts
+     */
+    private static List<?> facetParameters(Set<VariantFacet> facets, Long countLimit) {
+        return Arrays.asList(facets == null ? null : new HashSet<>(facets), countLimit);
+    }
+
+    private <T> T getOrCompute(VariantQueryKey key, Supplier<T> query) {
+        T result = cache.get(key);
+        if (result == null) {
+            result = query.get();
+            cache.put(key, result);
+        }
+        return result;
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * @return Hit and miss counts of the cache; {@link CacheStats#hitRate()} gives the proportion of served queries
+     */
+    public CacheStats getCacheStats() {
+        return cache.getStats();
+    }
+}
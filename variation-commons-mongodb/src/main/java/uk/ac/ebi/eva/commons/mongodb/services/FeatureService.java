@@ -15,29 +15,87 @@
  */
 package uk.ac.ebi.eva.commons.mongodb.services;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import uk.ac.ebi.eva.commons.core.models.FeatureCoordinates;
-import uk.ac.ebi.eva.commons.mongodb.entities.FeatureCoordinatesMongo;
+import uk.ac.ebi.eva.commons.mongodb.cache.FeatureIndex;
 import uk.ac.ebi.eva.commons.mongodb.repositories.FeatureRepository;
 
+import javax.annotation.PostConstruct;
 import java.util.List;
-import java.util.stream.Collectors;
 
 /**
  * Mongo service to access {@link FeatureCoordinates}
+ * <p>
+ * The features are looked up in an in-memory {@link FeatureIndex}, loaded from the features collection on the first
+ * lookup, or at startup if "eva.mongo.features.preload-index" is set. Features loaded afterwards are only seen after
+ * {@link #refreshIndex()}.
  */
 @Service
 public class FeatureService {
 
+    private static final Logger logger = LoggerFactory.getLogger(FeatureService.class);
+
+    private final FeatureRepository repository;
+
+    private final boolean preloadIndex;
+
+    private volatile FeatureIndex index;
+
     @Autowired
-    private FeatureRepository repository;
+    public FeatureService(FeatureRepository repository,
+                          @Value("${eva.mongo.features.preload-index:false}") boolean preloadIndex) {
+        this.repository = repository;
+        this.preloadIndex = preloadIndex;
+    }
+
+    @PostConstruct
+    public void preloadIndex() {
+        if (preloadIndex) {
+            refreshIndex();
+        }
+    }
+
+    /**
+     * Reloads the index from the features collection. Lookups keep using the previous index until the new one is
+     * complete.
+     */
+    public void refreshIndex() {
+        long start = System.currentTimeMillis();
+        FeatureIndex refreshedIndex = new FeatureIndex(repository.findAll());
+        index = refreshedIndex;
+        logger.info("Loaded {} features in {} ms", refreshedIndex.size(), System.currentTimeMillis() - start);
+    }
+
+    private FeatureIndex getIndex() {
+        FeatureIndex currentIndex = index;
+        if (currentIndex == null) {
+            synchronized (this) {
+                if (index == null) {
+                    refreshIndex();
+                }
+                currentIndex = index;
+            }
+        }
+        return currentIndex;
+    }
 
     public List<FeatureCoordinates> findByIdOrName(String id, String name) {
-        return convert(repository.findByIdOrName(id, name));
+        return getIndex().findByIdOrName(id, name);
+    }
+
+    public List<FeatureCoordinates> findByIdOrNameIgnoreCase(String idOrName) {
+        return getIndex().findByIdOrNameIgnoreCase(idOrName);
     }
 
-    private List<FeatureCoordinates> convert(List<FeatureCoordinatesMongo> features) {
-        return features.stream().map(FeatureCoordinates::new).collect(Collectors.toList());
+    /**
+     * @param limit Maximum number of features returned
+     * @return Features whose id or name starts with the prefix, ignoring case
+     */
+    public List<FeatureCoordinates> findByIdOrNamePrefix(String prefix, int limit) {
+        return getIndex().findByIdOrNamePrefix(prefix, limit);
     }
 }
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.commons.mongodb.services;
+
+/**
+ * How a query by genes is run against the variants collection.
+ */
+public enum GeneQueryMode {
+
+    /**
+     * Variants annotated with any of the genes, matched on the annotation xrefs.
+     */
+    XREFS,
+
+    /**
+     * Variants within the coordinates of the genes, extended by 5kb on each side, matched on the chromosome and
+     * position index. Variants of overlapping genes are included. Genes that are not in the features collection are
+     * ignored, so a query with only unknown genes finds no variants.
+     */
+    REGIONS,
+
+    /**
+     * Variants annotated with any of the genes, only looked for within the coordinates of the genes extended by 5kb
+     * on each side, which avoids reading every annotated variant. Variants annotated with a gene further away, e.g.
+     * as a regulatory region, are missed, so the result can be a subset of the one of {@link #XREFS}. If any gene is
+     * not in the features collection, the query is run as {@link #XREFS}.
+     */
+    REGIONS_AND_XREFS
+}
@@ -0,0 +1,335 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.commons.mongodb.services;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.mongodb.BasicDBObject;
+import com.mongodb.BulkWriteOperation;
+import com.mongodb.BulkWriteResult;
+import com.mongodb.DBCollection;
+import com.mongodb.DBCursor;
+import com.mongodb.DBObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.util.Assert;
+
+import uk.ac.ebi.eva.commons.mongodb.cache.WriteGeneration;
+import uk.ac.ebi.eva.commons.mongodb.entities.ChromosomeCatalogMongo;
+import uk.ac.ebi.eva.commons.mongodb.entities.LoadProgressMongo;
+import uk.ac.ebi.eva.commons.mongodb.entities.VariantMongo;
+import uk.ac.ebi.eva.commons.mongodb.entities.subdocuments.VariantSourceEntryMongo;
+import uk.ac.ebi.eva.commons.mongodb.entities.subdocuments.VariantStatisticsMongo;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Removes the contribution of a file from the variants collection: its entry in "files" and its statistics in "st",
+ * and then the variants that are left without files. The load checkpoint of the file is removed as well.
+ * <p>
+ * Each chromosome is unloaded separately, so that several of them can be processed at the same time. The variants of
+ * the file are found through the index on the study and file ids, and updated in batches of "$in" queries on the
+ * _id. Unloading can be safely repeated after an interruption.
+ * <p>
+ * Statistics written incrementally for the whole study (see
+ * {@link uk.ac.ebi.eva.commons.mongodb.writers.VariantMongoWriter#setIncrementalStats}) can't be split by file, so
+ * they are only removed from the variants where they count no other file than the unloaded one, and the file can then
+ * be loaded again, e.g. corrected. If any variant of the file has incremental statistics that also count other files
+ * (or that don't record which files they count), the unload is refused before changing anything, since those counters
+ * would keep the contribution of the file and skip it when loaded again. The chromosome catalog is marked as incomplete, so the chromosome lookups read the variants until
+ * it is rebuilt with {@link uk.ac.ebi.eva.commons.mongodb.repositories.VariantRepository#rebuildChromosomeCatalog}.
+ */
+@Service
+public class VariantFileUnloader {
+
+    private static final Logger logger = LoggerFactory.getLogger(VariantFileUnloader.class);
+
+    private final MongoTemplate mongoTemplate;
+
+    private final int batchSize;
+
+    private final ExecutorService executor;
+
+    /**
+     * @param batchSize Maximum number of variants updated by each "$in" query
+     * @param parallelism Number of chromosomes unloaded at the same time; 1 unloads them in the calling thread
+     */
+    @Autowired
+    public VariantFileUnloader(MongoTemplate mongoTemplate,
+                               @Value("${eva.mongo.unload.batch-size:1000}") int batchSize,
+                               @Value("${eva.mongo.unload.parallelism:4}") int parallelism) {
+        Assert.notNull(mongoTemplate, "A Mongo template is required");
+        Assert.isTrue(batchSize > 0, "The batch size must be positive");
+        Assert.isTrue(parallelism > 0, "The parallelism must be positive");
+
+        this.mongoTemplate = mongoTemplate;
+        this.batchSize = batchSize;
+        this.executor = parallelism > 1 ?
+                Executors.newFixedThreadPool(parallelism, new ThreadFactoryBuilder()
+                        .setNameFormat("variant-unloader-%d").setDaemon(true).build())
+                : null;
+    }
+
+    public UnloadProgress unload(String studyId, String fileId) {
+        return unload(studyId, fileId, progress -> {
+        });
+    }
+
+    /**
+     * @param progressListener Called after every batch, from the thread that unloaded it, but never concurrently
+     * @return Totals of the whole unload
+     */
+    public UnloadProgress unload(String studyId, String fileId, Consumer<UnloadProgress> progressListener) {
+        Assert.hasText(studyId, "A study id is required");
+        Assert.hasText(fileId, "A file id is required");
+        Assert.notNull(progressListener, "A progress listener is required");
+
+        DBCollection variants = mongoTemplate.getCollection(mongoTemplate.getCollectionName(VariantMongo.class));
+        checkIncrementalStatisticsCanBeRemoved(variants, studyId, fileId);
+        // before any variant is updated, so the catalog is never read with bounds wider than the variants
+        mongoTemplate.getCollection(ChromosomeCatalogMongo.getCollectionName(variants.getName())).remove(
+                new BasicDBObject("_id", ChromosomeCatalogMongo.COMPLETE_MARKER_ID));
+        WriteGeneration.increment();
+        List<?> chromosomes = variants.distinct(VariantMongo.CHROMOSOME_FIELD, buildFileQuery(studyId, fileId));
+
+        ProgressTracker tracker = new ProgressTracker(chromosomes.size(), progressListener);
+        List<Runnable> tasks = new ArrayList<>();
+        for (Object chromosome : chromosomes) {
+            tasks.add(() -> unloadChromosome(variants, (String) chromosome, studyId, fileId, tracker));
+        }
+        runAll(tasks);
+        mongoTemplate.getCollection(LoadProgressMongo.getCollectionName(variants.getName())).remove(
+                new BasicDBObject(LoadProgressMongo.STUDY_ID_FIELD, studyId)
+                        .append(LoadProgressMongo.FILE_ID_FIELD, fileId));
+
+        UnloadProgress total = tracker.current();
+        logger.info("Unloaded file {} of study {}: {} variants updated and {} deleted in {} ms ({} variants/s)",
+                    fileId, studyId, total.getVariantsUpdated(), total.getVariantsDeleted(),
+                    total.getElapsedMillis(), String.format("%.1f", total.getThroughput()));
+        return total;
+    }
+
+    private BasicDBObject buildFileQuery(String studyId, String fileId) {
+        return new BasicDBObject(VariantMongo.FILES_FIELD, new BasicDBObject(
+                "$elemMatch", new BasicDBObject(VariantSourceEntryMongo.STUDYID_FIELD, studyId)
+                        .append(VariantSourceEntryMongo.FILEID_FIELD, fileId)));
+    }
+
+    private void checkIncrementalStatisticsCanBeRemoved(DBCollection variants, String studyId, String fileId) {
+        BasicDBObject sharedStatistics = new BasicDBObject(VariantStatisticsMongo.STUDY_ID, studyId)
+                .append(VariantStatisticsMongo.FILE_ID, new BasicDBObject("$exists", false))
+                .append("$or", Arrays.asList(
+                        new BasicDBObject(VariantStatisticsMongo.COUNTED_FILES_FIELD,
+                                          new BasicDBObject("$exists", false)),
+                        new BasicDBObject(VariantStatisticsMongo.COUNTED_FILES_FIELD,
+                                          new BasicDBObject("$all", Collections.singletonList(fileId))
+                                                  .append("$not", new BasicDBObject("$size", 1)))));
+        DBObject variant = variants.findOne(buildFileQuery(studyId, fileId).append(
+                VariantMongo.STATISTICS_FIELD, new BasicDBObject("$elemMatch", sharedStatistics)));
+        if (variant != null) {
+            throw new IllegalStateException(
+                    "File " + fileId + " of study " + studyId + " can't be unloaded: the incremental statistics of "
+                            + "variant " + variant.get("_id") + " count other files too, and must be removed "
+                            + "from the whole study first");
+        }
+    }
+
+    private void unloadChromosome(DBCollection variants, String chromosome, String studyId, String fileId,
+                                  ProgressTracker tracker) {
+        DBObject query = buildFileQuery(studyId, fileId).append(VariantMongo.CHROMOSOME_FIELD, chromosome);
+        List<Object> batch = new ArrayList<>(batchSize);
+        try (DBCursor cursor = variants.find(query, new BasicDBObject("_id", 1)).batchSize(batchSize)) {
+            for (DBObject variant : cursor) {
+                batch.add(variant.get("_id"));
+                if (batch.size() == batchSize) {
+                    unloadBatch(variants, batch, studyId, fileId, tracker);
+                    batch.clear();
+                }
+            }
+        }
+        if (!batch.isEmpty()) {
+            unloadBatch(variants, batch, studyId, fileId, tracker);
+        }
+        tracker.chromosomeCompleted();
+    }
+
+    /**
+     * The removal of the file and of the variants left without files go in the same ordered bulk, so the variants
+     * are checked after being updated. The statistics removed are those of the file, and the incremental ones that
+     * only count the file.
+     */
+    private void unloadBatch(DBCollection variants, List<Object> ids, String studyId, String fileId,
+                             ProgressTracker tracker) {
+        DBObject pull = new BasicDBObject()
+                .append(VariantMongo.FILES_FIELD, new BasicDBObject(VariantSourceEntryMongo.STUDYID_FIELD, studyId)
+                        .append(VariantSourceEntryMongo.FILEID_FIELD, fileId))
+                .append(VariantMongo.STATISTICS_FIELD, new BasicDBObject(VariantStatisticsMongo.STUDY_ID, studyId)
+                        .append("$or", Arrays.asList(
+                                new BasicDBObject(VariantStatisticsMongo.FILE_ID, fileId),
+                                new BasicDBObject(VariantStatisticsMongo.COUNTED_FILES_FIELD,
+                                                  Collections.singletonList(fileId)))));
+
+        BulkWriteOperation bulk = variants.initializeOrderedBulkOperation();
+        bulk.find(new BasicDBObject("_id", new BasicDBObject("$in", ids))).update(new BasicDBObject("$pull", pull));
+        bulk.find(new BasicDBObject("_id", new BasicDBObject("$in", ids))
+                          .append(VariantMongo.FILES_FIELD, new BasicDBObject("$size", 0)))
+            .remove();
+        BulkWriteResult result = bulk.execute();
+        WriteGeneration.increment();
+
+        tracker.batchCompleted(result.getModifiedCount(), result.getRemovedCount());
+    }
+
+    private void runAll(List<Runnable> tasks) {
+        if (executor == null || tasks.size() <= 1) {
+            tasks.forEach(Runnable::run);
+            return;
+        }
+
+        List<Future<?>> futures = new ArrayList<>();
+        tasks.forEach(task -> futures.add(executor.submit(task)));
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            futures.forEach(future -> future.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while unloading variants", e);
+        } catch (ExecutionException e) {
+            futures.forEach(future -> future.cancel(true));
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("Error unloading variants", e.getCause());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    private static class ProgressTracker {
+
+        private final long startNanos = System.nanoTime();
+
+        private final int chromosomesTotal;
+
+        private final Consumer<UnloadProgress> progressListener;
+
+        private final AtomicLong chromosomesCompleted = new AtomicLong();
+
+        private final AtomicLong variantsUpdated = new AtomicLong();
+
+        private final AtomicLong variantsDeleted = new AtomicLong();
+
+        ProgressTracker(int chromosomesTotal, Consumer<UnloadProgress> progressListener) {
+            this.chromosomesTotal = chromosomesTotal;
+            this.progressListener = progressListener;
+        }
+
+        void batchCompleted(long updated, long deleted) {
+            variantsUpdated.addAndGet(updated);
+            variantsDeleted.addAndGet(deleted);
+            notifyListener();
+        }
+
+        void chromosomeCompleted() {
+            chromosomesCompleted.incrementAndGet();
+        }
+
+        private synchronized void notifyListener() {
+            progressListener.accept(current());
+        }
+
+        UnloadProgress current() {
+            return new UnloadProgress(chromosomesCompleted.get(), chromosomesTotal, variantsUpdated.get(),
+                                      variantsDeleted.get(), (System.nanoTime() - startNanos) / 1_000_000);
+        }
+    }
+
+    /**
+     * Snapshot of the progress of an unload. The chromosomes completed don't include the one of the batch being
+     * reported.
+     */
+    public static class UnloadProgress {
+
+        private final long chromosomesCompleted;
+
+        private final long chromosomesTotal;
+
+        private final long variantsUpdated;
+
+        private final long variantsDeleted;
+
+        private final long elapsedMillis;
+
+        UnloadProgress(long chromosomesCompleted, long chromosomesTotal, long variantsUpdated, long variantsDeleted,
+                       long elapsedMillis) {
+            this.chromosomesCompleted = chromosomesCompleted;
+            this.chromosomesTotal = chromosomesTotal;
+            this.variantsUpdated = variantsUpdated;
+            this.variantsDeleted = variantsDeleted;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        public long getChromosomesCompleted() {
+            return chromosomesCompleted;
+        }
+
+        public long getChromosomesTotal() {
+            return chromosomesTotal;
+        }
+
+        /**
+         * @return Number of variants the file was removed from, including the ones deleted afterwards
+         */
+        public long getVariantsUpdated() {
+            return variantsUpdated;
+        }
+
+        public long getVariantsDeleted() {
+            return variantsDeleted;
+        }
+
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+
+        /**
+         * @return Variants updated per second
+         */
+        public double getThroughput() {
+            return elapsedMillis > 0 ? variantsUpdated * 1000.0 / elapsedMillis : 0;
+        }
+    }
+}
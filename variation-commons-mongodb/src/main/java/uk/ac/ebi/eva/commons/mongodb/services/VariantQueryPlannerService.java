@@ -0,0 +1,127 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.commons.mongodb.services;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBCollection;
+import com.mongodb.DBObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.MongoDbFactory;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.stereotype.Service;
+
+import uk.ac.ebi.eva.commons.core.models.Region;
+import uk.ac.ebi.eva.commons.mongodb.entities.VariantMongo;
+import uk.ac.ebi.eva.commons.mongodb.filter.VariantRepositoryFilter;
+import uk.ac.ebi.eva.commons.mongodb.planner.LatencyHistogram;
+import uk.ac.ebi.eva.commons.mongodb.planner.QueryPlanReport;
+import uk.ac.ebi.eva.commons.mongodb.planner.QueryShape;
+import uk.ac.ebi.eva.commons.mongodb.repositories.VariantRepository;
+import uk.ac.ebi.eva.commons.mongodb.writers.VariantMongoWriter;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Explains variant queries to find the filter combinations that the indexes of the variants collection don't serve,
+ * and keeps a latency histogram for each query shape executed by {@link VariantWithSamplesAndAnnotationsService}.
+ */
+@Service
+public class VariantQueryPlannerService {
+
+    private static final Logger logger = LoggerFactory.getLogger(VariantQueryPlannerService.class);
+
+    @Autowired
+    private VariantRepository variantRepository;
+
+    private final MongoTemplate mongoTemplate;
+
+    private final ConcurrentMap<QueryShape, LatencyHistogram> latencyHistograms = new ConcurrentHashMap<>();
+
+    @Autowired
+    public VariantQueryPlannerService(MongoDbFactory mongoDbFactory, MappingMongoConverter mappingMongoConverter) {
+        mongoTemplate = new MongoTemplate(mongoDbFactory, mappingMongoConverter);
+    }
+
+    public QueryPlanReport explainByRegionsAndComplexFilters(List<Region> regions,
+                                                             List<VariantRepositoryFilter> variantRepositoryFilters,
+                                                             Pageable pageable) {
+        DBObject explain = variantRepository.explainByRegionsAndComplexFilters(regions, variantRepositoryFilters,
+                                                                               pageable);
+        return new QueryPlanReport(new QueryShape(QueryShape.Anchor.REGIONS, variantRepositoryFilters), explain,
+                                   getVariantsCollection().getIndexInfo());
+    }
+
+    public QueryPlanReport explainByGenesAndComplexFilters(List<String> geneIds,
+                                                           List<VariantRepositoryFilter> variantRepositoryFilters,
+                                                           Pageable pageable) {
+        DBObject explain = variantRepository.explainByGenesAndComplexFilters(geneIds, variantRepositoryFilters,
+                                                                             pageable);
+        return new QueryPlanReport(new QueryShape(QueryShape.Anchor.GENES, variantRepositoryFilters), explain,
+                                   getVariantsCollection().getIndexInfo());
+    }
+
+    public QueryPlanReport explainByIdsAndComplexFilters(List<String> ids,
+                                                         List<VariantRepositoryFilter> variantRepositoryFilters,
+                                                         Pageable pageable) {
+        DBObject explain = variantRepository.explainByIdsAndComplexFilters(ids, variantRepositoryFilters, pageable);
+        return new QueryPlanReport(new QueryShape(QueryShape.Anchor.IDS, variantRepositoryFilters), explain,
+                                   getVariantsCollection().getIndexInfo());
+    }
+
+    /**
+     * Creates in background the index suggested by the report, if any.
+     *
+     * @return Whether an index was requested
+     */
+    public boolean createSuggestedIndex(QueryPlanReport report) {
+        List<String> suggestedIndex = report.getSuggestedIndex();
+        if (suggestedIndex == null) {
+            return false;
+        }
+        BasicDBObject keys = new BasicDBObject();
+        suggestedIndex.forEach(field -> keys.append(field, 1));
+        logger.info("Creating index {} for query shape {}", keys, report.getShape());
+        getVariantsCollection().createIndex(keys, new BasicDBObject(VariantMongoWriter.BACKGROUND_INDEX, true));
+        return true;
+    }
+
+    public void recordLatency(QueryShape shape, long nanos) {
+        latencyHistograms.computeIfAbsent(shape, key -> new LatencyHistogram()).record(nanos);
+    }
+
+    /**
+     * @return Live view of the latency histograms of the find queries executed since startup, by query shape
+     */
+    public Map<QueryShape, LatencyHistogram> getLatencyHistograms() {
+        return Collections.unmodifiableMap(latencyHistograms);
+    }
+
+    public void clearLatencyHistograms() {
+        latencyHistograms.clear();
+    }
+
+    private DBCollection getVariantsCollection() {
+        return mongoTemplate.getCollection(mongoTemplate.getCollectionName(VariantMongo.class));
+    }
+}
@@ -15,7 +15,9 @@
  */
 package uk.ac.ebi.eva.commons.mongodb.services;
 
+import com.mongodb.BasicDBObject;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.aggregation.Aggregation;
 import org.springframework.data.mongodb.core.aggregation.AggregationResults;
@@ -23,11 +25,15 @@ import org.springframework.data.mongodb.core.aggregation.GroupOperation;
 import org.springframework.data.mongodb.core.aggregation.MatchOperation;
 import org.springframework.data.mongodb.core.aggregation.ProjectionOperation;
 import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.stereotype.Service;
+import uk.ac.ebi.eva.commons.mongodb.cache.CollectionStateCache;
+import uk.ac.ebi.eva.commons.mongodb.entities.StudySummaryMongo;
 import uk.ac.ebi.eva.commons.mongodb.entities.VariantSourceMongo;
 import uk.ac.ebi.eva.commons.mongodb.entities.projections.VariantStudySummary;
 
 import java.util.List;
+import java.util.stream.Collectors;
 
 import static org.springframework.data.mongodb.core.aggregation.Aggregation.group;
 import static org.springframework.data.mongodb.core.aggregation.Aggregation.match;
@@ -35,12 +41,26 @@ import static org.springframework.data.mongodb.core.aggregation.Aggregation.proj
 
 /**
  * Mongo persistence service that returns {@link VariantStudySummary} projections
+ * <p>
+ * The summaries are read from the collection maintained by
+ * {@link uk.ac.ebi.eva.commons.mongodb.writers.VariantSourceMongoWriter} (see {@link StudySummaryMongo}) once they
+ * have been rebuilt, and are aggregated from the files collection until then.
  */
 @Service
 public class VariantStudySummaryService {
 
+    private final MongoTemplate mongoTemplate;
+
+    private final CollectionStateCache<Boolean> studySummaryComplete;
+
     @Autowired
-    private MongoTemplate mongoTemplate;
+    public VariantStudySummaryService(
+            MongoTemplate mongoTemplate,
+            @Value("${eva.mongo.cache.collection-state.max-age-seconds:60}") long collectionStateMaxAgeSeconds) {
+        this.mongoTemplate = mongoTemplate;
+        this.studySummaryComplete = new CollectionStateCache<>(this::isStudySummaryMarkedComplete,
+                                                               collectionStateMaxAgeSeconds);
+    }
 
     /**
      * the equivalent intended query is:
@@ -54,6 +74,14 @@ public class VariantStudySummaryService {
      * @see #projectAndFlatten
      */
     public List<VariantStudySummary> findAll() {
+        if (isStudySummaryAvailable()) {
+            return mongoTemplate.find(new Query(Criteria.where(StudySummaryMongo.STUDY_NAME_FIELD).exists(true)),
+                                      StudySummaryMongo.class, getStudySummaryCollectionName())
+                                .stream()
+                                .map(this::toVariantStudySummary)
+                                .collect(Collectors.toList());
+        }
+
         Aggregation aggregation = Aggregation.newAggregation(
                 groupAndCount(),
                 projectAndFlatten()
@@ -103,6 +131,19 @@ public class VariantStudySummaryService {
      * @see #projectAndFlatten
      */
     public VariantStudySummary findByStudyNameOrStudyId(String studyNameOrId) {
+        if (isStudySummaryAvailable()) {
+            StudySummaryMongo summary = mongoTemplate.findOne(
+                    new Query(Criteria.where("_id").is(studyNameOrId).and(StudySummaryMongo.STUDY_NAME_FIELD)
+                                      .exists(true)),
+                    StudySummaryMongo.class, getStudySummaryCollectionName());
+            if (summary == null) {
+                summary = mongoTemplate.findOne(
+                        new Query(Criteria.where(StudySummaryMongo.STUDY_NAME_FIELD).is(studyNameOrId)),
+                        StudySummaryMongo.class, getStudySummaryCollectionName());
+            }
+            return summary != null ? toVariantStudySummary(summary) : null;
+        }
+
         Aggregation aggregation = Aggregation.newAggregation(
                 matchByNameOrId(studyNameOrId),
                 groupAndCount(),
@@ -131,4 +172,29 @@ public class VariantStudySummaryService {
                 Criteria.where(VariantStudySummary.STUDY_ID).is(studyNameOrId),
                 Criteria.where(VariantStudySummary.STUDY_NAME).is(studyNameOrId)));
     }
+
+    private String getStudySummaryCollectionName() {
+        return StudySummaryMongo.getCollectionName(mongoTemplate.getCollectionName(VariantSourceMongo.class));
+    }
+
+    /**
+     * The summaries maintained by the file writer are only read once they have been rebuilt from the whole files
+     * collection, see {@link uk.ac.ebi.eva.commons.mongodb.writers.VariantSourceMongoWriter#rebuildStudySummaries}
+     */
+    private boolean isStudySummaryAvailable() {
+        return studySummaryComplete.get();
+    }
+
+    private boolean isStudySummaryMarkedComplete() {
+        return mongoTemplate.getCollection(getStudySummaryCollectionName()).count(
+                new BasicDBObject("_id", StudySummaryMongo.COMPLETE_MARKER_ID)) > 0;
+    }
+
+    private VariantStudySummary toVariantStudySummary(StudySummaryMongo summary) {
+        VariantStudySummary variantStudySummary = new VariantStudySummary();
+        variantStudySummary.setStudyId(summary.getStudyId());
+        variantStudySummary.setStudyName(summary.getStudyName());
+        variantStudySummary.setFilesCount(summary.getFilesCount());
+        return variantStudySummary;
+    }
 }
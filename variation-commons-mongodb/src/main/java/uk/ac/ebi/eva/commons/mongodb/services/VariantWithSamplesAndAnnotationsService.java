@@ -19,10 +19,10 @@ import com.google.common.collect.HashBasedTable;
 import com.google.common.collect.Table;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Pageable;
-import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 
 import uk.ac.ebi.eva.commons.core.models.Annotation;
+import uk.ac.ebi.eva.commons.core.models.FeatureCoordinates;
 import uk.ac.ebi.eva.commons.core.models.IAnnotationMetadata;
 import uk.ac.ebi.eva.commons.core.models.Region;
 import uk.ac.ebi.eva.commons.core.models.VariantStatistics;
@@ -32,19 +32,27 @@ import uk.ac.ebi.eva.commons.core.models.ws.VariantWithSamplesAndAnnotation;
 import uk.ac.ebi.eva.commons.mongodb.entities.AnnotationMetadataMongo;
 import uk.ac.ebi.eva.commons.mongodb.entities.AnnotationMongo;
 import uk.ac.ebi.eva.commons.mongodb.entities.VariantMongo;
+import uk.ac.ebi.eva.commons.mongodb.entities.projections.VariantCount;
+import uk.ac.ebi.eva.commons.mongodb.entities.projections.VariantFacet;
+import uk.ac.ebi.eva.commons.mongodb.entities.projections.VariantFacetCounts;
+import uk.ac.ebi.eva.commons.mongodb.entities.projections.VariantProjection;
 import uk.ac.ebi.eva.commons.mongodb.entities.subdocuments.VariantSourceEntryMongo;
 import uk.ac.ebi.eva.commons.mongodb.entities.subdocuments.VariantStatisticsMongo;
 import uk.ac.ebi.eva.commons.mongodb.filter.VariantRepositoryFilter;
+import uk.ac.ebi.eva.commons.mongodb.filter.VariantRepositoryXrefFilter;
+import uk.ac.ebi.eva.commons.mongodb.planner.QueryShape;
 import uk.ac.ebi.eva.commons.mongodb.repositories.AnnotationMetadataRepository;
-import uk.ac.ebi.eva.commons.mongodb.repositories.AnnotationRepository;
 import uk.ac.ebi.eva.commons.mongodb.repositories.VariantRepository;
 import uk.ac.ebi.eva.commons.mongodb.repositories.VariantSourceRepository;
 
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 /**
@@ -53,11 +61,22 @@ import java.util.stream.Collectors;
 @Service
 public class VariantWithSamplesAndAnnotationsService {
 
+    /**
+     * Column of the statistics table for the statistics written per study, which have no file id
+     */
+    private static final String STUDY_STATISTICS_FILE_ID = "";
+
+    /**
+     * Distance around a gene within which VEP reports upstream and downstream consequences by default, and so the
+     * variants annotated with a gene can be found
+     */
+    private static final long GENE_REGION_FLANK = 5000;
+
     @Autowired
     private VariantRepository variantRepository;
 
     @Autowired
-    private AnnotationRepository annotationRepository;
+    private AnnotationBatchLoader annotationBatchLoader;
 
     @Autowired
     private VariantSourceRepository variantSourceRepository;
@@ -66,37 +85,155 @@ public class VariantWithSamplesAndAnnotationsService {
     @Autowired
     private AnnotationMetadataRepository annotationMetadataRepository;
 
+    @Autowired
+    private VariantQueryPlannerService queryPlannerService;
+
+    @Autowired
+    private FeatureService featureService;
+
 
     public List<VariantWithSamplesAndAnnotation> findByGenesAndComplexFilters(List<String> geneIds,
                                                                               List<VariantRepositoryFilter> variantRepositoryFilters,
                                                                               IAnnotationMetadata annotationMetadata,
                                                                               List<String> exclude, Pageable pageable)
             throws AnnotationMetadataNotFoundException {
-        return convert(variantRepository.findByGenesAndComplexFilters(geneIds, variantRepositoryFilters, exclude, pageable),
-                       annotationMetadata);
+        return findByGenesAndComplexFilters(geneIds, variantRepositoryFilters, annotationMetadata, exclude, pageable,
+                                            VariantProjection.WITH_SAMPLES);
     }
 
-    private List<VariantWithSamplesAndAnnotation> convert(List<VariantMongo> variantMongos,
-                                                          IAnnotationMetadata annotationMetadata)
+    /**
+     * Same as {@link #findByGenesAndComplexFilters(List, List, IAnnotationMetadata, List, Pageable)}, but only reading
+     * and converting the parts of the variants included in the projection.
+     */
+    public List<VariantWithSamplesAndAnnotation> findByGenesAndComplexFilters(List<String> geneIds,
+                                                                              List<VariantRepositoryFilter> variantRepositoryFilters,
+                                                                              IAnnotationMetadata annotationMetadata,
+                                                                              List<String> exclude, Pageable pageable,
+                                                                              VariantProjection projection)
             throws AnnotationMetadataNotFoundException {
-        Table<String, String, List<String>> studyFileIdsToSamples = variantSourceRepository.findAndIndexSamples();
+        QueryShape shape = new QueryShape(QueryShape.Anchor.GENES, variantRepositoryFilters);
+        List<VariantMongo> variants = recordLatency(shape, () -> variantRepository.findByGenesAndComplexFilters(
+                geneIds, variantRepositoryFilters, projection.mergeExcludedFields(exclude), pageable));
+        return convert(variants, annotationMetadata, projection);
+    }
 
-        if (annotationMetadata == null) {
-            List<AnnotationMetadataMongo> annotationMetadataList = annotationMetadataRepository.findByDefaultVersionTrue();
-            if (annotationMetadataList.size() > 0) {
-                annotationMetadata = annotationMetadataList.get(0);
+    /**
+     * Same as {@link #findByGenesAndComplexFilters(List, List, IAnnotationMetadata, List, Pageable,
+     * VariantProjection)}, but the genes can be resolved into their regions (see {@link GeneQueryMode}), which is
+     * faster for a panel of many genes.
+     */
+    public List<VariantWithSamplesAndAnnotation> findByGenesAndComplexFilters(List<String> geneIds,
+                                                                              List<VariantRepositoryFilter> variantRepositoryFilters,
+                                                                              IAnnotationMetadata annotationMetadata,
+                                                                              List<String> exclude, Pageable pageable,
+                                                                              VariantProjection projection,
+                                                                              GeneQueryMode mode)
+            throws AnnotationMetadataNotFoundException {
+        List<Region> regions = findGeneRegions(geneIds, mode);
+        if (regions == null) {
+            return findByGenesAndComplexFilters(geneIds, variantRepositoryFilters, annotationMetadata, exclude,
+                                                pageable, projection);
+        }
+        if (regions.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return findByRegionsAndComplexFilters(regions, getGeneRegionFilters(geneIds, variantRepositoryFilters, mode),
+                                              annotationMetadata, exclude, pageable, projection);
+    }
+
+    public Long countByGenesAndComplexFilters(List<String> geneIds,
+                                              List<VariantRepositoryFilter> variantRepositoryFilters,
+                                              GeneQueryMode mode) {
+        return countByGenesAndComplexFilters(geneIds, variantRepositoryFilters, mode, null).getCount();
+    }
+
+    /**
+     * @param countLimit Maximum number of variants to count, or null to count all of them
+     */
+    public VariantCount countByGenesAndComplexFilters(List<String> geneIds,
+                                                      List<VariantRepositoryFilter> variantRepositoryFilters,
+                                                      GeneQueryMode mode, Long countLimit) {
+        List<Region> regions = findGeneRegions(geneIds, mode);
+        if (regions == null) {
+            return countByGenesAndComplexFilters(geneIds, variantRepositoryFilters, countLimit);
+        }
+        if (regions.isEmpty()) {
+            return new VariantCount(0, false);
+        }
+        return countByRegionsAndComplexFilters(regions, getGeneRegionFilters(geneIds, variantRepositoryFilters, mode),
+                                               countLimit);
+    }
+
+    /**
+     * @return The merged regions of the genes, extended by {@link #GENE_REGION_FLANK}, or null if the query must be
+     * run on the xrefs
+     */
+    private List<Region> findGeneRegions(List<String> geneIds, GeneQueryMode mode) {
+        if (mode == GeneQueryMode.XREFS) {
+            return null;
+        }
+        List<Region> regions = new ArrayList<>();
+        for (String geneId : geneIds) {
+            List<FeatureCoordinates> features = featureService.findByIdOrName(geneId, geneId);
+            if (features.isEmpty() && mode == GeneQueryMode.REGIONS_AND_XREFS) {
+                return null;
+            }
+            for (FeatureCoordinates feature : features) {
+                regions.add(new Region(feature.getChromosome(), Math.max(1, feature.getStart() - GENE_REGION_FLANK),
+                                       feature.getEnd() + GENE_REGION_FLANK));
             }
-        } else if (annotationMetadataRepository.findByCacheVersionAndVepVersion(annotationMetadata.getCacheVersion(),
-                                                                                annotationMetadata.getVepVersion())
-                                               .size() == 0) {
-            throw new AnnotationMetadataNotFoundException(annotationMetadataRepository.findAllByOrderByCacheVersionDescVepVersionDesc(),
-                                                          annotationMetadata);
         }
+        return mergeOverlappingRegions(regions);
+    }
 
+    private static List<Region> mergeOverlappingRegions(List<Region> regions) {
+        regions.sort(Comparator.comparing(Region::getChromosome).thenComparing(Region::getStart));
+        List<Region> merged = new ArrayList<>();
+        for (Region region : regions) {
+            Region last = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+            if (last != null && last.getChromosome().equals(region.getChromosome())
+                    && region.getStart() <= last.getEnd()) {
+                last.setEnd(Math.max(last.getEnd(), region.getEnd()));
+            } else {
+                merged.add(new Region(region.getChromosome(), region.getStart(), region.getEnd()));
+            }
+        }
+        return merged;
+    }
+
+    private static List<VariantRepositoryFilter> getGeneRegionFilters(List<String> geneIds,
+                                                                      List<VariantRepositoryFilter> variantRepositoryFilters,
+                                                                      GeneQueryMode mode) {
+        List<VariantRepositoryFilter> filters = new ArrayList<>();
+        if (variantRepositoryFilters != null) {
+            filters.addAll(variantRepositoryFilters);
+        }
+        if (mode == GeneQueryMode.REGIONS_AND_XREFS) {
+            filters.add(new VariantRepositoryXrefFilter(geneIds));
+        }
+        return filters;
+    }
+
+    private List<VariantWithSamplesAndAnnotation> convert(List<VariantMongo> variantMongos,
+                                                          IAnnotationMetadata annotationMetadata)
+            throws AnnotationMetadataNotFoundException {
+        return convert(variantMongos, annotationMetadata, VariantProjection.WITH_SAMPLES);
+    }
+
+    /**
+     * The annotation metadata is validated even if the projection doesn't include the annotation, so that an unknown
+     * VEP version is reported in the same way for every projection.
+     */
+    private List<VariantWithSamplesAndAnnotation> convert(List<VariantMongo> variantMongos,
+                                                          IAnnotationMetadata annotationMetadata,
+                                                          VariantProjection projection)
+            throws AnnotationMetadataNotFoundException {
+        checkAnnotationMetadataExists(annotationMetadata);
+        Table<String, String, List<String>> studyFileIdsToSamples = projection.includesSamples() ?
+                variantSourceRepository.findAndIndexSamples() : HashBasedTable.create();
 
         Map<String, AnnotationMongo> indexedAnnotations =
-                (annotationMetadata != null) ?
-                        annotationRepository.findAndIndexAnnotationsOfVariants(variantMongos, annotationMetadata)
+                projection.includesAnnotation() ? findAndIndexAnnotations(variantMongos, annotationMetadata)
                         : new HashMap<>();
 
         List<VariantWithSamplesAndAnnotation> variantsList =
@@ -104,15 +241,43 @@ public class VariantWithSamplesAndAnnotationsService {
                                                    convert(
                                                            variant,
                                                            studyFileIdsToSamples,
-                                                           indexedAnnotations.getOrDefault(variant.getId(), null)))
+                                                           indexedAnnotations.getOrDefault(variant.getId(), null),
+                                                           projection))
                              .collect(Collectors.toList());
 
         return variantsList;
     }
 
+    private Map<String, AnnotationMongo> findAndIndexAnnotations(List<VariantMongo> variantMongos,
+                                                                 IAnnotationMetadata annotationMetadata)
+            throws AnnotationMetadataNotFoundException {
+        if (annotationMetadata == null) {
+            List<AnnotationMetadataMongo> annotationMetadataList = annotationMetadataRepository.findByDefaultVersionTrue();
+            if (annotationMetadataList.size() > 0) {
+                annotationMetadata = annotationMetadataList.get(0);
+            }
+        }
+
+        return (annotationMetadata != null) ?
+                annotationBatchLoader.findAndIndexAnnotationsOfVariants(variantMongos, annotationMetadata)
+                : new HashMap<>();
+    }
+
+    private void checkAnnotationMetadataExists(IAnnotationMetadata annotationMetadata)
+            throws AnnotationMetadataNotFoundException {
+        if (annotationMetadata != null
+                && annotationMetadataRepository.findByCacheVersionAndVepVersion(annotationMetadata.getCacheVersion(),
+                                                                                annotationMetadata.getVepVersion())
+                                               .size() == 0) {
+            throw new AnnotationMetadataNotFoundException(annotationMetadataRepository.findAllByOrderByCacheVersionDescVepVersionDesc(),
+                                                          annotationMetadata);
+        }
+    }
+
     private static VariantWithSamplesAndAnnotation convert(VariantMongo variantMongo,
                                                            Table<String, String, List<String>> sampleNames,
-                                                           AnnotationMongo annotation) {
+                                                           AnnotationMongo annotation,
+                                                           VariantProjection projection) {
         VariantWithSamplesAndAnnotation variant = new VariantWithSamplesAndAnnotation(
                 variantMongo.getChromosome(),
                 variantMongo.getStart(),
@@ -120,9 +285,14 @@ public class VariantWithSamplesAndAnnotationsService {
                 variantMongo.getReference(),
                 variantMongo.getAlternate());
         variant.setIds(variantMongo.getIds());
-        Table<String, String, Map<String, VariantStatistics>> variantStatisticsMongosTable
-                = variantStatsMongoToTable(variantMongo.getVariantStatsMongo(), variantMongo);
-        variant.addSourceEntries(convert(variantMongo.getSourceEntries(), sampleNames, variantStatisticsMongosTable));
+        if (projection.includesFiles()) {
+            Table<String, String, Map<String, VariantStatistics>> variantStatisticsMongosTable =
+                    projection.includesStats() ?
+                            variantStatsMongoToTable(variantMongo.getVariantStatsMongo(), variantMongo)
+                            : HashBasedTable.create();
+            variant.addSourceEntries(convert(variantMongo.getSourceEntries(), sampleNames,
+                                             variantStatisticsMongosTable));
+        }
         if (annotation != null) {
             variant.setAnnotation(new Annotation(annotation));
         }
@@ -134,11 +304,14 @@ public class VariantWithSamplesAndAnnotationsService {
         Table<String, String, Map<String, VariantStatistics>> variantStatisticsMongosTable = HashBasedTable.create();
         for (VariantStatisticsMongo variantStatisticsMongo : variantStatisticsMongos) {
             String studyId = variantStatisticsMongo.getStudyId();
-            String fileId = variantStatisticsMongo.getFileId();
+            String fileId = variantStatisticsMongo.getFileId() != null ? variantStatisticsMongo.getFileId()
+                    : STUDY_STATISTICS_FILE_ID;
             String cohortId = variantStatisticsMongo.getCohortId();
             VariantStatistics variantStatistics =
-                    new VariantStatistics(variantStatisticsMongo, variantMongo.getReference(),
-                                          variantMongo.getAlternate(), variantMongo.getType());
+                    new VariantStatistics(variantStatisticsMongo.withDerivedValues(variantMongo.getReference(),
+                                                                                   variantMongo.getAlternate()),
+                                          variantMongo.getReference(), variantMongo.getAlternate(),
+                                          variantMongo.getType());
             if (variantStatisticsMongosTable.contains(studyId, fileId)) {
                 variantStatisticsMongosTable.get(studyId, fileId).put(cohortId, variantStatistics);
             } else {
@@ -160,10 +333,30 @@ public class VariantWithSamplesAndAnnotationsService {
                                                                    Table<String, String, Map<String, VariantStatistics>> variantStatisticsMongosTable) {
         return sourceEntries.stream()
                 .map(entry -> convert(entry, sampleNames.get(entry.getStudyId(), entry.getFileId()),
-                                      variantStatisticsMongosTable.get(entry.getStudyId(), entry.getFileId())))
+                                      getCohortStatistics(variantStatisticsMongosTable, entry)))
                 .collect(Collectors.toList());
     }
 
+    /**
+     * The statistics of the file take precedence over the ones written incrementally for the whole study.
+     */
+    private static Map<String, VariantStatistics> getCohortStatistics(
+            Table<String, String, Map<String, VariantStatistics>> variantStatisticsMongosTable,
+            VariantSourceEntryMongo sourceEntryMongo) {
+        Map<String, VariantStatistics> fileStatistics = variantStatisticsMongosTable.get(
+                sourceEntryMongo.getStudyId(), sourceEntryMongo.getFileId());
+        Map<String, VariantStatistics> studyStatistics = variantStatisticsMongosTable.get(
+                sourceEntryMongo.getStudyId(), STUDY_STATISTICS_FILE_ID);
+        if (studyStatistics == null) {
+            return fileStatistics;
+        }
+        Map<String, VariantStatistics> cohortStatistics = new HashMap<>(studyStatistics);
+        if (fileStatistics != null) {
+            cohortStatistics.putAll(fileStatistics);
+        }
+        return cohortStatistics;
+    }
+
     private static VariantSourceEntryWithSampleNames convert(VariantSourceEntryMongo sourceEntryMongo,
                                                              List<String> samples,
                                                              Map<String, VariantStatistics> cohortIdToVariantStatsMongoMap) {
@@ -177,33 +370,128 @@ public class VariantWithSamplesAndAnnotationsService {
         return variantRepository.countByGenesAndComplexFilters(geneIds, variantRepositoryFilters);
     }
 
+    /**
+     * @param countLimit Maximum number of variants to count, or null to count all of them
+     */
+    public VariantCount countByGenesAndComplexFilters(List<String> geneIds,
+                                                      List<VariantRepositoryFilter> variantRepositoryFilters,
+                                                      Long countLimit) {
+        return variantRepository.countByGenesAndComplexFilters(geneIds, variantRepositoryFilters, countLimit);
+    }
+
+    public VariantFacetCounts countFacetsByGenesAndComplexFilters(List<String> geneIds,
+                                                                  List<VariantRepositoryFilter> variantRepositoryFilters,
+                                                                  Set<VariantFacet> facets, Long countLimit) {
+        return variantRepository.countFacetsByGenesAndComplexFilters(geneIds, variantRepositoryFilters, facets,
+                                                                     countLimit);
+    }
+
     public List<VariantWithSamplesAndAnnotation> findByRegionsAndComplexFilters(List<Region> regions,
                                                                                 List<VariantRepositoryFilter> variantRepositoryFilters,
                                                                                 IAnnotationMetadata annotationMetadata,
                                                                                 List<String> exclude,
                                                                                 Pageable pageable)
             throws AnnotationMetadataNotFoundException {
-        return convert(variantRepository.findByRegionsAndComplexFilters(regions, variantRepositoryFilters, exclude, pageable),
-                       annotationMetadata);
+        return findByRegionsAndComplexFilters(regions, variantRepositoryFilters, annotationMetadata, exclude, pageable,
+                                              VariantProjection.WITH_SAMPLES);
+    }
+
+    /**
+     * Same as {@link #findByRegionsAndComplexFilters(List, List, IAnnotationMetadata, List, Pageable)}, but only
+     * reading and converting the parts of the variants included in the projection.
+     */
+    public List<VariantWithSamplesAndAnnotation> findByRegionsAndComplexFilters(List<Region> regions,
+                                                                                List<VariantRepositoryFilter> variantRepositoryFilters,
+                                                                                IAnnotationMetadata annotationMetadata,
+                                                                                List<String> exclude,
+                                                                                Pageable pageable,
+                                                                                VariantProjection projection)
+            throws AnnotationMetadataNotFoundException {
+        QueryShape shape = new QueryShape(QueryShape.Anchor.REGIONS, variantRepositoryFilters);
+        List<VariantMongo> variants = recordLatency(shape, () -> variantRepository.findByRegionsAndComplexFilters(
+                regions, variantRepositoryFilters, projection.mergeExcludedFields(exclude), pageable));
+        return convert(variants, annotationMetadata, projection);
     }
 
     public Long countByRegionsAndComplexFilters(List<Region> regions, List<VariantRepositoryFilter> variantRepositoryFilters) {
         return variantRepository.countByRegionsAndComplexFilters(regions, variantRepositoryFilters);
     }
 
+    /**
+     * Counts the variants of the regions that match the filters, stopping after the count limit, so that a broad
+     * query can be shown as "more than N" variants without counting all of them.
+     *
+     * @param countLimit Maximum number of variants to count, or null to count all of them
+     */
+    public VariantCount countByRegionsAndComplexFilters(List<Region> regions,
+                                                        List<VariantRepositoryFilter> variantRepositoryFilters,
+                                                        Long countLimit) {
+        return variantRepository.countByRegionsAndComplexFilters(regions, variantRepositoryFilters, countLimit);
+    }
+
+    /**
+     * Counts the variants of the regions that match the filters, in total and by each facet, in a single query.
+     *
+     * @param countLimit Maximum number of variants to count, or null to count all of them
+     */
+    public VariantFacetCounts countFacetsByRegionsAndComplexFilters(List<Region> regions,
+                                                                    List<VariantRepositoryFilter> variantRepositoryFilters,
+                                                                    Set<VariantFacet> facets, Long countLimit) {
+        return variantRepository.countFacetsByRegionsAndComplexFilters(regions, variantRepositoryFilters, facets,
+                                                                       countLimit);
+    }
+
     public List<VariantWithSamplesAndAnnotation> findByIdsAndComplexFilters(List<String> ids,
                                                                             List<VariantRepositoryFilter> variantRepositoryFilters,
                                                                             IAnnotationMetadata annotationMetadata,
                                                                             List<String> exclude, Pageable pageable)
             throws AnnotationMetadataNotFoundException {
-        return convert(variantRepository.findByIdsAndComplexFilters(ids, variantRepositoryFilters, exclude, pageable),
-                       annotationMetadata);
+        return findByIdsAndComplexFilters(ids, variantRepositoryFilters, annotationMetadata, exclude, pageable,
+                                          VariantProjection.WITH_SAMPLES);
+    }
+
+    /**
+     * Same as {@link #findByIdsAndComplexFilters(List, List, IAnnotationMetadata, List, Pageable)}, but only reading
+     * and converting the parts of the variants included in the projection.
+     */
+    public List<VariantWithSamplesAndAnnotation> findByIdsAndComplexFilters(List<String> ids,
+                                                                            List<VariantRepositoryFilter> variantRepositoryFilters,
+                                                                            IAnnotationMetadata annotationMetadata,
+                                                                            List<String> exclude, Pageable pageable,
+                                                                            VariantProjection projection)
+            throws AnnotationMetadataNotFoundException {
+        QueryShape shape = new QueryShape(QueryShape.Anchor.IDS, variantRepositoryFilters);
+        List<VariantMongo> variants = recordLatency(shape, () -> variantRepository.findByIdsAndComplexFilters(
+                ids, variantRepositoryFilters, projection.mergeExcludedFields(exclude), pageable));
+        return convert(variants, annotationMetadata, projection);
+    }
+
+    private List<VariantMongo> recordLatency(QueryShape shape, Supplier<List<VariantMongo>> query) {
+        long start = System.nanoTime();
+        List<VariantMongo> variants = query.get();
+        queryPlannerService.recordLatency(shape, System.nanoTime() - start);
+        return variants;
     }
 
     public Long countByIdsAndComplexFilters(List<String> ids, List<VariantRepositoryFilter> variantRepositoryFilters) {
         return variantRepository.countByIdsAndComplexFilters(ids, variantRepositoryFilters);
     }
 
+    /**
+     * @param countLimit Maximum number of variants to count, or null to count all of them
+     */
+    public VariantCount countByIdsAndComplexFilters(List<String> ids,
+                                                    List<VariantRepositoryFilter> variantRepositoryFilters,
+                                                    Long countLimit) {
+        return variantRepository.countByIdsAndComplexFilters(ids, variantRepositoryFilters, countLimit);
+    }
+
+    public VariantFacetCounts countFacetsByIdsAndComplexFilters(List<String> ids,
+                                                                List<VariantRepositoryFilter> variantRepositoryFilters,
+                                                                Set<VariantFacet> facets, Long countLimit) {
+        return variantRepository.countFacetsByIdsAndComplexFilters(ids, variantRepositoryFilters, facets, countLimit);
+    }
+
     public long countTotalNumberOfVariants() {
         return variantRepository.count();
     }
@@ -274,10 +562,7 @@ public class VariantWithSamplesAndAnnotationsService {
      * @return Lowest start coordinate, or null if no variants are found for that chromosome and studies
      */
     public Long findChromosomeLowestReportedCoordinate(String chromosome, List<String> studyIds) {
-        Sort startAscendingSort = new Sort(Sort.Direction.ASC, VariantMongo.START_FIELD);
-        VariantMongo variant = variantRepository.findOneByChromosomeAndStudyInSorted(chromosome, studyIds,
-                                                                                     startAscendingSort);
-        return getVariantStart(variant);
+        return variantRepository.findChromosomeLowestReportedCoordinate(chromosome, studyIds);
     }
 
     /**
@@ -287,18 +572,7 @@ public class VariantWithSamplesAndAnnotationsService {
      * @return Highest start coordinate, or null if no variants are found for that chromosome and studies
      */
     public Long findChromosomeHighestReportedCoordinate(String chromosome, List<String> studyIds) {
-        Sort startDescendingSort = new Sort(Sort.Direction.DESC, VariantMongo.START_FIELD);
-        VariantMongo variant = variantRepository.findOneByChromosomeAndStudyInSorted(chromosome, studyIds,
-                                                                                     startDescendingSort);
-        return getVariantStart(variant);
-    }
-
-    private Long getVariantStart(VariantMongo variant) {
-        if (variant != null) {
-            return variant.getStart();
-        } else {
-            return null;
-        }
+        return variantRepository.findChromosomeHighestReportedCoordinate(chromosome, studyIds);
     }
 
     /**
@@ -0,0 +1,207 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.commons.mongodb.writers;
+
+import com.mongodb.DBObject;
+import org.bson.BasicBSONEncoder;
+import org.springframework.util.Assert;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+
+/**
+ * Splits the chunks of a writer into bulks of a bounded encoded size and a number of operations adapted to the
+ * observed execution times.
+ * <p>
+ * A bulk is closed when adding one more operation would exceed the target bytes, or when it reaches the operation
+ * limit. After every bulk, the operation limit moves halfway towards the number of operations that would have taken
+ * the target latency, so it shrinks for wide documents or a loaded server, and grows back otherwise. Operations are
+ * never held back for the next chunk, as the writer must have written a chunk when it returns; to coalesce small
+ * chunks, configure the step with the {@link #getOperationLimit() current limit} as chunk size.
+ * <p>
+ * A sizer can be shared by several writers of the same collection, and its getters report its current decisions.
+ */
+public class AdaptiveBulkSizer {
+
+    public static final long DEFAULT_TARGET_BYTES = 8L * 1024 * 1024;
+
+    public static final long DEFAULT_TARGET_LATENCY_MILLIS = 1000;
+
+    public static final int DEFAULT_MIN_OPERATIONS = 10;
+
+    public static final int DEFAULT_MAX_OPERATIONS = 10000;
+
+    private final long targetBytes;
+
+    private final long targetLatencyNanos;
+
+    private final int minOperations;
+
+    private final int maxOperations;
+
+    private int operationLimit;
+
+    private long bulksExecuted;
+
+    private long operationsExecuted;
+
+    private long bytesExecuted;
+
+    private long nanosExecuting;
+
+    private long lastLatencyNanos;
+
+    private long chunksSplit;
+
+    public AdaptiveBulkSizer() {
+        this(DEFAULT_TARGET_BYTES, DEFAULT_TARGET_LATENCY_MILLIS, DEFAULT_MIN_OPERATIONS, DEFAULT_MAX_OPERATIONS);
+    }
+
+    /**
+     * @param targetBytes Maximum encoded size of a bulk, unless it has a single operation
+     * @param targetLatencyMillis Execution time that the operation limit is adapted to
+     * @param minOperations Lowest operation limit
+     * @param maxOperations Highest operation limit, which is also the initial one
+     */
+    public AdaptiveBulkSizer(long targetBytes, long targetLatencyMillis, int minOperations, int maxOperations) {
+        Assert.isTrue(targetBytes > 0, "The target bytes must be positive");
+        Assert.isTrue(targetLatencyMillis > 0, "The target latency must be positive");
+        Assert.isTrue(minOperations > 0, "The minimum operations must be positive");
+        Assert.isTrue(maxOperations >= minOperations, "The maximum operations can't be lower than the minimum");
+
+        this.targetBytes = targetBytes;
+        this.targetLatencyNanos = targetLatencyMillis * 1_000_000;
+        this.minOperations = minOperations;
+        this.maxOperations = maxOperations;
+        this.operationLimit = maxOperations;
+    }
+
+    /**
+     * @return Size of the object encoded as BSON
+     */
+    public static long encodedSize(DBObject object) {
+        return new BasicBSONEncoder().encode(object).length;
+    }
+
+    /**
+     * Executes the operations in as many bulks as needed, one after the other, and adapts the operation limit to the
+     * time each one takes.
+     *
+     * @param operations Operations in the order they must be executed
+     * @param sizeOf Encoded size of an operation
+     * @param bulkExecutor Builds and executes the bulk of a sublist of operations
+     */
+    public <T> void execute(List<T> operations, ToLongFunction<T> sizeOf, Consumer<List<T>> bulkExecutor) {
+        long[] sizes = operations.stream().mapToLong(sizeOf).toArray();
+        List<Integer> bulkEnds = partition(sizes);
+        int bulkStart = 0;
+        for (int bulkEnd : bulkEnds) {
+            long bytes = 0;
+            for (int i = bulkStart; i < bulkEnd; i++) {
+                bytes += sizes[i];
+            }
+            long start = System.nanoTime();
+            bulkExecutor.accept(operations.subList(bulkStart, bulkEnd));
+            record(bulkEnd - bulkStart, bytes, System.nanoTime() - start);
+            bulkStart = bulkEnd;
+        }
+    }
+
+    /**
+     * @return Exclusive end index of each bulk
+     */
+    synchronized List<Integer> partition(long[] sizes) {
+        List<Integer> bulkEnds = new ArrayList<>();
+        int bulkStart = 0;
+        long bulkBytes = 0;
+        for (int i = 0; i < sizes.length; i++) {
+            int bulkSize = i - bulkStart;
+            if (bulkSize > 0 && (bulkSize >= operationLimit || bulkBytes + sizes[i] > targetBytes)) {
+                bulkEnds.add(i);
+                bulkStart = i;
+                bulkBytes = 0;
+            }
+            bulkBytes += sizes[i];
+        }
+        if (sizes.length > bulkStart) {
+            bulkEnds.add(sizes.length);
+        }
+        if (bulkEnds.size() > 1) {
+            chunksSplit++;
+        }
+        return bulkEnds;
+    }
+
+    synchronized void record(int operations, long bytes, long elapsedNanos) {
+        bulksExecuted++;
+        operationsExecuted += operations;
+        bytesExecuted += bytes;
+        nanosExecuting += elapsedNanos;
+        lastLatencyNanos = elapsedNanos;
+
+        // only full bulks say how many operations fit in the target latency
+        if (operations < operationLimit && elapsedNanos < targetLatencyNanos) {
+            return;
+        }
+        long operationsAtTarget = operations * targetLatencyNanos / Math.max(elapsedNanos, 1);
+        long adapted = (operationLimit + operationsAtTarget) / 2;
+        operationLimit = (int) Math.max(minOperations, Math.min(maxOperations, adapted));
+    }
+
+    public long getTargetBytes() {
+        return targetBytes;
+    }
+
+    public long getTargetLatencyMillis() {
+        return targetLatencyNanos / 1_000_000;
+    }
+
+    /**
+     * @return Current maximum number of operations in a bulk
+     */
+    public synchronized int getOperationLimit() {
+        return operationLimit;
+    }
+
+    public synchronized long getBulksExecuted() {
+        return bulksExecuted;
+    }
+
+    public synchronized long getOperationsExecuted() {
+        return operationsExecuted;
+    }
+
+    /**
+     * @return Number of chunks that were written in more than one bulk
+     */
+    public synchronized long getChunksSplit() {
+        return chunksSplit;
+    }
+
+    public synchronized double getAverageOperationBytes() {
+        return operationsExecuted > 0 ? bytesExecuted / (double) operationsExecuted : 0;
+    }
+
+    public synchronized double getAverageLatencyMillis() {
+        return bulksExecuted > 0 ? nanosExecuting / 1_000_000.0 / bulksExecuted : 0;
+    }
+
+    public synchronized double getLastLatencyMillis() {
+        return lastLatencyNanos / 1_000_000.0;
+    }
+}
@@ -0,0 +1,240 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.commons.mongodb.writers;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.BulkWriteOperation;
+import com.mongodb.BulkWriteResult;
+import com.mongodb.BulkWriteUpsert;
+import com.mongodb.DBCursor;
+import com.mongodb.DBObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.item.data.MongoItemWriter;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.util.Assert;
+
+import uk.ac.ebi.eva.commons.mongodb.cache.WriteGeneration;
+import uk.ac.ebi.eva.commons.mongodb.entities.AnnotationMongo;
+import uk.ac.ebi.eva.commons.mongodb.entities.VariantMongo;
+import uk.ac.ebi.eva.commons.mongodb.entities.subdocuments.AnnotationIndexMongo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Write a list of {@link AnnotationMongo} into MongoDB, keeping the annotation index of the variants
+ * ({@link VariantMongo#ANNOTATION_FIELD}) up to date.
+ * <p>
+ * Each batch is written with two unordered bulks: one that upserts the annotations, adding the consequence types and
+ * xrefs to the ones already stored, and one that sets the {@link AnnotationIndexMongo} of the annotated variants. The
+ * index is computed client-side from the batch; only when an annotation was already stored (e.g. its consequence
+ * types were split across batches) the merged annotation is read back to compute it. Variants that are not in the
+ * variants collection are not created.
+ */
+public class AnnotationMongoWriter extends MongoItemWriter<AnnotationMongo> {
+
+    private static final Logger logger = LoggerFactory.getLogger(AnnotationMongoWriter.class);
+
+    private static final String ANNOTATION_INDEX_POSITIONAL_FIELD = VariantMongo.ANNOTATION_FIELD + ".$";
+
+    private static final List<String> INDEXED_FIELDS = Arrays.asList(AnnotationIndexMongo.SIFT_FIELD,
+                                                                     AnnotationIndexMongo.POLYPHEN_FIELD,
+                                                                     AnnotationIndexMongo.SO_ACCESSION_FIELD,
+                                                                     AnnotationIndexMongo.XREFS_FIELD,
+                                                                     AnnotationIndexMongo.SO_BITMASK_FIELD);
+
+    private final MongoOperations mongoOperations;
+
+    private final String annotationsCollection;
+
+    private final String variantsCollection;
+
+    private AdaptiveBulkSizer bulkSizer;
+
+    public AnnotationMongoWriter(MongoOperations mongoOperations, String annotationsCollection,
+                                 String variantsCollection) {
+        Assert.notNull(mongoOperations, "A Mongo instance is required");
+        Assert.hasText(annotationsCollection, "An annotations collection name is required");
+        Assert.hasText(variantsCollection, "A variants collection name is required");
+
+        this.mongoOperations = mongoOperations;
+        this.annotationsCollection = annotationsCollection;
+        this.variantsCollection = variantsCollection;
+        setTemplate(mongoOperations);
+        setCollection(annotationsCollection);
+    }
+
+    /**
+     * @param bulkSizer Splits the annotations of each batch into bulks of bounded size, or null to write them in a
+     *                  single bulk, which is the default. The annotation index bulk is not split.
+     */
+    public void setBulkSizer(AdaptiveBulkSizer bulkSizer) {
+        this.bulkSizer = bulkSizer;
+    }
+
+    @Override
+    protected void doWrite(List<? extends AnnotationMongo> annotations) {
+        List<AnnotationMongo> mergedAnnotations = mergeById(annotations);
+        if (mergedAnnotations.isEmpty()) {
+            return;
+        }
+
+        List<AnnotationMongo> indexedAnnotations = writeAnnotations(mergedAnnotations);
+        writeAnnotationIndexes(indexedAnnotations);
+        WriteGeneration.increment();
+    }
+
+    private List<AnnotationMongo> mergeById(List<? extends AnnotationMongo> annotations) {
+        Map<String, AnnotationMongo> annotationsById = new LinkedHashMap<>();
+        for (AnnotationMongo annotation : annotations) {
+            annotationsById.merge(annotation.getId(), annotation, AnnotationMongo::concatenate);
+        }
+        return new ArrayList<>(annotationsById.values());
+    }
+
+    /**
+     * @return The annotations to index: the written ones if they were new, or the stored ones if they were merged
+     */
+    private List<AnnotationMongo> writeAnnotations(List<AnnotationMongo> annotations) {
+        Set<String> insertedIds = new HashSet<>();
+        if (bulkSizer == null) {
+            insertedIds.addAll(upsertAnnotations(annotations));
+        } else {
+            bulkSizer.execute(annotations,
+                              annotation -> AdaptiveBulkSizer.encodedSize(generateUpdate(annotation)),
+                              bulkAnnotations -> insertedIds.addAll(upsertAnnotations(bulkAnnotations)));
+        }
+
+        List<AnnotationMongo> indexedAnnotations = new ArrayList<>(annotations.size());
+        List<String> mergedIds = new ArrayList<>();
+        for (AnnotationMongo annotation : annotations) {
+            if (insertedIds.contains(annotation.getId())) {
+                indexedAnnotations.add(annotation);
+            } else {
+                mergedIds.add(annotation.getId());
+            }
+        }
+        if (!mergedIds.isEmpty()) {
+            indexedAnnotations.addAll(findAnnotations(mergedIds));
+        }
+        return indexedAnnotations;
+    }
+
+    /**
+     * @return Ids of the annotations that were inserted
+     */
+    private List<String> upsertAnnotations(List<AnnotationMongo> annotations) {
+        BulkWriteOperation bulk = mongoOperations.getCollection(annotationsCollection)
+                                                 .initializeUnorderedBulkOperation();
+        for (AnnotationMongo annotation : annotations) {
+            bulk.find(new BasicDBObject("_id", annotation.getId())).upsert().updateOne(generateUpdate(annotation));
+        }
+        BulkWriteResult result = bulk.execute();
+        logger.trace("Annotations bulk executed. Inserted: {}, modified: {}", result.getUpserts().size(),
+                     result.getModifiedCount());
+
+        List<String> insertedIds = new ArrayList<>(result.getUpserts().size());
+        for (BulkWriteUpsert upsert : result.getUpserts()) {
+            insertedIds.add(annotations.get(upsert.getIndex()).getId());
+        }
+        return insertedIds;
+    }
+
+    private DBObject generateUpdate(AnnotationMongo annotation) {
+        BasicDBObject setOnInsert = new BasicDBObject(AnnotationMongo.CHROMOSOME_FIELD, annotation.getChromosome())
+                .append(AnnotationMongo.START_FIELD, annotation.getStart())
+                .append(AnnotationMongo.END_FIELD, annotation.getEnd())
+                .append(AnnotationMongo.VEP_VERSION_FIELD, annotation.getVepVersion())
+                .append(AnnotationMongo.VEP_CACHE_VERSION_FIELD, annotation.getVepCacheVersion());
+        BasicDBObject addToSet = new BasicDBObject(
+                AnnotationMongo.CONSEQUENCE_TYPE_FIELD,
+                new BasicDBObject("$each", convert(annotation.getConsequenceTypes())))
+                .append(AnnotationMongo.XREFS_FIELD, new BasicDBObject("$each", convert(annotation.getXrefs())));
+        return new BasicDBObject("$setOnInsert", setOnInsert).append("$addToSet", addToSet);
+    }
+
+    private List<AnnotationMongo> findAnnotations(List<String> ids) {
+        List<AnnotationMongo> annotations = new ArrayList<>(ids.size());
+        DBObject query = new BasicDBObject("_id", new BasicDBObject("$in", ids));
+        try (DBCursor cursor = mongoOperations.getCollection(annotationsCollection).find(query)) {
+            for (DBObject annotation : cursor) {
+                annotations.add(mongoOperations.getConverter().read(AnnotationMongo.class, annotation));
+            }
+        }
+        return annotations;
+    }
+
+    /**
+     * Replaces the index entry of the annotation version if the variant already has one, or adds it otherwise. Both
+     * updates go in the same unordered bulk; their filters are mutually exclusive, and if the addition runs first the
+     * replacement just sets the same value again.
+     */
+    private void writeAnnotationIndexes(List<AnnotationMongo> annotations) {
+        BulkWriteOperation bulk = mongoOperations.getCollection(variantsCollection).initializeUnorderedBulkOperation();
+        for (AnnotationMongo annotation : annotations) {
+            AnnotationIndexMongo.Builder indexBuilder = new AnnotationIndexMongo.Builder(
+                    annotation.getVepVersion(), annotation.getVepCacheVersion());
+            DBObject annotationIndex = (DBObject) convert(indexBuilder.add(annotation).build());
+            BasicDBObject version = new BasicDBObject(AnnotationIndexMongo.VEP_VERSION_FIELD,
+                                                      annotation.getVepVersion())
+                    .append(AnnotationIndexMongo.VEP_CACHE_VERSION_FIELD, annotation.getVepCacheVersion());
+            // variants are only written with string ids, see VariantIdScheme.BINARY_V1
+            String variantId = annotation.buildVariantId();
+
+            bulk.find(new BasicDBObject("_id", variantId)
+                              .append(VariantMongo.ANNOTATION_FIELD, new BasicDBObject("$elemMatch", version)))
+                .updateOne(generateIndexReplacement(annotationIndex));
+            bulk.find(new BasicDBObject("_id", variantId)
+                              .append(VariantMongo.ANNOTATION_FIELD,
+                                      new BasicDBObject("$not", new BasicDBObject("$elemMatch", version))))
+                .updateOne(new BasicDBObject("$push", new BasicDBObject(VariantMongo.ANNOTATION_FIELD,
+                                                                        annotationIndex)));
+        }
+        BulkWriteResult result = bulk.execute();
+        logger.trace("Annotation index bulk executed. Variants matched: {}", result.getMatchedCount());
+    }
+
+    /**
+     * The matched entry is replaced field by field, as its version fields don't change
+     */
+    private DBObject generateIndexReplacement(DBObject annotationIndex) {
+        BasicDBObject set = new BasicDBObject();
+        BasicDBObject unset = new BasicDBObject();
+        for (String field : INDEXED_FIELDS) {
+            Object value = annotationIndex.get(field);
+            if (value == null) {
+                unset.append(ANNOTATION_INDEX_POSITIONAL_FIELD + "." + field, "");
+            } else {
+                set.append(ANNOTATION_INDEX_POSITIONAL_FIELD + "." + field, value);
+            }
+        }
+        BasicDBObject update = new BasicDBObject("$set", set);
+        if (!unset.isEmpty()) {
+            update.append("$unset", unset);
+        }
+        return update;
+    }
+
+    private Object convert(Object entity) {
+        return mongoOperations.getConverter().convertToMongoType(entity);
+    }
+}
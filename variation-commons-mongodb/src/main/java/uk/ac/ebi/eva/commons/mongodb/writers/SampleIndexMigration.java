@@ -0,0 +1,127 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.commons.mongodb.writers;
+
+import com.mongodb.BasicDBList;
+import com.mongodb.BasicDBObject;
+import com.mongodb.BulkWriteOperation;
+import com.mongodb.DBCollection;
+import com.mongodb.DBCursor;
+import com.mongodb.DBObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.util.Assert;
+
+import uk.ac.ebi.eva.commons.mongodb.entities.VariantMongo;
+import uk.ac.ebi.eva.commons.mongodb.entities.subdocuments.SampleIndexCodec;
+import uk.ac.ebi.eva.commons.mongodb.entities.subdocuments.VariantSourceEntryMongo;
+
+import java.util.List;
+
+/**
+ * Rewrites the sample indexes of a variants collection from the legacy arrays of integers to the binary format of
+ * {@link SampleIndexCodec}. Values already encoded are left untouched, so the migration can be run more than once.
+ * <p>
+ * Each variant is only updated if its files haven't changed since they were read; variants modified by a concurrent
+ * load are skipped and will be migrated by the next run.
+ */
+public class SampleIndexMigration {
+
+    private static final Logger logger = LoggerFactory.getLogger(SampleIndexMigration.class);
+
+    private static final String FILES_SAMPLES_FIELD = VariantMongo.FILES_FIELD + "."
+            + VariantSourceEntryMongo.SAMPLES_FIELD;
+
+    private final MongoOperations mongoOperations;
+
+    private final String collection;
+
+    private final int batchSize;
+
+    public SampleIndexMigration(MongoOperations mongoOperations, String collection, int batchSize) {
+        Assert.notNull(mongoOperations, "A Mongo instance is required");
+        Assert.hasText(collection, "A collection name is required");
+        Assert.isTrue(batchSize > 0, "The batch size must be positive");
+
+        this.mongoOperations = mongoOperations;
+        this.collection = collection;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * @return Number of variants updated
+     */
+    public long migrate() {
+        DBCollection variants = mongoOperations.getCollection(collection);
+        DBObject query = new BasicDBObject(FILES_SAMPLES_FIELD, new BasicDBObject("$exists", true));
+        DBObject projection = new BasicDBObject(VariantMongo.FILES_FIELD, 1);
+
+        long migrated = 0;
+        int pending = 0;
+        BulkWriteOperation bulk = variants.initializeUnorderedBulkOperation();
+        try (DBCursor cursor = variants.find(query, projection)) {
+            for (DBObject variant : cursor) {
+                BasicDBList files = (BasicDBList) variant.get(VariantMongo.FILES_FIELD);
+                BasicDBList encodedFiles = encodeFiles(files);
+                if (encodedFiles == null) {
+                    continue;
+                }
+                bulk.find(new BasicDBObject("_id", variant.get("_id")).append(VariantMongo.FILES_FIELD, files))
+                    .updateOne(new BasicDBObject("$set", new BasicDBObject(VariantMongo.FILES_FIELD, encodedFiles)));
+                if (++pending == batchSize) {
+                    migrated += bulk.execute().getModifiedCount();
+                    logger.debug("{} variants migrated", migrated);
+                    bulk = variants.initializeUnorderedBulkOperation();
+                    pending = 0;
+                }
+            }
+        }
+        if (pending > 0) {
+            migrated += bulk.execute().getModifiedCount();
+        }
+        logger.info("Sample indexes of {} variants migrated in collection {}", migrated, collection);
+        return migrated;
+    }
+
+    /**
+     * @return Copy of the files with their legacy sample indexes encoded, or null if there was nothing to encode
+     */
+    private BasicDBList encodeFiles(BasicDBList files) {
+        BasicDBList encodedFiles = new BasicDBList();
+        boolean changed = false;
+        for (Object file : files) {
+            BasicDBObject encodedFile = new BasicDBObject(((DBObject) file).toMap());
+            DBObject samples = (DBObject) encodedFile.get(VariantSourceEntryMongo.SAMPLES_FIELD);
+            if (samples != null) {
+                BasicDBObject encodedSamples = new BasicDBObject();
+                for (String genotype : samples.keySet()) {
+                    Object sampleIndexes = samples.get(genotype);
+                    if (sampleIndexes instanceof List) {
+                        int[] legacySampleIndexes = SampleIndexCodec.decode(sampleIndexes);
+                        encodedSamples.append(genotype, SampleIndexCodec.encode(legacySampleIndexes));
+                        changed = true;
+                    } else {
+                        encodedSamples.append(genotype, sampleIndexes);
+                    }
+                }
+                encodedFile.put(VariantSourceEntryMongo.SAMPLES_FIELD, encodedSamples);
+            }
+            encodedFiles.add(encodedFile);
+        }
+        return changed ? encodedFiles : null;
+    }
+}
@@ -18,6 +18,7 @@ package uk.ac.ebi.eva.commons.mongodb.writers;
 import com.mongodb.BasicDBList;
 import com.mongodb.BasicDBObject;
 import com.mongodb.BulkWriteOperation;
+import com.mongodb.DBCollection;
 import com.mongodb.DBObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -28,12 +29,20 @@ import org.springframework.util.Assert;
 import uk.ac.ebi.eva.commons.core.models.IVariant;
 import uk.ac.ebi.eva.commons.core.models.IVariantSourceEntry;
 import uk.ac.ebi.eva.commons.core.models.VariantStatistics;
+import uk.ac.ebi.eva.commons.core.models.genotype.Genotype;
+import uk.ac.ebi.eva.commons.mongodb.cache.WriteGeneration;
+import uk.ac.ebi.eva.commons.mongodb.entities.ChromosomeCatalogMongo;
+import uk.ac.ebi.eva.commons.mongodb.entities.LoadProgressMongo;
+import uk.ac.ebi.eva.commons.mongodb.entities.NumericIdCodec;
+import uk.ac.ebi.eva.commons.mongodb.entities.VariantIdScheme;
 import uk.ac.ebi.eva.commons.mongodb.entities.VariantMongo;
 import uk.ac.ebi.eva.commons.mongodb.entities.projections.SimplifiedVariant;
 import uk.ac.ebi.eva.commons.mongodb.entities.subdocuments.VariantSourceEntryMongo;
 import uk.ac.ebi.eva.commons.mongodb.entities.subdocuments.VariantStatisticsMongo;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -41,11 +50,22 @@ import static uk.ac.ebi.eva.commons.mongodb.entities.VariantMongo.ANNOTATION_FIE
 import static uk.ac.ebi.eva.commons.mongodb.entities.VariantMongo.DBSNP_IDS_FIELD;
 import static uk.ac.ebi.eva.commons.mongodb.entities.VariantMongo.IDS_FIELD;
 import static uk.ac.ebi.eva.commons.mongodb.entities.VariantMongo.MAIN_ID_FIELD;
+import static uk.ac.ebi.eva.commons.mongodb.entities.VariantMongo.NUMERIC_IDS_FIELD;
 import static uk.ac.ebi.eva.commons.mongodb.entities.subdocuments.AnnotationIndexMongo.SO_ACCESSION_FIELD;
 import static uk.ac.ebi.eva.commons.mongodb.entities.subdocuments.AnnotationIndexMongo.XREFS_FIELD;
 
 /**
  * Write a list of {@link IVariant} into MongoDB
+ * <p>
+ * After each bulk, the chromosome catalog of the collection (see {@link ChromosomeCatalogMongo}) is updated with the
+ * coordinate bounds and number of the variants written for each chromosome and study.
+ * <p>
+ * The rs and ss identifiers of the variants are also stored as numbers (see {@link NumericIdCodec}). Their index,
+ * which enables numeric identifier lookups in the repository, is only created if the collection is empty when the
+ * writer is created; otherwise it's created by {@code VariantRepository.rebuildNumericIds}.
+ * <p>
+ * Optionally, the number of variants written for each file can be checkpointed (see {@link #setCheckpoints}), so that
+ * a failed load can be resumed instead of started again.
  */
 public class VariantMongoWriter extends MongoItemWriter<IVariant> {
 
@@ -53,28 +73,82 @@ public class VariantMongoWriter extends MongoItemWriter<IVariant> {
 
     public static final String BACKGROUND_INDEX = "background";
 
+    public static final String UNIQUE_INDEX = "unique";
+
     private final MongoOperations mongoOperations;
 
     private final String collection;
 
+    private final String chromosomeCatalogCollection;
+
     private final boolean includeStats;
 
     private final boolean includeSamples;
 
+    private final boolean encodeSampleIndexes;
+
+    private VariantIdScheme idScheme = VariantIdScheme.STRING;
+
+    private boolean incrementalStats = false;
+
+    private boolean checkpoints = false;
+
+    private AdaptiveBulkSizer bulkSizer;
+
+    private final String progressCollection;
+
     public VariantMongoWriter(String collection, MongoOperations mongoOperations, boolean includeStats,
                               boolean includeSamples) {
+        this(collection, mongoOperations, includeStats, includeSamples, false);
+    }
+
+    /**
+     * @param encodeSampleIndexes Whether to store the sample indexes of each genotype in the binary format of
+     *                            {@link uk.ac.ebi.eva.commons.mongodb.entities.subdocuments.SampleIndexCodec}
+     */
+    public VariantMongoWriter(String collection, MongoOperations mongoOperations, boolean includeStats,
+                              boolean includeSamples, boolean encodeSampleIndexes) {
         Assert.notNull(mongoOperations, "A Mongo instance is required");
         Assert.hasText(collection, "A collection name is required");
 
         this.mongoOperations = mongoOperations;
         this.collection = collection;
+        this.chromosomeCatalogCollection = ChromosomeCatalogMongo.getCollectionName(collection);
+        this.progressCollection = LoadProgressMongo.getCollectionName(collection);
         setTemplate(mongoOperations);
         this.includeStats = includeStats;
         this.includeSamples = includeSamples;
+        this.encodeSampleIndexes = encodeSampleIndexes;
 
         createIndexes();
     }
 
+    /**
+     * @param idScheme Scheme of the _id of the variants written. Only {@link VariantIdScheme#STRING}, the default, is
+     *                 accepted for now, see {@link VariantIdScheme#BINARY_V1}.
+     * @throws IllegalArgumentException If the scheme can't be written yet
+     */
+    public void setIdScheme(VariantIdScheme idScheme) {
+        Assert.notNull(idScheme, "An id scheme is required");
+        Assert.isTrue(idScheme.isWritable(), "Variants can't be written with the " + idScheme + " id scheme yet");
+        this.idScheme = idScheme;
+    }
+
+    /**
+     * @param incrementalStats Whether to add the raw counters of the statistics of each cohort to a single entry per
+     *                         study and cohort, with "$inc", instead of adding an entry per file. Loading one more file
+     *                         then only needs the statistics of that file, and the counters of a file are only added
+     *                         once, even if it's written again. The entries have no file id nor derived values, see
+     *                         {@link VariantStatisticsMongo#withDerivedValues}, except for statistics without allele
+     *                         counts, e.g. of aggregated files that only have frequencies, whose derived values are
+     *                         stored as they are, the last file written replacing the previous ones. A file can only be unloaded from
+     *                         variants whose entries count no other file, see
+     *                         {@link uk.ac.ebi.eva.commons.mongodb.services.VariantFileUnloader}.
+     */
+    public void setIncrementalStats(boolean incrementalStats) {
+        this.incrementalStats = incrementalStats;
+    }
+
     private void createIndexes() {
         mongoOperations.getCollection(collection).createIndex(
                 new BasicDBObject(VariantMongo.CHROMOSOME_FIELD, 1)
@@ -85,6 +159,13 @@ public class VariantMongoWriter extends MongoItemWriter<IVariant> {
                 new BasicDBObject(VariantMongo.IDS_FIELD, 1),
                 new BasicDBObject(BACKGROUND_INDEX, true));
 
+        if (mongoOperations.getCollection(collection).count() == 0) {
+            // only a collection written from scratch is known to have the numeric ids of every variant
+            mongoOperations.getCollection(collection).createIndex(
+                    new BasicDBObject(NUMERIC_IDS_FIELD, 1),
+                    new BasicDBObject(BACKGROUND_INDEX, true));
+        }
+
         String filesStudyIdField = String.format("%s.%s", VariantMongo.FILES_FIELD,
                                                  VariantSourceEntryMongo.STUDYID_FIELD);
         String filesFileIdField = String.format("%s.%s", VariantMongo.FILES_FIELD,
@@ -99,21 +180,223 @@ public class VariantMongoWriter extends MongoItemWriter<IVariant> {
         mongoOperations.getCollection(collection).createIndex(
                 new BasicDBObject(ANNOTATION_FIELD + "." + SO_ACCESSION_FIELD, 1),
                 new BasicDBObject(BACKGROUND_INDEX, true));
+
+        mongoOperations.getCollection(chromosomeCatalogCollection).createIndex(
+                new BasicDBObject(ChromosomeCatalogMongo.CHROMOSOME_FIELD, 1)
+                        .append(ChromosomeCatalogMongo.STUDY_ID_FIELD, 1),
+                new BasicDBObject(BACKGROUND_INDEX, true).append(UNIQUE_INDEX, true));
     }
 
+    /**
+     * @param bulkSizer Splits the variants of each chunk into bulks of bounded size, or null to write each chunk in a
+     *                  single bulk, which is the default
+     */
+    public void setBulkSizer(AdaptiveBulkSizer bulkSizer) {
+        this.bulkSizer = bulkSizer;
+    }
+
+    /**
+     * @param checkpoints Whether to record in {@link LoadProgressMongo} how many variants of each file have been
+     *                    written, so that a failed load can be resumed from {@link #getCommittedCount}. All the
+     *                    variants of a chunk must then come from the same file, and be written in the same order when
+     *                    the load is resumed, although the chunks may have a different size.
+     */
+    public void setCheckpoints(boolean checkpoints) {
+        this.checkpoints = checkpoints;
+        if (checkpoints) {
+            mongoOperations.getCollection(progressCollection).createIndex(
+                    new BasicDBObject(LoadProgressMongo.STUDY_ID_FIELD, 1).append(LoadProgressMongo.FILE_ID_FIELD, 1),
+                    new BasicDBObject(BACKGROUND_INDEX, true).append(UNIQUE_INDEX, true));
+        }
+    }
+
+    /**
+     * @return Number of variants of the file that were completely written, and should be skipped when the load is
+     * resumed. The variants of a batch that was interrupted are written again, without counting them twice.
+     */
+    public long getCommittedCount(String studyId, String fileId) {
+        DBObject progress = mongoOperations.getCollection(progressCollection).findOne(
+                buildProgressQuery(studyId, fileId));
+        return progress != null ? ((Number) progress.get(LoadProgressMongo.COMMITTED_FIELD)).longValue() : 0;
+    }
+
+    /**
+     * Forgets the checkpoint of a file, to load it again from the beginning after unloading it.
+     */
+    public void resetCheckpoint(String studyId, String fileId) {
+        mongoOperations.getCollection(progressCollection).remove(buildProgressQuery(studyId, fileId));
+    }
+
+    private BasicDBObject buildProgressQuery(String studyId, String fileId) {
+        return new BasicDBObject(LoadProgressMongo.STUDY_ID_FIELD, studyId)
+                .append(LoadProgressMongo.FILE_ID_FIELD, fileId);
+    }
+
+    /**
+     * With checkpoints, the batch is recorded as committed once the variants, their statistics and the chromosome
+     * catalog have all been written. Each of those writes can be repeated after a failure at any point: the variants
+     * are upserted, the statistics counters of a file are only incremented if the file isn't counted already, and
+     * the catalog counts of a file only up to the end of the batch (see {@link ChromosomeCatalogMongo#COUNTED_FIELD}).
+     */
     @Override
     protected void doWrite(List<? extends IVariant> variants) {
-        BulkWriteOperation bulk = mongoOperations.getCollection(collection).initializeUnorderedBulkOperation();
+        IVariantSourceEntry fileEntry = checkpoints ? findFileEntry(variants) : null;
+        if (fileEntry == null) {
+            writeVariants(variants, null);
+            return;
+        }
+
+        String studyId = fileEntry.getStudyId();
+        String fileId = fileEntry.getFileId();
+        long batchEnd = getCommittedCount(studyId, fileId) + variants.size();
+        writeVariants(variants, batchEnd);
+        mongoOperations.getCollection(progressCollection).update(
+                buildProgressQuery(studyId, fileId),
+                new BasicDBObject("$max", new BasicDBObject(LoadProgressMongo.COMMITTED_FIELD, batchEnd)),
+                true, false);
+    }
+
+    private IVariantSourceEntry findFileEntry(List<? extends IVariant> variants) {
+        IVariantSourceEntry fileEntry = null;
         for (IVariant variant : variants) {
-            bulk.find(generateQuery(variant)).upsert().updateOne(generateUpdate(variant));
+            if (variant.getSourceEntries().isEmpty()) {
+                continue;
+            }
+            IVariantSourceEntry variantSourceEntry = getVariantSourceEntry(variant);
+            if (fileEntry == null) {
+                fileEntry = variantSourceEntry;
+            } else {
+                Assert.isTrue(fileEntry.getStudyId().equals(variantSourceEntry.getStudyId())
+                                      && fileEntry.getFileId().equals(variantSourceEntry.getFileId()),
+                              "With checkpoints, all the variants of a chunk must come from the same file");
+            }
         }
+        return fileEntry;
+    }
 
-        executeBulk(bulk, variants.size());
+    /**
+     * @param batchEnd Number of variants of the file written once this batch is, or null without checkpoints
+     */
+    private void writeVariants(List<? extends IVariant> variants, Long batchEnd) {
+        if (bulkSizer == null) {
+            BulkWriteOperation bulk = mongoOperations.getCollection(collection).initializeUnorderedBulkOperation();
+            for (IVariant variant : variants) {
+                bulk.find(generateQuery(variant)).upsert().updateOne(generateUpdate(variant));
+            }
+            executeBulk(bulk, variants.size());
+        } else {
+            List<DBObject[]> upserts = new ArrayList<>(variants.size());
+            for (IVariant variant : variants) {
+                upserts.add(new DBObject[]{generateQuery(variant), generateUpdate(variant)});
+            }
+            bulkSizer.execute(upserts,
+                              upsert -> AdaptiveBulkSizer.encodedSize(upsert[0])
+                                      + AdaptiveBulkSizer.encodedSize(upsert[1]),
+                              this::executeUpserts);
+        }
+
+        if (includeStats && incrementalStats) {
+            incrementStatistics(variants);
+        }
+        updateChromosomeCatalog(variants, batchEnd);
+    }
+
+    /**
+     * The entry of each study and cohort is pushed if it's missing, and then its counters are incremented unless the
+     * file was already counted in it. The derived values of statistics without allele counts are set right before
+     * their increment, while the file is not counted yet. The bulk is ordered so that the updates always find the
+     * entry.
+     */
+    private void incrementStatistics(List<? extends IVariant> variants) {
+        BulkWriteOperation bulk = mongoOperations.getCollection(collection).initializeOrderedBulkOperation();
+        int bulkSize = 0;
+        for (IVariant variant : variants) {
+            if (variant.getSourceEntries().isEmpty()) {
+                continue;
+            }
+            IVariantSourceEntry variantSourceEntry = getVariantSourceEntry(variant);
+            for (Map.Entry<String, VariantStatistics> cohortStats : variantSourceEntry.getCohortStats().entrySet()) {
+                BasicDBObject cohortEntry = new BasicDBObject(VariantStatisticsMongo.STUDY_ID,
+                                                              variantSourceEntry.getStudyId())
+                        .append(VariantStatisticsMongo.COHORT_ID, cohortStats.getKey());
+                BasicDBObject incrementalEntry = new BasicDBObject(cohortEntry).append(
+                        VariantStatisticsMongo.FILE_ID, new BasicDBObject("$exists", false));
+                BasicDBObject uncountedEntry = new BasicDBObject(incrementalEntry).append(
+                        VariantStatisticsMongo.COUNTED_FILES_FIELD,
+                        new BasicDBObject("$ne", variantSourceEntry.getFileId()));
+
+                bulk.find(generateQuery(variant).append(VariantMongo.STATISTICS_FIELD, new BasicDBObject(
+                        "$not", new BasicDBObject("$elemMatch", incrementalEntry))))
+                    .updateOne(new BasicDBObject("$push", new BasicDBObject(VariantMongo.STATISTICS_FIELD,
+                                                                            cohortEntry)));
+                BasicDBObject uncountedQuery = generateQuery(variant).append(
+                        VariantMongo.STATISTICS_FIELD, new BasicDBObject("$elemMatch", uncountedEntry));
+                if (!hasAlleleCounts(cohortStats.getValue())) {
+                    bulk.find(uncountedQuery)
+                        .updateOne(new BasicDBObject("$set", convertDerivedValues(cohortStats.getValue())));
+                    bulkSize++;
+                }
+                bulk.find(uncountedQuery)
+                    .updateOne(new BasicDBObject("$inc", convertStatisticsIncrements(cohortStats.getValue()))
+                                       .append("$addToSet", new BasicDBObject(
+                                               VariantMongo.STATISTICS_FIELD + ".$."
+                                                       + VariantStatisticsMongo.COUNTED_FILES_FIELD,
+                                               variantSourceEntry.getFileId())));
+                bulkSize += 2;
+            }
+        }
+        if (bulkSize != 0) {
+            logger.trace("Execute statistics bulk. BulkSize : " + bulkSize);
+            bulk.execute();
+        }
+    }
+
+    /**
+     * Statistics of aggregated files may only have frequencies, in which case the allele counts are 0
+     */
+    private static boolean hasAlleleCounts(VariantStatistics statistics) {
+        return statistics.getRefAlleleCount() > 0 || statistics.getAltAlleleCount() > 0;
+    }
+
+    private BasicDBObject convertStatisticsIncrements(VariantStatistics statistics) {
+        String prefix = VariantMongo.STATISTICS_FIELD + ".$.";
+        BasicDBObject increments = new BasicDBObject();
+        if (hasAlleleCounts(statistics)) {
+            increments.append(prefix + VariantStatisticsMongo.REF_ALLELE_COUNT_FIELD, statistics.getRefAlleleCount())
+                      .append(prefix + VariantStatisticsMongo.ALT_ALLELE_COUNT_FIELD, statistics.getAltAlleleCount());
+        }
+        increments.append(prefix + VariantStatisticsMongo.MISSALLELE_FIELD, Math.max(statistics.getMissingAlleles(), 0))
+                .append(prefix + VariantStatisticsMongo.MISSGENOTYPE_FIELD,
+                        Math.max(statistics.getMissingGenotypes(), 0));
+        for (Map.Entry<Genotype, Integer> genotypeCount : statistics.getGenotypesCount().entrySet()) {
+            increments.append(prefix + VariantStatisticsMongo.NUMGT_FIELD + "."
+                                      + VariantStatisticsMongo.toGenotypeKey(genotypeCount.getKey()),
+                              genotypeCount.getValue());
+        }
+        return increments;
+    }
+
+    private BasicDBObject convertDerivedValues(VariantStatistics statistics) {
+        String prefix = VariantMongo.STATISTICS_FIELD + ".$.";
+        BasicDBObject derivedValues = new BasicDBObject()
+                .append(prefix + VariantStatisticsMongo.MAF_FIELD, statistics.getMaf())
+                .append(prefix + VariantStatisticsMongo.MGF_FIELD, statistics.getMgf());
+        if (statistics.getMafAllele() != null) {
+            derivedValues.append(prefix + VariantStatisticsMongo.MAFALLELE_FIELD, statistics.getMafAllele());
+        }
+        if (statistics.getMgfGenotype() != null) {
+            derivedValues.append(prefix + VariantStatisticsMongo.MGFGENOTYPE_FIELD, statistics.getMgfGenotype());
+        }
+        return derivedValues;
+    }
+
+    private Object buildId(IVariant variant) {
+        return idScheme.buildId(variant.getChromosome(), variant.getStart(), variant.getReference(),
+                                variant.getAlternate());
     }
 
     private BasicDBObject generateQuery(IVariant variant) {
-        String id = VariantMongo.buildVariantId(variant.getChromosome(), variant.getStart(),
-                                                variant.getReference(), variant.getAlternate());
+        Object id = buildId(variant);
 
         // the chromosome and start appear just as shard keys, in an unsharded cluster they wouldn't be needed
         return new BasicDBObject("_id", id)
@@ -121,11 +404,76 @@ public class VariantMongoWriter extends MongoItemWriter<IVariant> {
                 .append(VariantMongo.START_FIELD, variant.getStart());
     }
 
+    private void executeUpserts(List<DBObject[]> upserts) {
+        BulkWriteOperation bulk = mongoOperations.getCollection(collection).initializeUnorderedBulkOperation();
+        for (DBObject[] upsert : upserts) {
+            bulk.find(upsert[0]).upsert().updateOne(upsert[1]);
+        }
+        executeBulk(bulk, upserts.size());
+    }
+
     private void executeBulk(BulkWriteOperation bulk, int currentBulkSize) {
         if (currentBulkSize != 0) {
             logger.trace("Execute bulk. BulkSize : " + currentBulkSize);
             bulk.execute();
+            WriteGeneration.increment();
+        }
+    }
+
+    /**
+     * With checkpoints, where all the variants come from the same file, the bounds of each entry are widened first,
+     * which can always be repeated, and then the count is incremented only if the variants of the file counted in the
+     * entry don't reach the end of the batch yet.
+     */
+    private void updateChromosomeCatalog(List<? extends IVariant> variants, Long batchEnd) {
+        Map<List<String>, ChromosomeCatalogMongo> catalogUpdates = new LinkedHashMap<>();
+        String fileId = null;
+        for (IVariant variant : variants) {
+            if (variant.getSourceEntries().isEmpty()) {
+                continue;
+            }
+            String studyId = getVariantSourceEntry(variant).getStudyId();
+            fileId = getVariantSourceEntry(variant).getFileId();
+            List<String> key = Arrays.asList(variant.getChromosome(), studyId);
+            ChromosomeCatalogMongo previous = catalogUpdates.get(key);
+            if (previous == null) {
+                catalogUpdates.put(key, new ChromosomeCatalogMongo(variant.getChromosome(), studyId,
+                                                                   variant.getStart(), variant.getStart(), 1));
+            } else {
+                catalogUpdates.put(key, new ChromosomeCatalogMongo(variant.getChromosome(), studyId,
+                                                                   Math.min(previous.getMinStart(), variant.getStart()),
+                                                                   Math.max(previous.getMaxStart(), variant.getStart()),
+                                                                   previous.getCount() + 1));
+            }
+        }
+
+        if (catalogUpdates.isEmpty()) {
+            return;
+        }
+        DBCollection catalog = mongoOperations.getCollection(chromosomeCatalogCollection);
+        BulkWriteOperation bulk = batchEnd == null ? catalog.initializeUnorderedBulkOperation()
+                : catalog.initializeOrderedBulkOperation();
+        for (ChromosomeCatalogMongo entry : catalogUpdates.values()) {
+            BasicDBObject query = new BasicDBObject(ChromosomeCatalogMongo.CHROMOSOME_FIELD, entry.getChromosome())
+                    .append(ChromosomeCatalogMongo.STUDY_ID_FIELD, entry.getStudyId());
+            BasicDBObject update = new BasicDBObject()
+                    .append("$min", new BasicDBObject(ChromosomeCatalogMongo.MIN_START_FIELD, entry.getMinStart()))
+                    .append("$max", new BasicDBObject(ChromosomeCatalogMongo.MAX_START_FIELD, entry.getMaxStart()));
+            BasicDBObject increment = new BasicDBObject(ChromosomeCatalogMongo.COUNT_FIELD, entry.getCount());
+            if (batchEnd == null) {
+                bulk.find(query).upsert().updateOne(update.append("$inc", increment));
+            } else {
+                String countedField = ChromosomeCatalogMongo.COUNTED_FIELD + "."
+                        + ChromosomeCatalogMongo.escapeFileId(fileId);
+                bulk.find(query).upsert().updateOne(update.append(
+                        "$setOnInsert", new BasicDBObject(ChromosomeCatalogMongo.COUNT_FIELD, 0L)));
+                bulk.find(new BasicDBObject(query).append(countedField, new BasicDBObject(
+                        "$not", new BasicDBObject("$gte", batchEnd))))
+                    .updateOne(new BasicDBObject("$inc", increment)
+                                       .append("$set", new BasicDBObject(countedField, batchEnd)));
+            }
         }
+        bulk.execute();
     }
 
     private DBObject generateUpdate(IVariant variant) {
@@ -164,7 +512,7 @@ public class VariantMongoWriter extends MongoItemWriter<IVariant> {
 
             addToSet.put(VariantMongo.FILES_FIELD, convertSourceEntry(variantSourceEntry));
 
-            if (includeStats) {
+            if (includeStats && !incrementalStats) {
                 BasicDBList statistics = convertStatistics(variantSourceEntry);
                 addToSet.put(VariantMongo.STATISTICS_FIELD, new BasicDBObject("$each", statistics));
             }
@@ -174,6 +522,11 @@ public class VariantMongoWriter extends MongoItemWriter<IVariant> {
             addToSet.put(IDS_FIELD, new BasicDBObject("$each", variant.getIds()));
         }
 
+        List<Long> numericIds = NumericIdCodec.encodeAll(variant.getIds());
+        if (!numericIds.isEmpty()) {
+            addToSet.put(NUMERIC_IDS_FIELD, new BasicDBObject("$each", numericIds));
+        }
+
         if (!variant.getDbsnpIds().isEmpty()) {
             addToSet.put(DBSNP_IDS_FIELD, new BasicDBObject("$each", variant.getDbsnpIds()));
         }
@@ -198,7 +551,8 @@ public class VariantMongoWriter extends MongoItemWriter<IVariant> {
                     variantSourceEntry.getSecondaryAlternates(),
                     variantSourceEntry.getAttributes(),
                     variantSourceEntry.getFormat(),
-                    variantSourceEntry.getSamplesData()
+                    variantSourceEntry.getSamplesData(),
+                    encodeSampleIndexes
             );
         } else {
             variantSource = new VariantSourceEntryMongo(
@@ -234,6 +588,9 @@ public class VariantMongoWriter extends MongoItemWriter<IVariant> {
                 variant.getReference(),
                 variant.getAlternate(),
                 variant.getHgvs());
-        return (DBObject) mongoOperations.getConverter().convertToMongoType(simplifiedVariant);
+        DBObject variantDbObject = (DBObject) mongoOperations.getConverter().convertToMongoType(simplifiedVariant);
+        // on insertion the _id is taken from the query, which follows the id scheme of the writer
+        variantDbObject.removeField("_id");
+        return variantDbObject;
     }
 }
\ No newline at end of file
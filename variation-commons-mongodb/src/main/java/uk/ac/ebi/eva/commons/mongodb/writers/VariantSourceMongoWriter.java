@@ -16,19 +16,29 @@
 
 package uk.ac.ebi.eva.commons.mongodb.writers;
 import com.mongodb.BasicDBObject;
+import com.mongodb.BulkWriteOperation;
+import com.mongodb.DBCollection;
+import com.mongodb.DBCursor;
+import com.mongodb.DBObject;
 import org.springframework.batch.item.data.MongoItemWriter;
 import org.springframework.data.mongodb.core.MongoOperations;
 import org.springframework.util.Assert;
 
 import uk.ac.ebi.eva.commons.core.models.IVariantSource;
+import uk.ac.ebi.eva.commons.mongodb.cache.WriteGeneration;
+import uk.ac.ebi.eva.commons.mongodb.entities.StudySummaryMongo;
 import uk.ac.ebi.eva.commons.mongodb.entities.VariantSourceMongo;
+import uk.ac.ebi.eva.commons.mongodb.entities.subdocuments.VariantGlobalStatsMongo;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 /**
- * Write a list of {@link IVariantSource} into MongoDB
+ * Write a list of {@link IVariantSource} into MongoDB, keeping the summaries of their studies
+ * ({@link StudySummaryMongo}) up to date
  */
 public class VariantSourceMongoWriter extends MongoItemWriter<IVariantSource> {
 
@@ -40,10 +50,22 @@ public class VariantSourceMongoWriter extends MongoItemWriter<IVariantSource> {
 
     public static final String INDEX_NAME = "name";
 
+    private static final List<String> SUMMED_STATS_FIELDS = Arrays.asList(
+            VariantGlobalStatsMongo.STATISTICS_NUMVARIANTS_FIELD, VariantGlobalStatsMongo.STATISTICS_NUMSAMPLES_FIELD,
+            VariantGlobalStatsMongo.STATISTICS_NUMSNPS_FIELD, VariantGlobalStatsMongo.STATISTICS_NUMINDELS_FIELD,
+            VariantGlobalStatsMongo.STATISTICS_NUMSTRUCTURAL_FIELD,
+            VariantGlobalStatsMongo.STATISTICS_NUMPASSFILTERS_FIELD,
+            VariantGlobalStatsMongo.STATISTICS_NUMTRANSITIONS_FIELD,
+            VariantGlobalStatsMongo.STATISTICS_NUMTRANSVERSIONS_FIELD);
+
     private MongoOperations mongoOperations;
 
     private String collection;
 
+    private String summariesCollection;
+
+    private AdaptiveBulkSizer bulkSizer;
+
     public VariantSourceMongoWriter(MongoOperations mongoOperations, String collection) {
         super();
         Assert.notNull(mongoOperations, "A Mongo instance is required");
@@ -53,8 +75,10 @@ public class VariantSourceMongoWriter extends MongoItemWriter<IVariantSource> {
 
         this.mongoOperations = mongoOperations;
         this.collection = collection;
+        this.summariesCollection = StudySummaryMongo.getCollectionName(collection);
 
         createIndexes();
+        createSummaryIndexes();
     }
 
     private void createIndexes() {
@@ -65,6 +89,19 @@ public class VariantSourceMongoWriter extends MongoItemWriter<IVariantSource> {
                         .append(INDEX_NAME, UNIQUE_FILE_INDEX_NAME));
     }
 
+    private void createSummaryIndexes() {
+        mongoOperations.getCollection(summariesCollection).createIndex(
+                new BasicDBObject(StudySummaryMongo.STUDY_NAME_FIELD, 1), new BasicDBObject(BACKGROUND_INDEX, true));
+    }
+
+    /**
+     * @param bulkSizer Inserts the sources of each chunk in bulks of bounded size, or null to save them one by one,
+     *                  which is the default
+     */
+    public void setBulkSizer(AdaptiveBulkSizer bulkSizer) {
+        this.bulkSizer = bulkSizer;
+    }
+
     @Override
     public void write(List<? extends IVariantSource> items) throws Exception {
         List<VariantSourceMongo> convertedList = items.stream()
@@ -72,4 +109,108 @@ public class VariantSourceMongoWriter extends MongoItemWriter<IVariantSource> {
                 .collect(Collectors.toList());
         super.write(convertedList);
     }
+
+    private void updateStudySummaries(List<? extends IVariantSource> sources) {
+        if (sources.isEmpty()) {
+            return;
+        }
+        BulkWriteOperation bulk = mongoOperations.getCollection(summariesCollection).initializeOrderedBulkOperation();
+        for (IVariantSource source : sources) {
+            Object stats = source.getStats() != null ? mongoOperations.getConverter().convertToMongoType(
+                    new VariantGlobalStatsMongo(source.getStats())) : null;
+            addToStudySummary(bulk, source.getStudyId(), source.getStudyName(), source.getFileId(),
+                              source.getSamplesPosition(), (DBObject) stats);
+        }
+        bulk.execute();
+    }
+
+    /**
+     * Replaces the study summaries with ones computed from the whole files collection, and marks them as complete
+     * (see {@link StudySummaryMongo#COMPLETE_MARKER_ID}), so that they are read instead of aggregating the files. It
+     * has to be run once for files written before the writer maintained the summaries, and again if files are removed.
+     * <p>
+     * The summaries are dropped before the files are read, so this must not run while files are being written: a file
+     * inserted after the files cursor went past it and added to its summary before the drop would be missing from the
+     * rebuilt summary. Files added after the drop are counted once, either by the rebuild or by their writer.
+     */
+    public void rebuildStudySummaries() {
+        DBCollection summaries = mongoOperations.getCollection(summariesCollection);
+        summaries.drop();
+        createSummaryIndexes();
+
+        DBObject projection = new BasicDBObject(VariantSourceMongo.STUDYID_FIELD, 1)
+                .append(VariantSourceMongo.FILEID_FIELD, 1)
+                .append(VariantSourceMongo.STUDYNAME_FIELD, 1)
+                .append(VariantSourceMongo.SAMPLES_FIELD, 1)
+                .append(VariantSourceMongo.STATISTICS_FIELD, 1);
+        BulkWriteOperation bulk = summaries.initializeOrderedBulkOperation();
+        int bulkSize = 0;
+        try (DBCursor cursor = mongoOperations.getCollection(collection).find(new BasicDBObject(), projection)) {
+            for (DBObject file : cursor) {
+                DBObject samples = (DBObject) file.get(VariantSourceMongo.SAMPLES_FIELD);
+                addToStudySummary(bulk, (String) file.get(VariantSourceMongo.STUDYID_FIELD),
+                                  (String) file.get(VariantSourceMongo.STUDYNAME_FIELD),
+                                  (String) file.get(VariantSourceMongo.FILEID_FIELD),
+                                  samples != null ? samples.toMap() : null,
+                                  (DBObject) file.get(VariantSourceMongo.STATISTICS_FIELD));
+                bulkSize += 2;
+            }
+        }
+        if (bulkSize > 0) {
+            bulk.execute();
+        }
+        summaries.insert(new BasicDBObject("_id", StudySummaryMongo.COMPLETE_MARKER_ID));
+        WriteGeneration.increment();
+    }
+
+    /**
+     * The summary is created if it's missing, and then the file is added to it unless it was already counted. The bulk
+     * is ordered so that the second update always finds the summary.
+     */
+    private void addToStudySummary(BulkWriteOperation bulk, String studyId, String studyName, String fileId,
+                                   Map<?, ?> samples, DBObject stats) {
+        BasicDBObject increments = new BasicDBObject(StudySummaryMongo.FILES_COUNT_FIELD, 1)
+                .append(StudySummaryMongo.SAMPLES_COUNT_FIELD, samples != null ? samples.size() : 0);
+        if (stats != null) {
+            for (String field : SUMMED_STATS_FIELDS) {
+                Object value = stats.get(field);
+                if (value instanceof Number) {
+                    increments.append(StudySummaryMongo.STATISTICS_FIELD + "." + field, ((Number) value).intValue());
+                }
+            }
+        }
+        bulk.find(new BasicDBObject("_id", studyId)).upsert().updateOne(
+                new BasicDBObject("$set", new BasicDBObject(StudySummaryMongo.STUDY_NAME_FIELD, studyName)));
+        bulk.find(new BasicDBObject("_id", studyId)
+                          .append(StudySummaryMongo.COUNTED_FILES_FIELD, new BasicDBObject("$ne", fileId)))
+            .updateOne(new BasicDBObject("$inc", increments)
+                               .append("$addToSet", new BasicDBObject(StudySummaryMongo.COUNTED_FILES_FIELD, fileId)));
+    }
+
+    /**
+     * The study summaries are only updated once the files are inserted, which happens when the transaction, if any,
+     * is committed.
+     */
+    @Override
+    protected void doWrite(List<? extends IVariantSource> items) {
+        if (bulkSizer == null) {
+            super.doWrite(items);
+        } else {
+            List<DBObject> documents = new ArrayList<>(items.size());
+            for (IVariantSource item : items) {
+                DBObject document = new BasicDBObject();
+                mongoOperations.getConverter().write(item, document);
+                documents.add(document);
+            }
+            bulkSizer.execute(documents, AdaptiveBulkSizer::encodedSize, this::insertDocuments);
+        }
+        updateStudySummaries(items);
+        WriteGeneration.increment();
+    }
+
+    private void insertDocuments(List<DBObject> documents) {
+        BulkWriteOperation bulk = mongoOperations.getCollection(collection).initializeOrderedBulkOperation();
+        documents.forEach(bulk::insert);
+        bulk.execute();
+    }
 }
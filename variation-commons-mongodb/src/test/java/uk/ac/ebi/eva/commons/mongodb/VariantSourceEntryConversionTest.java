@@ -149,5 +149,21 @@ public class VariantSourceEntryConversionTest {
         Assert.assertEquals("1/1", variantSourceEntryWithSampleNames.getSamplesDataMap().get("NA003").get("GT"));
     }
 
+    @Test
+    public void testEncodedSampleIndexesShouldBeReadBack() {
+        VariantSourceEntryMongo variantSourceEntryMongo = new VariantSourceEntryMongo(createVariantSourceEntry(),
+                                                                                      true);
+        DBObject converted = (DBObject) mongoOperations.getConverter().convertToMongoType(variantSourceEntryMongo);
+        DBObject samples = (DBObject) converted.get(SAMPLES_FIELD);
+        Assert.assertEquals("0/0", samples.get(VariantSourceEntryMongo.DEFAULT));
+        Assert.assertTrue(samples.get("0/1") instanceof byte[]);
+
+        VariantSourceEntryMongo readEntry = mongoOperations.getConverter().read(VariantSourceEntryMongo.class,
+                                                                                converted);
+        List<Map<String, String>> samplesData = readEntry.deflateSamplesData(3);
+        Assert.assertEquals("0/0", samplesData.get(0).get("GT"));
+        Assert.assertEquals("0/1", samplesData.get(1).get("GT"));
+        Assert.assertEquals("1/1", samplesData.get(2).get("GT"));
+    }
 
 }
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.commons.mongodb.cache;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+
+public class CollectionStateCacheTest {
+
+    @Test
+    public void answerShouldBeKeptUntilAWriteOrInvalidation() {
+        AtomicInteger loads = new AtomicInteger();
+        CollectionStateCache<Integer> cache = new CollectionStateCache<>(loads::incrementAndGet, 60);
+
+        assertEquals(1, (int) cache.get());
+        assertEquals(1, (int) cache.get());
+
+        WriteGeneration.increment();
+        assertEquals(2, (int) cache.get());
+        assertEquals(2, (int) cache.get());
+
+        cache.invalidate();
+        assertEquals(3, (int) cache.get());
+        assertEquals(3, loads.get());
+    }
+
+    @Test
+    public void answerShouldNotBeKeptWithoutMaximumAge() {
+        AtomicInteger loads = new AtomicInteger();
+        CollectionStateCache<Integer> cache = new CollectionStateCache<>(loads::incrementAndGet, 0);
+
+        assertEquals(1, (int) cache.get());
+        assertEquals(2, (int) cache.get());
+    }
+
+    @Test
+    public void answerObtainedDuringAnInvalidationShouldNotBeKept() {
+        AtomicInteger loads = new AtomicInteger();
+        AtomicReference<CollectionStateCache<Integer>> cache = new AtomicReference<>();
+        cache.set(new CollectionStateCache<>(() -> {
+            if (loads.incrementAndGet() == 1) {
+                cache.get().invalidate();
+            }
+            return loads.get();
+        }, 60));
+
+        assertEquals(1, (int) cache.get().get());
+        assertEquals(2, (int) cache.get().get());
+        assertEquals(2, (int) cache.get().get());
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.commons.mongodb.cache;
+
+import org.junit.Test;
+
+import uk.ac.ebi.eva.commons.core.models.FeatureCoordinates;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FeatureIndexTest {
+
+    private static final FeatureIndex INDEX = new FeatureIndex(Arrays.asList(
+            new FeatureCoordinates("ENSG00000139618", "BRCA2", "gene", "13", 32315474, 32400266),
+            new FeatureCoordinates("ENSG00000012048", "BRCA1", "gene", "17", 43044295, 43125483),
+            new FeatureCoordinates("ENST00000380152", "BRCA2-001", "transcript", "13", 32315474, 32400266),
+            new FeatureCoordinates("ENSG00000141510", "TP53", "gene", "17", 7661779, 7687550)));
+
+    @Test
+    public void exactLookupsShouldBeCaseSensitive() {
+        assertEquals(Arrays.asList("ENSG00000139618"), ids(INDEX.findByIdOrName("BRCA2", "BRCA2")));
+        assertEquals(Arrays.asList("ENSG00000141510"), ids(INDEX.findByIdOrName("ENSG00000141510", null)));
+        assertTrue(INDEX.findByIdOrName("brca2", "brca2").isEmpty());
+    }
+
+    @Test
+    public void exactLookupShouldReturnTheFeatureOnceIfBothIdAndNameMatch() {
+        assertEquals(Arrays.asList("ENSG00000139618", "ENSG00000141510"),
+                     ids(INDEX.findByIdOrName("ENSG00000139618", "TP53")));
+        assertEquals(1, INDEX.findByIdOrName("ENSG00000139618", "BRCA2").size());
+    }
+
+    @Test
+    public void caseInsensitiveLookupShouldMatchIdsAndNames() {
+        assertEquals(Arrays.asList("ENSG00000141510"), ids(INDEX.findByIdOrNameIgnoreCase("tp53")));
+        assertEquals(Arrays.asList("ENSG00000141510"), ids(INDEX.findByIdOrNameIgnoreCase("ensg00000141510")));
+    }
+
+    @Test
+    public void prefixLookupShouldBeSortedAndLimited() {
+        assertEquals(Arrays.asList("ENSG00000012048", "ENSG00000139618", "ENST00000380152"),
+                     ids(INDEX.findByIdOrNamePrefix("brca", 10)));
+        assertEquals(Arrays.asList("ENSG00000012048", "ENSG00000139618"), ids(INDEX.findByIdOrNamePrefix("brca", 2)));
+        assertEquals(4, INDEX.findByIdOrNamePrefix("ENS", 10).size());
+        assertTrue(INDEX.findByIdOrNamePrefix("xyz", 10).isEmpty());
+    }
+
+    private static List<String> ids(List<FeatureCoordinates> features) {
+        return features.stream().map(FeatureCoordinates::getId).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.commons.mongodb.cache;
+
+import org.junit.Test;
+import org.springframework.data.domain.PageRequest;
+
+import uk.ac.ebi.eva.commons.core.models.AnnotationMetadata;
+import uk.ac.ebi.eva.commons.core.models.Region;
+import uk.ac.ebi.eva.commons.mongodb.cache.VariantQueryKey.QueryType;
+import uk.ac.ebi.eva.commons.mongodb.filter.FilterBuilder;
+import uk.ac.ebi.eva.commons.mongodb.filter.VariantRepositoryFilter;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+
+public class VariantQueryCacheTest {
+
+    private static final List<Region> REGIONS = Collections.singletonList(new Region("1", 100L, 200L));
+
+    @Test
+    public void filterOrderShouldNotChangeTheKey() {
+        List<VariantRepositoryFilter> filters = new FilterBuilder().withMaf("<0.2")
+                                                                   .withStudies(Collections.singletonList("PRJEB1"))
+                                                                   .build();
+        List<VariantRepositoryFilter> reversedFilters = Arrays.asList(filters.get(1), filters.get(0));
+
+        VariantQueryKey key = new VariantQueryKey(QueryType.FIND_BY_REGIONS, REGIONS, filters, null,
+                                                  new PageRequest(0, 10), null);
+        VariantQueryKey otherKey = new VariantQueryKey(QueryType.FIND_BY_REGIONS, REGIONS, reversedFilters, null,
+                                                       new PageRequest(0, 10), null);
+
+        assertEquals(key, otherKey);
+        assertEquals(key.hashCode(), otherKey.hashCode());
+    }
+
+    @Test
+    public void pageAndAnnotationVersionShouldChangeTheKey() {
+        VariantQueryKey key = new VariantQueryKey(QueryType.FIND_BY_REGIONS, REGIONS, null, null,
+                                                  new PageRequest(0, 10), new AnnotationMetadata("78", "78"));
+
+        assertNotEquals(key, new VariantQueryKey(QueryType.FIND_BY_REGIONS, REGIONS, null, null,
+                                                 new PageRequest(1, 10), new AnnotationMetadata("78", "78")));
+        assertNotEquals(key, new VariantQueryKey(QueryType.FIND_BY_REGIONS, REGIONS, null, null,
+                                                 new PageRequest(0, 10), new AnnotationMetadata("79", "78")));
+        assertNotEquals(key, new VariantQueryKey(QueryType.COUNT_BY_REGIONS, REGIONS, null, null,
+                                                 new PageRequest(0, 10), new AnnotationMetadata("78", "78")));
+    }
+
+    @Test
+    public void parametersShouldChangeTheKey() {
+        VariantQueryKey key = new VariantQueryKey(QueryType.LIMITED_COUNT_BY_REGIONS, REGIONS, null, null, null, null,
+                                                  null, Collections.singletonList(100L));
+
+        assertEquals(key, new VariantQueryKey(QueryType.LIMITED_COUNT_BY_REGIONS, REGIONS, null, null, null, null,
+                                              null, Collections.singletonList(100L)));
+        assertNotEquals(key, new VariantQueryKey(QueryType.LIMITED_COUNT_BY_REGIONS, REGIONS, null, null, null, null,
+                                                 null, Collections.singletonList(1000L)));
+        assertNotEquals(key, new VariantQueryKey(QueryType.LIMITED_COUNT_BY_REGIONS, REGIONS, null, null, null, null,
+                                                 null, null));
+    }
+
+    @Test
+    public void hitsAndMissesShouldBeCounted() {
+        VariantQueryCache cache = new VariantQueryCache(10, 0);
+        VariantQueryKey key = new VariantQueryKey(QueryType.COUNT_BY_REGIONS, REGIONS, null, null, null, null);
+
+        assertNull(cache.get(key));
+        cache.put(key, 5L);
+        assertEquals(5L, (long) cache.<Long>get(key));
+
+        assertEquals(1, cache.getStats().hitCount());
+        assertEquals(1, cache.getStats().missCount());
+        assertEquals(0.5, cache.getStats().hitRate(), 0.0001);
+    }
+
+    @Test
+    public void writesShouldInvalidateTheEntries() {
+        VariantQueryCache cache = new VariantQueryCache(10, 0);
+        VariantQueryKey key = new VariantQueryKey(QueryType.COUNT_BY_REGIONS, REGIONS, null, null, null, null);
+        cache.put(key, 5L);
+
+        WriteGeneration.increment();
+
+        assertNull(cache.get(key));
+        assertNull(cache.get(new VariantQueryKey(QueryType.COUNT_BY_REGIONS, REGIONS, null, null, null, null)));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void resultsComputedDuringAWriteShouldNotBeStored() {
+        VariantQueryCache cache = new VariantQueryCache(10, 0);
+        VariantQueryKey key = new VariantQueryKey(QueryType.COUNT_BY_REGIONS, REGIONS, null, null, null, null);
+
+        WriteGeneration.increment();
+        cache.put(key, 5L);
+
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void sizeShouldBeBounded() {
+        VariantQueryCache cache = new VariantQueryCache(2, 0);
+        for (long i = 0; i < 5; i++) {
+            List<Region> regions = Collections.singletonList(new Region("1", i, i + 1));
+            cache.put(new VariantQueryKey(QueryType.COUNT_BY_REGIONS, regions, null, null, null, null), i);
+        }
+
+        assertEquals(2, cache.size());
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.commons.mongodb.entities;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+
+public class NumericIdCodecTest {
+
+    @Test
+    public void canonicalIdsShouldBeDecodedBack() {
+        for (String id : Arrays.asList("rs1", "ss1", "rs148957270", "ss254803838", "rs999999999999999999")) {
+            assertEquals(id, NumericIdCodec.decode(NumericIdCodec.encode(id)));
+        }
+    }
+
+    @Test
+    public void prefixesShouldNotCollide() {
+        assertNotEquals(NumericIdCodec.encode("rs123"), NumericIdCodec.encode("ss123"));
+    }
+
+    @Test
+    public void nonCanonicalIdsShouldNotBeEncoded() {
+        for (String id : Arrays.asList("rs", "rs0", "rs0123", "RS123", "rs12a", "esv123", "1_100_A_T",
+                                       "rs1234567890123456789")) {
+            assertNull(id, NumericIdCodec.encode(id));
+        }
+        assertNull(NumericIdCodec.encode(null));
+    }
+
+    @Test
+    public void onlyEncodableIdsShouldBeReturned() {
+        assertEquals(Arrays.asList(NumericIdCodec.encode("rs1"), NumericIdCodec.encode("ss2")),
+                     NumericIdCodec.encodeAll(Arrays.asList("rs1", "esv3", "ss2")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownPrefixClassesShouldBeRejected() {
+        NumericIdCodec.decode(123);
+    }
+}
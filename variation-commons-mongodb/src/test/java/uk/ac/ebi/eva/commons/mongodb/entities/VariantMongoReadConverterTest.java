@@ -0,0 +1,200 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.commons.mongodb.entities;
+
+import com.mongodb.BasicDBList;
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBObject;
+import com.mongodb.util.JSON;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import uk.ac.ebi.eva.commons.core.models.VariantType;
+import uk.ac.ebi.eva.commons.core.models.pipeline.VariantSourceEntry;
+import uk.ac.ebi.eva.commons.core.utils.VariantIdCodec;
+import uk.ac.ebi.eva.commons.mongodb.configuration.MongoOperationsConfiguration;
+import uk.ac.ebi.eva.commons.mongodb.entities.subdocuments.AnnotationIndexMongo;
+import uk.ac.ebi.eva.commons.mongodb.entities.subdocuments.SampleIndexCodec;
+import uk.ac.ebi.eva.commons.mongodb.entities.subdocuments.VariantSourceEntryMongo;
+import uk.ac.ebi.eva.commons.mongodb.entities.subdocuments.VariantStatisticsMongo;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Compares the variants read by {@link VariantMongo.ReadConverter} with the ones read by a mapping converter without
+ * custom conversions.
+ */
+@RunWith(SpringRunner.class)
+@TestPropertySource({"classpath:test-mongo.properties"})
+@ContextConfiguration(classes = {MongoOperationsConfiguration.class})
+public class VariantMongoReadConverterTest {
+
+    @Autowired
+    private MongoOperations mongoOperations;
+
+    private final VariantMongo.ReadConverter readConverter = new VariantMongo.ReadConverter();
+
+    @Test
+    public void variantsOfTheTestDataShouldBeReadAsByTheMappingConverter() throws IOException {
+        String json = new String(Files.readAllBytes(Paths.get("src/test/resources/test-data/variants.json")),
+                                 StandardCharsets.UTF_8);
+        BasicDBList variants = (BasicDBList) ((DBObject) JSON.parse(json)).get("variants_1_2");
+
+        for (Object variant : variants) {
+            assertSameVariant((DBObject) variant);
+        }
+    }
+
+    @Test
+    public void writtenVariantsShouldBeReadAsByTheMappingConverter() {
+        VariantSourceEntry sourceEntry = new VariantSourceEntry("file", "study", new String[]{"G"}, "GT", null,
+                                                                Collections.singletonMap("A.B", "1"), null);
+        for (String genotype : Arrays.asList("0/0", "0/0", "./.", "0/1", "0/1", "1/1")) {
+            sourceEntry.addSampleData(Collections.singletonMap("GT", genotype));
+        }
+        VariantStatisticsMongo statistics = new VariantStatisticsMongo("study", "file", "ALL", 0.25f, 0.1f, "T",
+                                                                       "1/1", 1, 1, buildGenotypeCounts());
+        for (boolean encodeSampleIndexes : Arrays.asList(false, true)) {
+            VariantMongo variant = new VariantMongo("1_100_A_T", VariantType.SNV, "1", 100, 100, 1, "A", "T",
+                                                    VariantMongo.generateAtField("1", 100), null,
+                                                    Collections.singleton("rs1"), "rs1",
+                                                    Collections.singleton(new VariantSourceEntryMongo(
+                                                            sourceEntry, encodeSampleIndexes)),
+                                                    Collections.singleton(statistics), null);
+
+            assertSameVariant((DBObject) mongoOperations.getConverter().convertToMongoType(variant));
+        }
+    }
+
+    @Test
+    public void binaryIdsShouldBeReadAsStringIds() {
+        DBObject variant = new BasicDBObject("_id", VariantIdCodec.encode("1", 100, "A", "T"))
+                .append(VariantMongo.CHROMOSOME_FIELD, "1")
+                .append(VariantMongo.START_FIELD, 100)
+                .append(VariantMongo.REFERENCE_FIELD, "A")
+                .append(VariantMongo.ALTERNATE_FIELD, "T");
+
+        assertEquals("1_100_A_T", readConverter.convert(variant).getId());
+    }
+
+    @Test
+    public void variantsReadByTheSameConverterShareStrings() {
+        VariantMongo first = readConverter.convert(buildVariantDocument(new String("1"), 100));
+        VariantMongo second = readConverter.convert(buildVariantDocument(new String("1"), 200));
+
+        assertSame(first.getChromosome(), second.getChromosome());
+        assertSame(first.getReference(), second.getReference());
+        VariantSourceEntryMongo firstFile = first.getSourceEntries().iterator().next();
+        VariantSourceEntryMongo secondFile = second.getSourceEntries().iterator().next();
+        assertSame(firstFile.getStudyId(), secondFile.getStudyId());
+        assertSame(firstFile.getAttributes().keySet().iterator().next(),
+                   secondFile.getAttributes().keySet().iterator().next());
+    }
+
+    private static DBObject buildVariantDocument(String chromosome, int start) {
+        DBObject file = new BasicDBObject(VariantSourceEntryMongo.STUDYID_FIELD, new String("study"))
+                .append(VariantSourceEntryMongo.FILEID_FIELD, new String("file"))
+                .append(VariantSourceEntryMongo.ATTRIBUTES_FIELD, new BasicDBObject(new String("QUAL"), "10.0"));
+        return new BasicDBObject("_id", chromosome + "_" + start + "_A_T")
+                .append(VariantMongo.CHROMOSOME_FIELD, chromosome)
+                .append(VariantMongo.START_FIELD, start)
+                .append(VariantMongo.REFERENCE_FIELD, new String("A"))
+                .append(VariantMongo.ALTERNATE_FIELD, new String("T"))
+                .append(VariantMongo.FILES_FIELD, Collections.singletonList(file));
+    }
+
+    private static Map<String, Integer> buildGenotypeCounts() {
+        Map<String, Integer> genotypeCounts = new HashMap<>();
+        genotypeCounts.put("0/0", 2);
+        genotypeCounts.put("./.", 1);
+        return genotypeCounts;
+    }
+
+    private void assertSameVariant(DBObject document) {
+        VariantMongo expected = mongoOperations.getConverter().read(VariantMongo.class, document);
+        VariantMongo actual = readConverter.convert(document);
+
+        assertEquals(expected.getId(), actual.getId());
+        assertEquals(expected.getType(), actual.getType());
+        assertEquals(expected.getChromosome(), actual.getChromosome());
+        assertEquals(expected.getStart(), actual.getStart());
+        assertEquals(expected.getEnd(), actual.getEnd());
+        assertEquals(expected.getLength(), actual.getLength());
+        assertEquals(expected.getReference(), actual.getReference());
+        assertEquals(expected.getAlternate(), actual.getAlternate());
+        assertEquals(expected.getAt() == null, actual.getAt() == null);
+        assertEquals(expected.getHgvs(), actual.getHgvs());
+        assertEquals(expected.getIds(), actual.getIds());
+        assertEquals(describeSourceEntries(expected.getSourceEntries()),
+                     describeSourceEntries(actual.getSourceEntries()));
+        assertEquals(describeStatistics(expected.getVariantStatsMongo()),
+                     describeStatistics(actual.getVariantStatsMongo()));
+        assertEquals(describeAnnotations(expected.getIndexedAnnotations()),
+                     describeAnnotations(actual.getIndexedAnnotations()));
+    }
+
+    private static List<String> describeSourceEntries(Set<VariantSourceEntryMongo> sourceEntries) {
+        return sourceEntries.stream().map(sourceEntry -> {
+            Map<String, String> samples = new TreeMap<>();
+            if (sourceEntry.getSamples() != null) {
+                sourceEntry.getSamples().forEach((genotype, value) -> samples.put(
+                        genotype, genotype.equals(VariantSourceEntryMongo.DEFAULT) ? (String) value
+                                : Arrays.toString(SampleIndexCodec.decode(value))));
+            }
+            return Arrays.asList(sourceEntry.getStudyId(), sourceEntry.getFileId(),
+                                 Arrays.toString(sourceEntry.getSecondaryAlternates()), sourceEntry.getFormat(),
+                                 new TreeMap<>(sourceEntry.getAttributes()), samples).toString();
+        }).sorted().collect(Collectors.toList());
+    }
+
+    private static List<String> describeStatistics(Set<VariantStatisticsMongo> statistics) {
+        return statistics.stream().map(stats -> Arrays.asList(
+                stats.getStudyId(), stats.getFileId(), stats.getCohortId(), stats.getMaf(), stats.getMgf(),
+                stats.getMafAllele(), stats.getMgfGenotype(), stats.getMissingAlleles(), stats.getMissingGenotypes(),
+                new TreeMap<>(stats.getGenotypesCount().entrySet().stream().collect(Collectors.toMap(
+                        entry -> VariantStatisticsMongo.toGenotypeKey(entry.getKey()), Map.Entry::getValue))),
+                stats.getRefAlleleCount(), stats.getAltAlleleCount()).toString())
+                         .sorted().collect(Collectors.toList());
+    }
+
+    private static List<String> describeAnnotations(Set<AnnotationIndexMongo> annotations) {
+        return annotations.stream().map(annotation -> Arrays.asList(
+                annotation.getVepVersion(), annotation.getVepCacheVersion(), annotation.getSifts(),
+                annotation.getPolyphens(), annotation.getSoAccessions().stream().sorted().collect(Collectors.toList()),
+                annotation.getXrefIds().stream().sorted().collect(Collectors.toList()),
+                annotation.getSoBitmask()).toString())
+                          .sorted().collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.commons.mongodb.entities.subdocuments;
+
+import org.junit.Test;
+
+import uk.ac.ebi.eva.commons.mongodb.entities.AnnotationMongo;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class AnnotationIndexMongoTest {
+
+    private static final String VEP_VERSION = "88";
+
+    private static final String VEP_CACHE_VERSION = "89";
+
+    @Test
+    public void builderShouldMergeConsequenceTypesInPlace() {
+        AnnotationIndexMongo.Builder builder = new AnnotationIndexMongo.Builder(VEP_VERSION, VEP_CACHE_VERSION);
+        builder.add(buildConsequenceType(0.4, null, 1631))
+               .add(buildConsequenceType(0.1, 0.7, 1583))
+               .add(buildConsequenceType(null, 0.2, 1631))
+               .add(buildConsequenceType(0.9, null, 1632));
+
+        AnnotationIndexMongo index = builder.build();
+        assertEquals(Arrays.asList(0.1, 0.9), index.getSifts());
+        assertEquals(Arrays.asList(0.2, 0.7), index.getPolyphens());
+        assertEquals(new HashSet<>(Arrays.asList(1583, 1631, 1632)), index.getSoAccessions());
+
+        builder.add(buildConsequenceType(0.0, 1.0, 1566));
+        assertEquals(Arrays.asList(0.1, 0.9), index.getSifts());
+        assertEquals(3, index.getSoAccessions().size());
+        assertEquals(Arrays.asList(0.0, 0.9), builder.build().getSifts());
+    }
+
+    @Test
+    public void builderShouldMatchConcatenation() {
+        AnnotationMongo first = buildAnnotation("GENE1", buildConsequenceType(0.3, 0.5, 1631));
+        AnnotationMongo second = buildAnnotation("GENE2", buildConsequenceType(0.2, null, 1583));
+        AnnotationMongo third = buildAnnotation("GENE3", buildConsequenceType(null, 0.8, 1631));
+
+        AnnotationIndexMongo concatenated = new AnnotationIndexMongo(first).concatenate(second)
+                                                                           .concatenate(new AnnotationIndexMongo(third));
+        AnnotationIndexMongo built = new AnnotationIndexMongo.Builder(VEP_VERSION, VEP_CACHE_VERSION)
+                .add(first).add(second).add(third).build();
+
+        assertEquals(Arrays.asList(0.2, 0.3), built.getSifts());
+        assertEquals(Arrays.asList(0.5, 0.8), built.getPolyphens());
+        assertEquals(new HashSet<>(Arrays.asList("GENE1", "GENE2", "GENE3")), built.getXrefIds());
+        assertEquals(concatenated.getSifts(), built.getSifts());
+        assertEquals(concatenated.getPolyphens(), built.getPolyphens());
+        assertEquals(concatenated.getSoAccessions(), built.getSoAccessions());
+        assertEquals(concatenated.getXrefIds(), built.getXrefIds());
+    }
+
+    @Test
+    public void emptyBuilderShouldHaveNoScoreRanges() {
+        AnnotationIndexMongo index = new AnnotationIndexMongo.Builder(VEP_VERSION, VEP_CACHE_VERSION).build();
+
+        assertNull(index.getSifts());
+        assertNull(index.getPolyphens());
+        assertEquals(Collections.emptySet(), index.getSoAccessions());
+        assertEquals(VEP_VERSION, index.getVepVersion());
+        assertEquals(VEP_CACHE_VERSION, index.getVepCacheVersion());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void builderShouldRequireVepVersion() {
+        new AnnotationIndexMongo.Builder("", VEP_CACHE_VERSION);
+    }
+
+    private ConsequenceTypeMongo buildConsequenceType(Double sift, Double polyphen, int soAccession) {
+        return new ConsequenceTypeMongo(null, null, null, "+", "protein_coding", null, null, null, null, null,
+                                        sift == null ? null : new ScoreMongo(sift, "deleterious"),
+                                        polyphen == null ? null : new ScoreMongo(polyphen, "benign"),
+                                        Collections.singleton(soAccession), null);
+    }
+
+    private AnnotationMongo buildAnnotation(String xrefId, ConsequenceTypeMongo consequenceType) {
+        return new AnnotationMongo("1_1000_A_T_88_89", "1", 1000, 1000, VEP_VERSION, VEP_CACHE_VERSION,
+                                   Collections.singleton(new XrefMongo(xrefId, "HGNC")),
+                                   Collections.singleton(consequenceType));
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.commons.mongodb.entities.subdocuments;
+
+import org.junit.Test;
+
+import uk.ac.ebi.eva.commons.core.models.ConsequenceTypeMappings;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ConsequenceTypeBitmaskTest {
+
+    @Test
+    public void everyMappedAccessionShouldHaveItsOwnBit() {
+        Set<Integer> soAccessions = ConsequenceTypeMappings.accessionToTerm.keySet();
+        Set<Long> bitmasks = new HashSet<>();
+        for (Integer soAccession : soAccessions) {
+            long bitmask = ConsequenceTypeBitmask.toBitmask(Collections.singleton(soAccession));
+            assertEquals(1, Long.bitCount(bitmask));
+            bitmasks.add(bitmask);
+        }
+        assertEquals(soAccessions.size(), bitmasks.size());
+        assertEquals(soAccessions.size(), Long.bitCount(ConsequenceTypeBitmask.toBitmask(soAccessions)));
+    }
+
+    @Test
+    public void unmappedAccessionsShouldBeIgnored() {
+        assertFalse(ConsequenceTypeBitmask.isMapped(9999));
+        assertFalse(ConsequenceTypeBitmask.areMapped(Arrays.asList(1583, 9999)));
+        assertTrue(ConsequenceTypeBitmask.areMapped(Arrays.asList(1583, 1631)));
+        assertEquals(ConsequenceTypeBitmask.toBitmask(Collections.singleton(1583)),
+                     ConsequenceTypeBitmask.toBitmask(Arrays.asList(1583, 9999)));
+        assertEquals(0, ConsequenceTypeBitmask.toBitmask(Collections.emptyList()));
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.commons.mongodb.entities.subdocuments;
+
+import org.bson.types.Binary;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class SampleIndexCodecTest {
+
+    @Test
+    public void sparseIndexesShouldBeDeltaEncoded() {
+        List<Integer> sampleIndexes = Arrays.asList(41, 311, 342, 358, 881, 898, 903, 20000, 3000000);
+
+        byte[] encoded = SampleIndexCodec.encode(sampleIndexes);
+
+        assertEquals(SampleIndexCodec.DELTA_VARINT_ENCODING, encoded[0]);
+        // 41, 31 and the rest of small deltas take 1 byte, 270 and 523 take 2, 19097 takes 3 and 2980000 takes 4
+        assertEquals(1 + 5 + 2 + 2 + 3 + 4, encoded.length);
+        assertArrayEquals(new int[]{41, 311, 342, 358, 881, 898, 903, 20000, 3000000},
+                          SampleIndexCodec.decode(encoded));
+    }
+
+    @Test
+    public void denseIndexesShouldBeBitmapEncoded() {
+        List<Integer> sampleIndexes = new ArrayList<>();
+        for (int i = 1000; i < 2000; i += 3) {
+            sampleIndexes.add(i);
+        }
+
+        byte[] encoded = SampleIndexCodec.encode(sampleIndexes);
+
+        assertEquals(SampleIndexCodec.BITMAP_ENCODING, encoded[0]);
+        assertEquals(1 + 1998 / 8 + 1, encoded.length);
+        int[] decoded = SampleIndexCodec.decode(encoded);
+        assertEquals(sampleIndexes.size(), decoded.length);
+        for (int i = 0; i < decoded.length; i++) {
+            assertEquals((int) sampleIndexes.get(i), decoded[i]);
+        }
+    }
+
+    @Test
+    public void unsortedIndexesShouldBeDecodedSorted() {
+        assertArrayEquals(new int[]{0, 7, 8, 9}, SampleIndexCodec.decode(SampleIndexCodec.encode(new int[]{9, 0, 8, 7})));
+        assertArrayEquals(new int[]{0, 300}, SampleIndexCodec.decode(SampleIndexCodec.encode(Arrays.asList(300, 0))));
+    }
+
+    @Test
+    public void emptyIndexesShouldBeEncoded() {
+        byte[] encoded = SampleIndexCodec.encode(Collections.emptyList());
+
+        assertArrayEquals(new byte[]{SampleIndexCodec.DELTA_VARINT_ENCODING}, encoded);
+        assertArrayEquals(new int[0], SampleIndexCodec.decode(encoded));
+    }
+
+    @Test
+    public void legacyArraysAndBinaryWrappersShouldBeDecoded() {
+        assertArrayEquals(new int[]{25, 35}, SampleIndexCodec.decode(Arrays.asList(25, 35)));
+        assertArrayEquals(new int[]{25, 35}, SampleIndexCodec.decode(Arrays.asList(25.0, 35.0)));
+        assertArrayEquals(new int[]{25, 35},
+                          SampleIndexCodec.decode(new Binary(SampleIndexCodec.encode(Arrays.asList(25, 35)))));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownEncodingShouldBeRejected() {
+        SampleIndexCodec.decode(new byte[]{42, 1, 2});
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negativeIndexesShouldBeRejected() {
+        SampleIndexCodec.encode(Arrays.asList(-1, 3));
+    }
+}
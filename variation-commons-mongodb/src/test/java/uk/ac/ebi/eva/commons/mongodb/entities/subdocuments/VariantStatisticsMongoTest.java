@@ -0,0 +1,92 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.commons.mongodb.entities.subdocuments;
+
+import org.junit.Test;
+
+import uk.ac.ebi.eva.commons.core.models.VariantStatistics;
+import uk.ac.ebi.eva.commons.core.models.VariantType;
+import uk.ac.ebi.eva.commons.core.models.genotype.Genotype;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class VariantStatisticsMongoTest {
+
+    @Test
+    public void mergedCountersShouldMatchTheStatisticsOfAllTheSamples() {
+        List<Map<String, String>> firstFileSamples = buildSamples("0/0", "0/1", "./.");
+        List<Map<String, String>> secondFileSamples = buildSamples("1/1", "0/1", "0/0", "0/0");
+        List<Map<String, String>> allSamples = buildSamples("0/0", "0/1", "./.", "1/1", "0/1", "0/0", "0/0");
+
+        VariantStatisticsMongo merged = buildStatistics(firstFileSamples).merge(buildStatistics(secondFileSamples))
+                                                                         .withDerivedValues("A", "T");
+        VariantStatistics expected = calculate(allSamples);
+
+        assertEquals(expected.getRefAlleleCount(), (int) merged.getRefAlleleCount());
+        assertEquals(expected.getAltAlleleCount(), (int) merged.getAltAlleleCount());
+        assertEquals(expected.getMissingAlleles(), merged.getMissingAlleles());
+        assertEquals(expected.getMissingGenotypes(), merged.getMissingGenotypes());
+        assertEquals(toStringKeys(expected.getGenotypesCount()), toStringKeys(merged.getGenotypesCount()));
+        assertEquals(expected.getMaf(), merged.getMaf(), 0.0001);
+        assertEquals(expected.getMafAllele(), merged.getMafAllele());
+        assertEquals(expected.getMgf(), merged.getMgf(), 0.0001);
+        assertEquals(expected.getMgfGenotype(), merged.getMgfGenotype());
+    }
+
+    @Test
+    public void storedDerivedValuesShouldBeKept() {
+        VariantStatisticsMongo statistics = buildStatistics(buildSamples("0/0", "0/1"));
+        assertSame(statistics, statistics.withDerivedValues("A", "T"));
+    }
+
+    @Test
+    public void statisticsWithoutCountersShouldNotBeDerived() {
+        VariantStatisticsMongo statistics = new VariantStatisticsMongo("studyId", "fileId", "ALL", -1, -1, null, null,
+                                                                       0, 0, Collections.emptyMap());
+        VariantStatisticsMongo derived = statistics.withDerivedValues("A", "T");
+        assertEquals(-1, derived.getMaf(), 0.0001);
+        assertNull(derived.getMafAllele());
+        assertNull(derived.getRefAlleleCount());
+    }
+
+    private VariantStatisticsMongo buildStatistics(List<Map<String, String>> samples) {
+        return new VariantStatisticsMongo("studyId", "fileId", "ALL", calculate(samples));
+    }
+
+    private VariantStatistics calculate(List<Map<String, String>> samples) {
+        return new VariantStatistics("A", "T", VariantType.SNV).calculate(samples, new HashMap<>(), null);
+    }
+
+    private List<Map<String, String>> buildSamples(String... genotypes) {
+        return Arrays.stream(genotypes).map(genotype -> Collections.singletonMap("GT", genotype))
+                     .collect(Collectors.toList());
+    }
+
+    private Map<String, Integer> toStringKeys(Map<Genotype, Integer> genotypesCount) {
+        Map<String, Integer> genotypes = new HashMap<>();
+        genotypesCount.forEach((genotype, count) -> genotypes.put(genotype.toString(), count));
+        return genotypes;
+    }
+}
@@ -19,12 +19,18 @@
 package uk.ac.ebi.eva.commons.mongodb.filter;
 
 import org.junit.Test;
+import com.mongodb.BasicDBObject;
 import org.springframework.data.mongodb.core.query.Criteria;
 
+import uk.ac.ebi.eva.commons.mongodb.entities.subdocuments.ConsequenceTypeBitmask;
+
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 public class VariantRepositoryFilterTest {
     @Test
@@ -67,4 +73,39 @@ public class VariantRepositoryFilterTest {
         Criteria test = filter.getCriteria();
         assertEquals(expected, test);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void getCriteriaBitsAnySet() throws Exception {
+        List<String> consequenceTypes = Arrays.asList("SO:0001583", "SO:0001631");
+        VariantRepositoryFilter filter = new VariantRepositoryConsequenceTypeBitmaskFilter(consequenceTypes);
+        long bitmask = ConsequenceTypeBitmask.toBitmask(Arrays.asList(1583, 1631));
+        assertEquals(new BasicDBObject(VariantRepositoryFilter.CONSEQUENCE_TYPE_SO_BITMASK_FIELD,
+                                       new BasicDBObject("$bitsAnySet", Arrays.asList(
+                                               Long.numberOfTrailingZeros(bitmask),
+                                               63 - Long.numberOfLeadingZeros(bitmask)))),
+                     filter.getCriteria().getCriteriaObject());
+        assertEquals(2, Long.bitCount(bitmask));
+    }
+
+    @Test
+    public void bitsAnySetAboveThe32BitsShouldBeSentAsPositions() throws Exception {
+        // synonymous_variant is beyond the 32 bits that the server accepts in a numeric bitmask
+        VariantRepositoryFilter filter = new VariantRepositoryConsequenceTypeBitmaskFilter(
+                Collections.singletonList("SO:0001819"));
+        long bitmask = ConsequenceTypeBitmask.toBitmask(Collections.singletonList(1819));
+        int position = Long.numberOfTrailingZeros(bitmask);
+        assertTrue(position > 31);
+        assertEquals(new BasicDBObject(VariantRepositoryFilter.CONSEQUENCE_TYPE_SO_BITMASK_FIELD,
+                                       new BasicDBObject("$bitsAnySet", Collections.singletonList(position))),
+                     filter.getCriteria().getCriteriaObject());
+    }
+
+    @Test
+    public void unmappedConsequenceTypesShouldFallBackToAccessions() throws Exception {
+        List<VariantRepositoryFilter> filters = new FilterBuilder()
+                .withConsequenceTypeBitmask(Arrays.asList("SO:0001583", "SO:0009999"))
+                .build();
+        assertEquals(Collections.singletonList(
+                new VariantRepositoryConsequenceTypeFilter(Arrays.asList("SO:0001583", "SO:0009999"))), filters);
+    }
+}
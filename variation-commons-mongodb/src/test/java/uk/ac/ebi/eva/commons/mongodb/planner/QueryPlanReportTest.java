@@ -0,0 +1,168 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.commons.mongodb.planner;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBObject;
+import org.junit.Test;
+
+import uk.ac.ebi.eva.commons.core.models.VariantType;
+import uk.ac.ebi.eva.commons.mongodb.filter.FilterBuilder;
+import uk.ac.ebi.eva.commons.mongodb.filter.VariantRepositoryFilter;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class QueryPlanReportTest {
+
+    private static final List<DBObject> WRITER_INDEXES = Arrays.asList(
+            index(new BasicDBObject("_id", 1)),
+            index(new BasicDBObject("chr", 1).append("start", 1).append("end", 1)),
+            index(new BasicDBObject("files.sid", 1).append("files.fid", 1)));
+
+    private static DBObject index(DBObject key) {
+        return new BasicDBObject("key", key);
+    }
+
+    private static DBObject explain(DBObject winningPlan, long keysExamined, long docsExamined, long returned) {
+        return new BasicDBObject("queryPlanner", new BasicDBObject("winningPlan", winningPlan))
+                .append("executionStats", new BasicDBObject("totalKeysExamined", keysExamined)
+                        .append("totalDocsExamined", docsExamined)
+                        .append("nReturned", returned)
+                        .append("executionTimeMillis", 12));
+    }
+
+    @Test
+    public void indexScanShouldBeReportedWithoutSuggestion() {
+        DBObject plan = new BasicDBObject("stage", "LIMIT").append(
+                "inputStage", new BasicDBObject("stage", "FETCH").append(
+                        "inputStage", new BasicDBObject("stage", "IXSCAN").append("indexName", "chr_1_start_1_end_1")));
+        QueryShape shape = new QueryShape(QueryShape.Anchor.REGIONS, Collections.emptyList());
+
+        QueryPlanReport report = new QueryPlanReport(shape, explain(plan, 20, 10, 10), WRITER_INDEXES);
+
+        assertEquals(Arrays.asList("LIMIT", "FETCH", "IXSCAN"), report.getWinningPlanStages());
+        assertEquals("chr_1_start_1_end_1", report.getIndexName());
+        assertFalse(report.isCollectionScan());
+        assertEquals(20, report.getKeysExamined());
+        assertEquals(10, report.getDocsExamined());
+        assertEquals(10, report.getReturned());
+        assertEquals(12, report.getExecutionTimeMillis());
+        assertNull(report.getSuggestedIndex());
+    }
+
+    @Test
+    public void collectionScanShouldSuggestAnIndex() {
+        List<VariantRepositoryFilter> filters = new FilterBuilder()
+                .withVariantTypes(Collections.singletonList(VariantType.SNV))
+                .withStudies(Collections.singletonList("PRJEB1"))
+                .withMaf("<0.2")
+                .build();
+        QueryShape shape = new QueryShape(QueryShape.Anchor.REGIONS, filters);
+
+        QueryPlanReport report = new QueryPlanReport(shape, explain(new BasicDBObject("stage", "COLLSCAN"), 0, 500, 3),
+                                                     WRITER_INDEXES);
+
+        assertTrue(report.isCollectionScan());
+        assertNull(report.getIndexName());
+        // the maf is in the statistics array, which can't be indexed together with the files array
+        assertEquals(Arrays.asList("chr", "files.sid", "type", "start", "end"), report.getSuggestedIndex());
+    }
+
+    @Test
+    public void rangeFiltersShouldGoAfterTheSortFields() {
+        List<VariantRepositoryFilter> filters = new FilterBuilder()
+                .withConsequenceType(Collections.singletonList("SO:0001583"))
+                .withPolyphenScore(">0.5")
+                .build();
+        QueryShape shape = new QueryShape(QueryShape.Anchor.GENES, filters);
+
+        QueryPlanReport report = new QueryPlanReport(shape, explain(new BasicDBObject("stage", "COLLSCAN"), 0, 500, 3),
+                                                     WRITER_INDEXES);
+
+        assertEquals(Arrays.asList("annot.xrefs", "annot.so", "chr", "start", "annot.polyphen"),
+                     report.getSuggestedIndex());
+    }
+
+    @Test
+    public void existingIndexShouldNotBeSuggested() {
+        DBObject plan = new BasicDBObject("stage", "FETCH").append(
+                "inputStage", new BasicDBObject("stage", "IXSCAN").append("indexName", "chr_1_start_1_end_1"));
+        QueryShape shape = new QueryShape(QueryShape.Anchor.REGIONS, Collections.emptyList());
+
+        QueryPlanReport report = new QueryPlanReport(shape, explain(plan, 500, 500, 3), WRITER_INDEXES);
+
+        assertNull(report.getSuggestedIndex());
+    }
+
+    @Test
+    public void legacyExplainShouldBeUnderstood() {
+        DBObject explain = new BasicDBObject("cursor", "BasicCursor").append("nscanned", 500)
+                                                                     .append("nscannedObjects", 500)
+                                                                     .append("n", 3)
+                                                                     .append("millis", 40);
+        List<VariantRepositoryFilter> filters = new FilterBuilder()
+                .withFiles(Collections.singletonList("file_1"))
+                .build();
+        QueryShape shape = new QueryShape(QueryShape.Anchor.IDS, filters);
+
+        QueryPlanReport report = new QueryPlanReport(shape, explain, WRITER_INDEXES);
+
+        assertTrue(report.isCollectionScan());
+        assertEquals(500, report.getDocsExamined());
+        assertEquals(3, report.getReturned());
+        assertEquals(40, report.getExecutionTimeMillis());
+        assertEquals(Arrays.asList("ids", "chr", "start"), report.getSuggestedIndex());
+    }
+
+    @Test
+    public void shapeShouldIgnoreFilterValuesAndOrder() {
+        List<VariantRepositoryFilter> filters = new FilterBuilder().withMaf("<0.2")
+                                                                   .withStudies(Collections.singletonList("PRJEB1"))
+                                                                   .build();
+        List<VariantRepositoryFilter> otherFilters = new FilterBuilder()
+                .withStudies(Arrays.asList("PRJEB2", "PRJEB3"))
+                .withMaf("<0.4")
+                .build();
+
+        assertEquals(new QueryShape(QueryShape.Anchor.REGIONS, filters),
+                     new QueryShape(QueryShape.Anchor.REGIONS, otherFilters));
+        assertFalse(new QueryShape(QueryShape.Anchor.REGIONS, filters).equals(
+                new QueryShape(QueryShape.Anchor.GENES, filters)));
+    }
+
+    @Test
+    public void latencyHistogramShouldApproximatePercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 98; i++) {
+            histogram.record(3_000_000);
+        }
+        histogram.record(150_000_000);
+        histogram.record(40_000_000_000L);
+
+        assertEquals(100, histogram.getCount());
+        assertEquals(5, histogram.getPercentileMillis(50), 0);
+        assertEquals(200, histogram.getPercentileMillis(99), 0);
+        assertEquals(40000, histogram.getPercentileMillis(100), 0);
+        assertEquals(40000, histogram.getMaxMillis(), 0);
+    }
+}
@@ -18,6 +18,9 @@
  */
 package uk.ac.ebi.eva.commons.mongodb.repositories;
 
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBCollection;
+import com.mongodb.DBObject;
 import com.lordofthejars.nosqlunit.annotation.UsingDataSet;
 import com.lordofthejars.nosqlunit.mongodb.MongoDbRule;
 import org.junit.Rule;
@@ -27,12 +30,21 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.ApplicationContext;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoOperations;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 
 import uk.ac.ebi.eva.commons.core.models.Region;
+import uk.ac.ebi.eva.commons.core.models.VariantCoreFields;
 import uk.ac.ebi.eva.commons.core.models.VariantType;
+import uk.ac.ebi.eva.commons.mongodb.cache.WriteGeneration;
+import uk.ac.ebi.eva.commons.mongodb.entities.ChromosomeCatalogMongo;
+import uk.ac.ebi.eva.commons.mongodb.entities.NumericIdCodec;
+import uk.ac.ebi.eva.commons.mongodb.entities.VariantIdScheme;
 import uk.ac.ebi.eva.commons.mongodb.entities.VariantMongo;
+import uk.ac.ebi.eva.commons.mongodb.entities.projections.VariantCount;
+import uk.ac.ebi.eva.commons.mongodb.entities.projections.VariantFacet;
+import uk.ac.ebi.eva.commons.mongodb.entities.projections.VariantFacetCounts;
 import uk.ac.ebi.eva.commons.mongodb.entities.subdocuments.VariantSourceEntryMongo;
 import uk.ac.ebi.eva.commons.mongodb.configuration.MongoRepositoryTestConfiguration;
 import uk.ac.ebi.eva.commons.mongodb.filter.FilterBuilder;
@@ -42,6 +54,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.EnumSet;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -74,6 +87,9 @@ public class VariantRepositoryTest {
     @Autowired
     private VariantRepository variantRepository;
 
+    @Autowired
+    private MongoOperations mongoOperations;
+
     @Test
     public void checkFieldPresence() throws IOException {
 
@@ -222,6 +238,77 @@ public class VariantRepositoryTest {
         assertEquals(new Long(418), count);
     }
 
+    @Test
+    public void testCappedCountStopsAfterTheLimit() {
+        List<Region> regions = Collections.singletonList(new Region("11", 191000L, 194000L));
+
+        VariantCount capped = variantRepository.countByRegionsAndComplexFilters(regions, new ArrayList<>(), 100L);
+        assertEquals(100, capped.getCount());
+        assertTrue(capped.isCapped());
+
+        VariantCount exact = variantRepository.countByRegionsAndComplexFilters(regions, new ArrayList<>(), 418L);
+        assertEquals(418, exact.getCount());
+        assertFalse(exact.isCapped());
+
+        VariantCount unlimited = variantRepository.countByRegionsAndComplexFilters(regions, new ArrayList<>(), null);
+        assertEquals(418, unlimited.getCount());
+        assertFalse(unlimited.isCapped());
+    }
+
+    @Test
+    public void testCountFacetsByRegionsAndComplexFilters() {
+        List<Region> regions = Collections.singletonList(new Region("11", 190000L, 194000L));
+        VariantFacetCounts facetCounts = variantRepository.countFacetsByRegionsAndComplexFilters(
+                regions, new ArrayList<>(), EnumSet.allOf(VariantFacet.class), null);
+
+        assertEquals(478, facetCounts.getTotal());
+        assertFalse(facetCounts.isCapped());
+        assertEquals(478, facetCounts.getCounts(VariantFacet.TYPE).values().stream().mapToLong(Long::longValue).sum());
+        assertEquals(variantRepository.countByRegionsAndComplexFilters(
+                regions, new FilterBuilder().withVariantTypes(Collections.singletonList(VariantType.SNV)).build()),
+                     facetCounts.getCounts(VariantFacet.TYPE).get(VariantType.SNV.name()));
+        assertEquals(variantRepository.countByRegionsAndComplexFilters(
+                regions, new FilterBuilder().withConsequenceType(Collections.singletonList("SO:0001566")).build()),
+                     facetCounts.getCounts(VariantFacet.CONSEQUENCE_TYPE).get("1566"));
+        for (String studyId : facetCounts.getCounts(VariantFacet.STUDY).keySet()) {
+            assertEquals(variantRepository.countByRegionsAndComplexFilters(
+                    regions, new FilterBuilder().withStudies(Collections.singletonList(studyId)).build()),
+                         facetCounts.getCounts(VariantFacet.STUDY).get(studyId));
+        }
+        assertEquals(variantRepository.countByRegionsAndComplexFilters(
+                regions, new FilterBuilder().withMaf(">=0.2").build()),
+                     facetCounts.getCounts(VariantFacet.MAF_BUCKET).get("0.2-0.5"));
+        assertEquals(5, facetCounts.getCounts(VariantFacet.MAF_BUCKET).size());
+    }
+
+    @Test
+    public void testCappedFacetCountsOnlyCountUpToTheLimit() {
+        List<Region> regions = Collections.singletonList(new Region("11", 190000L, 194000L));
+        VariantFacetCounts facetCounts = variantRepository.countFacetsByRegionsAndComplexFilters(
+                regions, new ArrayList<>(), EnumSet.of(VariantFacet.TYPE), 100L);
+
+        assertEquals(100, facetCounts.getTotal());
+        assertTrue(facetCounts.isCapped());
+        assertEquals(100, facetCounts.getCounts(VariantFacet.TYPE).values().stream().mapToLong(Long::longValue).sum());
+        assertTrue(facetCounts.getCounts(VariantFacet.STUDY).isEmpty());
+    }
+
+    @Test
+    public void testFacetCountsWithExactlyTheLimitAreNotCapped() {
+        List<Region> regions = Collections.singletonList(new Region("11", 190000L, 194000L));
+        VariantFacetCounts facetCounts = variantRepository.countFacetsByRegionsAndComplexFilters(
+                regions, new ArrayList<>(), EnumSet.of(VariantFacet.TYPE), 478L);
+
+        assertEquals(478, facetCounts.getTotal());
+        assertFalse(facetCounts.isCapped());
+        assertEquals(478, facetCounts.getCounts(VariantFacet.TYPE).values().stream().mapToLong(Long::longValue).sum());
+
+        VariantFacetCounts cappedCounts = variantRepository.countFacetsByRegionsAndComplexFilters(
+                regions, new ArrayList<>(), EnumSet.of(VariantFacet.TYPE), 477L);
+        assertEquals(477, cappedCounts.getTotal());
+        assertTrue(cappedCounts.isCapped());
+    }
+
     @Test
     public void testNonExistentVariantRegionIsNotFound() {
         Region region = new Region("11", 61098L, 60916L);
@@ -423,6 +510,43 @@ public class VariantRepositoryTest {
         assertEquals(expectedChromosomes, chromosomeSet);
     }
 
+    @Test
+    public void chromosomeCatalogShouldOnlyBeReadOnceComplete() {
+        DBCollection catalog = mongoOperations.getCollection(
+                ChromosomeCatalogMongo.getCollectionName(mongoOperations.getCollectionName(VariantMongo.class)));
+        Set<String> chromosomes = new HashSet<>(Arrays.asList("11", "9", "2"));
+        List<String> studies = Collections.singletonList("PRJEB8661");
+        try {
+            // like a first load after the upgrade into a collection that was already loaded
+            catalog.insert(buildCatalogEntry("11", 1));
+            assertEquals(chromosomes, variantRepository.findDistinctChromosomes());
+            assertEquals(193051L, (long) variantRepository.findChromosomeLowestReportedCoordinate("11", studies));
+
+            variantRepository.rebuildChromosomeCatalog();
+            catalog.insert(buildCatalogEntry("X", 100));
+            Set<String> chromosomesWithX = new HashSet<>(chromosomes);
+            chromosomesWithX.add("X");
+            assertEquals(chromosomesWithX, variantRepository.findDistinctChromosomes());
+            assertEquals(193051L, (long) variantRepository.findChromosomeLowestReportedCoordinate("11", studies));
+            assertEquals(100L, (long) variantRepository.findChromosomeHighestReportedCoordinate("X", studies));
+
+            // like unloading a file
+            catalog.remove(new BasicDBObject("_id", ChromosomeCatalogMongo.COMPLETE_MARKER_ID));
+            WriteGeneration.increment();
+            assertEquals(chromosomes, variantRepository.findDistinctChromosomes());
+        } finally {
+            catalog.drop();
+        }
+    }
+
+    private DBObject buildCatalogEntry(String chromosome, long start) {
+        return new BasicDBObject(ChromosomeCatalogMongo.CHROMOSOME_FIELD, chromosome)
+                .append(ChromosomeCatalogMongo.STUDY_ID_FIELD, "PRJEB8661")
+                .append(ChromosomeCatalogMongo.MIN_START_FIELD, start)
+                .append(ChromosomeCatalogMongo.MAX_START_FIELD, start)
+                .append(ChromosomeCatalogMongo.COUNT_FIELD, 1L);
+    }
+
     @Test
     public void testCountByChromosomeAndStartAndEndAndAltAndStudy() {
         List<String> studies = new ArrayList<>();
@@ -514,4 +638,58 @@ public class VariantRepositoryTest {
         }
         assertEquals(expectedResultLength, variantEntityList.size());
     }
+
+    @Test
+    public void variantsShouldBeFoundByIdInEitherScheme() throws Exception {
+        String collection = mongoOperations.getCollectionName(VariantMongo.class);
+        // variants can't be written with binary ids yet, but they are looked up in both schemes
+        mongoOperations.getCollection(collection).insert(
+                new BasicDBObject("_id", VariantIdScheme.BINARY_V1.buildId("11", 190011, "C", "G"))
+                        .append(VariantMongo.CHROMOSOME_FIELD, "11")
+                        .append(VariantMongo.START_FIELD, 190011L)
+                        .append(VariantMongo.END_FIELD, 190011L)
+                        .append(VariantMongo.REFERENCE_FIELD, "C")
+                        .append(VariantMongo.ALTERNATE_FIELD, "G"));
+
+        List<VariantMongo> variants = variantRepository.findByCoordinatesAndAlleles(Arrays.asList(
+                new VariantCoreFields("11", 190010, "G", "A"),
+                new VariantCoreFields("11", 190011, "C", "G"),
+                new VariantCoreFields("11", 190012, "C", "G")));
+
+        assertEquals(2, variants.size());
+        Set<Long> starts = new HashSet<>();
+        variants.forEach(variant -> starts.add(variant.getStart()));
+        assertEquals(new HashSet<>(Arrays.asList(190010L, 190011L)), starts);
+    }
+
+    @Test
+    public void idsShouldBeFoundByNumberAfterRebuildingNumericIds() {
+        List<String> ids = Arrays.asList("rs148957270", "ss254803838", "rs575961545", "a1b1c1d1e1");
+        List<VariantMongo> byString = variantRepository.findByIdsAndComplexFilters(ids, new ArrayList<>(), null,
+                                                                                   null);
+        assertEquals(2, byString.size());
+
+        String collection = mongoOperations.getCollectionName(VariantMongo.class);
+        // like a load done since the upgrade, which only stores the numeric form of the ids of the new file
+        mongoOperations.getCollection(collection).update(
+                new BasicDBObject(VariantMongo.IDS_FIELD, "rs148957270"),
+                new BasicDBObject("$addToSet", new BasicDBObject(VariantMongo.NUMERIC_IDS_FIELD,
+                                                                 NumericIdCodec.encode("rs1"))));
+        try {
+            assertTrue(variantRepository.rebuildNumericIds() > 0);
+            assertEquals(0, variantRepository.rebuildNumericIds());
+
+            List<VariantMongo> byNumber = variantRepository.findByIdsAndComplexFilters(ids, new ArrayList<>(), null,
+                                                                                       null);
+            assertEquals(byString.size(), byNumber.size());
+            for (int i = 0; i < byString.size(); i++) {
+                assertEquals(byString.get(i).getId(), byNumber.get(i).getId());
+            }
+            assertEquals(new Long(2), variantRepository.countByIdsAndComplexFilters(ids, new ArrayList<>()));
+            assertEquals(new Long(1), variantRepository.countByIdsAndComplexFilters(
+                    Collections.singletonList("ss254803838"), new ArrayList<>()));
+        } finally {
+            mongoOperations.getCollection(collection).dropIndex(new BasicDBObject(VariantMongo.NUMERIC_IDS_FIELD, 1));
+        }
+    }
 }
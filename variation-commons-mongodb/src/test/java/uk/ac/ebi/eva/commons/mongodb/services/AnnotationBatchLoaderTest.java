@@ -0,0 +1,122 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.commons.mongodb.services;
+
+import com.lordofthejars.nosqlunit.annotation.UsingDataSet;
+import com.lordofthejars.nosqlunit.mongodb.MongoDbRule;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationContext;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import uk.ac.ebi.eva.commons.core.models.AnnotationMetadata;
+import uk.ac.ebi.eva.commons.mongodb.configuration.MongoRepositoryTestConfiguration;
+import uk.ac.ebi.eva.commons.mongodb.entities.AnnotationMongo;
+import uk.ac.ebi.eva.commons.mongodb.entities.VariantMongo;
+import uk.ac.ebi.eva.commons.mongodb.repositories.AnnotationRepository;
+import uk.ac.ebi.eva.commons.mongodb.repositories.VariantRepository;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static com.lordofthejars.nosqlunit.mongodb.MongoDbRule.MongoDbRuleBuilder.newMongoDbRule;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = {MongoRepositoryTestConfiguration.class})
+@UsingDataSet(locations = {
+        "/test-data/variants.json",
+        "/test-data/annotations.json"})
+public class AnnotationBatchLoaderTest {
+
+    private static final List<String> ANNOTATION_IDS = Arrays.asList("9_10099_A_T_78_78", "11_190010_G_A_78_78",
+                                                                     "11_190013_C_T_78_78", "11_190020_G_A_78_78",
+                                                                     "non_existent_id");
+
+    @Autowired
+    private ApplicationContext applicationContext;
+
+    @Rule
+    public MongoDbRule mongoDbRule = newMongoDbRule().defaultSpringMongoDb("test-db");
+
+    @Autowired
+    private AnnotationRepository annotationRepository;
+
+    @Autowired
+    private VariantRepository variantRepository;
+
+    private AnnotationBatchLoader loader;
+
+    @Before
+    public void setUp() {
+        loader = new AnnotationBatchLoader(annotationRepository, 2, 3, 100);
+    }
+
+    @After
+    public void tearDown() {
+        loader.shutdown();
+    }
+
+    @Test
+    public void annotationsShouldBeLoadedInChunks() {
+        Map<String, AnnotationMongo> annotations = loader.findByIds(ANNOTATION_IDS);
+
+        assertEquals(4, annotations.size());
+        assertFalse(annotations.containsKey("non_existent_id"));
+        assertEquals("9_10099_A_T_78_78", annotations.get("9_10099_A_T_78_78").getId());
+    }
+
+    @Test
+    public void secondLoadShouldBeServedFromTheCache() {
+        loader.findByIds(ANNOTATION_IDS);
+        Map<String, AnnotationMongo> annotations = loader.findByIds(ANNOTATION_IDS);
+
+        assertEquals(4, annotations.size());
+        assertEquals(4, loader.getCacheStats().hitCount());
+    }
+
+    @Test
+    public void annotationsShouldBeIndexedByVariantId() {
+        List<VariantMongo> variants = new ArrayList<>();
+        variants.add(variantRepository.findOne("9_10099_A_T"));
+        variants.add(variantRepository.findOne("11_190020_G_A"));
+        variants.add(variantRepository.findOne("11_190010_G_A"));
+
+        Map<String, AnnotationMongo> annotations = loader.findAndIndexAnnotationsOfVariants(
+                variants, new AnnotationMetadata("78", "78"));
+
+        assertEquals(3, annotations.size());
+        assertEquals("9_10099_A_T_78_78", annotations.get("9_10099_A_T").getId());
+        assertEquals("11_190020_G_A_78_78", annotations.get("11_190020_G_A").getId());
+        assertEquals("11_190010_G_A_78_78", annotations.get("11_190010_G_A").getId());
+    }
+
+    @Test
+    public void sequentialLoaderShouldFindTheSameAnnotations() {
+        AnnotationBatchLoader sequentialLoader = new AnnotationBatchLoader(annotationRepository, 2, 1, 0);
+
+        assertEquals(loader.findByIds(ANNOTATION_IDS).keySet(), sequentialLoader.findByIds(ANNOTATION_IDS).keySet());
+        assertEquals(0, sequentialLoader.getCacheStats().requestCount());
+    }
+}
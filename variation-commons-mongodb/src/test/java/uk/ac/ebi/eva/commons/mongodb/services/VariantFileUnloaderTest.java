@@ -0,0 +1,172 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.commons.mongodb.services;
+
+import com.lordofthejars.nosqlunit.annotation.UsingDataSet;
+import com.lordofthejars.nosqlunit.mongodb.MongoDbRule;
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBCollection;
+import com.mongodb.DBObject;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationContext;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import uk.ac.ebi.eva.commons.core.models.VariantStatistics;
+import uk.ac.ebi.eva.commons.core.models.VariantType;
+import uk.ac.ebi.eva.commons.core.models.pipeline.Variant;
+import uk.ac.ebi.eva.commons.core.models.pipeline.VariantSourceEntry;
+import uk.ac.ebi.eva.commons.mongodb.configuration.MongoRepositoryTestConfiguration;
+import uk.ac.ebi.eva.commons.mongodb.entities.ChromosomeCatalogMongo;
+import uk.ac.ebi.eva.commons.mongodb.entities.VariantMongo;
+import uk.ac.ebi.eva.commons.mongodb.entities.subdocuments.VariantSourceEntryMongo;
+import uk.ac.ebi.eva.commons.mongodb.entities.subdocuments.VariantStatisticsMongo;
+import uk.ac.ebi.eva.commons.mongodb.writers.VariantMongoWriter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static com.lordofthejars.nosqlunit.mongodb.MongoDbRule.MongoDbRuleBuilder.newMongoDbRule;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = {MongoRepositoryTestConfiguration.class})
+@UsingDataSet(locations = {"/test-data/variants.json"})
+public class VariantFileUnloaderTest {
+
+    private static final String STUDY_ID = "PRJEB8661";
+
+    private static final String FILE_ID = "ERZ108740";
+
+    private static final String INCREMENTAL_STUDY_ID = "incrementalStudy";
+
+    @Autowired
+    private ApplicationContext applicationContext;
+
+    @Rule
+    public MongoDbRule mongoDbRule = newMongoDbRule().defaultSpringMongoDb("test-db");
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Test
+    public void fileShouldBeRemovedAndOrphanVariantsDeleted() {
+        DBCollection variants = mongoTemplate.getCollection(mongoTemplate.getCollectionName(VariantMongo.class));
+        long variantsBefore = variants.count();
+        long variantsOfFile = 0;
+        long variantsOnlyInFile = 0;
+        for (DBObject variant : variants.find(buildFileQuery())) {
+            variantsOfFile++;
+            if (((List<?>) variant.get(VariantMongo.FILES_FIELD)).size() == 1) {
+                variantsOnlyInFile++;
+            }
+        }
+        assertTrue(variantsOfFile > 10);
+        mongoTemplate.getCollection(ChromosomeCatalogMongo.getCollectionName(variants.getName()))
+                     .insert(new BasicDBObject("_id", ChromosomeCatalogMongo.COMPLETE_MARKER_ID));
+
+        List<VariantFileUnloader.UnloadProgress> reports = new ArrayList<>();
+        VariantFileUnloader unloader = new VariantFileUnloader(mongoTemplate, 10, 3);
+        VariantFileUnloader.UnloadProgress total = unloader.unload(STUDY_ID, FILE_ID, reports::add);
+        unloader.shutdown();
+
+        assertEquals(variantsOfFile, total.getVariantsUpdated());
+        assertEquals(variantsOnlyInFile, total.getVariantsDeleted());
+        assertEquals(total.getChromosomesTotal(), total.getChromosomesCompleted());
+        assertTrue(reports.size() >= variantsOfFile / 10);
+        assertEquals(0, variants.count(buildFileQuery()));
+        assertEquals(0, variants.count(new BasicDBObject(
+                VariantMongo.STATISTICS_FIELD + "." + VariantStatisticsMongo.FILE_ID, FILE_ID)));
+        assertEquals(0, variants.count(new BasicDBObject(VariantMongo.FILES_FIELD, new BasicDBObject("$size", 0))));
+        assertEquals(variantsBefore - variantsOnlyInFile, variants.count());
+
+        assertEquals(0, mongoTemplate.getCollection(ChromosomeCatalogMongo.getCollectionName(variants.getName()))
+                                     .count(new BasicDBObject("_id", ChromosomeCatalogMongo.COMPLETE_MARKER_ID)));
+
+        VariantFileUnloader.UnloadProgress repeated = new VariantFileUnloader(mongoTemplate, 10, 1)
+                .unload(STUDY_ID, FILE_ID);
+        assertEquals(0, repeated.getVariantsUpdated());
+    }
+
+    @Test
+    public void incrementalStatisticsOfAFileShouldBeReplacedWhenItIsLoadedAgain() throws Exception {
+        DBCollection variants = mongoTemplate.getCollection(mongoTemplate.getCollectionName(VariantMongo.class));
+        VariantMongoWriter writer = new VariantMongoWriter(variants.getName(), mongoTemplate, true, false);
+        writer.setIncrementalStats(true);
+        // the variant is kept by the file of another study
+        writer.write(Collections.singletonList(buildVariantWithCounts("otherStudy", "otherFile", 2, 2)));
+        writer.write(Collections.singletonList(buildVariantWithCounts(INCREMENTAL_STUDY_ID, "fileToCorrect", 3, 1)));
+
+        new VariantFileUnloader(mongoTemplate, 10, 1).unload(INCREMENTAL_STUDY_ID, "fileToCorrect");
+        DBObject variant = variants.findOne(new BasicDBObject(VariantMongo.CHROMOSOME_FIELD, "12"));
+        assertEquals(1, ((List<?>) variant.get(VariantMongo.STATISTICS_FIELD)).size());
+
+        writer.write(Collections.singletonList(buildVariantWithCounts(INCREMENTAL_STUDY_ID, "fileToCorrect", 1, 3)));
+        DBObject statistics = variants.findOne(new BasicDBObject(
+                VariantMongo.STATISTICS_FIELD + "." + VariantStatisticsMongo.STUDY_ID, INCREMENTAL_STUDY_ID),
+                new BasicDBObject(VariantMongo.STATISTICS_FIELD, new BasicDBObject(
+                        "$elemMatch", new BasicDBObject(VariantStatisticsMongo.STUDY_ID, INCREMENTAL_STUDY_ID))));
+        statistics = (DBObject) ((List<?>) statistics.get(VariantMongo.STATISTICS_FIELD)).get(0);
+        assertEquals(1, statistics.get(VariantStatisticsMongo.REF_ALLELE_COUNT_FIELD));
+        assertEquals(3, statistics.get(VariantStatisticsMongo.ALT_ALLELE_COUNT_FIELD));
+        assertEquals(Collections.singletonList("fileToCorrect"),
+                     statistics.get(VariantStatisticsMongo.COUNTED_FILES_FIELD));
+    }
+
+    @Test
+    public void fileCountedInIncrementalStatisticsWithOtherFilesShouldNotBeUnloaded() throws Exception {
+        DBCollection variants = mongoTemplate.getCollection(mongoTemplate.getCollectionName(VariantMongo.class));
+        VariantMongoWriter writer = new VariantMongoWriter(variants.getName(), mongoTemplate, true, false);
+        writer.setIncrementalStats(true);
+        writer.write(Collections.singletonList(buildVariantWithCounts(INCREMENTAL_STUDY_ID, "firstFile", 3, 1)));
+        writer.write(Collections.singletonList(buildVariantWithCounts(INCREMENTAL_STUDY_ID, "secondFile", 2, 2)));
+
+        try {
+            new VariantFileUnloader(mongoTemplate, 10, 1).unload(INCREMENTAL_STUDY_ID, "firstFile");
+            fail("The statistics of the file can't be removed");
+        } catch (IllegalStateException e) {
+            DBObject variant = variants.findOne(new BasicDBObject(VariantMongo.CHROMOSOME_FIELD, "12"));
+            assertEquals(2, ((List<?>) variant.get(VariantMongo.FILES_FIELD)).size());
+            DBObject statistics = (DBObject) ((List<?>) variant.get(VariantMongo.STATISTICS_FIELD)).get(0);
+            assertEquals(5, statistics.get(VariantStatisticsMongo.REF_ALLELE_COUNT_FIELD));
+        }
+    }
+
+    private static Variant buildVariantWithCounts(String studyId, String fileId, int refAlleleCount,
+                                                  int altAlleleCount) {
+        Variant variant = new Variant("12", 3, 4, "A", "T");
+        VariantStatistics statistics = new VariantStatistics("A", "T", VariantType.SNV);
+        statistics.setRefAlleleCount(refAlleleCount);
+        statistics.setAltAlleleCount(altAlleleCount);
+        VariantSourceEntry variantSourceEntry = new VariantSourceEntry(fileId, studyId);
+        variantSourceEntry.setCohortStats("ALL", statistics);
+        variant.addSourceEntry(variantSourceEntry);
+        return variant;
+    }
+
+    private DBObject buildFileQuery() {
+        return new BasicDBObject(VariantMongo.FILES_FIELD, new BasicDBObject(
+                "$elemMatch", new BasicDBObject(VariantSourceEntryMongo.STUDYID_FIELD, STUDY_ID)
+                        .append(VariantSourceEntryMongo.FILEID_FIELD, FILE_ID)));
+    }
+}
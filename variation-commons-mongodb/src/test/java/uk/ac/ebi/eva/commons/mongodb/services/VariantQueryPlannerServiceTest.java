@@ -0,0 +1,87 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.commons.mongodb.services;
+
+import com.lordofthejars.nosqlunit.annotation.UsingDataSet;
+import com.lordofthejars.nosqlunit.mongodb.MongoDbRule;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationContext;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import uk.ac.ebi.eva.commons.core.models.Region;
+import uk.ac.ebi.eva.commons.mongodb.configuration.MongoRepositoryTestConfiguration;
+import uk.ac.ebi.eva.commons.mongodb.filter.FilterBuilder;
+import uk.ac.ebi.eva.commons.mongodb.filter.VariantRepositoryFilter;
+import uk.ac.ebi.eva.commons.mongodb.planner.LatencyHistogram;
+import uk.ac.ebi.eva.commons.mongodb.planner.QueryShape;
+
+import java.util.Collections;
+import java.util.List;
+
+import static com.lordofthejars.nosqlunit.mongodb.MongoDbRule.MongoDbRuleBuilder.newMongoDbRule;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = {MongoRepositoryTestConfiguration.class})
+@UsingDataSet(locations = {
+        "/test-data/variants.json",
+        "/test-data/files.json",
+        "/test-data/annotations.json",
+        "/test-data/annotation_metadata.json"})
+public class VariantQueryPlannerServiceTest {
+
+    private static final List<Region> REGIONS = Collections.singletonList(new Region("11", 190000L, 200000L));
+
+    @Autowired
+    private ApplicationContext applicationContext;
+
+    @Rule
+    public MongoDbRule mongoDbRule = newMongoDbRule().defaultSpringMongoDb("test-db");
+
+    @Autowired
+    private VariantQueryPlannerService queryPlannerService;
+
+    @Autowired
+    private VariantWithSamplesAndAnnotationsService service;
+
+    @Before
+    public void setUp() {
+        queryPlannerService.clearLatencyHistograms();
+    }
+
+    @Test
+    public void findQueriesShouldBeRecordedByShape() throws AnnotationMetadataNotFoundException {
+        List<VariantRepositoryFilter> filters = new FilterBuilder()
+                .withStudies(Collections.singletonList("PRJEB6930"))
+                .build();
+        service.findByRegionsAndComplexFilters(REGIONS, filters, null, null, new PageRequest(0, 10));
+        service.findByRegionsAndComplexFilters(REGIONS, filters, null, null, new PageRequest(1, 10));
+        service.findByRegionsAndComplexFilters(REGIONS, Collections.emptyList(), null, null, new PageRequest(0, 10));
+
+        LatencyHistogram histogram = queryPlannerService.getLatencyHistograms().get(
+                new QueryShape(QueryShape.Anchor.REGIONS, filters));
+        assertNotNull(histogram);
+        assertEquals(2, histogram.getCount());
+        assertEquals(2, queryPlannerService.getLatencyHistograms().size());
+    }
+}
@@ -19,6 +19,7 @@ package uk.ac.ebi.eva.commons.mongodb.services;
 
 import com.lordofthejars.nosqlunit.annotation.UsingDataSet;
 import com.lordofthejars.nosqlunit.mongodb.MongoDbRule;
+import com.mongodb.BasicDBObject;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -26,12 +27,19 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.ApplicationContext;
+import org.springframework.data.mongodb.core.MongoOperations;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 
+import uk.ac.ebi.eva.commons.core.models.Aggregation;
+import uk.ac.ebi.eva.commons.core.models.StudyType;
 import uk.ac.ebi.eva.commons.mongodb.configuration.MongoRepositoryTestConfiguration;
+import uk.ac.ebi.eva.commons.mongodb.entities.StudySummaryMongo;
+import uk.ac.ebi.eva.commons.mongodb.entities.VariantSourceMongo;
 import uk.ac.ebi.eva.commons.mongodb.entities.projections.VariantStudySummary;
+import uk.ac.ebi.eva.commons.mongodb.writers.VariantSourceMongoWriter;
 
+import java.util.Collections;
 import java.util.List;
 
 import static com.lordofthejars.nosqlunit.mongodb.MongoDbRule.MongoDbRuleBuilder.newMongoDbRule;
@@ -65,6 +73,9 @@ public class VariantStudySummaryServiceTest {
     @Autowired
     private VariantStudySummaryService service;
 
+    @Autowired
+    private MongoOperations mongoOperations;
+
     @Rule
     public MongoDbRule mongoDbRule = newMongoDbRule().defaultSpringMongoDb(TEST_DB);
 
@@ -98,6 +109,33 @@ public class VariantStudySummaryServiceTest {
         assertEquals(EXPECTED_UNIQUE_STUDIES_COUNT, uniqueStudies.size());
     }
 
+    @Test
+    public void testSummariesAreReadFromTheCollectionMaintainedByTheWriter() throws Exception {
+        String filesCollection = mongoOperations.getCollectionName(VariantSourceMongo.class);
+        try {
+            // the summaries written before rebuilding them don't include the files already loaded, and are not read
+            VariantSourceMongoWriter filesWriter = new VariantSourceMongoWriter(mongoOperations, filesCollection);
+            filesWriter.write(Collections.singletonList(
+                    new VariantSourceMongo("newFileId", "new.vcf.gz", "newStudyId", "newStudyName",
+                                           StudyType.COLLECTION, Aggregation.NONE, Collections.emptyMap(), null,
+                                           null)));
+            assertEquals(EXPECTED_UNIQUE_STUDIES_COUNT + 1, service.findAll().size());
+
+            filesWriter.rebuildStudySummaries();
+            assertEquals(EXPECTED_UNIQUE_STUDIES_COUNT + 1, service.findAll().size());
+            VariantStudySummary study = service.findByStudyNameOrStudyId(SECOND_STUDY_NAME);
+            assertEquals(SECOND_STUDY_ID, study.getStudyId());
+            assertEquals(EXPECTED_FILE_COUNT_FROM_SECOND_STUDY_ID, study.getFilesCount());
+            assertEquals(EXPECTED_FILE_COUNT_FROM_FIRST_STUDY_ID,
+                         service.findByStudyNameOrStudyId(FIRST_STUDY_ID).getFilesCount());
+            assertNull(service.findByStudyNameOrStudyId("wrongStudyId"));
+            assertNull(service.findByStudyNameOrStudyId(StudySummaryMongo.COMPLETE_MARKER_ID));
+        } finally {
+            mongoOperations.getCollection(filesCollection).remove(new BasicDBObject(VariantSourceMongo.FILEID_FIELD,
+                                                                                    "newFileId"));
+            mongoOperations.dropCollection(StudySummaryMongo.getCollectionName(filesCollection));
+        }
+    }
 
     private void assertCorrectCount(int expectedFileCount, VariantStudySummary study) {
         int buggedFongoCount = 0;
@@ -17,23 +17,33 @@ package uk.ac.ebi.eva.commons.mongodb.services;
 
 import com.lordofthejars.nosqlunit.annotation.UsingDataSet;
 import com.lordofthejars.nosqlunit.mongodb.MongoDbRule;
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBCollection;
+import com.mongodb.DBObject;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.ApplicationContext;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.mongodb.core.MongoOperations;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 
+import uk.ac.ebi.eva.commons.core.models.AnnotationMetadata;
 import uk.ac.ebi.eva.commons.core.models.Region;
 import uk.ac.ebi.eva.commons.core.models.ws.VariantSourceEntryWithSampleNames;
 import uk.ac.ebi.eva.commons.core.models.ws.VariantWithSamplesAndAnnotation;
 import uk.ac.ebi.eva.commons.mongodb.configuration.MongoRepositoryTestConfiguration;
+import uk.ac.ebi.eva.commons.mongodb.entities.VariantMongo;
+import uk.ac.ebi.eva.commons.mongodb.entities.projections.VariantProjection;
+import uk.ac.ebi.eva.commons.mongodb.entities.subdocuments.AnnotationIndexMongo;
+import uk.ac.ebi.eva.commons.mongodb.repositories.VariantRepository;
 
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 
@@ -50,7 +60,8 @@ import static org.junit.Assert.assertTrue;
         "/test-data/variants.json",
         "/test-data/annotations.json",
         "/test-data/files.json",
-        "/test-data/annotation_metadata.json"})
+        "/test-data/annotation_metadata.json",
+        "/test-data/features.json"})
 public class VariantWithSamplesAndAnnotationServiceTest {
 
     @Autowired
@@ -62,6 +73,15 @@ public class VariantWithSamplesAndAnnotationServiceTest {
     @Autowired
     private VariantWithSamplesAndAnnotationsService service;
 
+    @Autowired
+    private VariantRepository variantRepository;
+
+    @Autowired
+    private FeatureService featureService;
+
+    @Autowired
+    private MongoOperations mongoOperations;
+
     @Test
     public void testFindByRegionsAndComplexFilters() throws AnnotationMetadataNotFoundException {
         Region region = new Region("11", 190062L, 190064L);
@@ -87,6 +107,61 @@ public class VariantWithSamplesAndAnnotationServiceTest {
         assertNotNull(variantEntityList.get(0).getAnnotation());
     }
 
+    @Test
+    public void testFindByRegionsWithCoreProjection() throws AnnotationMetadataNotFoundException {
+        List<Region> regions = Collections.singletonList(new Region("11", 190062L, 190064L));
+
+        List<VariantWithSamplesAndAnnotation> variantEntityList = service.findByRegionsAndComplexFilters(
+                regions, null, null, null, new PageRequest(0, 10000), VariantProjection.CORE);
+
+        assertEquals(1, variantEntityList.size());
+        assertEquals(190063L, variantEntityList.get(0).getStart());
+        assertTrue(variantEntityList.get(0).getSourceEntries().isEmpty());
+        assertNull(variantEntityList.get(0).getAnnotation());
+    }
+
+    @Test(expected = AnnotationMetadataNotFoundException.class)
+    public void testUnknownAnnotationMetadataShouldBeRejectedWithoutAnnotationProjection()
+            throws AnnotationMetadataNotFoundException {
+        List<Region> regions = Collections.singletonList(new Region("11", 190062L, 190064L));
+
+        service.findByRegionsAndComplexFilters(regions, null, new AnnotationMetadata("0", "0"), null,
+                                               new PageRequest(0, 10000), VariantProjection.CORE);
+    }
+
+    @Test
+    public void testFindByRegionsWithStatsProjection() throws AnnotationMetadataNotFoundException {
+        List<Region> regions = Collections.singletonList(new Region("11", 190062L, 190064L));
+
+        List<VariantWithSamplesAndAnnotation> variantEntityList = service.findByRegionsAndComplexFilters(
+                regions, null, null, null, new PageRequest(0, 10000), VariantProjection.WITH_STATS);
+
+        assertEquals(1, variantEntityList.size());
+        assertFalse(variantEntityList.get(0).getSourceEntries().isEmpty());
+        for (VariantSourceEntryWithSampleNames variantSourceEntry : variantEntityList.get(0).getSourceEntries()) {
+            if (variantSourceEntry.getFileId().equals("ERZX00051")) {
+                assertEquals(28, variantSourceEntry.getCohortStats().size());
+            }
+            assertTrue(variantSourceEntry.getSamplesData().isEmpty());
+        }
+        assertNotNull(variantEntityList.get(0).getAnnotation());
+    }
+
+    @Test
+    public void testFindByRegionsWithFilesProjection() throws AnnotationMetadataNotFoundException {
+        List<Region> regions = Collections.singletonList(new Region("11", 190062L, 190064L));
+
+        List<VariantWithSamplesAndAnnotation> variantEntityList = service.findByRegionsAndComplexFilters(
+                regions, null, null, null, new PageRequest(0, 10000), VariantProjection.WITH_FILES);
+
+        assertEquals(1, variantEntityList.size());
+        assertFalse(variantEntityList.get(0).getSourceEntries().isEmpty());
+        for (VariantSourceEntryWithSampleNames variantSourceEntry : variantEntityList.get(0).getSourceEntries()) {
+            assertTrue(variantSourceEntry.getCohortStats().isEmpty());
+            assertTrue(variantSourceEntry.getSamplesData().isEmpty());
+        }
+    }
+
     @Test
     public void testFindChromosomeBoundaries() {
         // single study in filter
@@ -102,11 +177,73 @@ public class VariantWithSamplesAndAnnotationServiceTest {
         assertNull(service.findChromosomeHighestReportedCoordinate("11", Arrays.asList("PRJEB5870")));
     }
 
+    @Test
+    public void testFindChromosomeBoundariesFromCatalog() {
+        variantRepository.rebuildChromosomeCatalog();
+
+        assertEquals(193051L, service.findChromosomeLowestReportedCoordinate("11", Collections.singletonList("PRJEB8661")).longValue());
+        assertEquals(193959L, service.findChromosomeHighestReportedCoordinate("11", Collections.singletonList("PRJEB8661")).longValue());
+        assertEquals(190010L, service.findChromosomeLowestReportedCoordinate("11", Arrays.asList("PRJEB8661", "PRJEB6930")).longValue());
+        assertEquals(194190L, service.findChromosomeHighestReportedCoordinate("11", Arrays.asList("PRJEB8661", "PRJEB6930")).longValue());
+        assertNull(service.findChromosomeLowestReportedCoordinate("11", Arrays.asList("PRJEB5870")));
+        assertNull(service.findChromosomeHighestReportedCoordinate("11", Arrays.asList("PRJEB5870")));
+
+        assertEquals(new HashSet<>(Arrays.asList("11", "9", "2")), variantRepository.findDistinctChromosomes());
+    }
+
     @Test
     public void testCountTotalNumberOfVariants() {
         // the returned number of variants should be the same as the number of variants in the test database
         assertEquals(498, service.countTotalNumberOfVariants());
     }
 
-}
 
+    @Test
+    public void testGeneQueriesByRegionAndXrefsShouldFindTheSameVariants() throws AnnotationMetadataNotFoundException {
+        featureService.refreshIndex();
+        List<String> genes = Collections.singletonList("ODF3");
+
+        long xrefsCount = service.countByGenesAndComplexFilters(genes, new ArrayList<>(), GeneQueryMode.XREFS);
+        assertEquals(402, xrefsCount);
+        assertEquals(xrefsCount, (long) service.countByGenesAndComplexFilters(genes, new ArrayList<>(),
+                                                                              GeneQueryMode.REGIONS_AND_XREFS));
+        assertTrue(service.countByGenesAndComplexFilters(genes, new ArrayList<>(), GeneQueryMode.REGIONS)
+                           >= xrefsCount);
+
+        List<VariantWithSamplesAndAnnotation> variants = service.findByGenesAndComplexFilters(
+                genes, null, null, null, new PageRequest(0, 10000), VariantProjection.CORE,
+                GeneQueryMode.REGIONS_AND_XREFS);
+        assertEquals(402, variants.size());
+    }
+
+    @Test
+    public void testGeneQueriesByRegionMissVariantsAnnotatedFarFromTheGene() {
+        featureService.refreshIndex();
+        List<String> genes = Collections.singletonList("ODF3");
+        DBCollection variants = mongoOperations.getCollection(mongoOperations.getCollectionName(VariantMongo.class));
+        DBObject distantVariant = variants.findOne(new BasicDBObject(
+                VariantMongo.ANNOTATION_FIELD + "." + AnnotationIndexMongo.XREFS_FIELD, "ODF3"));
+        long start = ((Number) distantVariant.get(VariantMongo.START_FIELD)).longValue() + 1000000;
+        distantVariant.put("_id", "distantVariant");
+        distantVariant.put(VariantMongo.START_FIELD, start);
+        distantVariant.put(VariantMongo.END_FIELD, start);
+        variants.insert(distantVariant);
+
+        assertEquals(403L, (long) service.countByGenesAndComplexFilters(genes, new ArrayList<>(),
+                                                                        GeneQueryMode.XREFS));
+        assertEquals(402L, (long) service.countByGenesAndComplexFilters(genes, new ArrayList<>(),
+                                                                        GeneQueryMode.REGIONS_AND_XREFS));
+    }
+
+    @Test
+    public void testGeneQueriesByRegionWithUnknownGenes() throws AnnotationMetadataNotFoundException {
+        featureService.refreshIndex();
+        List<String> genes = Arrays.asList("ODF3", "ENST00000342593");
+
+        // the transcript is not in the features collection, so the exact query falls back to the xrefs
+        assertEquals(service.countByGenesAndComplexFilters(genes, new ArrayList<>()),
+                     service.countByGenesAndComplexFilters(genes, new ArrayList<>(), GeneQueryMode.REGIONS_AND_XREFS));
+        assertEquals(0L, (long) service.countByGenesAndComplexFilters(Collections.singletonList("unknownGene"),
+                                                                      new ArrayList<>(), GeneQueryMode.REGIONS));
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.commons.mongodb.writers;
+
+import com.mongodb.BasicDBObject;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Testing {@link AdaptiveBulkSizer}
+ */
+public class AdaptiveBulkSizerTest {
+
+    private static final long MILLIS = 1_000_000;
+
+    @Test
+    public void bulksShouldBeClosedByTheOperationLimit() {
+        AdaptiveBulkSizer sizer = new AdaptiveBulkSizer(1000, 100, 1, 4);
+
+        assertEquals(Arrays.asList(4, 8, 10), sizer.partition(new long[]{1, 1, 1, 1, 1, 1, 1, 1, 1, 1}));
+        assertEquals(1, sizer.getChunksSplit());
+    }
+
+    @Test
+    public void bulksShouldBeClosedByTheTargetBytes() {
+        AdaptiveBulkSizer sizer = new AdaptiveBulkSizer(100, 100, 1, 10);
+
+        assertEquals(Arrays.asList(2, 3, 5), sizer.partition(new long[]{50, 50, 150, 60, 40}));
+    }
+
+    @Test
+    public void smallChunksShouldNotBeSplit() {
+        AdaptiveBulkSizer sizer = new AdaptiveBulkSizer(100, 100, 1, 10);
+
+        assertEquals(Arrays.asList(3), sizer.partition(new long[]{10, 10, 10}));
+        assertEquals(0, sizer.partition(new long[0]).size());
+        assertEquals(0, sizer.getChunksSplit());
+    }
+
+    @Test
+    public void operationLimitShouldAdaptToTheLatency() {
+        AdaptiveBulkSizer sizer = new AdaptiveBulkSizer(1000, 100, 10, 1000);
+
+        // 1000 operations took 400 ms, so 250 fit in 100 ms; the limit moves halfway
+        sizer.record(1000, 1000, 400 * MILLIS);
+        assertEquals(625, sizer.getOperationLimit());
+
+        // partial and fast bulks don't change the limit
+        sizer.record(100, 100, 10 * MILLIS);
+        assertEquals(625, sizer.getOperationLimit());
+
+        // a fast full bulk makes it grow back, up to the maximum
+        sizer.record(625, 625, 10 * MILLIS);
+        assertEquals(1000, sizer.getOperationLimit());
+
+        // a very slow bulk can't take it below the minimum
+        sizer.record(1000, 1000, 100_000 * MILLIS);
+        sizer.record(505, 1000, 100_000 * MILLIS);
+        assertTrue(sizer.getOperationLimit() >= 10);
+    }
+
+    @Test
+    public void executeShouldRunEveryOperationInOrderAndReportMetrics() {
+        AdaptiveBulkSizer sizer = new AdaptiveBulkSizer(AdaptiveBulkSizer.DEFAULT_TARGET_BYTES, 1000, 1, 3);
+        List<Integer> operations = Arrays.asList(1, 2, 3, 4, 5, 6, 7);
+        List<List<Integer>> bulks = new ArrayList<>();
+
+        sizer.execute(operations, operation -> 10, bulk -> bulks.add(new ArrayList<>(bulk)));
+
+        assertEquals(Arrays.asList(Arrays.asList(1, 2, 3), Arrays.asList(4, 5, 6), Arrays.asList(7)), bulks);
+        assertEquals(3, sizer.getBulksExecuted());
+        assertEquals(7, sizer.getOperationsExecuted());
+        assertEquals(10.0, sizer.getAverageOperationBytes(), 0.0);
+    }
+
+    @Test
+    public void encodedSizeShouldBeTheBsonLength() {
+        // int32 length + (type + "a\0" + int32) + terminator
+        assertEquals(12, AdaptiveBulkSizer.encodedSize(new BasicDBObject("a", 1)));
+    }
+}
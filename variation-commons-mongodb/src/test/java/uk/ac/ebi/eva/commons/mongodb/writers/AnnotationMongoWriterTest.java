@@ -0,0 +1,154 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.commons.mongodb.writers;
+
+import com.mongodb.BasicDBList;
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import uk.ac.ebi.eva.commons.core.models.pipeline.Variant;
+import uk.ac.ebi.eva.commons.mongodb.configuration.MongoRepositoryTestConfiguration;
+import uk.ac.ebi.eva.commons.mongodb.entities.AnnotationMongo;
+import uk.ac.ebi.eva.commons.mongodb.entities.ChromosomeCatalogMongo;
+import uk.ac.ebi.eva.commons.mongodb.entities.VariantMongo;
+import uk.ac.ebi.eva.commons.mongodb.entities.subdocuments.AnnotationIndexMongo;
+import uk.ac.ebi.eva.commons.mongodb.entities.subdocuments.ConsequenceTypeBitmask;
+import uk.ac.ebi.eva.commons.mongodb.entities.subdocuments.ConsequenceTypeMongo;
+import uk.ac.ebi.eva.commons.mongodb.entities.subdocuments.ScoreMongo;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+@RunWith(SpringRunner.class)
+@ContextConfiguration(classes = {MongoRepositoryTestConfiguration.class})
+public class AnnotationMongoWriterTest {
+
+    private static final String VARIANTS_COLLECTION_NAME = "variants_annotation_writer";
+
+    private static final String ANNOTATIONS_COLLECTION_NAME = "annotations_annotation_writer";
+
+    private static final String VEP_VERSION = "88";
+
+    private static final String VEP_CACHE_VERSION = "89";
+
+    @Autowired
+    private MongoOperations mongoOperations;
+
+    private AnnotationMongoWriter annotationWriter;
+
+    @Before
+    public void setUp() throws Exception {
+        dropCollections();
+        new VariantMongoWriter(VARIANTS_COLLECTION_NAME, mongoOperations, false, false).write(Arrays.asList(
+                new Variant("1", 1000, 1000, "A", "T"),
+                new Variant("1", 2000, 2000, "C", "G")));
+        annotationWriter = new AnnotationMongoWriter(mongoOperations, ANNOTATIONS_COLLECTION_NAME,
+                                                     VARIANTS_COLLECTION_NAME);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        dropCollections();
+    }
+
+    private void dropCollections() {
+        mongoOperations.dropCollection(VARIANTS_COLLECTION_NAME);
+        mongoOperations.dropCollection(ChromosomeCatalogMongo.getCollectionName(VARIANTS_COLLECTION_NAME));
+        mongoOperations.dropCollection(ANNOTATIONS_COLLECTION_NAME);
+    }
+
+    @Test
+    public void annotationsAndVariantIndexesShouldBeWritten() throws Exception {
+        annotationWriter.write(Arrays.asList(
+                buildAnnotation(1000, "A", "T", "GENE1", 0.1, 0.5, 1631),
+                buildAnnotation(1000, "A", "T", "GENE2", 0.3, 0.9, 1583),
+                buildAnnotation(2000, "C", "G", "GENE3", null, null, 1632),
+                buildAnnotation(3000, "G", "A", "GENE4", null, null, 1632)));
+
+        assertEquals(3, mongoOperations.getCollection(ANNOTATIONS_COLLECTION_NAME).count());
+        DBObject storedAnnotation = mongoOperations.getCollection(ANNOTATIONS_COLLECTION_NAME).findOne(
+                new BasicDBObject("_id", "1_1000_A_T_88_89"));
+        assertEquals(2, ((BasicDBList) storedAnnotation.get(AnnotationMongo.CONSEQUENCE_TYPE_FIELD)).size());
+        assertEquals("1", storedAnnotation.get(AnnotationMongo.CHROMOSOME_FIELD));
+
+        AnnotationIndexMongo index = readAnnotationIndex("1_1000_A_T");
+        assertEquals(Arrays.asList(0.1, 0.3), index.getSifts());
+        assertEquals(Arrays.asList(0.5, 0.9), index.getPolyphens());
+        assertEquals(new HashSet<>(Arrays.asList(1631, 1583)), index.getSoAccessions());
+        assertEquals(new HashSet<>(Arrays.asList("GENE1", "GENE2")), index.getXrefIds());
+        assertEquals(ConsequenceTypeBitmask.toBitmask(Arrays.asList(1631, 1583)), (long) index.getSoBitmask());
+
+        AnnotationIndexMongo otherIndex = readAnnotationIndex("1_2000_C_G");
+        assertNull(otherIndex.getSifts());
+        assertEquals(Collections.singleton(1632), otherIndex.getSoAccessions());
+
+        assertEquals(2, mongoOperations.getCollection(VARIANTS_COLLECTION_NAME).count());
+    }
+
+    @Test
+    public void annotationsSplitAcrossBatchesShouldBeMerged() throws Exception {
+        annotationWriter.write(Collections.singletonList(buildAnnotation(1000, "A", "T", "GENE1", 0.1, 0.5, 1631)));
+        annotationWriter.write(Collections.singletonList(buildAnnotation(1000, "A", "T", "GENE2", 0.3, 0.2, 1583)));
+        annotationWriter.write(Collections.singletonList(buildAnnotation(1000, "A", "T", "GENE2", 0.3, 0.2, 1583)));
+
+        DBObject storedAnnotation = mongoOperations.getCollection(ANNOTATIONS_COLLECTION_NAME).findOne(
+                new BasicDBObject("_id", "1_1000_A_T_88_89"));
+        assertEquals(2, ((BasicDBList) storedAnnotation.get(AnnotationMongo.CONSEQUENCE_TYPE_FIELD)).size());
+
+        DBObject variant = mongoOperations.getCollection(VARIANTS_COLLECTION_NAME).findOne(
+                new BasicDBObject("_id", "1_1000_A_T"));
+        assertEquals(1, ((BasicDBList) variant.get(VariantMongo.ANNOTATION_FIELD)).size());
+        AnnotationIndexMongo index = readAnnotationIndex("1_1000_A_T");
+        assertEquals(Arrays.asList(0.1, 0.3), index.getSifts());
+        assertEquals(Arrays.asList(0.2, 0.5), index.getPolyphens());
+        assertEquals(new HashSet<>(Arrays.asList(1631, 1583)), index.getSoAccessions());
+    }
+
+    private AnnotationIndexMongo readAnnotationIndex(String variantId) {
+        DBObject variant = mongoOperations.getCollection(VARIANTS_COLLECTION_NAME).findOne(
+                new BasicDBObject("_id", variantId));
+        BasicDBList annotationIndexes = (BasicDBList) variant.get(VariantMongo.ANNOTATION_FIELD);
+        return mongoOperations.getConverter().read(AnnotationIndexMongo.class, (DBObject) annotationIndexes.get(0));
+    }
+
+    private AnnotationMongo buildAnnotation(long start, String reference, String alternate, String geneName,
+                                            Double sift, Double polyphen, int soAccession) {
+        ConsequenceTypeMongo consequenceType = new ConsequenceTypeMongo(
+                geneName, null, null, "+", "protein_coding", null, null, null, null, null,
+                sift == null ? null : new ScoreMongo(sift, "deleterious"),
+                polyphen == null ? null : new ScoreMongo(polyphen, "benign"),
+                Collections.singleton(soAccession), null);
+        AnnotationMongo annotation = new AnnotationMongo("1", start, start, reference, alternate, VEP_VERSION,
+                                                         VEP_CACHE_VERSION);
+        List<ConsequenceTypeMongo> consequenceTypes = Collections.singletonList(consequenceType);
+        return annotation.concatenate(new AnnotationMongo(annotation.getId(), "1", start, start, VEP_VERSION,
+                                                          VEP_CACHE_VERSION, null,
+                                                          new HashSet<>(consequenceTypes)));
+    }
+}
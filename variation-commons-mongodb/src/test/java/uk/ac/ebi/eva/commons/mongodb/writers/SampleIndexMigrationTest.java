@@ -0,0 +1,112 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.commons.mongodb.writers;
+
+import com.mongodb.BasicDBList;
+import com.mongodb.DBObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import uk.ac.ebi.eva.commons.core.models.IVariant;
+import uk.ac.ebi.eva.commons.core.models.pipeline.Variant;
+import uk.ac.ebi.eva.commons.core.models.pipeline.VariantSourceEntry;
+import uk.ac.ebi.eva.commons.mongodb.configuration.MongoRepositoryTestConfiguration;
+import uk.ac.ebi.eva.commons.mongodb.entities.ChromosomeCatalogMongo;
+import uk.ac.ebi.eva.commons.mongodb.entities.subdocuments.VariantSourceEntryMongo;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static uk.ac.ebi.eva.commons.mongodb.entities.VariantMongo.FILES_FIELD;
+import static uk.ac.ebi.eva.commons.mongodb.entities.subdocuments.VariantSourceEntryMongo.SAMPLES_FIELD;
+
+@RunWith(SpringRunner.class)
+@ContextConfiguration(classes = {MongoRepositoryTestConfiguration.class})
+public class SampleIndexMigrationTest {
+
+    private static final String COLLECTION_NAME = "variants_migration";
+
+    private static final int TOTAL_SAMPLES = 20;
+
+    @Autowired
+    private MongoOperations mongoOperations;
+
+    @Before
+    public void setUp() throws Exception {
+        mongoOperations.dropCollection(COLLECTION_NAME);
+        mongoOperations.dropCollection(ChromosomeCatalogMongo.getCollectionName(COLLECTION_NAME));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mongoOperations.dropCollection(COLLECTION_NAME);
+        mongoOperations.dropCollection(ChromosomeCatalogMongo.getCollectionName(COLLECTION_NAME));
+    }
+
+    @Test
+    public void legacySampleIndexesShouldBeEncoded() throws Exception {
+        List<IVariant> variants = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            variants.add(buildVariantWithSamples(100 + i, i + 1));
+        }
+        variants.add(new Variant("1", 200, 200, "A", "T"));
+        new VariantMongoWriter(COLLECTION_NAME, mongoOperations, false, true).write(variants);
+
+        SampleIndexMigration migration = new SampleIndexMigration(mongoOperations, COLLECTION_NAME, 2);
+        assertEquals(5, migration.migrate());
+        assertEquals(0, migration.migrate());
+
+        for (DBObject variant : mongoOperations.getCollection(COLLECTION_NAME).find()) {
+            BasicDBList files = (BasicDBList) variant.get(FILES_FIELD);
+            if (files == null) {
+                continue;
+            }
+            DBObject file = (DBObject) files.get(0);
+            DBObject samples = (DBObject) file.get(SAMPLES_FIELD);
+            assertTrue(samples.get("0/1") instanceof byte[]);
+
+            VariantSourceEntryMongo sourceEntry = mongoOperations.getConverter().read(VariantSourceEntryMongo.class,
+                                                                                      file);
+            List<Map<String, String>> samplesData = sourceEntry.deflateSamplesData(TOTAL_SAMPLES);
+            long heterozygous = samplesData.stream().filter(sample -> "0/1".equals(sample.get("GT"))).count();
+            assertEquals((long) variant.get("start") - 99, heterozygous);
+            assertEquals("0/1", samplesData.get(TOTAL_SAMPLES - 1).get("GT"));
+        }
+    }
+
+    private Variant buildVariantWithSamples(long start, int heterozygousSamples) {
+        List<Map<String, String>> samplesData = new ArrayList<>();
+        for (int i = 0; i < TOTAL_SAMPLES; i++) {
+            String genotype = i >= TOTAL_SAMPLES - heterozygousSamples ? "0/1" : "0/0";
+            samplesData.add(Collections.singletonMap("GT", genotype));
+        }
+        VariantSourceEntry sourceEntry = new VariantSourceEntry("fileId", "studyId", new String[0], "GT", null,
+                                                                Collections.emptyMap(), samplesData);
+        Variant variant = new Variant("1", start, start, "A", "T");
+        variant.addSourceEntry(sourceEntry);
+        return variant;
+    }
+}
@@ -17,6 +17,7 @@
 package uk.ac.ebi.eva.commons.mongodb.writers;
 
 import com.mongodb.BasicDBList;
+import com.mongodb.BasicDBObject;
 import com.mongodb.DBCollection;
 import com.mongodb.DBObject;
 import org.junit.After;
@@ -25,14 +26,22 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringRunner;
 
 import uk.ac.ebi.eva.commons.core.models.VariantStatistics;
 import uk.ac.ebi.eva.commons.core.models.VariantType;
+import uk.ac.ebi.eva.commons.core.models.genotype.Genotype;
 import uk.ac.ebi.eva.commons.core.models.pipeline.Variant;
 import uk.ac.ebi.eva.commons.core.models.pipeline.VariantSourceEntry;
 import uk.ac.ebi.eva.commons.mongodb.configuration.MongoRepositoryTestConfiguration;
+import uk.ac.ebi.eva.commons.mongodb.entities.ChromosomeCatalogMongo;
+import uk.ac.ebi.eva.commons.mongodb.entities.LoadProgressMongo;
+import uk.ac.ebi.eva.commons.mongodb.entities.VariantIdScheme;
+import uk.ac.ebi.eva.commons.mongodb.entities.NumericIdCodec;
+import uk.ac.ebi.eva.commons.mongodb.entities.VariantMongo;
+import uk.ac.ebi.eva.commons.mongodb.entities.subdocuments.VariantStatisticsMongo;
 
 import java.net.UnknownHostException;
 import java.util.ArrayList;
@@ -52,6 +61,7 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static uk.ac.ebi.eva.commons.mongodb.entities.VariantMongo.ALTERNATE_FIELD;
 import static uk.ac.ebi.eva.commons.mongodb.entities.VariantMongo.CHROMOSOME_FIELD;
 import static uk.ac.ebi.eva.commons.mongodb.entities.VariantMongo.DBSNP_IDS_FIELD;
@@ -59,6 +69,7 @@ import static uk.ac.ebi.eva.commons.mongodb.entities.VariantMongo.END_FIELD;
 import static uk.ac.ebi.eva.commons.mongodb.entities.VariantMongo.FILES_FIELD;
 import static uk.ac.ebi.eva.commons.mongodb.entities.VariantMongo.IDS_FIELD;
 import static uk.ac.ebi.eva.commons.mongodb.entities.VariantMongo.MAIN_ID_FIELD;
+import static uk.ac.ebi.eva.commons.mongodb.entities.VariantMongo.NUMERIC_IDS_FIELD;
 import static uk.ac.ebi.eva.commons.mongodb.entities.VariantMongo.REFERENCE_FIELD;
 import static uk.ac.ebi.eva.commons.mongodb.entities.VariantMongo.START_FIELD;
 import static uk.ac.ebi.eva.commons.mongodb.entities.VariantMongo.STATISTICS_FIELD;
@@ -84,17 +95,25 @@ public class VariantMongoWriterTest {
 
     private static final String COLLECTION_NAME = "variants";
 
+    private static final String CATALOG_COLLECTION_NAME = ChromosomeCatalogMongo.getCollectionName(COLLECTION_NAME);
+
+    private static final String PROGRESS_COLLECTION_NAME = LoadProgressMongo.getCollectionName(COLLECTION_NAME);
+
     @Autowired
     private MongoOperations mongoOperations;
 
     @Before
     public void setUp() throws Exception {
         mongoOperations.dropCollection(COLLECTION_NAME);
+        mongoOperations.dropCollection(CATALOG_COLLECTION_NAME);
+        mongoOperations.dropCollection(PROGRESS_COLLECTION_NAME);
     }
 
     @After
     public void tearDown() throws Exception {
         mongoOperations.dropCollection(COLLECTION_NAME);
+        mongoOperations.dropCollection(CATALOG_COLLECTION_NAME);
+        mongoOperations.dropCollection(PROGRESS_COLLECTION_NAME);
     }
 
     @Test
@@ -121,6 +140,24 @@ public class VariantMongoWriterTest {
         assertEquals(2, dbCollection.count());
     }
 
+    @Test
+    public void variantsShouldBeWrittenInSeveralBulksWithABulkSizer() throws Exception {
+        List<Variant> variants = new ArrayList<>();
+        for (int i = 1; i <= 25; i++) {
+            variants.add(new Variant("1", i, i, "A", "T"));
+        }
+        AdaptiveBulkSizer bulkSizer = new AdaptiveBulkSizer(AdaptiveBulkSizer.DEFAULT_TARGET_BYTES, 1000, 1, 10);
+
+        VariantMongoWriter variantMongoWriter = new VariantMongoWriter(COLLECTION_NAME, mongoOperations, false, false);
+        variantMongoWriter.setBulkSizer(bulkSizer);
+        variantMongoWriter.write(variants);
+
+        assertEquals(25, mongoOperations.getCollection(COLLECTION_NAME).count());
+        assertEquals(3, bulkSizer.getBulksExecuted());
+        assertEquals(25, bulkSizer.getOperationsExecuted());
+        assertEquals(1, bulkSizer.getChunksSplit());
+    }
+
     @Test
     public void indexesShouldBeCreatedInBackground() throws UnknownHostException {
         DBCollection dbCollection = mongoOperations.getCollection(COLLECTION_NAME);
@@ -133,7 +170,7 @@ public class VariantMongoWriterTest {
                                               .collect(Collectors.toSet());
         Set<String> expectedIndexes = new HashSet<>();
         expectedIndexes.addAll(Arrays.asList("annot.xrefs_1", "files.sid_1_files.fid_1", "chr_1_start_1_end_1",
-                                             "annot.so_1", "_id_", "ids_1"));
+                                             "annot.so_1", "_id_", "ids_1", "nids_1"));
         assertEquals(expectedIndexes, createdIndexes);
 
         indexInfo.stream().filter(index -> !("_id_".equals(index.get("name").toString())))
@@ -154,6 +191,43 @@ public class VariantMongoWriterTest {
         assertEquals(1, ((BasicDBList) storedVariant.get(FILES_FIELD)).size());
     }
 
+    @Test
+    public void chromosomeCatalogShouldBeUpdatedWithEachBulk() throws Exception {
+        Variant variant1 = new Variant("1", 100, 100, "A", "T");
+        variant1.addSourceEntry(new VariantSourceEntry("test_file", "study_1"));
+        Variant variant2 = new Variant("1", 50, 50, "C", "G");
+        variant2.addSourceEntry(new VariantSourceEntry("test_file", "study_1"));
+        Variant variant3 = new Variant("2", 300, 300, "C", "G");
+        variant3.addSourceEntry(new VariantSourceEntry("test_file", "study_1"));
+        Variant variant4 = new Variant("1", 500, 500, "C", "G");
+        variant4.addSourceEntry(new VariantSourceEntry("test_file", "study_2"));
+
+        VariantMongoWriter variantMongoWriter = new VariantMongoWriter(COLLECTION_NAME, mongoOperations, false, false);
+        variantMongoWriter.write(Arrays.asList(variant1, variant2, variant3));
+        variantMongoWriter.write(Collections.singletonList(variant4));
+
+        DBCollection catalog = mongoOperations.getCollection(CATALOG_COLLECTION_NAME);
+        assertEquals(3, catalog.count());
+
+        DBObject chromosome1Study1 = catalog.findOne(
+                new BasicDBObject(ChromosomeCatalogMongo.CHROMOSOME_FIELD, "1")
+                        .append(ChromosomeCatalogMongo.STUDY_ID_FIELD, "study_1"));
+        assertEquals(50L, ((Number) chromosome1Study1.get(ChromosomeCatalogMongo.MIN_START_FIELD)).longValue());
+        assertEquals(100L, ((Number) chromosome1Study1.get(ChromosomeCatalogMongo.MAX_START_FIELD)).longValue());
+        assertEquals(2L, ((Number) chromosome1Study1.get(ChromosomeCatalogMongo.COUNT_FIELD)).longValue());
+
+        Variant variant5 = new Variant("1", 10, 10, "C", "G");
+        variant5.addSourceEntry(new VariantSourceEntry("test_file", "study_1"));
+        variantMongoWriter.write(Collections.singletonList(variant5));
+
+        chromosome1Study1 = catalog.findOne(
+                new BasicDBObject(ChromosomeCatalogMongo.CHROMOSOME_FIELD, "1")
+                        .append(ChromosomeCatalogMongo.STUDY_ID_FIELD, "study_1"));
+        assertEquals(10L, ((Number) chromosome1Study1.get(ChromosomeCatalogMongo.MIN_START_FIELD)).longValue());
+        assertEquals(100L, ((Number) chromosome1Study1.get(ChromosomeCatalogMongo.MAX_START_FIELD)).longValue());
+        assertEquals(3L, ((Number) chromosome1Study1.get(ChromosomeCatalogMongo.COUNT_FIELD)).longValue());
+    }
+
     private DBObject assertThereIsOnlyOneDocumentAndReturnIt() {
         DBCollection dbCollection = mongoOperations.getCollection(COLLECTION_NAME);
         assertEquals(1, dbCollection.count());
@@ -199,6 +273,140 @@ public class VariantMongoWriterTest {
         assertNotNull(storedVariant.get(STATISTICS_FIELD));
     }
 
+    @Test
+    public void incrementalStatsShouldAddTheCountersOfEachFile() throws Exception {
+        VariantMongoWriter variantMongoWriter = new VariantMongoWriter(COLLECTION_NAME, mongoOperations, true, false);
+        variantMongoWriter.setIncrementalStats(true);
+        variantMongoWriter.write(Collections.singletonList(buildVariantWithCounts("fileId1", 3, 1, 1, 1, 0)));
+        variantMongoWriter.write(Collections.singletonList(buildVariantWithCounts("fileId2", 2, 2, 0, 2, 1)));
+
+        DBObject storedVariant = assertThereIsOnlyOneDocumentAndReturnIt();
+        BasicDBList statistics = (BasicDBList) storedVariant.get(STATISTICS_FIELD);
+        assertEquals(1, statistics.size());
+        DBObject cohortStatistics = (DBObject) statistics.get(0);
+        assertNull(cohortStatistics.get(VariantStatisticsMongo.FILE_ID));
+        assertNull(cohortStatistics.get(VariantStatisticsMongo.MAF_FIELD));
+        assertEquals(5, cohortStatistics.get(VariantStatisticsMongo.REF_ALLELE_COUNT_FIELD));
+        assertEquals(3, cohortStatistics.get(VariantStatisticsMongo.ALT_ALLELE_COUNT_FIELD));
+        assertEquals(1, cohortStatistics.get(VariantStatisticsMongo.MISSGENOTYPE_FIELD));
+        DBObject genotypes = (DBObject) cohortStatistics.get(VariantStatisticsMongo.NUMGT_FIELD);
+        assertEquals(1, genotypes.get("0/0"));
+        assertEquals(3, genotypes.get("0/1"));
+
+        VariantStatisticsMongo variantStatistics = mongoOperations.findOne(new Query(), VariantMongo.class,
+                                                                           COLLECTION_NAME)
+                                                                  .getVariantStatsMongo().iterator().next()
+                                                                  .withDerivedValues("A", "T");
+        assertEquals(3 / 8f, variantStatistics.getMaf(), 0.0001);
+        assertEquals("T", variantStatistics.getMafAllele());
+        assertEquals(0, variantStatistics.getMgf(), 0.0001);
+        assertEquals("1/1", variantStatistics.getMgfGenotype());
+    }
+
+    @Test
+    public void incrementalStatsWithoutAlleleCountsShouldKeepTheFrequencies() throws Exception {
+        VariantMongoWriter variantMongoWriter = new VariantMongoWriter(COLLECTION_NAME, mongoOperations, true, false);
+        variantMongoWriter.setIncrementalStats(true);
+        Variant variant = new Variant("12", 3, 4, "A", "T");
+        VariantStatistics statistics = new VariantStatistics("A", "T", VariantType.SNV);
+        statistics.setMaf(0.2f);
+        statistics.setMafAllele("T");
+        VariantSourceEntry variantSourceEntry = new VariantSourceEntry("aggregatedFileId", "studyId");
+        variantSourceEntry.setCohortStats("ALL", statistics);
+        variant.addSourceEntry(variantSourceEntry);
+        variantMongoWriter.write(Collections.singletonList(variant));
+
+        DBObject storedVariant = assertThereIsOnlyOneDocumentAndReturnIt();
+        DBObject cohortStatistics = (DBObject) ((BasicDBList) storedVariant.get(STATISTICS_FIELD)).get(0);
+        assertNull(cohortStatistics.get(VariantStatisticsMongo.REF_ALLELE_COUNT_FIELD));
+        assertNull(cohortStatistics.get(VariantStatisticsMongo.ALT_ALLELE_COUNT_FIELD));
+
+        VariantStatisticsMongo variantStatistics = mongoOperations.findOne(new Query(), VariantMongo.class,
+                                                                           COLLECTION_NAME)
+                                                                  .getVariantStatsMongo().iterator().next()
+                                                                  .withDerivedValues("A", "T");
+        assertEquals(0.2, variantStatistics.getMaf(), 0.0001);
+        assertEquals("T", variantStatistics.getMafAllele());
+    }
+
+    private Variant buildVariantWithCounts(String fileId, int refAlleleCount, int altAlleleCount, int homRefCount,
+                                           int hetCount, int missingCount) {
+        return buildVariantWithCounts(3, fileId, refAlleleCount, altAlleleCount, homRefCount, hetCount, missingCount);
+    }
+
+    private Variant buildVariantWithCounts(long start, String fileId, int refAlleleCount, int altAlleleCount,
+                                           int homRefCount, int hetCount, int missingCount) {
+        Variant variant = new Variant("12", start, start + 1, "A", "T");
+        VariantStatistics statistics = new VariantStatistics("A", "T", VariantType.SNV);
+        statistics.setRefAlleleCount(refAlleleCount);
+        statistics.setAltAlleleCount(altAlleleCount);
+        if (homRefCount > 0) {
+            statistics.addGenotype(new Genotype("0/0", "A", "T"), homRefCount);
+        }
+        statistics.addGenotype(new Genotype("0/1", "A", "T"), hetCount);
+        statistics.setMissingGenotypes(missingCount);
+        VariantSourceEntry variantSourceEntry = new VariantSourceEntry(fileId, "studyId");
+        variantSourceEntry.setCohortStats("ALL", statistics);
+        variant.addSourceEntry(variantSourceEntry);
+        return variant;
+    }
+
+    @Test
+    public void batchInterruptedBetweenBulksShouldBeCountedOnceWhenResumed() throws Exception {
+        // the statistics of the second variant can't be incremented, so the batch fails after writing the variants
+        // and the statistics of the first one, but before updating the chromosome catalog
+        DBCollection variants = mongoOperations.getCollection(COLLECTION_NAME);
+        variants.insert(new BasicDBObject("_id", "12_2_A_T").append(CHROMOSOME_FIELD, "12").append(START_FIELD, 2L)
+                                .append(STATISTICS_FIELD, Collections.singletonList(
+                                        new BasicDBObject(VariantStatisticsMongo.STUDY_ID, "studyId")
+                                                .append(VariantStatisticsMongo.COHORT_ID, "ALL")
+                                                .append(VariantStatisticsMongo.REF_ALLELE_COUNT_FIELD, "none"))));
+        VariantMongoWriter variantMongoWriter = new VariantMongoWriter(COLLECTION_NAME, mongoOperations, true, false);
+        variantMongoWriter.setIncrementalStats(true);
+        variantMongoWriter.setCheckpoints(true);
+        try {
+            variantMongoWriter.write(Arrays.asList(buildVariantWithCounts(1, "fileId", 3, 1, 1, 1, 0),
+                                                   buildVariantWithCounts(2, "fileId", 2, 2, 0, 2, 0)));
+            fail("The statistics of the second variant should not be written");
+        } catch (RuntimeException e) {
+            assertEquals(0, variantMongoWriter.getCommittedCount("studyId", "fileId"));
+        }
+        variants.update(new BasicDBObject("_id", "12_2_A_T"), new BasicDBObject(
+                "$set", new BasicDBObject(STATISTICS_FIELD + ".0." + VariantStatisticsMongo.REF_ALLELE_COUNT_FIELD, 0)));
+
+        // resumed with batches of a different size
+        VariantMongoWriter resumedWriter = new VariantMongoWriter(COLLECTION_NAME, mongoOperations, true, false);
+        resumedWriter.setIncrementalStats(true);
+        resumedWriter.setCheckpoints(true);
+        resumedWriter.write(Collections.singletonList(buildVariantWithCounts(1, "fileId", 3, 1, 1, 1, 0)));
+        resumedWriter.write(Collections.singletonList(buildVariantWithCounts(2, "fileId", 2, 2, 0, 2, 0)));
+        resumedWriter.write(Collections.singletonList(buildVariantWithCounts(3, "fileId", 4, 0, 2, 0, 0)));
+
+        assertEquals(3, resumedWriter.getCommittedCount("studyId", "fileId"));
+        assertEquals(3, variants.count());
+        assertEquals(3, getRefAlleleCount(variants.findOne(new BasicDBObject(START_FIELD, 1L))));
+        assertEquals(2, getRefAlleleCount(variants.findOne(new BasicDBObject(START_FIELD, 2L))));
+        assertEquals(4, getRefAlleleCount(variants.findOne(new BasicDBObject(START_FIELD, 3L))));
+        DBObject catalogEntry = mongoOperations.getCollection(CATALOG_COLLECTION_NAME).findOne();
+        assertEquals(1L, ((Number) catalogEntry.get(ChromosomeCatalogMongo.MIN_START_FIELD)).longValue());
+        assertEquals(3L, ((Number) catalogEntry.get(ChromosomeCatalogMongo.MAX_START_FIELD)).longValue());
+        assertEquals(3L, ((Number) catalogEntry.get(ChromosomeCatalogMongo.COUNT_FIELD)).longValue());
+
+        resumedWriter.resetCheckpoint("studyId", "fileId");
+        assertEquals(0, resumedWriter.getCommittedCount("studyId", "fileId"));
+    }
+
+    private static int getRefAlleleCount(DBObject variant) {
+        DBObject statistics = (DBObject) ((BasicDBList) variant.get(STATISTICS_FIELD)).get(0);
+        return ((Number) statistics.get(VariantStatisticsMongo.REF_ALLELE_COUNT_FIELD)).intValue();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void binaryIdsShouldNotBeWrittenYet() {
+        VariantMongoWriter variantMongoWriter = new VariantMongoWriter(COLLECTION_NAME, mongoOperations, false, false);
+        variantMongoWriter.setIdScheme(VariantIdScheme.BINARY_V1);
+    }
+
     @Test
     public void includeStatsFalseShouldNotIncludeStatistics() throws Exception {
         Variant variant = buildVariantWithStats("12", 3, 4, "A", "T", "fileId", "studyId");
@@ -260,6 +468,19 @@ public class VariantMongoWriterTest {
         assertNull(storedVariant.get(DBSNP_IDS_FIELD));
     }
 
+    @Test
+    public void rsAndSsIdsShouldAlsoBeWrittenAsNumbers() throws Exception {
+        Variant variant = buildVariantWithStats("12", 3, 4, "A", "T", "fileId", "studyId");
+        variant.setIds(new HashSet<>(Arrays.asList("rs123", "ss456", "esv789")));
+
+        VariantMongoWriter variantMongoWriter = new VariantMongoWriter(COLLECTION_NAME, mongoOperations, false, true);
+        variantMongoWriter.write(Collections.singletonList(variant));
+
+        DBObject storedVariant = assertThereIsOnlyOneDocumentAndReturnIt();
+        assertEquals(new HashSet<>(Arrays.asList(NumericIdCodec.encode("rs123"), NumericIdCodec.encode("ss456"))),
+                     new HashSet<>((BasicDBList) storedVariant.get(NUMERIC_IDS_FIELD)));
+    }
+
     @Test
     public void writeOnlyDbsnpIds() throws Exception {
         Variant variant = buildVariantWithStats("12", 3, 4, "A", "T", "fileId", "studyId");
@@ -16,6 +16,7 @@
 
 package uk.ac.ebi.eva.commons.mongodb.writers;
 
+import com.mongodb.BasicDBObject;
 import com.mongodb.DBCollection;
 import com.mongodb.DBCursor;
 import com.mongodb.DBObject;
@@ -29,11 +30,14 @@ import uk.ac.ebi.eva.commons.core.models.Aggregation;
 import uk.ac.ebi.eva.commons.core.models.StudyType;
 
 import uk.ac.ebi.eva.commons.mongodb.configuration.MongoRepositoryTestConfiguration;
+import uk.ac.ebi.eva.commons.mongodb.entities.StudySummaryMongo;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.batch.support.transaction.ResourcelessTransactionManager;
 import org.springframework.data.mongodb.core.MongoOperations;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.support.TransactionTemplate;
 import uk.ac.ebi.eva.commons.mongodb.entities.VariantSourceMongo;
 import uk.ac.ebi.eva.commons.mongodb.entities.subdocuments.VariantGlobalStatsMongo;
 
@@ -58,6 +62,8 @@ public class VariantSourceMongoWriterTest {
 
     private static final String COLLECTION_FILES_NAME = "files";
 
+    private static final String COLLECTION_STUDIES_NAME = StudySummaryMongo.getCollectionName(COLLECTION_FILES_NAME);
+
     private static final String FILE_ID = "1";
 
     private static final String STUDY_ID = "1";
@@ -74,11 +80,13 @@ public class VariantSourceMongoWriterTest {
     @Before
     public void setUp() throws Exception {
         mongoOperations.dropCollection(COLLECTION_FILES_NAME);
+        mongoOperations.dropCollection(COLLECTION_STUDIES_NAME);
     }
 
     @After
     public void tearDown() throws Exception {
         mongoOperations.dropCollection(COLLECTION_FILES_NAME);
+        mongoOperations.dropCollection(COLLECTION_STUDIES_NAME);
     }
 
     @Test
@@ -143,6 +151,97 @@ public class VariantSourceMongoWriterTest {
         }
     }
 
+    @Test
+    public void shouldWriteTheSameDocumentsWithABulkSizer() throws Exception {
+        DBCollection fileCollection = mongoOperations.getCollection(COLLECTION_FILES_NAME);
+        VariantSourceMongoWriter filesWriter = new VariantSourceMongoWriter(mongoOperations, COLLECTION_FILES_NAME);
+        AdaptiveBulkSizer bulkSizer = new AdaptiveBulkSizer();
+        filesWriter.setBulkSizer(bulkSizer);
+
+        VariantSourceMongo variantSource = getVariantSource();
+        variantSource.setSamplesPosition(Collections.singletonMap("NA.dot", 0));
+        filesWriter.write(Collections.singletonList(variantSource));
+
+        assertEquals(1, fileCollection.count());
+        assertEquals(1, bulkSizer.getBulksExecuted());
+        DBObject file = fileCollection.findOne();
+        assertEquals(FILE_ID, file.get(VariantSourceMongo.FILEID_FIELD));
+        assertEquals(Collections.singleton("NA£dot"),
+                     ((DBObject) file.get(VariantSourceMongo.SAMPLES_FIELD)).keySet());
+        assertNotNull(file.get(VariantSourceMongo.METADATA_FIELD));
+        assertNotNull(file.get(VariantSourceMongo.STATISTICS_FIELD));
+    }
+
+    @Test
+    public void shouldUpdateTheStudySummary() throws Exception {
+        VariantSourceMongoWriter filesWriter = new VariantSourceMongoWriter(mongoOperations, COLLECTION_FILES_NAME);
+
+        VariantSourceMongo firstFile = getVariantSource();
+        VariantSourceMongo secondFile = new VariantSourceMongo("2", "other.vcf.gz", STUDY_ID, STUDY_NAME, STUDY_TYPE,
+                                                               AGGREGATION, Collections.singletonMap("sample3", 0),
+                                                               null, new VariantGlobalStatsMongo(5, 1, 4, 1, 0, 5,
+                                                                                                 3, 1, 20));
+        firstFile.setStats(new VariantGlobalStatsMongo(10, 3, 8, 2, 0, 9, 6, 2, 30));
+        filesWriter.write(Collections.singletonList(firstFile));
+        filesWriter.write(Collections.singletonList(secondFile));
+
+        DBCollection studiesCollection = mongoOperations.getCollection(COLLECTION_STUDIES_NAME);
+        assertEquals(1, studiesCollection.count());
+        DBObject summary = studiesCollection.findOne();
+        assertEquals(STUDY_ID, summary.get("_id"));
+        assertEquals(STUDY_NAME, summary.get(StudySummaryMongo.STUDY_NAME_FIELD));
+        assertEquals(2, summary.get(StudySummaryMongo.FILES_COUNT_FIELD));
+        assertEquals(4, summary.get(StudySummaryMongo.SAMPLES_COUNT_FIELD));
+        DBObject stats = (DBObject) summary.get(StudySummaryMongo.STATISTICS_FIELD);
+        assertEquals(15, stats.get(VariantGlobalStatsMongo.STATISTICS_NUMVARIANTS_FIELD));
+        assertEquals(12, stats.get(VariantGlobalStatsMongo.STATISTICS_NUMSNPS_FIELD));
+        assertEquals(9, stats.get(VariantGlobalStatsMongo.STATISTICS_NUMTRANSITIONS_FIELD));
+
+        // the summaries computed from the files are the same, and are marked as complete
+        filesWriter.rebuildStudySummaries();
+        assertEquals(summary, studiesCollection.findOne(new BasicDBObject("_id", STUDY_ID)));
+        assertEquals(1, studiesCollection.count(new BasicDBObject("_id", StudySummaryMongo.COMPLETE_MARKER_ID)));
+    }
+
+    @Test
+    public void studySummaryShouldCountEachFileOnce() throws Exception {
+        VariantSourceMongoWriter filesWriter = new VariantSourceMongoWriter(mongoOperations, COLLECTION_FILES_NAME);
+        VariantSourceMongo file = getVariantSource();
+        file.setStats(new VariantGlobalStatsMongo(10, 3, 8, 2, 0, 9, 6, 2, 30));
+        filesWriter.write(Collections.singletonList(file));
+
+        // the same chunk written again, after its files were removed
+        mongoOperations.getCollection(COLLECTION_FILES_NAME).remove(new BasicDBObject());
+        filesWriter.write(Collections.singletonList(file));
+
+        DBObject summary = mongoOperations.getCollection(COLLECTION_STUDIES_NAME).findOne();
+        assertEquals(1, summary.get(StudySummaryMongo.FILES_COUNT_FIELD));
+        assertEquals(3, summary.get(StudySummaryMongo.SAMPLES_COUNT_FIELD));
+        DBObject stats = (DBObject) summary.get(StudySummaryMongo.STATISTICS_FIELD);
+        assertEquals(10, stats.get(VariantGlobalStatsMongo.STATISTICS_NUMVARIANTS_FIELD));
+    }
+
+    @Test
+    public void studySummaryShouldOnlyBeUpdatedWhenTheFileIsWritten() throws Exception {
+        VariantSourceMongoWriter filesWriter = new VariantSourceMongoWriter(mongoOperations, COLLECTION_FILES_NAME);
+        DBCollection studiesCollection = mongoOperations.getCollection(COLLECTION_STUDIES_NAME);
+
+        new TransactionTemplate(new ResourcelessTransactionManager()).execute(status -> {
+            try {
+                filesWriter.write(Collections.singletonList(getVariantSource()));
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+            // the file is inserted when the transaction is committed
+            assertEquals(0, mongoOperations.getCollection(COLLECTION_FILES_NAME).count());
+            assertEquals(0, studiesCollection.count());
+            return null;
+        });
+
+        assertEquals(1, mongoOperations.getCollection(COLLECTION_FILES_NAME).count());
+        assertEquals(1, studiesCollection.findOne().get(StudySummaryMongo.FILES_COUNT_FIELD));
+    }
+
     @Test
     public void shouldCreateUniqueFileIndex() throws Exception {
         DBCollection fileCollection = mongoOperations.getCollection (COLLECTION_FILES_NAME);